@@ -0,0 +1,436 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.audit.logging.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers serialized audit events to a {@link Sink} from a background thread, so that the latency of the audit
+ * backend (for example the acknowledgement of a Kafka broker) is not added to the request that produced the event.
+ *
+ * <p>Every event is first appended to a write-ahead log file, one event per line, and only then queued in memory.
+ * The writer thread drains the queue in batches and records the position up to which the log has been acknowledged
+ * by the sink; once everything has been acknowledged the log is truncated. Failed batches are retried until they
+ * succeed. When the in-memory queue is full, new events are only appended to the log and the writer replays them from
+ * the file once it has caught up, so the request never waits for the sink. A log left behind by a previous run is
+ * replayed at startup, so events are delivered at least once even if the server stops before they were sent.
+ *
+ * <p>If the writer thread fails unexpectedly, the failure is logged and the next event that is logged after a short
+ * delay starts a new writer, which replays the unacknowledged events from the log.
+ *
+ * <p>Events must be JSON: line breaks, which can only be insignificant whitespace in JSON, are removed from the copy
+ * that is written to the log.
+ */
+public class AuditEventPipeline {
+    private static final Logger log = Logger.getLogger(AuditEventPipeline.class.getName());
+
+    private static final long POLL_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+    // the log is truncated as soon as it is fully acknowledged and has grown beyond this size (or the queue is idle)
+    private static final long TRUNCATE_THRESHOLD = 1024 * 1024;
+    // the minimum time between the failure of the writer and its restart, so a persistent failure doesn't spin
+    private static final long WRITER_RESTART_DELAY_MILLIS = 1000;
+
+    /**
+     * The destination of the audit events
+     */
+    public interface Sink {
+        /**
+         * Send the passed events, returning only when all of them have been acknowledged
+         *
+         * @param events
+         *     the serialized events, in the order in which they were logged
+         * @throws Exception
+         *     if any of the events may not have been delivered; the whole batch is retried
+         */
+        void send(List<String> events) throws Exception;
+    }
+
+    private final Sink sink;
+    private final int batchSize;
+    private final boolean fsync;
+    private final BlockingQueue<Pending> queue;
+    private final Path logFile;
+    // replaced when the writer fails; guarded by logLock
+    private volatile Thread writer;
+    private volatile long writerFailedTime;
+
+    // guards the log channel, logSize and overflow; appends, enqueues and truncation happen under this lock
+    private final Object logLock = new Object();
+    private final FileChannel logChannel;
+    private long logSize;
+    private boolean overflow;
+    private long overflowSince;
+
+    // the offset up to which the sink has acknowledged the log; only written by the writer thread
+    private volatile long ackedOffset;
+    private volatile long oldestUnackedTime;
+    private volatile boolean running = true;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAdder failedSendCount = new LongAdder();
+    private final LongAdder writerRestartCount = new LongAdder();
+
+    /**
+     * @param sink
+     *     the destination of the events
+     * @param queueSize
+     *     the maximum number of events held in memory
+     * @param batchSize
+     *     the maximum number of events passed to the sink at once
+     * @param logFile
+     *     the write-ahead log; if it exists, the events it contains are sent before any new event
+     * @param fsync
+     *     whether every append is forced to the storage device, so events also survive an operating system crash
+     * @throws IOException
+     *     if the log can't be opened
+     */
+    public AuditEventPipeline(Sink sink, int queueSize, int batchSize, Path logFile, boolean fsync) throws IOException {
+        if (queueSize < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("queueSize and batchSize must be greater than 0");
+        }
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.fsync = fsync;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.logFile = logFile;
+
+        if (logFile.getParent() != null) {
+            Files.createDirectories(logFile.getParent());
+        }
+        this.logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.logSize = logChannel.size();
+        if (logSize > 0) {
+            log.info("Replaying " + logSize + " bytes of audit events from " + logFile);
+            overflow = true;
+            overflowSince = System.currentTimeMillis();
+            oldestUnackedTime = overflowSince;
+        }
+
+        this.writer = startWriter();
+    }
+
+    /**
+     * Append the event to the write-ahead log and queue it for delivery; this never waits for the sink
+     *
+     * @param event
+     *     the serialized (JSON) event
+     * @throws IOException
+     *     if the event can't be written to the log
+     */
+    public void log(String event) throws IOException {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(event.replace("\r", "").replace("\n", "") + "\n");
+        synchronized (logLock) {
+            if (!running) {
+                throw new IllegalStateException("The audit event pipeline has been stopped");
+            }
+            logChannel.position(logSize);
+            while (line.hasRemaining()) {
+                logSize += logChannel.write(line);
+            }
+            if (fsync) {
+                logChannel.force(false);
+            }
+
+            long now = System.currentTimeMillis();
+            if (!overflow && !queue.offer(new Pending(event, logSize, now))) {
+                // from now on, events are only read back from the log, which keeps them in order
+                overflow = true;
+                overflowSince = now;
+                log.warning("Audit event queue is full; events are replayed from " + logFile);
+            }
+            if (overflow) {
+                overflowCount.increment();
+            }
+            if (oldestUnackedTime == 0) {
+                oldestUnackedTime = now;
+            }
+            if (!writer.isAlive() && now - writerFailedTime >= WRITER_RESTART_DELAY_MILLIS) {
+                restartWriter(now);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting events and wait for the queued events to be sent; events that could not be sent remain in the
+     * log and are sent by the next pipeline that uses it
+     *
+     * @param timeoutMillis
+     *     the maximum time to wait for the queued events to be sent
+     */
+    public void stop(long timeoutMillis) {
+        Thread writer;
+        synchronized (logLock) {
+            running = false;
+            writer = this.writer;
+        }
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+        try {
+            writer.join(POLL_MILLIS);
+            synchronized (logLock) {
+                logChannel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to close " + logFile, e);
+        }
+    }
+
+    /**
+     * @return the number of events held in the in-memory queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of bytes of the write-ahead log that have not been acknowledged by the sink yet
+     */
+    public long getBacklogBytes() {
+        synchronized (logLock) {
+            return logSize - ackedOffset;
+        }
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest event that has not been acknowledged by the sink, or 0 if there
+     *         is none
+     */
+    public long getLagMillis() {
+        long oldest = oldestUnackedTime;
+        return (oldest == 0) ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    /**
+     * @return the number of events acknowledged by the sink
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * @return the number of events that did not fit into the queue and were replayed from the log
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * @return the number of batches the sink failed to send (each of which was retried)
+     */
+    public long getFailedSendCount() {
+        return failedSendCount.sum();
+    }
+
+    /**
+     * @return true if the writer thread is running; false if it has failed and has not been restarted yet, or if the
+     *         pipeline has been stopped
+     */
+    public boolean isWriterAlive() {
+        return writer.isAlive();
+    }
+
+    /**
+     * @return the number of times the writer thread was restarted after a failure
+     */
+    public long getWriterRestartCount() {
+        return writerRestartCount.sum();
+    }
+
+    private Thread startWriter() {
+        Thread thread = new Thread(this::run, "fhir-audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Start a new writer in place of the one that failed. Must be called while holding logLock.
+     */
+    private void restartWriter(long now) {
+        // the events queued for the failed writer are also in the log, after the acknowledged offset
+        queue.clear();
+        if (!overflow) {
+            overflow = true;
+            overflowSince = now;
+        }
+        writerRestartCount.increment();
+        log.warning("Restarting the audit event writer; unsent events are replayed from " + logFile);
+        writer = startWriter();
+    }
+
+    private void run() {
+        try {
+            while (running || !queue.isEmpty() || isOverflow()) {
+                if (queue.isEmpty() && isOverflow()) {
+                    replayLog();
+                    continue;
+                }
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    truncateIfAcknowledged(0);
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                List<String> events = new ArrayList<>(batch.size());
+                for (Pending pending : batch) {
+                    events.add(pending.event);
+                }
+                oldestUnackedTime = first.time;
+                send(events);
+                acknowledge(batch.get(batch.size() - 1).endOffset);
+                truncateIfAcknowledged(TRUNCATE_THRESHOLD);
+            }
+        } catch (InterruptedException e) {
+            log.warning("Audit event writer interrupted; unsent events remain in " + logFile);
+        } catch (Throwable t) {
+            writerFailedTime = System.currentTimeMillis();
+            log.log(Level.SEVERE, "Audit event writer failed; unsent events remain in " + logFile
+                    + " and the writer is restarted by the next event", t);
+        }
+    }
+
+    private boolean isOverflow() {
+        synchronized (logLock) {
+            return overflow;
+        }
+    }
+
+    /**
+     * Send the events of the log that have not been acknowledged yet, in batches, then leave overflow mode.
+     * Only called when the queue is empty; while in overflow mode no events are queued.
+     */
+    private void replayLog() throws IOException, InterruptedException {
+        long end;
+        synchronized (logLock) {
+            end = logSize;
+        }
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Channels.newInputStream(channel.position(ackedOffset)), StandardCharsets.UTF_8))) {
+            long offset = ackedOffset;
+            List<String> events = new ArrayList<>(batchSize);
+            String line;
+            while (offset < end && (line = reader.readLine()) != null) {
+                // a line torn by a crash has no line break
+                offset = Math.min(offset + line.getBytes(StandardCharsets.UTF_8).length + 1, end);
+                if (!line.isEmpty()) {
+                    events.add(line);
+                }
+                if (events.size() == batchSize || offset >= end) {
+                    send(events);
+                    acknowledge(offset);
+                    events.clear();
+                }
+            }
+        }
+        synchronized (logLock) {
+            if (ackedOffset >= logSize) {
+                overflow = false;
+                oldestUnackedTime = 0;
+                log.info("Audit event writer caught up with " + logFile);
+            }
+        }
+    }
+
+    /**
+     * Send the events, retrying with an increasing delay until the sink succeeds
+     */
+    private void send(List<String> events) throws InterruptedException {
+        if (events.isEmpty()) {
+            return;
+        }
+        long delay = POLL_MILLIS;
+        while (true) {
+            try {
+                sink.send(events);
+                sentCount.add(events.size());
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failedSendCount.increment();
+                log.log(Level.WARNING, "Failed to send " + events.size() + " audit event(s); retrying in " + delay + "ms", e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void acknowledge(long offset) {
+        ackedOffset = offset;
+        Pending next = queue.peek();
+        if (next != null) {
+            oldestUnackedTime = next.time;
+        } else {
+            synchronized (logLock) {
+                oldestUnackedTime = overflow ? overflowSince : (ackedOffset < logSize ? System.currentTimeMillis() : 0);
+            }
+        }
+    }
+
+    /**
+     * Truncate the log if every event in it has been acknowledged and it is at least {@code threshold} bytes long
+     */
+    private void truncateIfAcknowledged(long threshold) throws IOException {
+        synchronized (logLock) {
+            if (logSize > 0 && logSize >= threshold && ackedOffset == logSize && !overflow && queue.isEmpty()) {
+                logChannel.truncate(0);
+                if (fsync) {
+                    logChannel.force(false);
+                }
+                logSize = 0;
+                ackedOffset = 0;
+                oldestUnackedTime = 0;
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final String event;
+        // the offset just past this event in the log
+        private final long endOffset;
+        private final long time;
+
+        private Pending(String event, long endOffset, long time) {
+            this.event = event;
+            this.endOffset = endOffset;
+            this.time = time;
+        }
+    }
+}
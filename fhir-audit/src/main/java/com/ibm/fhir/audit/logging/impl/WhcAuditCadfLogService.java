@@ -7,16 +7,22 @@
 package com.ibm.fhir.audit.logging.impl;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import com.ibm.fhir.audit.cadf.model.CadfAttachment;
 import com.ibm.fhir.audit.cadf.model.CadfCredential;
@@ -50,6 +56,11 @@ public class WhcAuditCadfLogService implements AuditLogService {
     private static final String PROPERTY_AUDIT_GEO_CITY = "geoCity";
     private static final String PROPERTY_AUDIT_GEO_STATE = "geoState";
     private static final String PROPERTY_AUDIT_GEO_COUNTRY = "geoCounty";
+    private static final String PROPERTY_AUDIT_ASYNC_ENABLED = "async/enabled";
+    private static final String PROPERTY_AUDIT_ASYNC_QUEUE_SIZE = "async/queueSize";
+    private static final String PROPERTY_AUDIT_ASYNC_BATCH_SIZE = "async/batchSize";
+    private static final String PROPERTY_AUDIT_ASYNC_LOG_FILE = "async/logFile";
+    private static final String PROPERTY_AUDIT_ASYNC_FSYNC = "async/fsync";
     private static final String HEALTHCHECKOP = "healthcheck";
 
     private static final String KAFKA_USERNAME = "token";
@@ -57,8 +68,13 @@ public class WhcAuditCadfLogService implements AuditLogService {
     private static final String DEFAULT_AUDIT_GEO_CITY = "Dallas";
     private static final String DEFAULT_AUDIT_GEO_STATE = "TX";
     private static final String DEFAULT_AUDIT_GEO_COUNTRY = "US";
+    private static final int DEFAULT_AUDIT_ASYNC_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_AUDIT_ASYNC_BATCH_SIZE = 100;
+    private static final long STOP_TIMEOUT_MILLIS = 10000;
 
     private KafkaProducer<String, String> producer = null;
+    // null if events are sent synchronously
+    private AuditEventPipeline pipeline = null;
     private static String bootstrapServers = null;
     private static String apiKey = null;
     private static String auditTopic = DEFAULT_AUDIT_KAFKA_TOPIC;
@@ -144,11 +160,27 @@ public class WhcAuditCadfLogService implements AuditLogService {
 
         if (this.producer == null) {
             throw new FHIRException("Failed to init kafka producer!");
-        } else {
-            logger.info("Initialized Audit logger.");
-            this.isEnabled = true;
         }
 
+        // Events are written to a local log and sent by a background thread if async is enabled.
+        if (auditLogProperties != null && auditLogProperties.getBooleanProperty(PROPERTY_AUDIT_ASYNC_ENABLED, Boolean.FALSE)) {
+            int queueSize = auditLogProperties.getIntProperty(PROPERTY_AUDIT_ASYNC_QUEUE_SIZE, DEFAULT_AUDIT_ASYNC_QUEUE_SIZE);
+            int batchSize = auditLogProperties.getIntProperty(PROPERTY_AUDIT_ASYNC_BATCH_SIZE, DEFAULT_AUDIT_ASYNC_BATCH_SIZE);
+            String logFile = auditLogProperties.getStringProperty(PROPERTY_AUDIT_ASYNC_LOG_FILE);
+            boolean fsync = auditLogProperties.getBooleanProperty(PROPERTY_AUDIT_ASYNC_FSYNC, Boolean.FALSE);
+            // the log must not depend on the working directory, or unsent events could be left behind after a restart
+            if (logFile == null || !Paths.get(logFile).isAbsolute()) {
+                throw new FHIRException("Property '" + PROPERTY_AUDIT_ASYNC_LOG_FILE + "' must be an absolute path when '"
+                        + PROPERTY_AUDIT_ASYNC_ENABLED + "' is true");
+            }
+            Path logPath = Paths.get(logFile);
+            this.pipeline = new AuditEventPipeline(this::send, queueSize, batchSize, logPath, fsync);
+            logger.info("Audit events are sent asynchronously through " + logPath);
+        }
+
+        logger.info("Initialized Audit logger.");
+        this.isEnabled = true;
+
         logger.exiting(CLASSNAME, METHODNAME);
     }
 
@@ -168,9 +200,14 @@ public class WhcAuditCadfLogService implements AuditLogService {
 
         if (eventObject != null) {
             String eventString = CadfEvent.Writer.generate(eventObject);
-            ProducerRecord<String, String> record = new ProducerRecord<>(auditTopic, eventString);
-            // Block till the message is sent to kafka server.
-            this.producer.send(record).get();
+            if (this.pipeline != null) {
+                // The event is in the local log once this returns; it is sent by the pipeline's writer thread.
+                this.pipeline.log(eventString);
+            } else {
+                ProducerRecord<String, String> record = new ProducerRecord<>(auditTopic, eventString);
+                // Block till the message is sent to kafka server.
+                this.producer.send(record).get();
+            }
         }
 
         logger.exiting(CLASSNAME, METHODNAME);
@@ -182,6 +219,28 @@ public class WhcAuditCadfLogService implements AuditLogService {
         return this.isEnabled;
     }
 
+    /**
+     * Send a batch of events and wait until the kafka server has acknowledged all of them.
+     * @param events
+     * @throws Exception
+     */
+    private void send(List<String> events) throws Exception {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(events.size());
+        for (String event : events) {
+            futures.add(this.producer.send(new ProducerRecord<>(auditTopic, event)));
+        }
+        for (Future<RecordMetadata> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * @return the asynchronous pipeline used to send the events, or null if events are sent synchronously
+     */
+    public AuditEventPipeline getPipeline() {
+        return this.pipeline;
+    }
+
     /**
      * @param logEntry
      * @return
@@ -258,6 +317,9 @@ public class WhcAuditCadfLogService implements AuditLogService {
 
     // release kafka resource for producer
     public void stop() {
+        if (this.pipeline != null) {
+            this.pipeline.stop(STOP_TIMEOUT_MILLIS);
+        }
         if (this.producer != null) {
             try {
                 this.producer.close();
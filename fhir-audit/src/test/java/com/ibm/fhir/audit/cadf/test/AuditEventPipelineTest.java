@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.audit.cadf.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.audit.logging.impl.AuditEventPipeline;
+
+public class AuditEventPipelineTest {
+    private Path logFile;
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        logFile = Files.createTempDirectory("fhir-audit-test").resolve("audit-events.log");
+        sent.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(logFile.getParent());
+    }
+
+    @Test
+    public void testEventsAreSentInOrder() throws Exception {
+        AuditEventPipeline pipeline = new AuditEventPipeline(sent::addAll, 100, 10, logFile, false);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String event = "{\"id\":" + i + "}";
+            expected.add(event);
+            pipeline.log(event);
+        }
+        waitFor(() -> sent.size() == expected.size());
+        assertEquals(sent, expected);
+        waitFor(() -> pipeline.getBacklogBytes() == 0 && logFile.toFile().length() == 0);
+        assertEquals(pipeline.getQueueDepth(), 0);
+        assertEquals(pipeline.getLagMillis(), 0);
+        pipeline.stop(1000);
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        AuditEventPipeline pipeline = new AuditEventPipeline(events -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("broker unavailable");
+            }
+            sent.addAll(events);
+        }, 100, 10, logFile, false);
+        pipeline.log("{\"id\":1}");
+        waitFor(() -> sent.size() == 1);
+        assertEquals(pipeline.getFailedSendCount(), 2);
+        pipeline.stop(1000);
+    }
+
+    @Test
+    public void testQueueOverflowIsReplayedFromLog() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AuditEventPipeline pipeline = new AuditEventPipeline(events -> {
+            release.await();
+            sent.addAll(events);
+        }, 2, 2, logFile, false);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String event = "{\n  \"id\": " + i + "\n}";
+            expected.add(event.replace("\n", ""));
+            pipeline.log(event);
+        }
+        assertTrue(pipeline.getOverflowCount() > 0);
+        assertTrue(pipeline.getBacklogBytes() > 0);
+        release.countDown();
+
+        waitFor(() -> sent.size() == expected.size());
+        // the queued events keep their line breaks; the ones replayed from the log don't
+        List<String> normalized = new ArrayList<>();
+        for (String event : sent) {
+            normalized.add(event.replace("\n", ""));
+        }
+        assertEquals(normalized, expected);
+        pipeline.stop(1000);
+    }
+
+    @Test
+    public void testLogIsReplayedAtStartup() throws Exception {
+        Files.write(logFile, Arrays.asList("{\"id\":1}", "{\"id\":2}"), StandardCharsets.UTF_8);
+        AuditEventPipeline pipeline = new AuditEventPipeline(sent::addAll, 100, 10, logFile, false);
+        pipeline.log("{\"id\":3}");
+        waitFor(() -> sent.size() == 3);
+        assertEquals(sent, Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"));
+        pipeline.stop(1000);
+    }
+
+    @Test
+    public void testUnsentEventsRemainInLog() throws Exception {
+        AuditEventPipeline pipeline = new AuditEventPipeline(events -> {
+            throw new IllegalStateException("broker unavailable");
+        }, 100, 10, logFile, false);
+        pipeline.log("{\"id\":1}");
+        pipeline.stop(100);
+        assertEquals(Files.readAllLines(logFile, StandardCharsets.UTF_8), Collections.singletonList("{\"id\":1}"));
+    }
+
+    @Test
+    public void testFailedWriterIsRestarted() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        AuditEventPipeline pipeline = new AuditEventPipeline(events -> {
+            if (failures.getAndDecrement() > 0) {
+                // not an Exception, so it isn't retried and ends the writer
+                throw new AssertionError("writer failure");
+            }
+            sent.addAll(events);
+        }, 100, 10, logFile, false);
+        pipeline.log("{\"id\":1}");
+        waitFor(() -> !pipeline.isWriterAlive());
+
+        // the next event starts a new writer, which sends the events of the failed writer from the log
+        waitFor(() -> {
+            pipeline.log("{\"id\":2}");
+            return pipeline.isWriterAlive();
+        });
+        waitFor(() -> sent.size() >= 2);
+        assertEquals(sent.get(0), "{\"id\":1}");
+        assertEquals(pipeline.getWriterRestartCount(), 1);
+        pipeline.stop(1000);
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.isMet()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet() throws Exception;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.core.util.LRUCache;
+
+/**
+ * Compares the synchronized {@link LRUCache} with {@link BoundedConcurrentCache} under concurrent access, using
+ * a key distribution similar to the FHIRPath identifier cache: a hot working set that fits in the cache plus a
+ * tail of keys that does not.
+ */
+@Threads(Threads.MAX)
+public class CacheBenchmark {
+    private static final int MAX_ENTRIES = 2048;
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        // the percentage of lookups that fall outside of the hot working set
+        @Param({"0", "10"})
+        public int missPercentage;
+
+        Map<String, String> lruCache;
+        BoundedConcurrentCache<String, String> concurrentCache;
+        String[] hotKeys;
+        String[] coldKeys;
+
+        @Setup
+        public void setUp() {
+            lruCache = LRUCache.createLRUCache(MAX_ENTRIES);
+            concurrentCache = new BoundedConcurrentCache<>(MAX_ENTRIES);
+            hotKeys = new String[MAX_ENTRIES / 2];
+            for (int i = 0; i < hotKeys.length; i++) {
+                hotKeys[i] = "Patient.identifier" + i;
+            }
+            coldKeys = new String[MAX_ENTRIES * 8];
+            for (int i = 0; i < coldKeys.length; i++) {
+                coldKeys[i] = "Observation.component" + i;
+            }
+        }
+
+        String nextKey() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextInt(100) < missPercentage) {
+                return coldKeys[random.nextInt(coldKeys.length)];
+            }
+            return hotKeys[random.nextInt(hotKeys.length)];
+        }
+    }
+
+    @Benchmark
+    public String benchmarkLRUCache(CacheState state) {
+        return state.lruCache.computeIfAbsent(state.nextKey(), k -> k);
+    }
+
+    @Benchmark
+    public String benchmarkBoundedConcurrentCache(CacheState state) {
+        return state.concurrentCache.computeIfAbsent(state.nextKey(), k -> k);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new FHIRBenchmarkRunner(CacheBenchmark.class)
+                .threads(Threads.MAX)
+                .run();
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -19,6 +19,7 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
 
 import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
 import com.ibm.fhir.benchmark.util.BenchmarkUtil;
@@ -26,6 +27,7 @@ import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathTree;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 
@@ -67,6 +69,24 @@ public class FHIRPathEvaluatorBenchmark {
         state.evaluator.evaluate(state.evaluationContext, FHIRPathEvaluatorState.EXPRESSION, state.initialContext);
     }
     
+    /**
+     * Build the full tree and evaluate; compare gc.alloc.rate.norm with {@link #benchmarkEvaluatorWithLazyTree}
+     */
+    @Benchmark
+    public Collection<FHIRPathNode> benchmarkEvaluatorWithTree(FHIRPathEvaluatorState state) throws Exception {
+        EvaluationContext evaluationContext = new EvaluationContext(FHIRPathTree.tree(state.resource));
+        return state.evaluator.evaluate(evaluationContext, FHIRPathEvaluatorState.EXPRESSION);
+    }
+    
+    /**
+     * Build the tree lazily and evaluate; only the nodes visited by the expression are created
+     */
+    @Benchmark
+    public Collection<FHIRPathNode> benchmarkEvaluatorWithLazyTree(FHIRPathEvaluatorState state) throws Exception {
+        EvaluationContext evaluationContext = new EvaluationContext(FHIRPathTree.lazyTree(state.resource));
+        return state.evaluator.evaluate(evaluationContext, FHIRPathEvaluatorState.EXPRESSION);
+    }
+    
     @Benchmark
     public void benchmarkHAPIEvaluator(FHIRPathEvaluatorState state) throws Exception {
         state.fluentPath.evaluate(state.baseResource, FHIRPathEvaluatorState.EXPRESSION, IBase.class);
@@ -91,6 +111,7 @@ public class FHIRPathEvaluatorBenchmark {
         new FHIRBenchmarkRunner(FHIRPathEvaluatorBenchmark.class)
                 .property(PROPERTY_EXAMPLE_NAME, EXAMPLE_NAME)
                 .property(PROPERTY_EXPRESSION, EXPRESSION)
+                .profiler(GCProfiler.class)
                 .run(BenchmarkUtil.getRandomSpecExampleName());
     }
 }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -7,8 +7,11 @@
 package com.ibm.fhir.benchmark;
 
 import static com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner.PROPERTY_EXAMPLE_NAME;
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -18,11 +21,19 @@ import org.openjdk.jmh.annotations.State;
 
 import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
 import com.ibm.fhir.benchmark.util.BenchmarkUtil;
+import com.ibm.fhir.model.annotation.Constraint;
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.path.FHIRPathElementNode;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathResourceNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.visitor.FHIRPathDefaultNodeVisitor;
 import com.ibm.fhir.validation.FHIRValidator;
+import com.ibm.fhir.validation.util.ConstraintCompiler;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.validation.FhirValidator;
@@ -39,6 +50,9 @@ public class FHIRValidatorBenchmark {
         public FHIRValidator validator;
         public Resource resource;
         public EvaluationContext evaluationContext;
+        public FHIRPathEvaluator evaluator;
+        public List<FHIRPathNode> constraintNodes = new ArrayList<>();
+        public List<String> constraintExpressions = new ArrayList<>();
         
         @Setup
         public void setUp() throws Exception {
@@ -48,6 +62,30 @@ public class FHIRValidatorBenchmark {
             validator = FHIRValidator.validator();
             resource = FHIRParser.parser(Format.JSON).parse(new StringReader(JSON_SPEC_EXAMPLE));
             evaluationContext = new EvaluationContext(resource);
+            evaluator = FHIRPathEvaluator.evaluator();
+            
+            // the model constraints which apply to each node of the example and which can be compiled
+            evaluationContext.getTree().getRoot().accept(new FHIRPathDefaultNodeVisitor() {
+                @Override
+                public void doVisit(FHIRPathElementNode node) {
+                    add(node, node.element().getClass());
+                }
+                
+                @Override
+                public void doVisit(FHIRPathResourceNode node) {
+                    add(node, node.resource().getClass());
+                }
+                
+                private void add(FHIRPathNode node, Class<?> modelClass) {
+                    for (Constraint constraint : ModelSupport.getConstraints(modelClass)) {
+                        if (!constraint.modelChecked() && Constraint.LOCATION_BASE.equals(constraint.location()) &&
+                                ConstraintCompiler.compile(constraint.expression()) != null) {
+                            constraintNodes.add(node);
+                            constraintExpressions.add(constraint.expression());
+                        }
+                    }
+                }
+            });
         }
     }
     
@@ -56,6 +94,28 @@ public class FHIRValidatorBenchmark {
         state.validator.validate(state.evaluationContext);
     }
     
+    /**
+     * Evaluate the compilable model constraints of the example with the interpreter; compare with {@link #benchmarkCompiledConstraints}
+     */
+    @Benchmark
+    public void benchmarkInterpretedConstraints(FHIRValidatorState state) throws Exception {
+        for (int i = 0; i < state.constraintNodes.size(); i++) {
+            state.evaluator.evaluate(state.evaluationContext, state.constraintExpressions.get(i), singleton(state.constraintNodes.get(i)));
+            state.evaluationContext.clearIssues();
+        }
+    }
+    
+    /**
+     * Evaluate the same constraints as {@link #benchmarkInterpretedConstraints} in their compiled form
+     */
+    @Benchmark
+    public void benchmarkCompiledConstraints(FHIRValidatorState state) throws Exception {
+        for (int i = 0; i < state.constraintNodes.size(); i++) {
+            ConstraintCompiler.compile(state.constraintExpressions.get(i)).evaluate(state.evaluationContext, singleton(state.constraintNodes.get(i)));
+            state.evaluationContext.clearIssues();
+        }
+    }
+    
     @Benchmark
     public void benchmarkHAPIValidator(FHIRValidatorState state) throws Exception {
         state.fhirValidator.validateWithResult(state.baseResource);
@@ -13,6 +13,10 @@ import java.time.LocalTime;
 import java.time.Year;
 import java.time.YearMonth;
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import com.ibm.fhir.model.visitor.DefaultVisitor;
 import com.ibm.fhir.model.visitor.Visitable;
@@ -41,12 +45,38 @@ public class ObjectSizeEstimator {
         return visitor.getResult();
     }
 
+    /**
+     * Compute the estimated heap retained by the passed Visitables, counting objects that are shared between
+     * (or within) them only once, e.g. interned primitive values
+     */
+    public static long getDistinctObjectSize(Collection<? extends Visitable> visitables) {
+        ObjectSizeVisitor distinctVisitor = new ObjectSizeVisitor(Collections.newSetFromMap(new IdentityHashMap<>()));
+        for (Visitable visitable : visitables) {
+            visitable.accept(distinctVisitor);
+        }
+        return distinctVisitor.getResult();
+    }
+
+    /**
+     * @return true if the enclosing jar file was configured as a java agent
+     */
+    public static boolean isAvailable() {
+        return instrumentation != null;
+    }
+
 
     private static class ObjectSizeVisitor extends DefaultVisitor {
         long size = 0;
+        // the objects that were already counted, or null to count every occurrence
+        private final Set<Object> visited;
         
         public ObjectSizeVisitor() {
+            this(null);
+        }
+        
+        public ObjectSizeVisitor(Set<Object> visited) {
             super(true);
+            this.visited = visited;
         }
         
         public long getResult() {
@@ -55,6 +85,10 @@ public class ObjectSizeEstimator {
         
         @Override
         public boolean visit(String elementName, int elementIndex, Visitable visitable) {
+            if (visited != null && !visited.add(visitable)) {
+                // a shared object; its children were counted when it was first visited
+                return false;
+            }
             size += instrumentation.getObjectSize(visitable);
             return true;
         }
@@ -86,7 +120,9 @@ public class ObjectSizeEstimator {
 
         @Override
         public void visit(java.lang.String elementName, java.lang.String value) {
-            size += instrumentation.getObjectSize(value);
+            if (visited == null || visited.add(value)) {
+                size += instrumentation.getObjectSize(value);
+            }
         }
 
         @Override
@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ibm.fhir.benchmark.util.BenchmarkUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.payload.PayloadCodec;
+import com.ibm.fhir.persistence.payload.PayloadCodecRegistry;
+
+/**
+ * Measures the cost of encoding and decoding stored resource payloads with each of the built-in codecs, over
+ * a fixed mix of spec examples. The number of stored bytes for the mix is printed during setup.
+ */
+public class PayloadCodecBenchmark {
+    // every n-th spec example is part of the mix
+    private static final int SAMPLE_INTERVAL = 50;
+
+    @State(Scope.Benchmark)
+    public static class PayloadCodecState {
+        @Param({"gzip", "identity", "deflate", "deflate-dictionary"})
+        public String codecName;
+
+        @Param({"-1", "1"})
+        public int compressionLevel;
+
+        PayloadCodecRegistry registry = PayloadCodecRegistry.getInstance();
+        PayloadCodec codec;
+        List<Resource> resources = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+
+        @Setup
+        public void setUp() throws Exception {
+            codec = registry.getCodec(codecName);
+            FHIRParser parser = FHIRParser.parser(Format.JSON);
+            List<String> exampleNames = BenchmarkUtil.getSpecExampleNames();
+            long storedBytes = 0;
+            for (int i = 0; i < exampleNames.size(); i += SAMPLE_INTERVAL) {
+                String example = BenchmarkUtil.getSpecExample(Format.JSON, exampleNames.get(i));
+                Resource resource = parser.parse(new StringReader(example));
+                byte[] payload = registry.encode(resource, codec, compressionLevel);
+                resources.add(resource);
+                payloads.add(payload);
+                storedBytes += payload.length;
+            }
+            System.out.println("\n" + codecName + " (level " + compressionLevel + "): " + resources.size()
+                + " resources, " + storedBytes + " stored bytes");
+        }
+    }
+
+    @Benchmark
+    public int benchmarkEncode(PayloadCodecState state) throws Exception {
+        int size = 0;
+        for (Resource resource : state.resources) {
+            size += state.registry.encode(resource, state.codec, state.compressionLevel).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    public int benchmarkDecode(PayloadCodecState state) throws Exception {
+        int size = 0;
+        byte[] buffer = new byte[8192];
+        for (byte[] payload : state.payloads) {
+            try (InputStream in = state.registry.decode(payload)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    size += n;
+                }
+            }
+        }
+        return size;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(PayloadCodecBenchmark.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
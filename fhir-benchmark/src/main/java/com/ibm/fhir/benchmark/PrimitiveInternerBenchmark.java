@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+
+import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
+import com.ibm.fhir.benchmark.util.BenchmarkUtil;
+import com.ibm.fhir.model.config.FHIRModelConfig;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.util.PrimitiveInterner;
+
+/**
+ * Measures the cost of parsing a large search bundle and a bulk import batch with and without interning of
+ * primitive values (see {@link PrimitiveInterner}).
+ *
+ * <p>When the enclosing jar file is configured as a java agent (see {@link ObjectSizeEstimator}), the heap retained
+ * by the parsed bundle and batch is printed during setup.
+ */
+public class PrimitiveInternerBenchmark {
+    // the number of entries in the search bundle, the page size of a large search
+    private static final int BUNDLE_SIZE = 1000;
+    // every n-th spec example is part of the bulk import batch
+    private static final int SAMPLE_INTERVAL = 10;
+
+    @State(Scope.Benchmark)
+    public static class PrimitiveInternerState {
+        @Param({"false", "true"})
+        public boolean internPrimitives;
+
+        @Param({"observation-example"})
+        public String exampleName;
+
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        String bundle;
+        List<String> batch = new ArrayList<>();
+
+        @Setup
+        public void setUp() throws Exception {
+            // build the inputs without interning, so that they don't populate the cache
+            FHIRModelConfig.setInternPrimitives(false);
+            Resource resource = parser.parse(new StringReader(BenchmarkUtil.getSpecExample(Format.JSON, exampleName)));
+            Bundle.Builder bundleBuilder = Bundle.builder().type(BundleType.SEARCHSET);
+            for (int i = 0; i < BUNDLE_SIZE; i++) {
+                bundleBuilder.entry(Bundle.Entry.builder().resource(resource).build());
+            }
+            StringWriter writer = new StringWriter();
+            FHIRGenerator.generator(Format.JSON).generate(bundleBuilder.build(), writer);
+            bundle = writer.toString();
+
+            List<String> exampleNames = BenchmarkUtil.getSpecExampleNames();
+            for (int i = 0; i < exampleNames.size(); i += SAMPLE_INTERVAL) {
+                // ndjson lines
+                batch.add(BenchmarkUtil.getSpecExample(Format.JSON, exampleNames.get(i)).replaceAll("\\R", ""));
+            }
+
+            FHIRModelConfig.setInternPrimitives(internPrimitives);
+            if (ObjectSizeEstimator.isAvailable()) {
+                long bundleSize = ObjectSizeEstimator.getDistinctObjectSize(Collections.singletonList(parseBundle()));
+                long batchSize = ObjectSizeEstimator.getDistinctObjectSize(parseBatch());
+                System.out.println("\ninternPrimitives=" + internPrimitives + ": search bundle of " + BUNDLE_SIZE
+                    + " entries retains " + bundleSize + " bytes, bulk import batch of " + batch.size()
+                    + " resources retains " + batchSize + " bytes, " + PrimitiveInterner.size() + " interned values");
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            FHIRModelConfig.removeProperty(FHIRModelConfig.PROPERTY_INTERN_PRIMITIVES);
+            PrimitiveInterner.clear();
+        }
+
+        Bundle parseBundle() throws Exception {
+            return parser.parse(new StringReader(bundle));
+        }
+
+        List<Resource> parseBatch() throws Exception {
+            List<Resource> resources = new ArrayList<>(batch.size());
+            for (String line : batch) {
+                resources.add(parser.parse(new StringReader(line)));
+            }
+            return resources;
+        }
+    }
+
+    @Benchmark
+    public Bundle benchmarkParseSearchBundle(PrimitiveInternerState state) throws Exception {
+        return state.parseBundle();
+    }
+
+    @Benchmark
+    public List<Resource> benchmarkParseBulkImportBatch(PrimitiveInternerState state) throws Exception {
+        return state.parseBatch();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new FHIRBenchmarkRunner(PrimitiveInternerBenchmark.class)
+                .profiler(GCProfiler.class)
+                .run();
+    }
+}
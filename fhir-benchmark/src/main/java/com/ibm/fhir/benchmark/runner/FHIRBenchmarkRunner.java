@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,10 +11,12 @@ import java.util.Collection;
 import java.util.List;
 
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.Profiler;
 import org.openjdk.jmh.profile.StackProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
@@ -28,6 +30,8 @@ public class FHIRBenchmarkRunner {
 
     private final Class<?> benchmarkClass;
     private final List<String> properties = new ArrayList<>();
+    private final List<Class<? extends Profiler>> profilers = new ArrayList<>();
+    private int threads = 1;
     
     public FHIRBenchmarkRunner(Class<?> benchmarkClass) {
         this.benchmarkClass = benchmarkClass;
@@ -37,11 +41,36 @@ public class FHIRBenchmarkRunner {
         return this;
     }
     
+    /**
+     * Add a profiler (e.g. {@link org.openjdk.jmh.profile.GCProfiler} for allocation per operation) to the
+     * {@link #run()} and {@link #run(String)} methods
+     */
+    public FHIRBenchmarkRunner profiler(Class<? extends Profiler> profiler) {
+        profilers.add(profiler);
+        return this;
+    }
+    
+    /**
+     * Set the number of threads that call the benchmark methods concurrently in the {@link #run()} method (1 by
+     * default; {@link org.openjdk.jmh.annotations.Threads#MAX} for one per available processor)
+     */
+    public FHIRBenchmarkRunner threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+    
+    private ChainedOptionsBuilder addProfilers(ChainedOptionsBuilder builder) {
+        for (Class<? extends Profiler> profiler : profilers) {
+            builder.addProfiler(profiler);
+        }
+        return builder;
+    }
+    
     /**
      * Run without overriding any parameters
      */
     public Collection<RunResult> run() throws RunnerException {
-        Options opt = new OptionsBuilder()
+        Options opt = addProfilers(new OptionsBuilder())
                 .include(".*" + benchmarkClass.getSimpleName() + ".*")
                 .jvmArgsPrepend("-Xms2g", "-Xmx2g")
                 .jvmArgsAppend(properties.toArray(new String[properties.size()]))
@@ -52,7 +81,7 @@ public class FHIRBenchmarkRunner {
                 .measurementTime(TimeValue.seconds(10))
                 .shouldDoGC(true)
                 .forks(2)
-                .threads(1)
+                .threads(threads)
 //                .mode(Mode.AverageTime)
                 .addProfiler(StackProfiler.class)
                 .build();
@@ -63,7 +92,7 @@ public class FHIRBenchmarkRunner {
      * Run and override the 'exampleName' param with the passed fileName
      */
     public Collection<RunResult> run(String fileName) throws RunnerException {
-        Options opt = new OptionsBuilder()
+        Options opt = addProfilers(new OptionsBuilder())
                 .include(".*" + benchmarkClass.getSimpleName() + ".*")
                 .jvmArgsPrepend("-Xms4g", "-Xmx4g")
                 .jvmArgsAppend(properties.toArray(new String[properties.size()]))
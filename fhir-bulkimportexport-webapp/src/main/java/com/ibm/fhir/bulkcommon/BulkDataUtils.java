@@ -6,22 +6,31 @@
 
 package com.ibm.fhir.bulkcommon;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -30,6 +39,8 @@ import java.util.stream.Stream;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonReader;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.net.ssl.HttpsURLConnection;
 
 import com.ibm.cloud.objectstorage.ClientConfiguration;
@@ -74,6 +85,18 @@ import com.ibm.fhir.validation.exception.FHIRValidationException;
 public class BulkDataUtils {
     private final static Logger logger = Logger.getLogger(BulkDataUtils.class.getName());
 
+    private static final String PARSE_EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+    private static volatile ExecutorService parseExecutor = null;
+    private static volatile boolean parseExecutorLookupFailed = false;
+
+    /**
+     * Opens an ndjson data source at a byte offset.
+     */
+    @FunctionalInterface
+    private interface NdjsonSourceOpener {
+        InputStream open(long offset) throws Exception;
+    }
+
     /**
      * Logging helper.
      */
@@ -161,45 +184,164 @@ public class BulkDataUtils {
     }
 
     /**
-     * @param resReader - the buffer reader to read FHIR resource from.
-     * @param numOfProcessedLines - number of the already processed lines.
+     * Reads the next batch of FHIR resources from the ndjson reader of the transient user data, opening it at the
+     * checkpointed byte offset first if needed. Lines are read sequentially and parsed in parallel; the byte offset
+     * of the first unread line is recorded in the transient user data for the next checkpoint.
+     *
+     * @param opener - opens the data source at the passed byte offset.
      * @param fhirResources - List holds the FHIR resources.
-     * @param isSkipProcessed - if need to skip the processed lines before read.
+     * @param transientUserData - transient user data for the chunk.
+     * @param dataSource - the data source, for logging.
      * @return - the number of parsing failures.
      * @throws Exception
      */
-    private static int getFhirResourceFromBufferReader(BufferedReader resReader, int numOfProcessedLines, List<Resource> fhirResources,
-            boolean isSkipProcessed, String dataSource) throws Exception {
-        int exported = 0;
-        int lineRed = 0;
-        int parseFailures = 0;
+    private static int getFhirResourceFromNdjsonReader(NdjsonSourceOpener opener, List<Resource> fhirResources,
+            ImportTransientUserData transientUserData, String dataSource) throws Exception {
+        NdjsonReader reader = transientUserData.getNdjsonReader();
+        if (reader == null) {
+            reader = openNdjsonReader(opener, transientUserData, dataSource);
+        }
 
-        String resLine = null;
-        do {
-            resLine = resReader.readLine();
-            if (resLine != null) {
-                lineRed++;
-                if (isSkipProcessed && lineRed <= numOfProcessedLines) {
-                    continue;
+        int parseFailures = 0;
+        int lineNumber = transientUserData.getNumOfProcessedResources();
+        boolean isEnd = false;
+        // Parse failures don't count, so keep reading until the batch is full or the data source is exhausted.
+        while (!isEnd && fhirResources.size() < Constants.IMPORT_NUMOFFHIRRESOURCES_PERREAD) {
+            List<String> lines = new ArrayList<>(Constants.IMPORT_NUMOFFHIRRESOURCES_PERREAD - fhirResources.size());
+            while (lines.size() < Constants.IMPORT_NUMOFFHIRRESOURCES_PERREAD - fhirResources.size()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    isEnd = true;
+                    break;
                 }
+                lines.add(line);
+            }
+            parseFailures += parseFhirResources(lines, lineNumber, fhirResources, dataSource);
+            lineNumber += lines.size();
+        }
+        transientUserData.setImportFileOffset(reader.getOffset());
+        return parseFailures;
+    }
+
+    /**
+     * Opens the data source at the checkpointed byte offset. Checkpoints taken before byte offsets were tracked
+     * only have the number of processed lines, which are then read and skipped.
+     */
+    private static NdjsonReader openNdjsonReader(NdjsonSourceOpener opener, ImportTransientUserData transientUserData,
+            String dataSource) throws Exception {
+        long offset = transientUserData.getImportFileOffset();
+        NdjsonReader reader;
+        if (offset > 0 && transientUserData.getImportFileSize() > 0 && offset >= transientUserData.getImportFileSize()) {
+            // Nothing left to read, and a ranged read past the end of the data would fail.
+            reader = new NdjsonReader(new ByteArrayInputStream(new byte[0]), offset);
+        } else {
+            InputStream inputStream = opener.open(offset);
+            transientUserData.setInputStream(inputStream);
+            reader = new NdjsonReader(inputStream, offset);
+        }
+        transientUserData.setNdjsonReader(reader);
+
+        if (offset == 0 && transientUserData.getNumOfProcessedResources() > 0) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("openNdjsonReader: Skipping " + transientUserData.getNumOfProcessedResources()
+                        + " processed lines of [" + dataSource + "]");
+            }
+            for (int i = 0; i < transientUserData.getNumOfProcessedResources() && reader.readLine() != null; i++) {
+                // skip the line
+            }
+            transientUserData.setImportFileOffset(reader.getOffset());
+        }
+        return reader;
+    }
+
+    /**
+     * Parses the lines into FHIR resources, in parallel when the container-managed executor is available.
+     * The resources are added in the order of the lines; lines that can't be parsed are logged and skipped.
+     *
+     * @param lines - the ndjson lines to parse.
+     * @param numOfPrecedingLines - the number of lines of the data source before the first of the passed lines.
+     * @param fhirResources - List holds the FHIR resources.
+     * @param dataSource - the data source, for logging.
+     * @return - the number of parsing failures.
+     * @throws Exception
+     */
+    static int parseFhirResources(List<String> lines, int numOfPrecedingLines, List<Resource> fhirResources,
+            String dataSource) throws Exception {
+        Resource[] parsed = new Resource[lines.size()];
+        AtomicInteger nextLine = new AtomicInteger();
+        Callable<Void> parseTask = () -> {
+            int i;
+            while ((i = nextLine.getAndIncrement()) < parsed.length) {
                 try {
-                    fhirResources.add(FHIRParser.parser(Format.JSON).parse(new StringReader(resLine)));
-                    exported++;
-                    if (exported == Constants.IMPORT_NUMOFFHIRRESOURCES_PERREAD) {
-                        break;
-                    }
+                    parsed[i] = FHIRParser.parser(Format.JSON).parse(new StringReader(lines.get(i)));
                 } catch (FHIRParserException e) {
                     // Log and skip the invalid FHIR resource.
-                    parseFailures++;
-                    logger.log(Level.INFO, "getFhirResourceFromBufferReader: " + "Failed to parse line "
-                            + (numOfProcessedLines + exported + parseFailures) + " of [" + dataSource + "].", e);
-                    continue;
+                    logger.log(Level.INFO, "parseFhirResources: " + "Failed to parse line "
+                            + (numOfPrecedingLines + i + 1) + " of [" + dataSource + "].", e);
+                }
+            }
+            return null;
+        };
+
+        int parallelism = Math.min(Constants.IMPORT_MAX_PARSING_THREADNUMBER, lines.size());
+        ExecutorService executor = (parallelism > 1) ? getParseExecutor() : null;
+        List<Future<Void>> workers = new ArrayList<>();
+        if (executor != null) {
+            for (int i = 1; i < parallelism; i++) {
+                workers.add(executor.submit(parseTask));
+            }
+        }
+        Exception failure = null;
+        try {
+            parseTask.call();
+        } catch (Exception e) {
+            failure = e;
+            // stop the other threads from picking up more lines
+            nextLine.set(parsed.length);
+        }
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
                 }
             }
-        } while (resLine != null);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        int parseFailures = 0;
+        for (Resource resource : parsed) {
+            if (resource != null) {
+                fhirResources.add(resource);
+            } else {
+                parseFailures++;
+            }
+        }
         return parseFailures;
     }
 
+    /**
+     * Returns the container-managed executor used to parse the lines of a batch in parallel, or null if it is not
+     * available (in which case the lines are parsed sequentially).
+     */
+    private static ExecutorService getParseExecutor() {
+        ExecutorService executor = parseExecutor;
+        if (executor == null && !parseExecutorLookupFailed) {
+            try {
+                executor = (ExecutorService) new InitialContext().lookup(PARSE_EXECUTOR_JNDI_NAME);
+                parseExecutor = executor;
+            } catch (NamingException | ClassCastException e) {
+                parseExecutorLookupFailed = true;
+                logger.log(Level.FINE, "Unable to look up '" + PARSE_EXECUTOR_JNDI_NAME
+                        + "'; import resources will be parsed sequentially", e);
+            }
+        }
+        return executor;
+    }
+
     public static void cleanupTransientUserData(ImportTransientUserData transientUserData, boolean isAbort) throws Exception {
         if (transientUserData.getInputStream() != null) {
             if (isAbort && transientUserData.getInputStream() instanceof S3ObjectInputStream) {
@@ -210,9 +352,9 @@ public class BulkDataUtils {
             transientUserData.setInputStream(null);
         }
 
-        if (transientUserData.getBufferReader() != null) {
-            transientUserData.getBufferReader().close();
-            transientUserData.setBufferReader(null);
+        if (transientUserData.getNdjsonReader() != null) {
+            transientUserData.getNdjsonReader().close();
+            transientUserData.setNdjsonReader(null);
         }
     }
 
@@ -220,33 +362,28 @@ public class BulkDataUtils {
      * @param cosClient - COS/S3 client.
      * @param bucketName - COS/S3 bucket name to read from.
      * @param itemName - COS/S3 object name to read from.
-     * @param numOfLinesToSkip - number of lines to skip before read.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
     public static int readFhirResourceFromObjectStore(AmazonS3 cosClient, String bucketName, String itemName,
-           int numOfLinesToSkip, List<Resource> fhirResources, ImportTransientUserData transientUserData) throws Exception {
+            List<Resource> fhirResources, ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
         int retryTimes = Constants.IMPORT_RETRY_TIMES;
         do {
             try {
-                if (transientUserData.getBufferReader() == null) {
-                    S3Object item = cosClient.getObject(new GetObjectRequest(bucketName, itemName));
-                    S3ObjectInputStream s3InStream = item.getObjectContent();
-                    transientUserData.setInputStream(s3InStream);
-                    BufferedReader resReader = new BufferedReader(new InputStreamReader(s3InStream));
-                    transientUserData.setBufferReader(resReader);
-                    // Skip the already processed lines after opening the input stream for first read.
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, itemName);
-                } else {
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, itemName);
-                }
+                parseFailures = getFhirResourceFromNdjsonReader(offset -> {
+                    GetObjectRequest request = new GetObjectRequest(bucketName, itemName);
+                    if (offset > 0) {
+                        request.setRange(offset);
+                    }
+                    return cosClient.getObject(request).getObjectContent();
+                }, fhirResources, transientUserData, itemName);
                 break;
             } catch (Exception ex) {
-                // Prepare for retry, skip all the processed lines in previous batches and this batch.
-                numOfLinesToSkip = numOfLinesToSkip + fhirResources.size() + parseFailures;
+                // Prepare for retry, the batch is read again from the byte offset of its first line.
+                fhirResources.clear();
                 cleanupTransientUserData(transientUserData, true);
                 logger.warning("readFhirResourceFromObjectStore: Error proccesing file [" + itemName + "] - " + ex.getMessage());
                 if ((retryTimes--) > 0) {
@@ -269,25 +406,20 @@ public class BulkDataUtils {
 
     /**
      * @param filePath - file path to the ndjson file.
-     * @param numOfLinesToSkip - number of lines to skip before read.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
-    public static int readFhirResourceFromLocalFile(String filePath, int numOfLinesToSkip, List<Resource> fhirResources,
+    public static int readFhirResourceFromLocalFile(String filePath, List<Resource> fhirResources,
             ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
 
         try {
-            if (transientUserData.getBufferReader() == null) {
-                BufferedReader resReader = Files.newBufferedReader(Paths.get(filePath));
-                transientUserData.setBufferReader(resReader);
-                // Skip the already processed lines after opening the input stream for first read.
-                parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, filePath);
-            } else {
-                parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, filePath);
-            }
+            parseFailures = getFhirResourceFromNdjsonReader(offset -> {
+                FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+                return Channels.newInputStream(channel.position(offset));
+            }, fhirResources, transientUserData, filePath);
         } catch (Exception ex) {
             // Clean up.
             fhirResources.clear();
@@ -308,32 +440,23 @@ public class BulkDataUtils {
 
     /**
      * @param dataUrl - URL to the ndjson file.
-     * @param numOfLinesToSkip - number of lines to skip before read.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
-    public static int readFhirResourceFromHttps(String dataUrl, int numOfLinesToSkip, List<Resource> fhirResources,
+    public static int readFhirResourceFromHttps(String dataUrl, List<Resource> fhirResources,
             ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
         int retryTimes = Constants.IMPORT_RETRY_TIMES;
         do {
             try {
-                if (transientUserData.getBufferReader() == null) {
-                    InputStream inputStream = new URL(dataUrl).openConnection().getInputStream();
-                    transientUserData.setInputStream(inputStream);
-                    BufferedReader resReader = new BufferedReader(new InputStreamReader(inputStream));
-                    transientUserData.setBufferReader(resReader);
-                    // Skip the already processed lines after opening the input stream for first read.
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, dataUrl);
-                } else {
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, dataUrl);
-                }
+                parseFailures = getFhirResourceFromNdjsonReader(offset -> openHttpsInputStream(dataUrl, offset),
+                        fhirResources, transientUserData, dataUrl);
                 break;
             } catch (Exception ex) {
-                // Prepare for retry, skip all the processed lines in previous batches and this batch.
-                numOfLinesToSkip = numOfLinesToSkip + fhirResources.size() + parseFailures;
+                // Prepare for retry, the batch is read again from the byte offset of its first line.
+                fhirResources.clear();
                 cleanupTransientUserData(transientUserData, true);
                 logger.warning("readFhirResourceFromHttps: Error proccesing file [" + dataUrl + "] - " + ex.getMessage());
                 if ((retryTimes--) > 0) {
@@ -348,6 +471,35 @@ public class BulkDataUtils {
         return parseFailures;
     }
 
+    /**
+     * Opens the URL at the passed byte offset, with a range request if the server supports it and by skipping the
+     * preceding bytes otherwise.
+     */
+    private static InputStream openHttpsInputStream(String dataUrl, long offset) throws IOException {
+        URLConnection connection = new URL(dataUrl).openConnection();
+        if (offset == 0) {
+            return connection.getInputStream();
+        }
+        connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        InputStream inputStream = connection.getInputStream();
+        if (connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            return inputStream;
+        }
+        long skipped = 0;
+        while (skipped < offset) {
+            long n = inputStream.skip(offset - skipped);
+            if (n <= 0) {
+                if (inputStream.read() < 0) {
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+        return inputStream;
+    }
+
 
     public static long getHttpsFileSize(String dataUrl) throws Exception {
         HttpsURLConnection httpsConnection = null;
@@ -25,6 +25,8 @@ public class Constants {
     public static final byte[] NDJSON_LINESEPERATOR = "\r\n".getBytes();
 
     public static final int IMPORT_MAX_PARTITIONPROCESSING_THREADNUMBER = 10;
+    // The maximum number of threads used by each partition to parse the resources it has read.
+    public static final int IMPORT_MAX_PARSING_THREADNUMBER = 4;
     // The number of resources to commit to DB in each batch, the slower the DB connection, the smaller
     // this value should be set.
     public static final int IMPORT_NUMOFFHIRRESOURCES_PERREAD = 20;
@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.bulkcommon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a UTF-8 encoded ndjson stream and keeps track of the byte offset of the next line in the source,
+ * so that an import can be checkpointed by offset and resumed with a ranged read instead of reading and skipping all
+ * of the lines that were already processed.
+ */
+public class NdjsonReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private byte[] line = new byte[8192];
+    private long offset;
+
+    /**
+     * @param in - the stream to read from, positioned at the passed offset of the source.
+     * @param offset - the byte offset of the start of the stream in the source.
+     */
+    public NdjsonReader(InputStream in, long offset) {
+        this.in = in;
+        this.offset = offset;
+    }
+
+    /**
+     * @return - the next line without its line terminator ("\n" or "\r\n"), or null at the end of the stream.
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        boolean found = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    break;
+                }
+            }
+            found = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            int count = position - start;
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(buffer, start, line, length, count);
+            length += count;
+            offset += count;
+            if (position < limit) {
+                // skip the line feed
+                position++;
+                offset++;
+                break;
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return - the byte offset in the source of the line that is returned by the next call to {@link #readLine()}.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
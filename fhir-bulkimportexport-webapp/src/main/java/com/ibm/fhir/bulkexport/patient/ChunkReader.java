@@ -30,9 +30,6 @@ import com.ibm.fhir.bulkcommon.Constants;
 import com.ibm.fhir.bulkexport.common.CheckPointUserData;
 import com.ibm.fhir.bulkexport.common.TransientUserData;
 import com.ibm.fhir.config.FHIRRequestContext;
-import com.ibm.fhir.model.format.Format;
-import com.ibm.fhir.model.generator.FHIRGenerator;
-import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
 import com.ibm.fhir.model.resource.Patient;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.ModelSupport;
@@ -41,6 +38,7 @@ import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.compartment.CompartmentUtil;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.util.SearchUtil;
@@ -132,7 +130,8 @@ public class ChunkReader extends AbstractItemReader {
         TransientUserData chunkData = (TransientUserData) jobContext.getTransientUserData();
         int indexOfCurrentTypeFilter = 0;
         int compartmentPageNum = 1;
-        int resSubTotal = 0;
+        int[] resSubTotal = { 0 };
+        byte[] buffer = new byte[8192];
         FHIRSearchContext searchContext;
         Class<? extends Resource> resourceType = ModelSupport.getResourceType(resourceTypes.get(indexOfCurrentResourceType));
 
@@ -165,50 +164,42 @@ public class ChunkReader extends AbstractItemReader {
 
                     searchContext = SearchUtil.parseQueryParameters("Patient", patientId,
                             ModelSupport.getResourceType(resourceTypes.get(indexOfCurrentResourceType)), queryParameters, true);
+                    // The last page is found by reading one row past each page, rather than by counting the results
+                    searchContext.setTotalParameter(TotalValueSet.NONE);
                     do {
                         searchContext.setPageSize(pageSize);
                         searchContext.setPageNumber(compartmentPageNum);
                         FHIRTransactionHelper txn = new FHIRTransactionHelper(fhirPersistence.getTransaction());
                         txn.enroll();
                         FHIRPersistenceContext persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(null, searchContext);
-                        List<Resource> resources = fhirPersistence.search(persistenceContext, resourceType).getResource();
-                        txn.unenroll();
-                        compartmentPageNum++;
-
-                        for (Resource res : resources) {
-                            if (res == null || (isDoDuplicationCheck && loadedResourceIds.contains(res.getId()))) {
-                                continue;
+                        // The stored JSON of each resource is copied as-is, without parsing and generating it again
+                        fhirPersistence.searchPayloads(persistenceContext, resourceType, (logicalId, payload) -> {
+                            if (isDoDuplicationCheck && !loadedResourceIds.add(logicalId)) {
+                                return;
                             }
                             try {
-                                FHIRGenerator.generator(Format.JSON).generate(res, chunkData.getBufferStream());
-                                chunkData.getBufferStream().write(Constants.NDJSON_LINESEPERATOR);
-                                resSubTotal++;
-                                if (isDoDuplicationCheck) {
-                                    loadedResourceIds.add(res.getId());
-                                }
-                            } catch (FHIRGeneratorException e) {
-                                if (res.getId() != null) {
-                                    logger.log(Level.WARNING, "fillChunkDataBuffer: Error while writing resources with id '"
-                                            + res.getId() + "'", e);
-                                } else {
-                                    logger.log(Level.WARNING,
-                                            "fillChunkDataBuffer: Error while writing resources with unknown id", e);
+                                int n;
+                                while ((n = payload.read(buffer)) != -1) {
+                                    chunkData.getBufferStream().write(buffer, 0, n);
                                 }
+                                chunkData.getBufferStream().write(Constants.NDJSON_LINESEPERATOR);
+                                resSubTotal[0]++;
                             } catch (IOException e) {
                                 logger.warning("fillChunkDataBuffer: chunkDataBuffer written error!");
                                 throw e;
                             }
-                        }
-
+                        });
+                        txn.unenroll();
+                        compartmentPageNum++;
                     } while (searchContext.getLastPageNumber() >= compartmentPageNum);
                 }
 
                 indexOfCurrentTypeFilter++;
             } while (searchParametersForResoureTypes.get(resourceType) != null && indexOfCurrentTypeFilter < searchParametersForResoureTypes.get(resourceType).size());
 
-            chunkData.setCurrentPartResourceNum(chunkData.getCurrentPartResourceNum() + resSubTotal);
+            chunkData.setCurrentPartResourceNum(chunkData.getCurrentPartResourceNum() + resSubTotal[0]);
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine("fillChunkDataBuffer: Processed resources - " + resSubTotal + "; Bufferred data size - "
+                logger.fine("fillChunkDataBuffer: Processed resources - " + resSubTotal[0] + "; Bufferred data size - "
                         + chunkData.getBufferStream().size());
             }
 
@@ -15,7 +15,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.batch.api.BatchProperty;
@@ -29,9 +28,6 @@ import com.ibm.fhir.bulkcommon.Constants;
 import com.ibm.fhir.bulkexport.common.CheckPointUserData;
 import com.ibm.fhir.bulkexport.common.TransientUserData;
 import com.ibm.fhir.config.FHIRRequestContext;
-import com.ibm.fhir.model.format.Format;
-import com.ibm.fhir.model.generator.FHIRGenerator;
-import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.persistence.FHIRPersistence;
@@ -39,6 +35,7 @@ import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.util.SearchUtil;
 
@@ -50,6 +47,9 @@ public class ChunkReader extends AbstractItemReader {
     private final static Logger logger = Logger.getLogger(ChunkReader.class.getName());
     boolean isSingleCosObject = false;
     int pageNum = 1;
+    // Continuation token of the next page, which lets the search seek to the page instead of skipping the rows
+    // of all the preceding pages; null at the start of each search and after a restart.
+    String pageToken = null;
     int indexOfCurrentResourceType = 0;
     // Control the number of records to read in each "item".
     int pageSize = Constants.DEFAULT_SEARCH_PAGE_SIZE;
@@ -129,43 +129,44 @@ public class ChunkReader extends AbstractItemReader {
         super();
     }
 
-    private void fillChunkDataBuffer(List<Resource> resources) throws Exception {
+    /**
+     * Append the stored JSON of each resource of the current page to the chunk data buffer, as-is; the resources
+     * are neither parsed nor generated again.
+     *
+     * @return the logical ids of the resources of the page
+     */
+    private List<String> fillChunkDataBuffer(FHIRPersistenceContext persistenceContext, Class<? extends Resource> resourceType)
+            throws Exception {
         TransientUserData chunkData = (TransientUserData) jobContext.getTransientUserData();
-        int resSubTotal = 0;
-        if (chunkData != null) {
-            for (Resource res : resources) {
-                if (res == null || (isDoDuplicationCheck && loadedResourceIds.contains(res.getId()))) {
-                    continue;
-                }
-
-                try {
-                    FHIRGenerator.generator(Format.JSON).generate(res, chunkData.getBufferStream());
-                    chunkData.getBufferStream().write(Constants.NDJSON_LINESEPERATOR);
-                    resSubTotal++;
-                    if (isDoDuplicationCheck) {
-                        loadedResourceIds.add(res.getId());
-                    }
-                } catch (FHIRGeneratorException e) {
-                    if (res.getId() != null) {
-                        logger.log(Level.WARNING, "fillChunkDataBuffer: Error while writing resources with id '"
-                                + res.getId() + "'", e);
-                    } else {
-                        logger.log(Level.WARNING,
-                                "fillChunkDataBuffer: Error while writing resources with unknown id", e);
-                    }
-                } catch (IOException e) {
-                    logger.warning("fillChunkDataBuffer: chunkDataBuffer written error!");
-                    throw e;
-                }
-            }
-            chunkData.setCurrentPartResourceNum(chunkData.getCurrentPartResourceNum() + resSubTotal);
-            logger.fine("fillChunkDataBuffer: Processed resources - " + resSubTotal + "; Bufferred data size - "
-                    + chunkData.getBufferStream().size());
-        } else {
+        if (chunkData == null) {
             logger.warning("fillChunkDataBuffer: chunkData is null, this should never happen!");
             throw new Exception("fillChunkDataBuffer: chunkData is null, this should never happen!");
         }
 
+        List<String> logicalIds = new ArrayList<>();
+        byte[] buffer = new byte[8192];
+        int[] resSubTotal = { 0 };
+        fhirPersistence.searchPayloads(persistenceContext, resourceType, (logicalId, payload) -> {
+            logicalIds.add(logicalId);
+            if (isDoDuplicationCheck && !loadedResourceIds.add(logicalId)) {
+                return;
+            }
+            try {
+                int n;
+                while ((n = payload.read(buffer)) != -1) {
+                    chunkData.getBufferStream().write(buffer, 0, n);
+                }
+                chunkData.getBufferStream().write(Constants.NDJSON_LINESEPERATOR);
+                resSubTotal[0]++;
+            } catch (IOException e) {
+                logger.warning("fillChunkDataBuffer: chunkDataBuffer written error!");
+                throw e;
+            }
+        });
+        chunkData.setCurrentPartResourceNum(chunkData.getCurrentPartResourceNum() + resSubTotal[0]);
+        logger.fine("fillChunkDataBuffer: Processed resources - " + resSubTotal[0] + "; Bufferred data size - "
+                + chunkData.getBufferStream().size());
+        return logicalIds;
     }
 
     @Override
@@ -183,6 +184,7 @@ public class ChunkReader extends AbstractItemReader {
                 } else {
                     // More resource types to read, so reset pageNum, partNum and move resource type index to the next and reset indexOfCurrentTypeFilter.
                     pageNum = 1;
+                    pageToken = null;
                     chunkData.setPartNum(1);
                     indexOfCurrentResourceType++;
                     indexOfCurrentTypeFilter = 0;
@@ -192,6 +194,7 @@ public class ChunkReader extends AbstractItemReader {
             } else {
              // If there is more typeFilter to process for current resource type, then reset pageNum only and move to the next typeFilter.
                 pageNum = 1;
+                pageToken = null;
                 indexOfCurrentTypeFilter++;
             }
         }
@@ -223,40 +226,37 @@ public class ChunkReader extends AbstractItemReader {
             queryParameters.put(Constants.FHIR_SEARCH_LASTUPDATED, searchCriteria);
         }
 
-        queryParameters.put("_sort", Arrays.asList(new String[] { Constants.FHIR_SEARCH_LASTUPDATED }));
+        // No _sort, so that the results are in RESOURCE_ID order and each page is read with a page token
         searchContext = SearchUtil.parseQueryParameters(resourceType, queryParameters);
         searchContext.setPageSize(pageSize);
         searchContext.setPageNumber(pageNum);
-        List<Resource> resources = null;
-        FHIRTransactionHelper txn = new FHIRTransactionHelper(fhirPersistence.getTransaction());
-        txn.enroll();
-        persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(null, searchContext);
-        resources = fhirPersistence.search(persistenceContext, resourceType).getResource();
-        txn.unenroll();
-        pageNum++;
+        searchContext.setPageToken(pageToken);
+        // The last page is found by reading one row past each page, rather than by counting the results every chunk
+        searchContext.setTotalParameter(TotalValueSet.NONE);
 
         if (chunkData == null) {
             chunkData = new TransientUserData(pageNum, null, new ArrayList<PartETag>(), 1, 0, 0);
-            chunkData.setLastPageNum(searchContext.getLastPageNumber());
             if (isSingleCosObject) {
                 chunkData.setSingleCosObject(true);
             }
             jobContext.setTransientUserData(chunkData);
-        } else {
-            chunkData.setPageNum(pageNum);
-            chunkData.setIndexOfCurrentResourceType(indexOfCurrentResourceType);
-            chunkData.setIndexOfCurrentTypeFilter(indexOfCurrentTypeFilter);
-            chunkData.setLastPageNum(searchContext.getLastPageNumber());
         }
 
-        if (resources != null) {
-            logger.fine("readItem: loaded resources number - " + resources.size());
-            fillChunkDataBuffer(resources);
-        } else {
-            logger.fine("readItem: End of reading!");
-        }
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(fhirPersistence.getTransaction());
+        txn.enroll();
+        persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(null, searchContext);
+        List<String> logicalIds = fillChunkDataBuffer(persistenceContext, resourceType);
+        txn.unenroll();
+        pageNum++;
+        pageToken = searchContext.getNextPageToken();
+
+        chunkData.setPageNum(pageNum);
+        chunkData.setIndexOfCurrentResourceType(indexOfCurrentResourceType);
+        chunkData.setIndexOfCurrentTypeFilter(indexOfCurrentTypeFilter);
+        chunkData.setLastPageNum(searchContext.getLastPageNumber());
+        logger.fine("readItem: loaded resources number - " + logicalIds.size());
 
-        return resources;
+        return logicalIds;
     }
 
     @Override
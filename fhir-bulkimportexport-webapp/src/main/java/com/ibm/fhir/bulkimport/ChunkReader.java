@@ -30,7 +30,6 @@ import com.ibm.fhir.model.resource.Resource;
 public class ChunkReader extends AbstractItemReader {
     private static final Logger logger = Logger.getLogger(ChunkReader.class.getName());
     private AmazonS3 cosClient = null;
-    private int numOfLinesToSkip = 0;
 
     @Inject
     StepContext stepCtx;
@@ -114,22 +113,21 @@ public class ChunkReader extends AbstractItemReader {
         }
 
         ImportTransientUserData chunkData = (ImportTransientUserData) stepCtx.getTransientUserData();
-        numOfLinesToSkip = chunkData.getNumOfProcessedResources();
 
         long readStartTimeInMilliSeconds = System.currentTimeMillis();
         int numOfLoaded = 0;
         int numOfParseFailures = 0;
         switch (BulkImportDataSourceStorageType.from(dataSourceStorageType)) {
         case HTTPS:
-            numOfParseFailures = BulkDataUtils.readFhirResourceFromHttps(importPartitionWorkitem, numOfLinesToSkip, loadedFhirResources, chunkData);
+            numOfParseFailures = BulkDataUtils.readFhirResourceFromHttps(importPartitionWorkitem, loadedFhirResources, chunkData);
             break;
         case FILE:
-            numOfParseFailures = BulkDataUtils.readFhirResourceFromLocalFile(importPartitionWorkitem, numOfLinesToSkip, loadedFhirResources, chunkData);
+            numOfParseFailures = BulkDataUtils.readFhirResourceFromLocalFile(importPartitionWorkitem, loadedFhirResources, chunkData);
             break;
         case AWSS3:
         case IBMCOS:
             numOfParseFailures = BulkDataUtils.readFhirResourceFromObjectStore(cosClient, cosBucketName, importPartitionWorkitem,
-                    numOfLinesToSkip, loadedFhirResources, chunkData);
+                    loadedFhirResources, chunkData);
             break;
         default:
             logger.warning("readItem: Data source storage type not found!");
@@ -166,11 +164,10 @@ public class ChunkReader extends AbstractItemReader {
         if (checkpoint != null) {
             ImportCheckPointData checkPointData = (ImportCheckPointData) checkpoint;
             importPartitionWorkitem = checkPointData.getImportPartitionWorkitem();
-            numOfLinesToSkip = checkPointData.getNumOfProcessedResources();
             checkPointData.setInFlyRateBeginMilliSeconds(System.currentTimeMillis());
             stepCtx.setTransientUserData(ImportTransientUserData.fromImportCheckPointData(checkPointData));
         } else {
-            ImportTransientUserData chunkData = new ImportTransientUserData(importPartitionWorkitem, numOfLinesToSkip, importPartitionResourceType);
+            ImportTransientUserData chunkData = new ImportTransientUserData(importPartitionWorkitem, 0, importPartitionResourceType);
             long importFileSize = 0;
             switch (BulkImportDataSourceStorageType.from(dataSourceStorageType)) {
             case HTTPS:
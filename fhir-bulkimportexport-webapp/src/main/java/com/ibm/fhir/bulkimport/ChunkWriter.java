@@ -7,6 +7,7 @@
 package com.ibm.fhir.bulkimport;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +30,7 @@ import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.SingleResourceResult;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
@@ -118,6 +120,12 @@ public class ChunkWriter extends AbstractItemWriter {
     String fhirValidation;
 
 
+    /**
+     * Set when a set of resources failed to be written, so that the chunk which is retried after the rollback
+     * writes its resources one at a time.
+     */
+    private boolean isWritingOneAtATime = false;
+
     public ChunkWriter() {
         super();
     }
@@ -186,27 +194,69 @@ public class ChunkWriter extends AbstractItemWriter {
             @SuppressWarnings("unchecked")
             List<Resource> fhirResourceList = (List<Resource>) objResJsonList;
 
+            // Skip the resources which failed the validation
+            List<Resource> resourcesToWrite = new ArrayList<>(fhirResourceList.size());
             for (Resource fhirResource : fhirResourceList) {
-                try {
-                    String id = fhirResource.getId();
-                    processedNum++;
-                    // Skip the resources which failed the validation
-                    if (failValidationIds.contains(id)) {
-                        continue;
+                processedNum++;
+                if (!failValidationIds.contains(fhirResource.getId())) {
+                    resourcesToWrite.add(fhirResource);
+                }
+            }
+
+            if (isWritingOneAtATime) {
+                // This is the retry of a chunk whose set failed, in a new transaction; only the resources which
+                // actually fail are counted as failures.
+                for (Resource fhirResource : resourcesToWrite) {
+                    try {
+                        OperationOutcome operationOutcome =
+                                fhirPersistence.update(persistenceContext, fhirResource.getId(), fhirResource).getOutcome();
+                        succeededNum++;
+                        if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
+                            FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImport());
+                            chunkData.getBufferStreamForImport().write(Constants.NDJSON_LINESEPERATOR);
+                        }
+                    } catch (FHIROperationException ex) {
+                        logger.warning("Failed to import '" + fhirResource.getId() + "' due to error: " + ex.getMessage());
+                        failedNum++;
+                        if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES) {
+                            OperationOutcome operationOutCome = FHIRUtil.buildOperationOutcome(ex, false);
+                            FHIRGenerator.generator(Format.JSON).generate(operationOutCome, chunkData.getBufferStreamForImportError());
+                            chunkData.getBufferStreamForImportError().write(Constants.NDJSON_LINESEPERATOR);
+                        }
                     }
-                    OperationOutcome operationOutcome =
-                            fhirPersistence.update(persistenceContext, id, fhirResource).getOutcome();
+                }
+                continue;
+            }
+
+            // Write the resources as a set, so the new ones can share the same database round-trips.
+            List<SingleResourceResult<Resource>> results;
+            try {
+                results = fhirPersistence.updateAll(persistenceContext, resourcesToWrite);
+            } catch (FHIROperationException e) {
+                // The statements which ran before the failure can't be undone on their own (and on PostgreSQL the
+                // transaction can't be used any more), so the whole chunk is rolled back and retried by the batch
+                // runtime, which writes its resources one at a time.
+                logger.warning("Failed to import " + resourcesToWrite.size() + " resources as a set due to error: " + e.getMessage()
+                        + "; rolling back the chunk to retry them one at a time");
+                isWritingOneAtATime = true;
+                fhirPersistence.getTransaction().setRollbackOnly();
+                throw new ImportRetryException("Failed to import " + resourcesToWrite.size() + " resources as a set", e);
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                SingleResourceResult<Resource> result = results.get(i);
+                OperationOutcome operationOutcome = result.getOutcome();
+                if (result.isSuccess()) {
                     succeededNum++;
                     if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
                         FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImport());
                         chunkData.getBufferStreamForImport().write(Constants.NDJSON_LINESEPERATOR);
                     }
-                } catch (FHIROperationException e) {
-                    logger.warning("Failed to import '" + fhirResource.getId() + "' due to error: " + e.getMessage());
+                } else {
+                    logger.warning("Failed to import '" + resourcesToWrite.get(i).getId() + "'");
                     failedNum++;
-                    if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES) {
-                        OperationOutcome operationOutCome = FHIRUtil.buildOperationOutcome(e, false);
-                        FHIRGenerator.generator(Format.JSON).generate(operationOutCome, chunkData.getBufferStreamForImportError());
+                    if (Constants.IMPORT_IS_COLLECT_OPERATIONOUTCOMES && operationOutcome != null) {
+                        FHIRGenerator.generator(Format.JSON).generate(operationOutcome, chunkData.getBufferStreamForImportError());
                         chunkData.getBufferStreamForImportError().write(Constants.NDJSON_LINESEPERATOR);
                     }
                 }
@@ -216,6 +266,9 @@ public class ChunkWriter extends AbstractItemWriter {
         // This doesn't really commit the transaction, because the transaction was started and will be committed
         // by the JavaBatch framework.
         txn.unenroll();
+        // The retried chunk is processed one item at a time; once its first item has been written, the following
+        // items are written as sets again.
+        isWritingOneAtATime = false;
 
         chunkData.setTotalWriteMilliSeconds(chunkData.getTotalWriteMilliSeconds() + (System.currentTimeMillis() - writeStartTimeInMilliSeconds));
         chunkData.setNumOfProcessedResources(chunkData.getNumOfProcessedResources() + processedNum + chunkData.getNumOfParseFailures());
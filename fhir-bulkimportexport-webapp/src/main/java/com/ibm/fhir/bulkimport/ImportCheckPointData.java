@@ -27,6 +27,9 @@ public class ImportCheckPointData implements Serializable {
     private long totalWriteMilliSeconds = 0;
     private long totalValidationMilliSeconds = 0;
     private long importFileSize = 0;
+    // Byte offset in the import file of the first line that has not been processed yet; 0 for checkpoints taken
+    // before offsets were tracked, in which case the processed lines are skipped instead.
+    private long importFileOffset = 0;
 
     private long inFlyRateBeginMilliSeconds = 0;
 
@@ -162,13 +165,15 @@ public class ImportCheckPointData implements Serializable {
     }
 
     public static ImportCheckPointData fromImportTransientUserData(ImportTransientUserData userData) {
-        return new ImportCheckPointData(userData.getImportPartitionWorkitem(), userData.getNumOfProcessedResources(),
+        ImportCheckPointData checkPointData = new ImportCheckPointData(userData.getImportPartitionWorkitem(), userData.getNumOfProcessedResources(),
                 userData.getImportPartitionResourceType(), userData.getNumOfImportedResources(), userData.getNumOfImportFailures(),
                 userData.getUniqueIDForImportFailureOperationOutcomes(), userData.getUniqueIDForImportOperationOutcomes(),
                 userData.getUploadIdForOperationOutcomes(), userData.getDataPacksForOperationOutcomes(), userData.getPartNumForOperationOutcomes(),
                 userData.getUploadIdForFailureOperationOutcomes(), userData.getDataPacksForFailureOperationOutcomes(), userData.getPartNumForFailureOperationOutcomes(),
                 userData.getTotalReadMilliSeconds(), userData.getTotalValidationMilliSeconds(), userData.getTotalWriteMilliSeconds(),
                 userData.getImportFileSize(), userData.getInFlyRateBeginMilliSeconds());
+        checkPointData.setImportFileOffset(userData.getImportFileOffset());
+        return checkPointData;
     }
 
     public String getUniqueIDForImportOperationOutcomes() {
@@ -275,6 +280,14 @@ public class ImportCheckPointData implements Serializable {
         this.importFileSize = importFileSize;
     }
 
+    public long getImportFileOffset() {
+        return importFileOffset;
+    }
+
+    public void setImportFileOffset(long importFileOffset) {
+        this.importFileOffset = importFileOffset;
+    }
+
     public long getInFlyRateBeginMilliSeconds() {
         return inFlyRateBeginMilliSeconds;
     }
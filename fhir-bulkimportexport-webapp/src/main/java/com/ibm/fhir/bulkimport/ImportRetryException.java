@@ -0,0 +1,19 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.bulkimport;
+
+/**
+ * Thrown by the {@link ChunkWriter} when a set of resources failed to be written, so that the batch runtime rolls
+ * back the chunk and retries it; it is listed as a retryable exception of the import job.
+ */
+public class ImportRetryException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public ImportRetryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
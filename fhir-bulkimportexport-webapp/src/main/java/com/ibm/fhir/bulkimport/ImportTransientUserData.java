@@ -6,12 +6,12 @@
 
 package com.ibm.fhir.bulkimport;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.List;
 
 import com.ibm.cloud.objectstorage.services.s3.model.PartETag;
+import com.ibm.fhir.bulkcommon.NdjsonReader;
 
 public class ImportTransientUserData extends ImportCheckPointData {
     private static final long serialVersionUID = -2642411992044844735L;
@@ -21,7 +21,7 @@ public class ImportTransientUserData extends ImportCheckPointData {
     private ByteArrayOutputStream bufferStreamForImport = new ByteArrayOutputStream();
 
     private InputStream inputStream = null;
-    private BufferedReader bufferReader = null;
+    private NdjsonReader ndjsonReader = null;
 
     public ImportTransientUserData(String importPartitionWorkitem, int numOfProcessedResources,
             String importPartitionResourceType, int numOfImportedResource, int numOfImportFailures,
@@ -49,7 +49,7 @@ public class ImportTransientUserData extends ImportCheckPointData {
     }
 
     public static ImportTransientUserData fromImportCheckPointData(ImportCheckPointData importCheckPointData) {
-        return new ImportTransientUserData(importCheckPointData.getImportPartitionWorkitem(),
+        ImportTransientUserData userData = new ImportTransientUserData(importCheckPointData.getImportPartitionWorkitem(),
                 importCheckPointData.getNumOfProcessedResources(), importCheckPointData.getImportPartitionResourceType(),
                 importCheckPointData.getNumOfImportedResources(), importCheckPointData.getNumOfImportFailures(),
                 importCheckPointData.getUniqueIDForImportFailureOperationOutcomes(), importCheckPointData.getUniqueIDForImportOperationOutcomes(),
@@ -57,6 +57,8 @@ public class ImportTransientUserData extends ImportCheckPointData {
                 importCheckPointData.getUploadIdForFailureOperationOutcomes(), importCheckPointData.getDataPacksForFailureOperationOutcomes(), importCheckPointData.getPartNumForFailureOperationOutcomes(),
                 importCheckPointData.getTotalReadMilliSeconds(), importCheckPointData.getTotalValidationMilliSeconds(), importCheckPointData.getTotalWriteMilliSeconds(),
                 importCheckPointData.getImportFileSize(), importCheckPointData.getInFlyRateBeginMilliSeconds());
+        userData.setImportFileOffset(importCheckPointData.getImportFileOffset());
+        return userData;
     }
 
     public InputStream getInputStream() {
@@ -67,12 +69,12 @@ public class ImportTransientUserData extends ImportCheckPointData {
         this.inputStream = inputStream;
     }
 
-    public BufferedReader getBufferReader() {
-        return bufferReader;
+    public NdjsonReader getNdjsonReader() {
+        return ndjsonReader;
     }
 
-    public void setBufferReader(BufferedReader bufferReader) {
-        this.bufferReader = bufferReader;
+    public void setNdjsonReader(NdjsonReader ndjsonReader) {
+        this.ndjsonReader = ndjsonReader;
     }
 
 }
@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.bulkcommon;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+
+public class NdjsonReaderTest {
+    private static final String NDJSON = "{\"id\":\"1\"}\r\n{\"id\":\"é\"}\n\n{\"id\":\"3\"}";
+
+    @Test
+    public void testReadLineTracksOffset() throws Exception {
+        byte[] bytes = NDJSON.getBytes(StandardCharsets.UTF_8);
+        try (NdjsonReader reader = new NdjsonReader(new ByteArrayInputStream(bytes), 0)) {
+            assertEquals("{\"id\":\"1\"}", reader.readLine());
+            assertEquals(12, reader.getOffset());
+            assertEquals("{\"id\":\"é\"}", reader.readLine());
+            assertEquals(24, reader.getOffset());
+            assertEquals("", reader.readLine());
+            assertEquals(25, reader.getOffset());
+            assertEquals("{\"id\":\"3\"}", reader.readLine());
+            assertEquals(bytes.length, reader.getOffset());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void testResumeFromOffset() throws Exception {
+        byte[] bytes = NDJSON.getBytes(StandardCharsets.UTF_8);
+        try (NdjsonReader reader = new NdjsonReader(new ByteArrayInputStream(bytes, 12, bytes.length - 12), 12)) {
+            assertEquals("{\"id\":\"é\"}", reader.readLine());
+            assertEquals(24, reader.getOffset());
+        }
+    }
+
+    @Test
+    public void testParseFhirResources() throws Exception {
+        List<String> lines = Arrays.asList(
+                "{\"resourceType\":\"Patient\",\"id\":\"1\"}",
+                "{\"resourceType\":\"Patient\",",
+                "{\"resourceType\":\"Patient\",\"id\":\"3\"}");
+        List<Resource> resources = new ArrayList<>();
+        int parseFailures = BulkDataUtils.parseFhirResources(lines, 0, resources, "test.ndjson");
+        assertEquals(1, parseFailures);
+        assertEquals(2, resources.size());
+        assertEquals("1", ((Patient) resources.get(0)).getId());
+        assertEquals("3", ((Patient) resources.get(1)).getId());
+    }
+}
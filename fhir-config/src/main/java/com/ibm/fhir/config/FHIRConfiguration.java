@@ -31,8 +31,16 @@ public class FHIRConfiguration {
     public static final String PROPERTY_DEFAULT_HANDLING = "fhirServer/core/defaultHandling";
     public static final String PROPERTY_ALLOW_CLIENT_HANDLING_PREF = "fhirServer/core/allowClientHandlingPref";
     public static final String PROPERTY_CHECK_REFERENCE_TYPES = "fhirServer/core/checkReferenceTypes";
+    public static final String PROPERTY_INTERN_PRIMITIVES = "fhirServer/core/internPrimitives";
     public static final String PROPERTY_CONDITIONAL_DELETE_MAX_NUMBER = "fhirServer/core/conditionalDeleteMaxNumber";
     public static final String PROPERTY_SERVER_REGISTRY_RESOURCE_PROVIDER_ENABLED = "fhirServer/core/serverRegistryResourceProviderEnabled";
+    public static final String PROPERTY_BATCH_PARALLELISM = "fhirServer/core/batchParallelism";
+    public static final String PROPERTY_VALIDATION_PARALLEL_THRESHOLD = "fhirServer/core/validationParallelThreshold";
+    public static final String PROPERTY_RESOURCE_CACHE_ENABLED = "fhirServer/core/resourceCache/enabled";
+    public static final String PROPERTY_RESOURCE_CACHE_MAX_ENTRIES = "fhirServer/core/resourceCache/maxEntries";
+    public static final String PROPERTY_VALUE_SET_WARM_UP_PROFILES = "fhirServer/core/valueSetWarmUpProfiles";
+    public static final String PROPERTY_CONFIG_WATCH_ENABLED = "fhirServer/core/configWatch/enabled";
+    public static final String PROPERTY_CONFIG_WATCH_DEBOUNCE_MILLIS = "fhirServer/core/configWatch/debounceMillis";
 
     public static final String PROPERTY_SEARCH_PARAMETER_FILTER = "fhirServer/searchParameterFilter";
 
@@ -52,6 +60,12 @@ public class FHIRConfiguration {
 
     // Notification config properties
     public static final String PROPERTY_NOTIFICATION_RESOURCE_TYPES = "fhirServer/notifications/common/includeResourceTypes";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_ENABLED = "fhirServer/notifications/common/async/enabled";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE = "fhirServer/notifications/common/async/queueSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_BATCH_SIZE = "fhirServer/notifications/common/async/batchSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_THREADS = "fhirServer/notifications/common/async/threads";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_BACKPRESSURE = "fhirServer/notifications/common/async/backpressure";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_SPILL_DIRECTORY = "fhirServer/notifications/common/async/spillDirectory";
     public static final String PROPERTY_WEBSOCKET_ENABLED = "fhirServer/notifications/websocket/enabled";
     public static final String PROPERTY_KAFKA_ENABLED = "fhirServer/notifications/kafka/enabled";
     public static final String PROPERTY_KAFKA_TOPICNAME = "fhirServer/notifications/kafka/topicName";
@@ -71,15 +85,24 @@ public class FHIRConfiguration {
     public static final String PROPERTY_UPDATE_CREATE_ENABLED = "fhirServer/persistence/common/updateCreateEnabled";
     public static final String PROPERTY_PERSISTENCE_FACTORY = "fhirServer/persistence/factoryClassname";
     public static final String PROPERTY_DATASOURCES = "fhirServer/persistence/datasources";
+    public static final String PROPERTY_PAYLOAD_CODEC = "fhirServer/persistence/payload/codec";
+    public static final String PROPERTY_PAYLOAD_COMPRESSION_LEVEL = "fhirServer/persistence/payload/compressionLevel";
     public static final String PROPERTY_JDBC_BOOTSTRAP_DB = "fhirServer/persistence/jdbc/bootstrapDb";
     public static final String PROPERTY_JDBC_DATASOURCE_JNDINAME = "fhirServer/persistence/jdbc/dataSourceJndiName";
     public static final String PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE = "fhirServer/persistence/jdbc/enableCodeSystemsCache";
     public static final String PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE = "fhirServer/persistence/jdbc/enableParameterNamesCache";
+    public static final String PROPERTY_JDBC_ENABLE_PARAMETER_DELTA_UPDATES = "fhirServer/persistence/jdbc/enableParameterDeltaUpdates";
     public static final String PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE = "fhirServer/persistence/jdbc/enableResourceTypesCache";
+    public static final String PROPERTY_JDBC_ID_BLOCK_SIZE = "fhirServer/persistence/jdbc/idBlockSize";
+    public static final String PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES = "fhirServer/persistence/jdbc/skipUnchangedUpdates";
 
     // fhir-search - Bounding area
     public static final String PROPERTY_SEARCH_BOUNDING_AREA_RADIUS_TYPE = "fhirServer/search/useBoundingRadius";
 
+    // fhir-search - _total
+    public static final String PROPERTY_SEARCH_DEFAULT_TOTAL = "fhirServer/search/defaultTotal";
+    public static final String PROPERTY_SEARCH_ESTIMATED_TOTAL_TTL_SECONDS = "fhirServer/search/estimatedTotalTtlSeconds";
+
     // bulkdata
     // JavaBatch Job id encryption key
     public static final String PROPERTY_BULKDATA_BATCHJOBID_ENCRYPTION_KEY = "fhirServer/bulkdata/bulkDataBatchJobIdEncryptionKey";
@@ -185,6 +208,14 @@ public class FHIRConfiguration {
         }
     }
 
+    /**
+     * @return the version of the cached configurations, which is incremented each time a tenant's configuration is
+     *         loaded or discarded
+     */
+    public long getConfigurationVersion() {
+        return configCache.getVersion();
+    }
+
     /**
      * This method returns the list of tenant id's for which a configuration exists.
      * @return
@@ -7,6 +7,7 @@
 package com.ibm.fhir.config;
 
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -71,6 +72,21 @@ public class FHIRRequestContext {
         setDataStoreId(dataStoreId);
     }
 
+    /**
+     * Creates a copy of the passed request context for another thread that works on the same request.
+     * The copy has the same request unique id; changes made to one of them are not seen by the other.
+     */
+    public FHIRRequestContext(FHIRRequestContext context) {
+        this.tenantId = context.tenantId;
+        this.tenantKey = context.tenantKey;
+        this.dataStoreId = context.dataStoreId;
+        this.requestUniqueId = context.requestUniqueId;
+        this.originalRequestUri = context.originalRequestUri;
+        this.httpHeaders = (context.httpHeaders != null) ? new HashMap<>(context.httpHeaders) : null;
+        this.handlingPreference = context.handlingPreference;
+        this.returnPreference = context.returnPreference;
+    }
+
     public String getTenantId() {
         return tenantId;
     }
@@ -7,12 +7,17 @@
 package com.ibm.fhir.config.test;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.util.Collections;
+import java.util.HashMap;
+
 import org.testng.annotations.Test;
 
 import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.core.HTTPReturnPreference;
 
 public class FHIRRequestContextTest {
     
@@ -95,4 +100,28 @@ public class FHIRRequestContextTest {
         t.join(1000);
         assertTrue(test.getTestPassed());
     }
+
+    @Test
+    public void testCopy() throws Exception {
+        FHIRRequestContext ctxt = new FHIRRequestContext("tenant1", "dsid1");
+        ctxt.setReturnPreference(HTTPReturnPreference.REPRESENTATION);
+        ctxt.setOriginalRequestUri("https://localhost/fhir-server/api/v4");
+        ctxt.setHttpHeaders(new HashMap<>(Collections.singletonMap("X-FHIR-TENANT-ID", Collections.singletonList("tenant1"))));
+
+        FHIRRequestContext copy = new FHIRRequestContext(ctxt);
+        assertEquals("tenant1", copy.getTenantId());
+        assertEquals("dsid1", copy.getDataStoreId());
+        assertEquals(ctxt.getRequestUniqueId(), copy.getRequestUniqueId());
+        assertEquals(HTTPReturnPreference.REPRESENTATION, copy.getReturnPreference());
+        assertEquals(ctxt.getOriginalRequestUri(), copy.getOriginalRequestUri());
+        assertEquals(ctxt.getHttpHeaders(), copy.getHttpHeaders());
+
+        // changes to the copy don't affect the original
+        copy.setDataStoreId("dsid2");
+        copy.setReturnPreference(HTTPReturnPreference.MINIMAL);
+        copy.getHttpHeaders().put("X-FHIR-DSID", Collections.singletonList("dsid2"));
+        assertEquals("dsid1", ctxt.getDataStoreId());
+        assertEquals(HTTPReturnPreference.REPRESENTATION, ctxt.getReturnPreference());
+        assertFalse(ctxt.getHttpHeaders().containsKey("X-FHIR-DSID"));
+    }
 }
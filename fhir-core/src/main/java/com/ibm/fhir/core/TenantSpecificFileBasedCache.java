@@ -1,14 +1,32 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.core;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
 import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,39 +34,98 @@ import java.util.logging.Logger;
  * This class is a parameterized abstract base class to be used for situations where
  * we need to implement a tenant-specific cache of file-based objects.
  * Examples include: configuration parameters, structure definitions, search parameters, etc.
- * 
+ *
+ * <p>Lookups read an immutable snapshot of the cache, which is replaced as a whole whenever an entry is loaded or
+ * discarded. By default, each lookup checks the file of the cached object for modifications. After
+ * {@link #enableWatching(long)} has been called, the directories of the cached files are watched instead and, once
+ * the changes have settled, any change in a directory discards the entries of all the files in it, so lookups don't
+ * access the file system. Invalidating by directory rather than by file name also catches a file that is replaced
+ * through a symbolic link of its directory, like the atomic {@code ..data} swap of a Kubernetes ConfigMap volume.
+ * {@link #disableWatching()} stops the watchers and closes their watch services.
+ *
  * @author padams
  */
 public abstract class TenantSpecificFileBasedCache<T> {
     private static final Logger log = Logger.getLogger(TenantSpecificFileBasedCache.class.getName());
 
-    private Map<String, CachedObjectHolder<T>> cache;
-    
+    // every cache, so that watching can be enabled for all of them at once; a cache that is not watched can still be
+    // garbage collected
+    private static final List<WeakReference<TenantSpecificFileBasedCache<?>>> INSTANCES = new CopyOnWriteArrayList<>();
+    // the debounce interval of the watchers, or -1 if watching is disabled
+    private static volatile long watchDebounceMillis = -1;
+
+    private volatile Map<String, Entry<T>> snapshot = Collections.emptyMap();
+    private final Object lock = new Object();
+    private final AtomicLong version = new AtomicLong();
+
+    // the watcher of this cache and the directories it watches; guarded by lock
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
     // cacheType is used only in trace messages.
     private String cacheType = "<unknown>";
-    
+
     public TenantSpecificFileBasedCache() {
-        cache = new HashMap<String, CachedObjectHolder<T>>();
+        INSTANCES.removeIf(ref -> ref.get() == null);
+        INSTANCES.add(new WeakReference<>(this));
     }
-    
+
     public TenantSpecificFileBasedCache(String cacheType) {
         this();
         this.cacheType = cacheType;
     }
-    
+
+    /**
+     * Watch the directories of the cached files of all caches, instead of checking the files for modifications on
+     * each lookup.
+     *
+     * @param debounceMillis
+     *     the time without further changes to wait for before the entries of changed files are discarded
+     */
+    public static void enableWatching(long debounceMillis) {
+        watchDebounceMillis = Math.max(0, debounceMillis);
+        for (WeakReference<TenantSpecificFileBasedCache<?>> ref : INSTANCES) {
+            TenantSpecificFileBasedCache<?> cache = ref.get();
+            if (cache != null) {
+                cache.startWatching();
+            }
+        }
+    }
+
+    /**
+     * Stop watching the directories of the cached files of all caches and close their watch services; lookups check
+     * the files for modifications again.
+     */
+    public static void disableWatching() {
+        watchDebounceMillis = -1;
+        for (WeakReference<TenantSpecificFileBasedCache<?>> ref : INSTANCES) {
+            TenantSpecificFileBasedCache<?> cache = ref.get();
+            if (cache != null) {
+                cache.stopWatching();
+            }
+        }
+    }
+
     /**
      * Clears the entire cache.
      * This might be useful during testing when you need to clear out the entire cache and re-load.
      */
     public void clearCache() {
-        synchronized(cache) {
-            cache.clear();
+        synchronized (lock) {
+            replaceSnapshot(Collections.emptyMap());
         }
     }
 
+    /**
+     * @return the version of the cache contents, which is incremented each time an entry is loaded or discarded
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     public abstract String getCacheEntryFilename(String tenantId);
     public abstract T createCachedObject(File file) throws Exception;
-    
+
     /**
      * @param tenantId
      * @return the cached object for the tenant or null if it could not be found
@@ -59,51 +136,225 @@ public abstract class TenantSpecificFileBasedCache<T> {
             log.entering(this.getClass().getName(), "getCachedObjectForTenant");
         }
         try {
-            // Try to retrieve tenant's cached object from the cache.
-            CachedObjectHolder<T> holder = cache.get(tenantId);
+            // Try to retrieve tenant's cached object from the current snapshot.
+            Entry<T> entry = snapshot.get(tenantId);
+            if (entry != null && (entry.watched || !entry.holder.isStale())) {
+                return entry.holder.getCachedObject();
+            }
 
             // If we didn't find it or it was stale, then we'll need to lock the cache.
-            if (holder == null || holder.isStale()) {
-                synchronized (cache) {
+            synchronized (lock) {
+                // a cache created after watching was enabled starts its watcher on its first load
+                startWatching();
+
+                // Check again to see if we can retrieve the cached object from the cache.
+                entry = snapshot.get(tenantId);
+                if (entry != null && (entry.watched || !entry.holder.isStale())) {
+                    return entry.holder.getCachedObject();
+                }
+                if (entry != null) {
+                    log.fine("Cached " + this.cacheType + " for tenant-id '" + tenantId + "' is stale, discarding...");
+                }
 
-                    // Check again to see if we can retrieve the cached object from the cache.
-                    holder = cache.get(tenantId);
+                String fileName = getCacheEntryFilename(tenantId);
+                File f = new File(fileName);
 
-                    // If the cache object is stale, then discard and re-load below.
-                    if (holder != null && holder.isStale()) {
-                        log.fine("Cached " + this.cacheType + " for tenant-id '" + tenantId + "' is stale, discarding...");
-                        cache.remove(tenantId);
-                        holder = null;
-                    }
+                // Watch the directory before the file is read, so that no modification is missed.
+                boolean watched = watch(f);
+                T cachedObject = null;
+
+                // If the file exists, then try to load it.
+                if (f.exists()) {
+                    cachedObject = createCachedObject(f);
+                }
 
-                    // Now check to see if we need to load a new object and add it to the cache.
-                    if (holder == null) {
-                        String fileName = getCacheEntryFilename(tenantId);
-                        File f = new File(fileName);
-                        T cachedObject = null;
-                        
-                        // If the file exists, then try to load it.
-                        if (f.exists()) {
-                            cachedObject = createCachedObject(f);
-                        }
-                        
-                        // If we were able to load the object from disk, then add it to the cache.
-                        if (cachedObject != null) {
-                            holder = new CachedObjectHolder<T>(fileName, cachedObject);
-                            cache.put(tenantId, holder);
-                            log.fine("Loaded " + this.cacheType + " for tenant-id '" + tenantId + "' and added it to the cache.");
-                        } else {
-                            log.fine("Tenant-specific " + this.cacheType + " for tenant '" + tenantId + "' not found, skipping...");
-                        }
+                Map<String, Entry<T>> newSnapshot = new HashMap<>(snapshot);
+                if (cachedObject != null) {
+                    // If we were able to load the object from disk, then add it to the cache.
+                    newSnapshot.put(tenantId, new Entry<>(new CachedObjectHolder<T>(fileName, cachedObject), watched));
+                    log.fine("Loaded " + this.cacheType + " for tenant-id '" + tenantId + "' and added it to the cache.");
+                } else {
+                    // Remember missing files only while their directory is watched.
+                    if (watched) {
+                        newSnapshot.put(tenantId, new Entry<>(new CachedObjectHolder<T>(fileName, null), true));
+                    } else {
+                        newSnapshot.remove(tenantId);
                     }
+                    log.fine("Tenant-specific " + this.cacheType + " for tenant '" + tenantId + "' not found, skipping...");
+                }
+                if (entry != null || cachedObject != null || watched) {
+                    replaceSnapshot(newSnapshot);
                 }
+                return cachedObject;
             }
-
-            return (holder != null ? holder.getCachedObject() : null);
         } finally {
             if (log.isLoggable(Level.FINEST)) {
                 log.exiting(this.getClass().getName(), "getCachedObjectForTenant");
             }
         }
     }
+
+    /**
+     * Start the watcher of this cache if watching is enabled, and watch the files that are already cached.
+     */
+    private void startWatching() {
+        synchronized (lock) {
+            if (watchService != null || watchDebounceMillis < 0) {
+                return;
+            }
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                log.log(Level.WARNING, "Unable to watch the files of the " + cacheType + " cache; files are checked on each lookup", e);
+                return;
+            }
+            WatchService service = watchService;
+            Thread watcher = new Thread(() -> runWatcher(service), "fhir-" + cacheType + "-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+
+            Map<String, Entry<T>> newSnapshot = new HashMap<>();
+            for (Map.Entry<String, Entry<T>> mapEntry : snapshot.entrySet()) {
+                CachedObjectHolder<T> holder = mapEntry.getValue().holder;
+                // an entry that went stale before its directory was watched is reloaded on the next lookup
+                if (watch(new File(holder.getFileName())) && !holder.isStale()) {
+                    newSnapshot.put(mapEntry.getKey(), new Entry<>(holder, true));
+                }
+            }
+            replaceSnapshot(newSnapshot);
+            log.info("Watching the files of the " + cacheType + " cache");
+        }
+    }
+
+    /**
+     * Close the watch service of this cache, which stops its watcher, and check the cached files on lookup again.
+     */
+    private void stopWatching() {
+        synchronized (lock) {
+            if (watchService == null) {
+                return;
+            }
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to close the watch service of the " + cacheType + " cache", e);
+            }
+            watchService = null;
+            watchedDirs.clear();
+
+            Map<String, Entry<T>> newSnapshot = new HashMap<>();
+            for (Map.Entry<String, Entry<T>> mapEntry : snapshot.entrySet()) {
+                CachedObjectHolder<T> holder = mapEntry.getValue().holder;
+                // missing files are only remembered while their directory is watched
+                if (holder.getCachedObject() != null) {
+                    newSnapshot.put(mapEntry.getKey(), new Entry<>(holder, false));
+                }
+            }
+            replaceSnapshot(newSnapshot);
+            log.info("Stopped watching the files of the " + cacheType + " cache");
+        }
+    }
+
+    /**
+     * Watch the directory of the passed file. Must be called while holding the lock.
+     *
+     * @return true if the directory is watched
+     */
+    private boolean watch(File file) {
+        if (watchService == null) {
+            return false;
+        }
+        Path dir = file.getAbsoluteFile().toPath().normalize().getParent();
+        if (dir == null || !dir.toFile().isDirectory()) {
+            return false;
+        }
+        if (watchedDirs.containsValue(dir)) {
+            return true;
+        }
+        try {
+            watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.log(Level.WARNING, "Unable to watch directory '" + dir + "'", e);
+            return false;
+        }
+    }
+
+    private void runWatcher(WatchService watchService) {
+        try {
+            while (true) {
+                Set<Path> changedDirs = new HashSet<>();
+                collect(watchService.take(), changedDirs);
+                // Wait until the files haven't changed for the debounce interval, so a file that is being written
+                // is only reloaded once it is complete.
+                WatchKey key;
+                while ((key = watchService.poll(watchDebounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changedDirs);
+                }
+                invalidate(changedDirs);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.fine("Stopped watching the files of the " + cacheType + " cache");
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changedDirs) {
+        Path dir;
+        synchronized (lock) {
+            dir = watchedDirs.get(key);
+        }
+        // The name of a changed entry isn't necessarily the name of a cached file: the file may be a symbolic link
+        // into a subdirectory that is replaced as a whole. Any event (including OVERFLOW) counts for the directory.
+        if (!key.pollEvents().isEmpty() && dir != null) {
+            changedDirs.add(dir);
+        }
+        if (!key.reset()) {
+            // the directory is no longer accessible; discard its entries and watch it again when they are reloaded
+            synchronized (lock) {
+                watchedDirs.remove(key);
+            }
+            if (dir != null) {
+                changedDirs.add(dir);
+            }
+        }
+    }
+
+    /**
+     * Discard the entries of all files in the changed directories.
+     */
+    private void invalidate(Set<Path> changedDirs) {
+        synchronized (lock) {
+            Map<String, Entry<T>> newSnapshot = new HashMap<>(snapshot);
+            boolean changed = newSnapshot.entrySet().removeIf(mapEntry -> {
+                Path file = new File(mapEntry.getValue().holder.getFileName()).getAbsoluteFile().toPath().normalize();
+                return changedDirs.contains(file.getParent());
+            });
+            if (changed) {
+                log.info("Discarded changed entries of the " + cacheType + " cache");
+                replaceSnapshot(newSnapshot);
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void replaceSnapshot(Map<String, Entry<T>> newSnapshot) {
+        snapshot = Collections.unmodifiableMap(newSnapshot);
+        long newVersion = version.incrementAndGet();
+        if (log.isLoggable(Level.FINE)) {
+            log.fine(cacheType + " cache version: " + newVersion);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final CachedObjectHolder<T> holder;
+        // whether changes of the file are detected by the watcher rather than on lookup
+        private final boolean watched;
+
+        private Entry(CachedObjectHolder<T> holder, boolean watched) {
+            this.holder = holder;
+            this.watched = watched;
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -18,6 +18,9 @@ public class FHIRPagingContextImpl implements FHIRPagingContext {
     protected int pageSize;
     protected int totalCount;
     protected boolean lenient = true;
+    // opaque continuation tokens that allow the persistence layer to seek to a page instead of skipping rows
+    protected String pageToken;
+    protected String nextPageToken;
     
     public FHIRPagingContextImpl() {
         this.pageNumber = DEFAULT_PAGE_NUMBER;
@@ -74,4 +77,24 @@ public class FHIRPagingContextImpl implements FHIRPagingContext {
     public void setLenient(boolean lenient) {
         this.lenient = lenient;
     }
-}
+
+    @Override
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    @Override
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
+
+    @Override
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    @Override
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+}
\ No newline at end of file
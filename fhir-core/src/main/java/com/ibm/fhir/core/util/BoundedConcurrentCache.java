@@ -0,0 +1,277 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.core.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache that can be shared between threads without a global lock.
+ *
+ * <p>Entries are spread over a fixed number of stripes, each backed by a {@link ConcurrentHashMap} with its own
+ * capacity. Reads never lock; they record recency by stamping the entry with the next value of the stripe's clock,
+ * which is skipped when the entry is already the most recently used one of its stripe, so that a hot entry does not
+ * write to memory on every read. When an insert pushes a stripe over
+ * its capacity, a small random sample of that stripe's entries is inspected and the least recently used entry of
+ * the sample is evicted (an approximation of LRU in the spirit of sampled eviction).
+ *
+ * <p>Unlike {@link LRUCache}, {@link #computeIfAbsent(Object, Function)} does not hold any lock while the mapping
+ * function runs; concurrent callers may compute the same value, in which case the first value stored wins.
+ *
+ * <p>Null keys and values are not supported.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class BoundedConcurrentCache<K, V> {
+    private static final int MAX_STRIPES = 16;
+    private static final int SAMPLE_SIZE = 8;
+
+    private final Stripe<K, V>[] stripes;
+    private final int maxEntries;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maxEntries
+     *     the maximum number of entries held by the cache
+     * @throws IllegalArgumentException
+     *     if maxEntries is less than 1
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedConcurrentCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+
+        // a power of two, so that each stripe holds at least a few entries
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, Integer.highestOneBit(maxEntries / SAMPLE_SIZE)));
+        int stripeCapacity = (maxEntries + stripeCount - 1) / stripeCount;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+    }
+
+    /**
+     * @param key
+     *     the key
+     * @return
+     *     the value mapped to the key, or null if there is none
+     */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        Node<V> node = stripe.map.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        stripe.touch(node);
+        return node.value;
+    }
+
+    /**
+     * Map the key to the passed value, possibly evicting another entry
+     *
+     * @param key
+     *     the key
+     * @param value
+     *     the value
+     */
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripeFor(key);
+        stripe.map.put(key, stripe.newNode(Objects.requireNonNull(value)));
+        evictIfNeeded(stripe);
+    }
+
+    /**
+     * Get the value mapped to the key, computing and caching it with the mapping function if there is none
+     *
+     * @param key
+     *     the key
+     * @param mappingFunction
+     *     the function used to compute a value; it is invoked without holding any lock
+     * @return
+     *     the current (existing or computed) value associated with the key, or null if the computed value is null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Stripe<K, V> stripe = stripeFor(key);
+        Node<V> existing = stripe.map.putIfAbsent(key, stripe.newNode(value));
+        if (existing != null) {
+            return existing.value;
+        }
+        evictIfNeeded(stripe);
+        return value;
+    }
+
+    /**
+     * @param key
+     *     the key
+     * @return
+     *     the value that was mapped to the key, or null if there was none
+     */
+    public V remove(K key) {
+        Node<V> node = stripeFor(key).map.remove(key);
+        return (node != null) ? node.value : null;
+    }
+
+    /**
+     * Remove all entries; the statistics are not reset
+     */
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.map.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries currently held by the cache
+     */
+    public int size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.map.mappingCount();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the maximum number of entries held by the cache
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the number of lookups that found a value
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find a value
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of entries removed to keep the cache within its bounds
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", maxEntries=" + maxEntries + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private Stripe<K, V> stripeFor(Object key) {
+        int h = key.hashCode();
+        // spread the high bits, as ConcurrentHashMap does, so that stripe selection and bucket selection differ
+        h ^= (h >>> 16) ^ (h >>> 7);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    private void evictIfNeeded(Stripe<K, V> stripe) {
+        if (stripe.map.mappingCount() <= stripe.capacity) {
+            return;
+        }
+        // only writers that overflow a stripe serialize here; readers are never blocked
+        synchronized (stripe) {
+            while (stripe.map.mappingCount() > stripe.capacity) {
+                Map.Entry<K, Node<V>> victim = stripe.sample();
+                if (victim == null) {
+                    break;
+                }
+                if (stripe.map.remove(victim.getKey(), victim.getValue())) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Stripe<K, V> {
+        private final ConcurrentHashMap<K, Node<V>> map;
+        private final int capacity;
+        // advanced on every insert and on every read of an entry other than the most recently used one
+        private final AtomicLong clock = new AtomicLong();
+
+        private Stripe(int capacity) {
+            this.map = new ConcurrentHashMap<>(capacity + (capacity >>> 1));
+            this.capacity = capacity;
+        }
+
+        private Node<V> newNode(V value) {
+            return new Node<>(value, clock.incrementAndGet());
+        }
+
+        private void touch(Node<V> node) {
+            // timestamps are unique, so only the most recently used entry carries the current one; reading it
+            // again dirties neither the clock nor the entry
+            if (node.lastAccess != clock.get()) {
+                node.lastAccess = clock.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return the least recently used of a random sample of entries, or null if the stripe is empty
+         */
+        private Map.Entry<K, Node<V>> sample() {
+            int size = map.size();
+            if (size == 0) {
+                return null;
+            }
+            int skip = (size > SAMPLE_SIZE) ? ThreadLocalRandom.current().nextInt(size - SAMPLE_SIZE + 1) : 0;
+            Iterator<Map.Entry<K, Node<V>>> iterator = map.entrySet().iterator();
+            Map.Entry<K, Node<V>> victim = null;
+            int seen = 0;
+            while (iterator.hasNext() && seen < skip + SAMPLE_SIZE) {
+                Map.Entry<K, Node<V>> entry = iterator.next();
+                if (seen++ < skip) {
+                    continue;
+                }
+                if (victim == null || entry.getValue().lastAccess < victim.getValue().lastAccess) {
+                    victim = entry;
+                }
+            }
+            return victim;
+        }
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        // written racily by readers; a lost update only makes the eviction choice slightly less accurate
+        private long lastAccess;
+
+        private Node(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
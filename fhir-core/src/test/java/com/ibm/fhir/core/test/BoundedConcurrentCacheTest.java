@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.core.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+
+public class BoundedConcurrentCacheTest {
+
+    @Test
+    public void testGetPutRemove() {
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<>(16);
+        assertNull(cache.get("a"));
+        cache.put("a", "1");
+        assertEquals(cache.get("a"), "1");
+        assertEquals(cache.remove("a"), "1");
+        assertNull(cache.get("a"));
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<>(16);
+        AtomicInteger computations = new AtomicInteger();
+        assertEquals(cache.computeIfAbsent("a", k -> k + computations.incrementAndGet()), "a1");
+        assertEquals(cache.computeIfAbsent("a", k -> k + computations.incrementAndGet()), "a1");
+        assertEquals(computations.get(), 1);
+        assertNull(cache.computeIfAbsent("b", k -> null));
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testBounded() {
+        BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<>(100);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 112, "size: " + cache.size());
+        assertEquals(cache.getEvictionCount(), 10000 - cache.size());
+    }
+
+    @Test
+    public void testRecentlyUsedEntriesSurvive() {
+        BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<>(256);
+        cache.put(-1, -1);
+        for (int i = 0; i < 10000; i++) {
+            // only the reads keep the entry from being evicted
+            assertEquals(cache.get(-1), Integer.valueOf(-1));
+            cache.put(i, i);
+        }
+        assertEquals(cache.get(-1), Integer.valueOf(-1));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<>(512);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        int key = (i * 31 + seed) % 2048;
+                        assertEquals(cache.computeIfAbsent(key, k -> k * 2), Integer.valueOf(key * 2));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= cache.getMaxEntries() + 16, "size: " + cache.size());
+        assertEquals(cache.getHitCount() + cache.getMissCount(), 8 * 20000);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.core.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.core.TenantSpecificFileBasedCache;
+
+public class TenantSpecificFileBasedCacheTest {
+    private Path dir;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("fhir-core-test");
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        // watching is enabled for every cache of the JVM, so don't leave it on for the other tests
+        TenantSpecificFileBasedCache.disableWatching();
+        delete(dir.toFile());
+    }
+
+    @Test
+    public void testStaleEntryIsReloaded() throws Exception {
+        StringCache cache = new StringCache();
+        Path file = dir.resolve("stat.txt");
+        assertNull(cache.getCachedObjectForTenant("stat"));
+
+        write(file, "one", 1000);
+        assertEquals(cache.getCachedObjectForTenant("stat"), "one");
+        long version = cache.getVersion();
+        assertEquals(cache.getCachedObjectForTenant("stat"), "one");
+        assertEquals(cache.getVersion(), version);
+
+        write(file, "two", 2000);
+        assertEquals(cache.getCachedObjectForTenant("stat"), "two");
+        assertTrue(cache.getVersion() > version);
+    }
+
+    @Test(dependsOnMethods = "testStaleEntryIsReloaded")
+    public void testWatchedEntryIsReloaded() throws Exception {
+        StringCache cache = new StringCache();
+        Path file = dir.resolve("watch.txt");
+        write(file, "one", 1000);
+        assertEquals(cache.getCachedObjectForTenant("watch"), "one");
+
+        TenantSpecificFileBasedCache.enableWatching(50);
+        assertNull(cache.getCachedObjectForTenant("missing"));
+        assertEquals(cache.getCachedObjectForTenant("watch"), "one");
+
+        write(file, "two", 2000);
+        waitFor(cache, "watch", "two");
+        write(dir.resolve("missing.txt"), "three", 3000);
+        waitFor(cache, "missing", "three");
+    }
+
+    @Test(dependsOnMethods = "testWatchedEntryIsReloaded")
+    public void testWatchingIsDisabled() throws Exception {
+        StringCache cache = new StringCache();
+        Path file = dir.resolve("unwatch.txt");
+        TenantSpecificFileBasedCache.enableWatching(50);
+        write(file, "one", 1000);
+        assertEquals(cache.getCachedObjectForTenant("unwatch"), "one");
+
+        // once the watchers are stopped, the file is checked on each lookup again
+        TenantSpecificFileBasedCache.disableWatching();
+        write(file, "two", 2000);
+        assertEquals(cache.getCachedObjectForTenant("unwatch"), "two");
+    }
+
+    @Test(dependsOnMethods = "testWatchingIsDisabled")
+    public void testConfigMapUpdateIsDetected() throws Exception {
+        // a ConfigMap volume links each file into the ..data directory, which is itself a link that is swapped
+        Path configMap = Files.createDirectory(dir.resolve("configmap"));
+        write(Files.createDirectory(configMap.resolve("..v1")).resolve("swap.txt"), "one", 1000);
+        Files.createSymbolicLink(configMap.resolve("..data"), configMap.resolve("..v1").getFileName());
+        Files.createSymbolicLink(configMap.resolve("swap.txt"), Paths.get("..data", "swap.txt"));
+
+        // the cache is created after watching was enabled
+        TenantSpecificFileBasedCache.enableWatching(50);
+        StringCache cache = new StringCache(configMap);
+        assertEquals(cache.getCachedObjectForTenant("swap"), "one");
+
+        write(Files.createDirectory(configMap.resolve("..v2")).resolve("swap.txt"), "two", 1000);
+        Files.createSymbolicLink(configMap.resolve("..data_tmp"), configMap.resolve("..v2").getFileName());
+        Files.move(configMap.resolve("..data_tmp"), configMap.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+        waitFor(cache, "swap", "two");
+    }
+
+    private static void delete(File file) {
+        // don't follow symbolic links into the directories they point to
+        if (file.isDirectory() && !Files.isSymbolicLink(file.toPath())) {
+            for (File f : file.listFiles()) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(Path file, String content, long lastModified) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        file.toFile().setLastModified(lastModified);
+    }
+
+    private static void waitFor(StringCache cache, String tenantId, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!expected.equals(cache.getCachedObjectForTenant(tenantId))) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    private class StringCache extends TenantSpecificFileBasedCache<String> {
+        private final Path baseDir;
+
+        private StringCache() {
+            this(dir);
+        }
+
+        private StringCache(Path baseDir) {
+            super("String");
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        public String getCacheEntryFilename(String tenantId) {
+            return baseDir.resolve(tenantId + ".txt").toString();
+        }
+
+        @Override
+        public String createCachedObject(File file) throws Exception {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+    }
+}
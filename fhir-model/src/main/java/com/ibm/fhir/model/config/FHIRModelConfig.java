@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -39,10 +39,16 @@ public final class FHIRModelConfig {
      */
     public static final String PROPERTY_CHECK_REFERENCE_TYPES = "com.ibm.fhir.model.checkReferenceTypes";
 
+    /**
+     * Used to determine whether parsed and constructed codes, URIs and canonical URLs are interned
+     */
+    public static final String PROPERTY_INTERN_PRIMITIVES = "com.ibm.fhir.model.internPrimitives";
+
     private static final Format DEFAULT_TO_STRING_FORMAT = Format.JSON;
     private static final int DEFAULT_TO_STRING_INDENT_AMOUNT = 2;
     private static final boolean DEFAULT_TO_STRING_PRETTY_PRINTING = true;
     private static final boolean DEFAULT_CHECK_REFERENCE_TYPES = true;
+    private static final boolean DEFAULT_INTERN_PRIMITIVES = false;
 
     private static final Map<String, Object> properties = new ConcurrentHashMap<>();
    
@@ -79,6 +85,14 @@ public final class FHIRModelConfig {
     public static boolean getCheckReferenceTypes() {
         return getPropertyOrDefault(PROPERTY_CHECK_REFERENCE_TYPES, DEFAULT_CHECK_REFERENCE_TYPES, Boolean.class);
     }
+    
+    public static void setInternPrimitives(boolean internPrimitives) {
+        setProperty(PROPERTY_INTERN_PRIMITIVES, internPrimitives);
+    }
+    
+    public static boolean getInternPrimitives() {
+        return getPropertyOrDefault(PROPERTY_INTERN_PRIMITIVES, DEFAULT_INTERN_PRIMITIVES, Boolean.class);
+    }
    
     public static void setProperty(String name, Object value) {
         properties.put(requireNonNull(name), requireNonNull(value));
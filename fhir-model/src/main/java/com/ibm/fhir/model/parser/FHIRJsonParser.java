@@ -41,6 +41,7 @@ import com.ibm.fhir.model.type.Boolean;
 import com.ibm.fhir.model.type.Integer;
 import com.ibm.fhir.model.type.String;
 import com.ibm.fhir.model.util.ElementFilter;
+import com.ibm.fhir.model.util.PrimitiveInterner;
 
 import net.jcip.annotations.NotThreadSafe;
 
@@ -62,6 +63,9 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(InputStream in, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (isStreaming()) {
+            return new FHIRJsonStreamReader(this).parseAndFilter(nonClosingInputStream(in), elementsToInclude);
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -78,6 +82,9 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(Reader reader, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (isStreaming()) {
+            return new FHIRJsonStreamReader(this).parseAndFilter(nonClosingReader(reader), elementsToInclude);
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -111,14 +118,47 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         stack.clear();
     }
 
+    private boolean isStreaming() {
+        return getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class);
+    }
+
     @Override
     public boolean isPropertySupported(java.lang.String name) {
         if (FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)) {
             return true;
         }
+        if (FHIRParser.PROPERTY_STREAMING.equals(name)) {
+            return true;
+        }
         return false;
     }
 
+    /**
+     * Parse one entry of a Bundle which is read as a stream of events by {@link FHIRJsonStreamReader}
+     */
+    Bundle.Entry parseBundleEntry(JsonObject jsonObject, int elementIndex) throws FHIRParserException {
+        try {
+            reset();
+            stackPush("Bundle", -1);
+            return parseBundleEntry("entry", jsonObject, elementIndex);
+        } catch (Exception e) {
+            throw new FHIRParserException(e.getMessage(), getPath(), e);
+        }
+    }
+
+    /**
+     * Parse the elements of a Bundle other than its entries into a builder to which {@link FHIRJsonStreamReader} has
+     * already added the entries
+     */
+    Bundle parseBundle(Bundle.Builder builder, JsonObject jsonObject) throws FHIRParserException {
+        try {
+            reset();
+            return parseBundle(builder, "Bundle", jsonObject, -1);
+        } catch (Exception e) {
+            throw new FHIRParserException(e.getMessage(), getPath(), e);
+        }
+    }
+
     private Resource parseResource(java.lang.String elementName, JsonObject jsonObject, int elementIndex) {
         if (jsonObject == null) {
             return null;
@@ -1509,7 +1549,7 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         return builder.build();
     }
 
-    private Bundle parseBundle(java.lang.String elementName, JsonObject jsonObject, int elementIndex) {
+    private Bundle parseBundle(Bundle.Builder builder, java.lang.String elementName, JsonObject jsonObject, int elementIndex) {
         if (jsonObject == null) {
             return null;
         }
@@ -1517,7 +1557,6 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         if (getPropertyOrDefault(FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS, java.lang.Boolean.FALSE, java.lang.Boolean.class) == false) {
             checkForUnrecognizedElements(Bundle.class, jsonObject);
         }
-        Bundle.Builder builder = Bundle.builder();
         parseResource(builder, jsonObject);
         builder.identifier(parseIdentifier("identifier", getJsonValue(jsonObject, "identifier", JsonObject.class), -1));
         builder.type((BundleType) parseString(BundleType.builder(), "type", getJsonValue(jsonObject, "type", JsonString.class), jsonObject.get("_type"), -1));
@@ -1540,6 +1579,10 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         return builder.build();
     }
 
+    private Bundle parseBundle(java.lang.String elementName, JsonObject jsonObject, int elementIndex) {
+        return parseBundle(Bundle.builder(), elementName, jsonObject, elementIndex);
+    }
+
     private Bundle.Entry parseBundleEntry(java.lang.String elementName, JsonObject jsonObject, int elementIndex) {
         if (jsonObject == null) {
             return null;
@@ -18967,7 +19010,7 @@ public class FHIRJsonParser extends FHIRAbstractParser {
             builder.value(jsonString.getString());
         }
         stackPop();
-        return builder.build();
+        return PrimitiveInterner.intern(builder.build());
     }
 
     private String parseString(java.lang.String elementName, JsonValue jsonValue, JsonValue _jsonValue, int elementIndex) {
@@ -21783,7 +21826,7 @@ public class FHIRJsonParser extends FHIRAbstractParser {
             builder.value(jsonString.getString());
         }
         stackPop();
-        return builder.build();
+        return PrimitiveInterner.intern(builder.build());
     }
 
     private Uri parseUri(java.lang.String elementName, JsonValue jsonValue, JsonValue _jsonValue, int elementIndex) {
@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.parser;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.util.ElementFilter;
+import com.ibm.fhir.model.util.ModelSupport;
+
+/**
+ * Reads a resource from a stream of {@link JsonParser} events, so that the JSON of the whole document is never held in
+ * memory as a single {@link JsonObject}.
+ *
+ * <p>Top-level elements that are excluded by the element filter are skipped without being read into memory; the other
+ * top-level elements are read into a JSON object and parsed by {@link FHIRJsonParser}. The entries of a Bundle are
+ * read and parsed one at a time, straight into the builder of the Bundle, so at most one entry is held as JSON at any
+ * time. The parsed entries are part of the result, so the memory for them is still proportional to the whole Bundle.
+ *
+ * @see FHIRParser#PROPERTY_STREAMING
+ */
+final class FHIRJsonStreamReader {
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    private final FHIRJsonParser parser;
+
+    // the path of the element currently being read (for error reporting)
+    private String path;
+
+    FHIRJsonStreamReader(FHIRJsonParser parser) {
+        this.parser = parser;
+    }
+
+    <T extends Resource> T parseAndFilter(InputStream in, Collection<String> elementsToInclude) throws FHIRParserException {
+        try (JsonParser jsonParser = PARSER_FACTORY.createParser(in, StandardCharsets.UTF_8)) {
+            return parseAndFilter(jsonParser, elementsToInclude);
+        }
+    }
+
+    <T extends Resource> T parseAndFilter(Reader reader, Collection<String> elementsToInclude) throws FHIRParserException {
+        try (JsonParser jsonParser = PARSER_FACTORY.createParser(reader)) {
+            return parseAndFilter(jsonParser, elementsToInclude);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Resource> T parseAndFilter(JsonParser jsonParser, Collection<String> elementsToInclude) throws FHIRParserException {
+        path = null;
+        try {
+            if (jsonParser.next() != Event.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object");
+            }
+
+            JsonObjectBuilder jsonObjectBuilder = BUILDER_FACTORY.createObjectBuilder();
+            String resourceTypeName = null;
+            ElementFilter elementFilter = null;
+            // the builder of a Bundle whose entries are read from the stream
+            Bundle.Builder bundleBuilder = null;
+
+            Event event;
+            while ((event = jsonParser.next()) != Event.END_OBJECT) {
+                String key = jsonParser.getString();
+                event = jsonParser.next();
+
+                if ("resourceType".equals(key) && event == Event.VALUE_STRING) {
+                    resourceTypeName = jsonParser.getString();
+                    path = resourceTypeName;
+                    jsonObjectBuilder.add(key, resourceTypeName);
+                    if (elementsToInclude != null) {
+                        elementFilter = new ElementFilter(getResourceType(resourceTypeName), elementsToInclude);
+                    }
+                } else if (elementFilter != null && !elementFilter.includes(key)) {
+                    skip(jsonParser, event);
+                } else if ("entry".equals(key) && "Bundle".equals(resourceTypeName) && event == Event.START_ARRAY && bundleBuilder == null) {
+                    bundleBuilder = Bundle.builder();
+                    readEntries(jsonParser, bundleBuilder);
+                } else {
+                    jsonObjectBuilder.add(key, jsonParser.getValue());
+                }
+            }
+
+            path = resourceTypeName;
+            JsonObject jsonObject = jsonObjectBuilder.build();
+            if (bundleBuilder != null) {
+                if (elementFilter != null) {
+                    // for the elements read before the resourceType
+                    jsonObject = elementFilter.apply(jsonObject);
+                }
+                return (T) parser.parseBundle(bundleBuilder, jsonObject);
+            }
+            return parser.parseAndFilter(jsonObject, elementsToInclude);
+        } catch (FHIRParserException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FHIRParserException(e.getMessage(), path, e);
+        }
+    }
+
+    /**
+     * Read the entries of a Bundle, parsing each entry on its own and adding it to the builder of the Bundle.
+     */
+    private void readEntries(JsonParser jsonParser, Bundle.Builder bundleBuilder) throws FHIRParserException {
+        int index = 0;
+        Event event;
+        while ((event = jsonParser.next()) != Event.END_ARRAY) {
+            path = "Bundle.entry[" + index + "]";
+            if (event != Event.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a JSON object");
+            }
+            bundleBuilder.entry(parser.parseBundleEntry(jsonParser.getObject(), index));
+            index++;
+        }
+    }
+
+    private static void skip(JsonParser jsonParser, Event event) {
+        if (event == Event.START_OBJECT) {
+            jsonParser.skipObject();
+        } else if (event == Event.START_ARRAY) {
+            jsonParser.skipArray();
+        }
+    }
+
+    private static Class<?> getResourceType(String resourceTypeName) {
+        Class<?> resourceType = ModelSupport.getResourceType(resourceTypeName);
+        if (resourceType == null) {
+            throw new IllegalArgumentException("Invalid resource type: '" + resourceTypeName + "'");
+        }
+        return resourceType;
+    }
+}
@@ -22,6 +22,13 @@ public interface FHIRParser {
      */
     public static final String PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS = "com.ibm.fhir.model.parser.ignoreUnrecognizedElements";
     
+    /**
+     * Property name for a property that controls whether the parser will read the input as a stream of events instead of
+     * reading it into a single in-memory document first (JSON only). When enabled, top-level elements excluded by
+     * {@code parseAndFilter} are skipped while reading, and each Bundle entry is read and parsed on its own.
+     */
+    public static final String PROPERTY_STREAMING = "com.ibm.fhir.model.parser.streaming";
+    
     /**
      * Read a resource from the passed InputStream. This method does not close the passed InputStream.
      * 
@@ -31,6 +31,7 @@ import com.ibm.fhir.model.type.code.*;
 import com.ibm.fhir.model.type.Boolean;
 import com.ibm.fhir.model.type.Integer;
 import com.ibm.fhir.model.type.String;
+import com.ibm.fhir.model.util.PrimitiveInterner;
 import com.ibm.fhir.model.util.XMLSupport.StreamReaderDelegate;
 
 import net.jcip.annotations.NotThreadSafe;
@@ -42355,7 +42356,7 @@ public class FHIRXMLParser extends FHIRAbstractParser {
             case XMLStreamReader.END_ELEMENT:
                 if (reader.getLocalName().equals(elementName)) {
                     stackPop();
-                    return builder.build();
+                    return PrimitiveInterner.intern(builder.build());
                 }
                 break;
             }
@@ -49950,7 +49951,7 @@ public class FHIRXMLParser extends FHIRAbstractParser {
             case XMLStreamReader.END_ELEMENT:
                 if (reader.getLocalName().equals(elementName)) {
                     stackPop();
-                    return builder.build();
+                    return PrimitiveInterner.intern(builder.build());
                 }
                 break;
             }
@@ -11,6 +11,7 @@ import java.util.Objects;
 
 import javax.annotation.Generated;
 
+import com.ibm.fhir.model.util.PrimitiveInterner;
 import com.ibm.fhir.model.visitor.Visitor;
 
 /**
@@ -30,7 +31,7 @@ public class Canonical extends Uri {
     }
 
     public static Canonical of(java.lang.String value) {
-        return Canonical.builder().value(value).build();
+        return PrimitiveInterner.intern(Canonical.builder().value(value).build());
     }
 
     public static Canonical of(java.lang.String uri, java.lang.String version) {
@@ -39,7 +40,7 @@ public class Canonical extends Uri {
             value.append('|');
             value.append(version);
         }
-        return Canonical.builder().value(value.toString()).build();
+        return PrimitiveInterner.intern(Canonical.builder().value(value.toString()).build());
     }
 
     public static Canonical of(java.lang.String uri, java.lang.String version, java.lang.String fragment) {
@@ -52,7 +53,7 @@ public class Canonical extends Uri {
             value.append('#');
             value.append(fragment);
         }
-        return Canonical.builder().value(value.toString()).build();
+        return PrimitiveInterner.intern(Canonical.builder().value(value.toString()).build());
     }
 
     public static Uri uri(java.lang.String value) {
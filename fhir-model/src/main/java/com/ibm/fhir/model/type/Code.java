@@ -11,6 +11,7 @@ import java.util.Objects;
 
 import javax.annotation.Generated;
 
+import com.ibm.fhir.model.util.PrimitiveInterner;
 import com.ibm.fhir.model.util.ValidationSupport;
 import com.ibm.fhir.model.visitor.Visitor;
 
@@ -33,7 +34,7 @@ public class Code extends String {
     }
 
     public static Code of(java.lang.String value) {
-        return Code.builder().value(value).build();
+        return PrimitiveInterner.intern(Code.builder().value(value).build());
     }
 
     public static String string(java.lang.String value) {
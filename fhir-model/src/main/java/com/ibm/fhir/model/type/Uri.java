@@ -11,6 +11,7 @@ import java.util.Objects;
 
 import javax.annotation.Generated;
 
+import com.ibm.fhir.model.util.PrimitiveInterner;
 import com.ibm.fhir.model.util.ValidationSupport;
 import com.ibm.fhir.model.visitor.Visitor;
 
@@ -51,7 +52,7 @@ public class Uri extends Element {
     }
 
     public static Uri of(java.lang.String value) {
-        return Uri.builder().value(value).build();
+        return PrimitiveInterner.intern(Uri.builder().value(value).build());
     }
 
     public static Uri uri(java.lang.String value) {
@@ -0,0 +1,315 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.util;
+
+import static com.ibm.fhir.model.type.String.string;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.lang.model.SourceVersion;
+
+import com.ibm.fhir.model.builder.Builder;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Element;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.visitor.PathAwareVisitor;
+import com.ibm.fhir.model.visitor.Visitable;
+
+/**
+ * An index of the local references (e.g. {@code urn:uuid:...}) within the entry resources of a Bundle, built with a
+ * single pass over each resource.
+ *
+ * <p>For each entry, the index records which local references it contains and at which paths, along with the chain of
+ * elements that lead to each of them. {@link #mapLocalReferences(int, Resource, Map)} uses that chain to rebuild only
+ * the elements that contain a mapped reference; entries without local references are returned as-is. The result is
+ * the same as visiting the resource with a {@link ReferenceMappingVisitor}.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ */
+public class LocalReferenceIndex {
+    private static final Logger log = Logger.getLogger(LocalReferenceIndex.class.getName());
+
+    // builder class -> setter name (suffixed with "*" for the Collection variant) -> setter
+    private static final Map<Class<?>, Map<String, MethodHandle>> SETTERS = new ConcurrentHashMap<>();
+
+    // entry index -> root node of the elements that lead to the local references of the entry resource
+    private final Map<Integer, Node> roots = new HashMap<>();
+
+    /**
+     * @param bundle
+     *     the bundle whose entry resources are indexed
+     * @param localRefPrefix
+     *     the prefix of the reference values that are local references, e.g. "urn:"
+     */
+    public LocalReferenceIndex(Bundle bundle, String localRefPrefix) {
+        List<Bundle.Entry> entries = bundle.getEntry();
+        for (int entryIndex = 0; entryIndex < entries.size(); entryIndex++) {
+            Resource resource = entries.get(entryIndex).getResource();
+            if (resource == null) {
+                continue;
+            }
+            IndexingVisitor visitor = new IndexingVisitor(localRefPrefix);
+            resource.accept(visitor);
+            if (visitor.root != null) {
+                roots.put(entryIndex, visitor.root);
+            }
+        }
+    }
+
+    /**
+     * @return the local references within the resource of the specified entry, or an empty set if there are none
+     */
+    public Set<String> getLocalReferences(int entryIndex) {
+        Node root = roots.get(entryIndex);
+        return (root == null) ? Collections.emptySet() : Collections.unmodifiableSet(root.paths.keySet());
+    }
+
+    /**
+     * @return the paths of the specified local reference within the resource of the specified entry
+     */
+    public List<String> getPaths(int entryIndex, String localReference) {
+        Node root = roots.get(entryIndex);
+        List<String> paths = (root == null) ? null : root.paths.get(localReference);
+        return (paths == null) ? Collections.emptyList() : Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Replace the local references within the resource of the specified entry with their mapped values.
+     * Only the elements that contain a mapped reference are rebuilt.
+     *
+     * @param entryIndex
+     *     the index of the entry
+     * @param resource
+     *     the resource of the entry; if it is not the indexed resource, it is copied with a {@link ReferenceMappingVisitor}
+     * @param localRefMap
+     *     a mapping from the current reference values to the desired ones
+     * @return the resource with its local references replaced, or the passed resource if none of them are mapped
+     */
+    public Resource mapLocalReferences(int entryIndex, Resource resource, Map<String, String> localRefMap) {
+        Node root = roots.get(entryIndex);
+        if (root == null) {
+            return resource;
+        }
+        if (root.visitable != resource) {
+            ReferenceMappingVisitor<Resource> visitor = new ReferenceMappingVisitor<>(localRefMap);
+            resource.accept(visitor);
+            return visitor.getResult();
+        }
+        return (Resource) map(root, localRefMap);
+    }
+
+    private static Visitable map(Node node, Map<String, String> localRefMap) {
+        if (node.referenceValue != null) {
+            String newRefValue = localRefMap.get(node.referenceValue);
+            if (newRefValue == null) {
+                if (log.isLoggable(Level.FINER)) {
+                    log.finer("Reference '" + node.referenceValue + "' is not replaced "
+                            + "because it was not found in the local reference map");
+                }
+                return node.visitable;
+            }
+            if (log.isLoggable(Level.FINER)) {
+                log.finer("Replacing '" + node.referenceValue + "' with new value '" + newRefValue + "'");
+            }
+            return ((Reference) node.visitable).toBuilder().reference(string(newRefValue)).build();
+        }
+
+        Builder<?> builder = null;
+        Map<String, List<Visitable>> changedLists = null;
+        for (Node child : node.children) {
+            Visitable mapped = map(child, localRefMap);
+            if (mapped == child.visitable) {
+                continue;
+            }
+            if (builder == null) {
+                builder = (node.visitable instanceof Resource) ?
+                        ((Resource) node.visitable).toBuilder() : ((Element) node.visitable).toBuilder();
+            }
+            if (child.elementIndex == -1) {
+                set(builder, child.elementName, mapped, false);
+            } else {
+                if (changedLists == null) {
+                    changedLists = new LinkedHashMap<>();
+                }
+                changedLists.computeIfAbsent(child.elementName, k -> new ArrayList<>(node.lists.get(k)))
+                        .set(child.elementIndex, mapped);
+            }
+        }
+        if (builder == null) {
+            return node.visitable;
+        }
+        if (changedLists != null) {
+            for (Map.Entry<String, List<Visitable>> changedList : changedLists.entrySet()) {
+                set(builder, changedList.getKey(), changedList.getValue(), true);
+            }
+        }
+        return (Visitable) builder.build();
+    }
+
+    private static void set(Builder<?> builder, String elementName, Object value, boolean list) {
+        MethodHandle setter = SETTERS.computeIfAbsent(builder.getClass(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(list ? elementName + "*" : elementName, k -> findSetter(builder.getClass(), elementName, value.getClass(), list));
+        try {
+            setter.invoke(builder, value);
+        } catch (Throwable t) {
+            throw new RuntimeException("Unexpected error while setting " + builder.getClass() + "." + elementName, t);
+        }
+    }
+
+    private static MethodHandle findSetter(Class<?> builderClass, String elementName, Class<?> valueClass, boolean list) {
+        String setterName = elementName;
+        if ("class".equals(elementName)) {
+            setterName = "clazz";
+        } else if (SourceVersion.isKeyword(elementName)) {
+            setterName = "_" + elementName;
+        }
+        for (Method method : builderClass.getMethods()) {
+            if (!method.getName().equals(setterName) || method.getParameterCount() != 1 || method.isBridge()) {
+                continue;
+            }
+            Class<?> parameterType = method.getParameterTypes()[0];
+            if (list ? parameterType == Collection.class : (!parameterType.isArray() && parameterType.isAssignableFrom(valueClass))) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        throw new IllegalStateException("No setter found for " + builderClass + "." + elementName);
+    }
+
+    /**
+     * An element (or resource) that is, or leads to, a local reference.
+     */
+    private static final class Node {
+        private final Visitable visitable;
+        private final String elementName;
+        private final int elementIndex;
+        private final List<Node> children = new ArrayList<>();
+        // the lists of the child elements, by element name
+        private Map<String, List<? extends Visitable>> lists;
+        // the local reference value if this is a reference
+        private String referenceValue;
+        // local reference -> paths; only set on the root
+        private Map<String, List<String>> paths;
+
+        private Node(Visitable visitable, String elementName, int elementIndex) {
+            this.visitable = visitable;
+            this.elementName = elementName;
+            this.elementIndex = elementIndex;
+        }
+    }
+
+    /**
+     * A visited element (or resource); its node is only created once a local reference is found below it.
+     */
+    private static final class Frame {
+        private final Visitable visitable;
+        private final String elementName;
+        private final int elementIndex;
+        private Map<String, List<? extends Visitable>> lists;
+        private Node node;
+
+        private Frame(Visitable visitable, String elementName, int elementIndex) {
+            this.visitable = visitable;
+            this.elementName = elementName;
+            this.elementIndex = elementIndex;
+        }
+    }
+
+    private static class IndexingVisitor extends PathAwareVisitor {
+        private final String localRefPrefix;
+        private final Stack<Frame> frames = new Stack<>();
+        private Node root;
+
+        private IndexingVisitor(String localRefPrefix) {
+            this.localRefPrefix = localRefPrefix;
+        }
+
+        @Override
+        protected void doVisitStart(String elementName, int elementIndex, Element element) {
+            frames.push(new Frame(element, elementName, elementIndex));
+        }
+
+        @Override
+        protected void doVisitStart(String elementName, int elementIndex, Resource resource) {
+            frames.push(new Frame(resource, elementName, elementIndex));
+        }
+
+        @Override
+        protected void doVisitEnd(String elementName, int elementIndex, Element element) {
+            frames.pop();
+        }
+
+        @Override
+        protected void doVisitEnd(String elementName, int elementIndex, Resource resource) {
+            frames.pop();
+        }
+
+        @Override
+        public void visitStart(String elementName, List<? extends Visitable> visitables, Class<?> type) {
+            Frame parent = frames.peek();
+            if (parent.lists == null) {
+                parent.lists = new HashMap<>();
+            }
+            parent.lists.put(elementName, visitables);
+        }
+
+        @Override
+        public boolean visit(String elementName, int elementIndex, Reference reference) {
+            if (reference.getReference() != null && reference.getReference().getValue() != null
+                    && reference.getReference().getValue().startsWith(localRefPrefix)) {
+                String value = reference.getReference().getValue();
+                Node node = getNode(frames.size() - 1);
+                node.referenceValue = value;
+                root.paths.computeIfAbsent(value, k -> new ArrayList<>()).add(getPath());
+            }
+            // like the ReferenceMappingVisitor, don't look for references within references
+            return false;
+        }
+
+        /**
+         * Create the nodes of the frames up to the specified one, if they don't exist yet.
+         */
+        private Node getNode(int frameIndex) {
+            Frame frame = frames.get(frameIndex);
+            if (frame.node == null) {
+                frame.node = new Node(frame.visitable, frame.elementName, frame.elementIndex);
+                if (frameIndex == 0) {
+                    root = frame.node;
+                    root.paths = new LinkedHashMap<>();
+                } else {
+                    Node parent = getNode(frameIndex - 1);
+                    parent.children.add(frame.node);
+                    if (frame.elementIndex != -1) {
+                        if (parent.lists == null) {
+                            parent.lists = new HashMap<>();
+                        }
+                        parent.lists.put(frame.elementName, frames.get(frameIndex - 1).lists.get(frame.elementName));
+                    }
+                }
+            }
+            return frame.node;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.model.config.FHIRModelConfig;
+import com.ibm.fhir.model.type.Canonical;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Element;
+import com.ibm.fhir.model.type.Uri;
+
+/**
+ * A bounded, per-type interning cache for the primitive values that repeat across resources, such as code system
+ * URIs, canonical URLs and status codes.
+ *
+ * <p>Model objects are immutable, so equal values can be shared between resources. Only values without an id or
+ * extensions are interned, and only when interning has been enabled through
+ * {@link FHIRModelConfig#setInternPrimitives(boolean)}; otherwise the passed element is returned as-is.
+ *
+ * <p>Interned types: {@link Code} (including the code subtypes that are backed by a value set), {@link Uri} and
+ * {@link Canonical}.
+ */
+public final class PrimitiveInterner {
+    /**
+     * The maximum number of interned values per type; less frequently used values are evicted beyond that.
+     */
+    public static final int MAX_ENTRIES_PER_TYPE = 8192;
+
+    private static final Map<Class<?>, BoundedConcurrentCache<String, Element>> CACHES = new ConcurrentHashMap<>();
+
+    private PrimitiveInterner() { }
+
+    /**
+     * Return a previously interned element that is equal to the passed element, or intern the passed element.
+     *
+     * @param element
+     *     the element, may be null
+     * @return an equal element that may be shared, or the passed element if it is not interned
+     */
+    public static <T extends Element> T intern(T element) {
+        if (!FHIRModelConfig.getInternPrimitives()) {
+            return element;
+        }
+        String value = getInternableValue(element);
+        if (value == null) {
+            return element;
+        }
+        BoundedConcurrentCache<String, Element> cache =
+                CACHES.computeIfAbsent(element.getClass(), k -> new BoundedConcurrentCache<>(MAX_ENTRIES_PER_TYPE));
+        @SuppressWarnings("unchecked")
+        T interned = (T) cache.computeIfAbsent(value, k -> element);
+        return interned;
+    }
+
+    /**
+     * @return the number of interned values over all types
+     */
+    public static int size() {
+        int size = 0;
+        for (BoundedConcurrentCache<String, Element> cache : CACHES.values()) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Discard all interned values.
+     */
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    private static String getInternableValue(Element element) {
+        if (element == null || element.getId() != null || !element.getExtension().isEmpty()) {
+            return null;
+        }
+        if (element instanceof Code) {
+            return ((Code) element).getValue();
+        }
+        Class<?> type = element.getClass();
+        if (type == Uri.class || type == Canonical.class) {
+            return ((Uri) element).getValue();
+        }
+        return null;
+    }
+}
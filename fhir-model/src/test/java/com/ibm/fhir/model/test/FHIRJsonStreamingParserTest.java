@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRJsonParser;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Resource;
+
+/**
+ * Tests that the streaming mode of the JSON parser produces the same resources as the default mode.
+ */
+public class FHIRJsonStreamingParserTest {
+    @DataProvider(name = "examples")
+    public static Object[][] examples() {
+        return new Object[][] {
+            { "json/spec/patient-example.json", null },
+            { "json/spec/observation-example.json", null },
+            { "json/spec/explanationofbenefit-example.json", null },
+            { "json/spec/bundle-transaction.json", null },
+            { "json/spec/bundle-example.json", null },
+            { "json/spec/patient-example.json", Arrays.asList("id", "name") },
+            { "json/spec/observation-example.json", Arrays.asList("code", "subject") },
+            { "json/spec/bundle-transaction.json", Collections.singletonList("type") },
+            { "json/spec/bundle-transaction.json", Arrays.asList("type", "entry") }
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testStreamingMatchesDefault(String example, Collection<String> elementsToInclude) throws Exception {
+        String json = readExample(example);
+
+        FHIRJsonParser parser = (FHIRJsonParser) FHIRParser.parser(Format.JSON);
+        FHIRJsonParser streamingParser = (FHIRJsonParser) FHIRParser.parser(Format.JSON);
+        streamingParser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+
+        Resource expected = parser.parseAndFilter(new StringReader(json), elementsToInclude);
+        Resource actual = streamingParser.parseAndFilter(new StringReader(json), elementsToInclude);
+        assertEquals(actual, expected);
+
+        actual = streamingParser.parseAndFilter(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), elementsToInclude);
+        assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testStreamingPropertySupported() {
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        assertTrue(parser.isPropertySupported(FHIRParser.PROPERTY_STREAMING));
+    }
+
+    @Test
+    public void testStreamingEntryErrorPath() throws Exception {
+        String json = "{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":["
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"}},"
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"active\":\"yes\"}}]}";
+
+        FHIRParser streamingParser = FHIRParser.parser(Format.JSON);
+        streamingParser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        try {
+            streamingParser.parse(new StringReader(json));
+            fail("expected FHIRParserException");
+        } catch (FHIRParserException e) {
+            assertNotNull(e.getPath());
+            assertTrue(e.getPath().startsWith("Bundle.entry[1].resource"), e.getPath());
+        }
+    }
+
+    @Test
+    public void testStreamingBundleEntriesWithoutResource() throws Exception {
+        String json = "{\"resourceType\":\"Bundle\",\"type\":\"batch-response\",\"entry\":["
+                + "{\"response\":{\"status\":\"200\"}},"
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"},\"response\":{\"status\":\"201\"}}]}";
+
+        FHIRParser streamingParser = FHIRParser.parser(Format.JSON);
+        streamingParser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        Bundle bundle = streamingParser.parse(new StringReader(json));
+        assertEquals(bundle, FHIRParser.parser(Format.JSON).parse(new StringReader(json)));
+    }
+
+    @Test
+    public void testStreamingBundleMemberOrder() throws Exception {
+        String entries = "\"entry\":[{\"fullUrl\":\"urn:uuid:1\",\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"}}]";
+        String[] jsons = {
+            // entries read before the other elements of the Bundle
+            "{\"resourceType\":\"Bundle\"," + entries + ",\"id\":\"b\",\"type\":\"collection\"}",
+            // entries read before the resourceType
+            "{" + entries + ",\"type\":\"collection\",\"id\":\"b\",\"resourceType\":\"Bundle\"}"
+        };
+
+        FHIRParser streamingParser = FHIRParser.parser(Format.JSON);
+        streamingParser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        for (String json : jsons) {
+            Bundle bundle = streamingParser.parse(new StringReader(json));
+            assertEquals(bundle, FHIRParser.parser(Format.JSON).parse(new StringReader(json)));
+            assertEquals(bundle.getEntry().size(), 1);
+        }
+    }
+
+    private static String readExample(String path) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (Reader reader = ExamplesUtil.resourceReader(path)) {
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.config.FHIRModelConfig;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.type.Canonical;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Extension;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.util.PrimitiveInterner;
+
+public class PrimitiveInternerTest {
+    private static final String OBSERVATION = "{\"resourceType\":\"Observation\",\"status\":\"final\","
+            + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"8867-4\"}]}}";
+    private static final String OBSERVATION_XML = "<Observation xmlns=\"http://hl7.org/fhir\"><status value=\"final\"/>"
+            + "<code><coding><system value=\"http://loinc.org\"/><code value=\"8867-4\"/></coding></code></Observation>";
+
+    @AfterMethod
+    public void tearDown() {
+        FHIRModelConfig.removeProperty(FHIRModelConfig.PROPERTY_INTERN_PRIMITIVES);
+        PrimitiveInterner.clear();
+    }
+
+    @Test
+    public void testParsedValuesAreShared() throws Exception {
+        FHIRModelConfig.setInternPrimitives(true);
+        Observation first = parse(Format.JSON, OBSERVATION);
+        Observation second = parse(Format.JSON, OBSERVATION);
+        Observation third = parse(Format.XML, OBSERVATION_XML);
+
+        assertSame(second.getStatus(), first.getStatus());
+        assertSame(second.getCode().getCoding().get(0).getSystem(), first.getCode().getCoding().get(0).getSystem());
+        assertSame(second.getCode().getCoding().get(0).getCode(), first.getCode().getCoding().get(0).getCode());
+        assertSame(third.getCode().getCoding().get(0).getSystem(), first.getCode().getCoding().get(0).getSystem());
+        assertSame(Uri.of("http://loinc.org"), first.getCode().getCoding().get(0).getSystem());
+        assertEquals(second, first);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Observation first = parse(Format.JSON, OBSERVATION);
+        Observation second = parse(Format.JSON, OBSERVATION);
+
+        assertNotSame(second.getCode().getCoding().get(0).getSystem(), first.getCode().getCoding().get(0).getSystem());
+        assertNotSame(Code.of("a"), Code.of("a"));
+        assertEquals(PrimitiveInterner.size(), 0);
+    }
+
+    @Test
+    public void testValuesWithExtensionsAreNotShared() throws Exception {
+        FHIRModelConfig.setInternPrimitives(true);
+        Extension extension = Extension.builder().url("http://example.com/ext").value(Code.of("b")).build();
+        Code first = Code.builder().value("a").extension(extension).build();
+        Code second = Code.builder().value("a").extension(extension).build();
+
+        assertSame(PrimitiveInterner.intern(first), first);
+        assertSame(PrimitiveInterner.intern(second), second);
+        assertSame(Code.of("a"), Code.of("a"));
+        // the type is part of the key
+        assertNotSame(Uri.of("a"), Canonical.of("a"));
+    }
+
+    private static Observation parse(Format format, String resource) throws Exception {
+        return FHIRParser.parser(format).parse(new StringReader(resource));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.model.util.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.CodeableConcept;
+import com.ibm.fhir.model.type.Coding;
+import com.ibm.fhir.model.type.Extension;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.type.String;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.HTTPVerb;
+import com.ibm.fhir.model.type.code.ObservationStatus;
+import com.ibm.fhir.model.util.LocalReferenceIndex;
+import com.ibm.fhir.model.util.ReferenceMappingVisitor;
+
+public class LocalReferenceIndexTest {
+    private static final java.lang.String PATIENT_REF = "urn:uuid:1";
+    private static final java.lang.String PRACTITIONER_REF = "urn:uuid:2";
+    private static final java.lang.String UNMAPPED_REF = "urn:uuid:3";
+
+    private Bundle bundle;
+    private Map<java.lang.String, java.lang.String> localRefMap;
+
+    @BeforeClass
+    public void setUp() {
+        Observation observation = Observation.builder()
+                .status(ObservationStatus.FINAL)
+                .code(CodeableConcept.builder()
+                    .coding(Coding.builder().system(Uri.of("http://loinc.org")).code(Code.of("8867-4")).build())
+                    .build())
+                .subject(reference(PATIENT_REF))
+                .performer(reference("Practitioner/existing"), reference(PRACTITIONER_REF), reference(UNMAPPED_REF))
+                .extension(Extension.builder()
+                    .url("http://example.com/ext")
+                    .value(reference(PRACTITIONER_REF))
+                    .build())
+                .contained(Patient.builder()
+                    .id("contained")
+                    .generalPractitioner(reference(PRACTITIONER_REF))
+                    .build())
+                .build();
+        Patient patient = Patient.builder()
+                .generalPractitioner(reference("Practitioner/existing"))
+                .build();
+        bundle = Bundle.builder()
+                .type(BundleType.TRANSACTION)
+                .entry(Bundle.Entry.builder().resource(observation).build(),
+                    Bundle.Entry.builder().resource(patient).build(),
+                    Bundle.Entry.builder()
+                        .request(Bundle.Entry.Request.builder().method(HTTPVerb.DELETE).url(Uri.of("Patient/1")).build())
+                        .build())
+                .build();
+
+        localRefMap = new HashMap<>();
+        localRefMap.put(PATIENT_REF, "Patient/1");
+        localRefMap.put(PRACTITIONER_REF, "Practitioner/2");
+    }
+
+    @Test
+    public void testIndex() {
+        LocalReferenceIndex index = new LocalReferenceIndex(bundle, "urn:");
+        assertEquals(index.getLocalReferences(0), new HashSet<>(Arrays.asList(PATIENT_REF, PRACTITIONER_REF, UNMAPPED_REF)));
+        assertEquals(index.getPaths(0, PATIENT_REF), Collections.singletonList("Observation.subject"));
+        assertEquals(index.getPaths(0, PRACTITIONER_REF), Arrays.asList("Observation.contained[0].generalPractitioner[0]",
+                "Observation.extension[0].value", "Observation.performer[1]"));
+        assertTrue(index.getLocalReferences(1).isEmpty());
+        assertTrue(index.getLocalReferences(2).isEmpty());
+    }
+
+    @Test
+    public void testMapLocalReferences() {
+        LocalReferenceIndex index = new LocalReferenceIndex(bundle, "urn:");
+        Observation observation = (Observation) bundle.getEntry().get(0).getResource();
+        Observation result = (Observation) index.mapLocalReferences(0, observation, localRefMap);
+
+        ReferenceMappingVisitor<Resource> visitor = new ReferenceMappingVisitor<>(localRefMap);
+        observation.accept(visitor);
+        assertEquals(result, visitor.getResult());
+
+        assertEquals(result.getSubject().getReference().getValue(), "Patient/1");
+        assertEquals(result.getPerformer().get(1).getReference().getValue(), "Practitioner/2");
+        assertEquals(result.getPerformer().get(2).getReference().getValue(), UNMAPPED_REF);
+        // untouched subtrees are shared
+        assertSame(result.getCode(), observation.getCode());
+        assertSame(result.getPerformer().get(0), observation.getPerformer().get(0));
+        assertSame(result.getPerformer().get(2), observation.getPerformer().get(2));
+        assertNotSame(result.getContained().get(0), observation.getContained().get(0));
+
+        Resource patient = bundle.getEntry().get(1).getResource();
+        assertSame(index.mapLocalReferences(1, patient, localRefMap), patient);
+        assertSame(index.mapLocalReferences(0, observation, Collections.emptyMap()), observation);
+    }
+
+    private static Reference reference(java.lang.String value) {
+        return Reference.builder().reference(String.of(value)).build();
+    }
+}
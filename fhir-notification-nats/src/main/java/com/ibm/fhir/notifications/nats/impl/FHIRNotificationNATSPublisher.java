@@ -8,6 +8,7 @@ package com.ibm.fhir.notifications.nats.impl;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.SecureRandom;
 import javax.net.ssl.KeyManager;
@@ -165,7 +166,7 @@ public class FHIRNotificationNATSPublisher implements FHIRNotificationSubscriber
                 log.fine("Publishing NATS notification event to channel '" + channelName + "',\nmessage: '" + jsonString + "'.");
             }
             
-            sc.publish("FHIRNotificationEvent", jsonString.getBytes(), acb);
+            sc.publish("FHIRNotificationEvent", jsonString.getBytes(StandardCharsets.UTF_8), acb);
     
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Published NATS notification event to channel '" + channelName + "'");
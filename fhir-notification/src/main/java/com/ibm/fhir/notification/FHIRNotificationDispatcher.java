@@ -0,0 +1,512 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.notification.exception.FHIRNotificationException;
+import com.ibm.fhir.notification.util.FHIRNotificationUtil;
+
+/**
+ * Delivers notification events to subscribers asynchronously, so that slow subscribers never add latency to
+ * the request that published the event.
+ *
+ * <p>Each subscriber has its own bounded queue. Queues are drained by a small shared thread pool, one batch of up to
+ * {@code batchSize} events at a time (see {@link FHIRNotificationSubscriber#notifyBatch(List)}); a subscriber is never
+ * notified from more than one thread at a time, so each subscriber sees events in publication order.
+ *
+ * <p>When a subscriber's queue is full, the {@link BackpressurePolicy} decides what happens to a new event.
+ * Events published after {@link #shutdown(long, TimeUnit)} has been called are dropped.
+ *
+ * <p>Spill files only live as long as the dispatcher that wrote them: events that are still spilled when the server
+ * stops are not delivered, and spill files left behind by a previous dispatcher are reported but not replayed.
+ */
+public class FHIRNotificationDispatcher {
+    private static final Logger log = Logger.getLogger(FHIRNotificationDispatcher.class.getName());
+
+    /**
+     * What to do with an event that does not fit into a subscriber's queue
+     */
+    public enum BackpressurePolicy {
+        /**
+         * Discard the event (and count it)
+         */
+        DROP,
+        /**
+         * Block the publishing thread until there is room in the queue
+         */
+        BLOCK,
+        /**
+         * Append the event to a spill file, which is replayed once the queue has been drained; events that are
+         * still spilled when the dispatcher is shut down are lost
+         */
+        SPILL;
+
+        public static BackpressurePolicy from(String value) {
+            for (BackpressurePolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Invalid backpressure policy: '" + value + "'");
+        }
+    }
+
+    private final int queueSize;
+    private final int batchSize;
+    private final BackpressurePolicy backpressurePolicy;
+    private final Path spillDirectory;
+    private final Consumer<FHIRNotificationSubscriber> failureHandler;
+    private final ExecutorService executor;
+    // distinguishes the spill files of this dispatcher from those of other dispatchers (or server runs)
+    private final String spillPrefix = UUID.randomUUID().toString();
+    private volatile boolean stopped = false;
+
+    private final Map<FHIRNotificationSubscriber, SubscriberQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queueCounter = new AtomicInteger();
+
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+
+    /**
+     * @param queueSize
+     *     the capacity of each subscriber's queue
+     * @param batchSize
+     *     the maximum number of events passed to a subscriber at once
+     * @param threads
+     *     the number of threads used to deliver events
+     * @param backpressurePolicy
+     *     what to do with an event that does not fit into a subscriber's queue
+     * @param spillDirectory
+     *     the directory for spill files; only used with {@link BackpressurePolicy#SPILL}
+     * @param failureHandler
+     *     invoked (on a delivery thread) with a subscriber that failed with a FHIRNotificationException
+     */
+    public FHIRNotificationDispatcher(int queueSize, int batchSize, int threads, BackpressurePolicy backpressurePolicy,
+            Path spillDirectory, Consumer<FHIRNotificationSubscriber> failureHandler) {
+        if (queueSize < 1 || batchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("queueSize, batchSize and threads must be greater than 0");
+        }
+        this.queueSize = queueSize;
+        this.batchSize = batchSize;
+        this.backpressurePolicy = backpressurePolicy;
+        this.spillDirectory = spillDirectory;
+        this.failureHandler = failureHandler;
+        this.executor = Executors.newFixedThreadPool(threads, new DispatcherThreadFactory());
+        if (backpressurePolicy == BackpressurePolicy.SPILL) {
+            reportLeftoverSpillFiles();
+        }
+    }
+
+    /**
+     * Warn about spill files that a previous dispatcher left behind, e.g. because the server was stopped while
+     * events were spilled; those events were never delivered and are not replayed.
+     */
+    private void reportLeftoverSpillFiles() {
+        if (spillDirectory == null || !Files.isDirectory(spillDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*.ndjson")) {
+            for (Path file : files) {
+                log.warning("Found notification spill file '" + file + "' from a previous run; "
+                        + "the events in it were not delivered and will not be replayed");
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to check '" + spillDirectory + "' for leftover notification spill files", e);
+        }
+    }
+
+    /**
+     * Start delivering events to the passed subscriber
+     */
+    public void addSubscriber(FHIRNotificationSubscriber subscriber) {
+        queues.computeIfAbsent(subscriber, SubscriberQueue::new);
+    }
+
+    /**
+     * Stop delivering events to the passed subscriber; events still queued for it are discarded
+     */
+    public void removeSubscriber(FHIRNotificationSubscriber subscriber) {
+        SubscriberQueue queue = queues.remove(subscriber);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Queue the event for delivery to every subscriber
+     */
+    public void dispatch(FHIRNotificationEvent event) {
+        for (SubscriberQueue queue : queues.values()) {
+            queue.offer(event);
+        }
+    }
+
+    /**
+     * Stop accepting events and wait for the queued events to be delivered
+     *
+     * @param timeout
+     *     the maximum time to wait
+     * @param unit
+     *     the unit of the timeout
+     * @return
+     *     true if all queued events were delivered within the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        stopped = true;
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination(timeout, unit);
+        if (!terminated) {
+            log.warning("Notification dispatcher shut down with " + getQueueDepth() + " undelivered events");
+            executor.shutdownNow();
+        }
+        for (SubscriberQueue queue : queues.values()) {
+            queue.discardSpill();
+        }
+        return terminated;
+    }
+
+    /**
+     * @return true once the dispatcher no longer accepts events
+     */
+    public boolean isShutdown() {
+        return stopped || executor.isShutdown();
+    }
+
+    /**
+     * @return the total number of events waiting in subscriber queues
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (SubscriberQueue queue : queues.values()) {
+            depth += queue.events.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of events waiting in each subscriber's queue, keyed by subscriber queue name
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (SubscriberQueue queue : queues.values()) {
+            depths.put(queue.name, queue.events.size());
+        }
+        return Collections.unmodifiableMap(depths);
+    }
+
+    /**
+     * @return the number of events delivered to subscribers
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * @return the number of events discarded because a subscriber's queue was full or the dispatcher was shut down
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of events written to spill files because a subscriber's queue was full
+     */
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * The queue of a single subscriber; at most one delivery thread drains it at a time.
+     */
+    private class SubscriberQueue implements Runnable {
+        private final FHIRNotificationSubscriber subscriber;
+        private final String name;
+        private final BlockingQueue<FHIRNotificationEvent> events;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed = false;
+
+        // spill state, guarded by spillLock
+        private final Object spillLock = new Object();
+        private BufferedWriter spillWriter = null;
+        private int spillPending = 0;
+
+        private SubscriberQueue(FHIRNotificationSubscriber subscriber) {
+            this.subscriber = subscriber;
+            String className = subscriber.getClass().getSimpleName();
+            this.name = (className.isEmpty() ? "subscriber" : className) + "-" + queueCounter.incrementAndGet();
+            this.events = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        private void offer(FHIRNotificationEvent event) {
+            if (closed) {
+                return;
+            }
+            if (isShutdown()) {
+                drop(event, "the dispatcher is shut down");
+                return;
+            }
+            switch (backpressurePolicy) {
+            case BLOCK:
+                try {
+                    while (!events.offer(event, 1, TimeUnit.SECONDS)) {
+                        if (closed) {
+                            return;
+                        }
+                        if (isShutdown()) {
+                            // nobody is left to drain the queue
+                            drop(event, "the dispatcher is shut down");
+                            return;
+                        }
+                        schedule();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.increment();
+                    return;
+                }
+                break;
+            case SPILL:
+                // once events have been spilled, keep spilling until the spill file is replayed, to preserve order
+                if (isSpillPending() || !events.offer(event)) {
+                    spill(event);
+                }
+                break;
+            case DROP:
+            default:
+                if (!events.offer(event)) {
+                    drop(event, "the queue is full");
+                    return;
+                }
+                break;
+            }
+            schedule();
+        }
+
+        private void drop(FHIRNotificationEvent event, String reason) {
+            droppedCount.increment();
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Notification queue '" + name + "': " + reason + "; dropped event " + event);
+            }
+        }
+
+        private void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    // the dispatcher is shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<FHIRNotificationEvent> batch = new ArrayList<>(batchSize);
+                while (!closed) {
+                    if (events.drainTo(batch, batchSize) == 0) {
+                        if (!replaySpill()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    deliver(batch);
+                    batch.clear();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // an event may have arrived after the queue was found empty
+            if (!events.isEmpty() || isSpillPending()) {
+                schedule();
+            }
+        }
+
+        private void deliver(List<FHIRNotificationEvent> batch) {
+            try {
+                subscriber.notifyBatch(batch);
+                deliveredCount.add(batch.size());
+            } catch (FHIRNotificationException e) {
+                log.log(Level.WARNING, FHIRNotificationDispatcher.class.getName() + ": unable to publish event", e);
+                close();
+                failureHandler.accept(subscriber);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, FHIRNotificationDispatcher.class.getName() + ": unexpected error publishing "
+                        + batch.size() + " events to '" + name + "'", e);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            events.clear();
+            synchronized (spillLock) {
+                closeSpillWriter();
+                if (spillDirectory != null) {
+                    deleteQuietly(spillFile());
+                }
+                spillPending = 0;
+            }
+        }
+
+        /**
+         * Delete the spill file of a stopped dispatcher; its events can no longer be delivered
+         */
+        private void discardSpill() {
+            synchronized (spillLock) {
+                if (spillPending > 0) {
+                    log.warning("Notification queue '" + name + "' shut down with " + spillPending
+                            + " spilled events; dropped them");
+                    droppedCount.add(spillPending);
+                }
+                closeSpillWriter();
+                if (spillDirectory != null) {
+                    deleteQuietly(spillFile());
+                }
+                spillPending = 0;
+            }
+        }
+
+        private boolean isSpillPending() {
+            synchronized (spillLock) {
+                return spillPending > 0;
+            }
+        }
+
+        private Path spillFile() {
+            return spillDirectory.resolve(spillPrefix + "-" + name + ".ndjson");
+        }
+
+        private void spill(FHIRNotificationEvent event) {
+            synchronized (spillLock) {
+                try {
+                    if (spillWriter == null) {
+                        Files.createDirectories(spillDirectory);
+                        spillWriter = Files.newBufferedWriter(spillFile(), StandardCharsets.UTF_8,
+                                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    }
+                    spillWriter.write(FHIRNotificationUtil.toJsonString(event, true));
+                    spillWriter.newLine();
+                    spillPending++;
+                    spilledCount.increment();
+                } catch (Exception e) {
+                    droppedCount.increment();
+                    log.log(Level.WARNING, "Unable to spill notification event for '" + name + "'; dropped event " + event, e);
+                }
+            }
+        }
+
+        /**
+         * Deliver the events of the spill file, if any
+         *
+         * @return true if events were replayed
+         */
+        private boolean replaySpill() {
+            Path replayFile;
+            synchronized (spillLock) {
+                if (spillPending == 0) {
+                    return false;
+                }
+                closeSpillWriter();
+                replayFile = spillDirectory.resolve(spillPrefix + "-" + name + ".replay.ndjson");
+                try {
+                    Files.move(spillFile(), replayFile, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Unable to replay spill file for '" + name + "'; dropped " + spillPending + " events", e);
+                    droppedCount.add(spillPending);
+                    spillPending = 0;
+                    return false;
+                }
+                spillPending = 0;
+            }
+
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                List<FHIRNotificationEvent> batch = new ArrayList<>(batchSize);
+                String line;
+                while (!closed && (line = reader.readLine()) != null) {
+                    try {
+                        batch.add(FHIRNotificationUtil.fromJsonString(line));
+                    } catch (Exception e) {
+                        droppedCount.increment();
+                        log.log(Level.WARNING, "Unable to read spilled notification event for '" + name + "'", e);
+                    }
+                    if (batch.size() == batchSize) {
+                        deliver(batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty() && !closed) {
+                    deliver(batch);
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to replay spill file for '" + name + "'", e);
+            } finally {
+                deleteQuietly(replayFile);
+            }
+            return true;
+        }
+
+        private void closeSpillWriter() {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.close();
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Unable to close spill file for '" + name + "'", e);
+                }
+                spillWriter = null;
+            }
+        }
+
+        private void deleteQuietly(Path file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to delete " + file, e);
+            }
+        }
+    }
+
+    private static class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "fhir-notification-dispatcher-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -15,6 +15,10 @@ public class FHIRNotificationEvent {
     private String resourceId = null;
     private Resource resource = null;
 
+    // the serialized forms of this event, computed once and shared by all subscribers; reset when the event changes
+    private volatile String jsonString = null;
+    private volatile String jsonStringWithResource = null;
+
     public FHIRNotificationEvent() {
     }
 
@@ -24,6 +28,7 @@ public class FHIRNotificationEvent {
 
     public void setResourceId(String resourceId) {
         this.resourceId = resourceId;
+        resetJsonStrings();
     }
 
     public String getLastUpdated() {
@@ -32,6 +37,7 @@ public class FHIRNotificationEvent {
 
     public void setLastUpdated(String lastUpdated) {
         this.lastUpdated = lastUpdated;
+        resetJsonStrings();
     }
 
     public String getLocation() {
@@ -40,6 +46,7 @@ public class FHIRNotificationEvent {
 
     public void setLocation(String location) {
         this.location = location;
+        resetJsonStrings();
     }
 
     public String getOperationType() {
@@ -48,6 +55,7 @@ public class FHIRNotificationEvent {
 
     public void setOperationType(String operationType) {
         this.operationType = operationType;
+        resetJsonStrings();
     }
 
     @Override
@@ -68,5 +76,34 @@ public class FHIRNotificationEvent {
 
     public void setResource(Resource resource) {
         this.resource = resource;
+        resetJsonStrings();
+    }
+
+    /**
+     * @param includeResource whether the serialized form includes the resource
+     * @return the cached serialized form of this event, or null if it has not been serialized yet
+     * @see com.ibm.fhir.notification.util.FHIRNotificationUtil#toJsonString(FHIRNotificationEvent, boolean)
+     */
+    public String getJsonString(boolean includeResource) {
+        return includeResource ? jsonStringWithResource : jsonString;
+    }
+
+    /**
+     * Cache the serialized form of this event
+     *
+     * @param includeResource whether the serialized form includes the resource
+     * @param jsonString the serialized form
+     */
+    public void setJsonString(boolean includeResource, String jsonString) {
+        if (includeResource) {
+            this.jsonStringWithResource = jsonString;
+        } else {
+            this.jsonString = jsonString;
+        }
+    }
+
+    private void resetJsonStrings() {
+        jsonString = null;
+        jsonStringWithResource = null;
     }
 }
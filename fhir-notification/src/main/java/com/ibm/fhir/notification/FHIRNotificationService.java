@@ -6,16 +6,20 @@
 
 package com.ibm.fhir.notification;
 
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.notification.FHIRNotificationDispatcher.BackpressurePolicy;
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptor;
@@ -31,6 +35,14 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
     private static final FHIRNotificationService INSTANCE = new FHIRNotificationService();
     private Set<String> includedResourceTypes = Collections.synchronizedSortedSet(new TreeSet<String>());
 
+    private static final int DEFAULT_ASYNC_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_ASYNC_BATCH_SIZE = 100;
+    private static final int DEFAULT_ASYNC_THREADS = 2;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // null when events are delivered synchronously on the publishing thread
+    private FHIRNotificationDispatcher dispatcher;
+
     private FHIRNotificationService() {
         log.entering(this.getClass().getName(), "FHIRNotificationService");
         try {
@@ -38,6 +50,7 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
         // interceptor methods to trigger the 'publish' of the notification events.
         FHIRPersistenceInterceptorMgr.getInstance().addPrioritizedInterceptor(this);
         initNotificationResourceTypes();
+        initDispatcher();
         } catch (Throwable t) {
             throw new RuntimeException("Unexpected error during initialization.", t);
         }
@@ -57,6 +70,26 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
                 + (includedResourceTypes.isEmpty() ? "ALL" : "\n" + includedResourceTypes.toString()));
     }
 
+    private void initDispatcher() throws Exception {
+        PropertyGroup fhirConfig = FHIRConfiguration.getInstance().loadConfiguration();
+        if (fhirConfig == null || !fhirConfig.getBooleanProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_ENABLED, Boolean.FALSE)) {
+            log.fine("Notification events will be published synchronously");
+            return;
+        }
+        int queueSize = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE, DEFAULT_ASYNC_QUEUE_SIZE);
+        int batchSize = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_BATCH_SIZE, DEFAULT_ASYNC_BATCH_SIZE);
+        int threads = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_THREADS, DEFAULT_ASYNC_THREADS);
+        BackpressurePolicy backpressurePolicy = BackpressurePolicy.from(
+                fhirConfig.getStringProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_BACKPRESSURE, "block"));
+        String spillDirectory = fhirConfig.getStringProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_SPILL_DIRECTORY,
+                Paths.get(System.getProperty("java.io.tmpdir"), "fhir-notifications").toString());
+
+        dispatcher = new FHIRNotificationDispatcher(queueSize, batchSize, threads, backpressurePolicy,
+                Paths.get(spillDirectory), this::unsubscribe);
+        log.fine("Notification events will be published asynchronously; queueSize=" + queueSize + ", batchSize=" + batchSize
+                + ", threads=" + threads + ", backpressure=" + backpressurePolicy);
+    }
+
     public static FHIRNotificationService getInstance() {
         return INSTANCE;
     }
@@ -68,6 +101,11 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
      */
     public void publish(FHIRNotificationEvent event) {
         log.entering(this.getClass().getName(), "publish");
+        if (dispatcher != null) {
+            dispatcher.dispatch(event);
+            log.exiting(this.getClass().getName(), "publish");
+            return;
+        }
         for (FHIRNotificationSubscriber subscriber : subscribers) {
             try {
                 subscriber.notify(event);
@@ -89,6 +127,9 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
         try {
             if (!subscribers.contains(subscriber)) {
                 subscribers.add(subscriber);
+                if (dispatcher != null) {
+                    dispatcher.addSubscriber(subscriber);
+                }
             }
         } finally {
             log.exiting(this.getClass().getName(), "subscribe");
@@ -106,11 +147,37 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
             if (subscribers.contains(subscriber)) {
                 subscribers.remove(subscriber);
             }
+            if (dispatcher != null) {
+                dispatcher.removeSubscriber(subscriber);
+            }
         } finally {
             log.exiting(this.getClass().getName(), "unsubscribe");
         }
     }
 
+    /**
+     * Deliver the events that are still queued for asynchronous publication, waiting up to 30 seconds
+     */
+    public void shutdown() {
+        log.entering(this.getClass().getName(), "shutdown");
+        try {
+            if (dispatcher != null) {
+                dispatcher.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.exiting(this.getClass().getName(), "shutdown");
+        }
+    }
+
+    /**
+     * @return the dispatcher used for asynchronous publication, or null if events are published synchronously
+     */
+    public FHIRNotificationDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Check if this subscriber has subscribed to this service
      *
@@ -1,11 +1,13 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.notification;
 
+import java.util.List;
+
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 
 public interface FHIRNotificationSubscriber {
@@ -15,4 +17,17 @@ public interface FHIRNotificationSubscriber {
      * @throws FHIRNotificationException
      */
     void notify(FHIRNotificationEvent event) throws FHIRNotificationException;
+
+    /**
+     * Notify subscriber of a batch of events, in the order in which they were published.
+     * The default implementation calls {@link #notify(FHIRNotificationEvent)} for each event; subscribers that can
+     * hand a batch to their broker more efficiently may override it.
+     * @param events
+     * @throws FHIRNotificationException
+     */
+    default void notifyBatch(List<FHIRNotificationEvent> events) throws FHIRNotificationException {
+        for (FHIRNotificationEvent event : events) {
+            notify(event);
+        }
+    }
 }
@@ -17,6 +17,11 @@ import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 
 import com.ibm.fhir.exception.FHIRException;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRJsonParser;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.JsonSupport;
 import com.ibm.fhir.notification.FHIRNotificationEvent;
 
@@ -38,8 +43,35 @@ public class FHIRNotificationUtil {
         }
     }
     
+    /**
+     * Deserializes a notification event, including its resource (if present), from a JSON string
+     * produced by {@link #toJsonString(FHIRNotificationEvent, boolean)}.
+     * @param jsonString the serialized message
+     * @return the notification event
+     * @throws FHIRException if the message or its resource cannot be parsed
+     */
+    public static FHIRNotificationEvent fromJsonString(String jsonString) throws FHIRException {
+        try (JsonReader reader = JSON_READER_FACTORY.createReader(new StringReader(jsonString))) {
+            JsonObject jsonObject = reader.readObject();
+            FHIRNotificationEvent event = new FHIRNotificationEvent();
+            event.setOperationType(jsonObject.getString("operationType"));
+            event.setLocation(jsonObject.getString("location"));
+            event.setLastUpdated(jsonObject.getString("lastUpdated"));
+            event.setResourceId(jsonObject.getString("resourceId"));
+            if (jsonObject.containsKey("resource")) {
+                FHIRJsonParser parser = FHIRParser.parser(Format.JSON).as(FHIRJsonParser.class);
+                Resource resource = parser.parse(jsonObject.getJsonObject("resource"));
+                event.setResource(resource);
+            }
+            return event;
+        } catch (JsonException | FHIRParserException e) {
+            throw new FHIRException("Failed to parse notification event", e);
+        }
+    }
+
     /**
      * Serializes the notification event into a JSON string.
+     * The result is cached on the event, so an event published to several subscribers is only serialized once.
      * @param event the FHIRNotificationEvent structure to be serialized
      * @param includeResource a flag that controls whether or not the resource object within
      * the event structure should be included in the serialized message.
@@ -47,6 +79,21 @@ public class FHIRNotificationUtil {
      * @throws FHIRException 
      */
     public static String toJsonString(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
+        String jsonString = event.getJsonString(includeResource);
+        if (jsonString == null) {
+            // serialize each event at most once, even if several subscribers are notified concurrently
+            synchronized (event) {
+                jsonString = event.getJsonString(includeResource);
+                if (jsonString == null) {
+                    jsonString = serialize(event, includeResource);
+                    event.setJsonString(includeResource, jsonString);
+                }
+            }
+        }
+        return jsonString;
+    }
+
+    private static String serialize(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
         JsonObjectBuilder builder = JSON_BUILDER_FACTORY.createObjectBuilder();
         builder.add("lastUpdated", event.getLastUpdated());
         builder.add("location", event.getLocation());
@@ -0,0 +1,212 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.notification.FHIRNotificationDispatcher;
+import com.ibm.fhir.notification.FHIRNotificationDispatcher.BackpressurePolicy;
+import com.ibm.fhir.notification.FHIRNotificationEvent;
+import com.ibm.fhir.notification.FHIRNotificationSubscriber;
+
+/**
+ * Tests the queueing, backpressure and shutdown behavior of the asynchronous notification dispatcher
+ */
+public class FHIRNotificationDispatcherTest {
+
+    @Test
+    public void testOrdering() throws Exception {
+        FHIRNotificationDispatcher dispatcher = new FHIRNotificationDispatcher(1000, 7, 4, BackpressurePolicy.BLOCK, null, s -> { });
+        RecordingSubscriber first = new RecordingSubscriber(true);
+        RecordingSubscriber second = new RecordingSubscriber(true);
+        dispatcher.addSubscriber(first);
+        dispatcher.addSubscriber(second);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            dispatcher.dispatch(event(i));
+            expected.add(Integer.toString(i));
+        }
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+
+        // each subscriber sees the events in publication order
+        assertEquals(first.received, expected);
+        assertEquals(second.received, expected);
+        assertEquals(dispatcher.getDeliveredCount(), 1000);
+        assertEquals(dispatcher.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        FHIRNotificationDispatcher dispatcher = new FHIRNotificationDispatcher(2, 1, 1, BackpressurePolicy.DROP, null, s -> { });
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        dispatcher.addSubscriber(subscriber);
+
+        // the subscriber holds event 0, so events 1 and 2 fill the queue
+        dispatcher.dispatch(event(0));
+        assertTrue(subscriber.started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            dispatcher.dispatch(event(i));
+        }
+        assertEquals(dispatcher.getDroppedCount(), 2);
+
+        subscriber.gate.countDown();
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(subscriber.received, Arrays.asList("0", "1", "2"));
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception {
+        FHIRNotificationDispatcher dispatcher = new FHIRNotificationDispatcher(1, 1, 1, BackpressurePolicy.BLOCK, null, s -> { });
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        dispatcher.addSubscriber(subscriber);
+
+        dispatcher.dispatch(event(0));
+        assertTrue(subscriber.started.await(10, TimeUnit.SECONDS));
+        dispatcher.dispatch(event(1));
+
+        Thread publisher = new Thread(() -> dispatcher.dispatch(event(2)));
+        publisher.start();
+        publisher.join(500);
+        assertTrue(publisher.isAlive(), "publisher should wait for room in the queue");
+
+        subscriber.gate.countDown();
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(subscriber.received, Arrays.asList("0", "1", "2"));
+        assertEquals(dispatcher.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testSpillAndDrain() throws Exception {
+        Path spillDirectory = Files.createTempDirectory("fhir-notification-test");
+        // left behind by a previous run; reported, but neither replayed nor deleted
+        Path leftover = spillDirectory.resolve("leftover.ndjson");
+        Files.write(leftover, Collections.singletonList("{}"), StandardCharsets.UTF_8);
+
+        FHIRNotificationDispatcher dispatcher = new FHIRNotificationDispatcher(1, 2, 1, BackpressurePolicy.SPILL, spillDirectory, s -> { });
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        dispatcher.addSubscriber(subscriber);
+
+        dispatcher.dispatch(event(0));
+        assertTrue(subscriber.started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            dispatcher.dispatch(event(i));
+        }
+        // event 1 is queued, the others are spilled
+        assertEquals(dispatcher.getSpilledCount(), 4);
+        assertEquals(countSpillFiles(spillDirectory), 2);
+
+        subscriber.gate.countDown();
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+
+        // spilled events are replayed after the queued ones, in publication order
+        assertEquals(subscriber.received, Arrays.asList("0", "1", "2", "3", "4", "5"));
+        assertEquals(dispatcher.getDroppedCount(), 0);
+        assertEquals(countSpillFiles(spillDirectory), 1);
+        assertTrue(Files.exists(leftover));
+
+        Files.delete(leftover);
+        Files.delete(spillDirectory);
+    }
+
+    @Test
+    public void testShutdownWhilePublisherIsBlocked() throws Exception {
+        FHIRNotificationDispatcher dispatcher = new FHIRNotificationDispatcher(1, 1, 1, BackpressurePolicy.BLOCK, null, s -> { });
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        dispatcher.addSubscriber(subscriber);
+
+        dispatcher.dispatch(event(0));
+        assertTrue(subscriber.started.await(10, TimeUnit.SECONDS));
+        dispatcher.dispatch(event(1));
+
+        Thread publisher = new Thread(() -> dispatcher.dispatch(event(2)));
+        publisher.start();
+
+        // the subscriber never lets go of event 0, so the queued events cannot be delivered in time
+        assertFalse(dispatcher.shutdown(100, TimeUnit.MILLISECONDS));
+        assertTrue(dispatcher.isShutdown());
+
+        // the blocked publisher gives up instead of waiting for a queue that is no longer drained
+        publisher.join(10000);
+        assertFalse(publisher.isAlive());
+        assertEquals(dispatcher.getDroppedCount(), 1);
+
+        // events published after the shutdown are dropped right away
+        dispatcher.dispatch(event(3));
+        assertEquals(dispatcher.getDroppedCount(), 2);
+
+        subscriber.gate.countDown();
+    }
+
+    private static FHIRNotificationEvent event(int i) {
+        FHIRNotificationEvent event = new FHIRNotificationEvent();
+        event.setOperationType("create");
+        event.setLocation("Patient/" + i + "/_history/1");
+        event.setLastUpdated("2020-01-01T00:00:00Z");
+        event.setResourceId(Integer.toString(i));
+        return event;
+    }
+
+    private static int countSpillFiles(Path spillDirectory) throws Exception {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*.ndjson")) {
+            for (@SuppressWarnings("unused") Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Records the ids of the events it receives; unless it is open, it waits for its gate before recording each event
+     */
+    private static class RecordingSubscriber implements FHIRNotificationSubscriber {
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch gate;
+
+        private RecordingSubscriber(boolean open) {
+            gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        @Override
+        public void notify(FHIRNotificationEvent event) {
+            started.countDown();
+            // like a hung broker connection, ignore interrupts while waiting
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    gate.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event.getResourceId());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,14 +19,18 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
     protected final String path;
     protected final FHIRPathType type;
     protected final FHIRPathSystemValue value;
-    protected final Collection<FHIRPathNode> children;
+    private final Supplier<Collection<FHIRPathNode>> childrenSupplier;
+    private volatile Collection<FHIRPathNode> children;
     
     protected FHIRPathAbstractNode(Builder builder) {
         name = builder.name;
         path = builder.path;
         type = Objects.requireNonNull(builder.type);
         value = builder.value;
-        children = Collections.unmodifiableCollection(builder.children);
+        childrenSupplier = builder.childrenSupplier;
+        if (childrenSupplier == null) {
+            children = Collections.unmodifiableCollection(builder.children);
+        }
     }
     
     @Override
@@ -53,9 +58,25 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
         return value;
     }
     
+    /**
+     * {@inheritDoc}
+     * 
+     * @implNote
+     *     nodes created by a lazy {@link FHIRPathTree} materialize their children on the first call to this method
+     */
     @Override
     public Collection<FHIRPathNode> children() {
-        return children;
+        Collection<FHIRPathNode> result = children;
+        if (result == null) {
+            synchronized (this) {
+                result = children;
+                if (result == null) {
+                    result = Collections.unmodifiableCollection(childrenSupplier.get());
+                    children = result;
+                }
+            }
+        }
+        return result;
     }
     
     @Override
@@ -95,6 +116,7 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
         protected String path;
         protected FHIRPathSystemValue value;
         protected Collection<FHIRPathNode> children = new ArrayList<>();
+        Supplier<Collection<FHIRPathNode>> childrenSupplier;
         
         protected Builder(FHIRPathType type) {
             super();
@@ -135,6 +157,20 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
             return this;
         }
         
+        /**
+         * Defer the creation of child nodes until they are first requested; any children added to this builder
+         * are ignored when a supplier is set
+         * 
+         * @param childrenSupplier
+         *     the supplier of the child nodes
+         * @return
+         *     A reference to this builder instance
+         */
+        Builder lazyChildren(Supplier<Collection<FHIRPathNode>> childrenSupplier) {
+            this.childrenSupplier = childrenSupplier;
+            return this;
+        }
+        
         @Override
         public abstract FHIRPathNode build();
     }
@@ -13,6 +13,7 @@ import java.time.Year;
 import java.time.YearMonth;
 import java.time.ZonedDateTime;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,9 +24,13 @@ import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.Element;
 import com.ibm.fhir.model.type.Quantity;
 import com.ibm.fhir.model.visitor.PathAwareVisitor;
+import com.ibm.fhir.model.visitor.Visitable;
 
 /**
  * A tree of {@link FHIRPathNode} nodes created from a {@link Resource} or an {@link Element}
+ * 
+ * <p>A tree is either fully built up front ({@link #tree(Resource)}) or built lazily ({@link #lazyTree(Resource)}), in which
+ * case the children of each node are only created the first time they are requested.
  */
 public class FHIRPathTree {
     private final FHIRPathNode root;
@@ -33,7 +38,17 @@ public class FHIRPathTree {
     
     private FHIRPathTree(FHIRPathNode root, Map<String, FHIRPathNode> pathNodeMap) {
         this.root = root;
-        this.pathNodeMap = Collections.unmodifiableMap(pathNodeMap);
+        this.pathNodeMap = (pathNodeMap != null) ? Collections.unmodifiableMap(pathNodeMap) : null;
+    }
+    
+    /**
+     * Indicates whether the nodes of this FHIRPathTree are created on demand
+     * 
+     * @return
+     *     true if the nodes of this FHIRPathTree are created on demand, otherwise false
+     */
+    public boolean isLazy() {
+        return pathNodeMap == null;
     }
     
     /**
@@ -53,9 +68,14 @@ public class FHIRPathTree {
      *     the location of the node in the tree
      * @return
      *     the node at the location given by the path parameter if exists, otherwise null
+     * @implNote
+     *     for lazy trees, the nodes along the path are created if they don't already exist
      */
     public FHIRPathNode getNode(String path) {
-        return pathNodeMap.get(path);
+        if (pathNodeMap != null) {
+            return pathNodeMap.get(path);
+        }
+        return findNode(path);
     }
     
     /**
@@ -73,9 +93,43 @@ public class FHIRPathTree {
         
         int index = node.path().lastIndexOf(".");
         if (index != -1) {
-            return pathNodeMap.get(node.path().substring(0, index));
+            return getNode(node.path().substring(0, index));
+        }
+        
+        return null;
+    }
+    
+    private FHIRPathNode findNode(String path) {
+        if (path == null) {
+            return null;
         }
         
+        String rootPath = root.path();
+        if (path.equals(rootPath)) {
+            return root;
+        }
+        if (!path.startsWith(rootPath + ".")) {
+            return null;
+        }
+        
+        FHIRPathNode node = root;
+        int index = rootPath.length();
+        while (node != null && index < path.length()) {
+            int next = path.indexOf(".", index + 1);
+            String childPath = (next != -1) ? path.substring(0, next) : path;
+            node = findChild(node, childPath);
+            index = (next != -1) ? next : path.length();
+        }
+        
+        return node;
+    }
+    
+    private FHIRPathNode findChild(FHIRPathNode node, String childPath) {
+        for (FHIRPathNode child : node.children()) {
+            if (childPath.equals(child.path())) {
+                return child;
+            }
+        }
         return null;
     }
     
@@ -113,15 +167,53 @@ public class FHIRPathTree {
         return new FHIRPathTree(visitor.getRoot(), visitor.getPathNodeMap());
     }
     
+    /**
+     * Static factory method for creating lazy FHIRPathTree instances from a {@link Resource}
+     * 
+     * <p>Only the root node is created up front. Child nodes are created, one level at a time, when a node's children
+     * are first requested (e.g. by a path step, {@link FHIRPathNode#children()} or {@link FHIRPathNode#descendants()}).
+     * 
+     * @param resource
+     *     the resource
+     * @return
+     *     a new lazy FHIRPathTree instance
+     */
+    public static FHIRPathTree lazyTree(Resource resource) {
+        Objects.requireNonNull(resource);
+        
+        LazyBuildingVisitor visitor = new LazyBuildingVisitor(null);
+        resource.accept(visitor);
+        
+        return new FHIRPathTree(visitor.getRoot(), null);
+    }
+    
+    /**
+     * Static factory method for creating lazy FHIRPathTree instances from an {@link Element}
+     * 
+     * @param element
+     *     the element
+     * @return
+     *     a new lazy FHIRPathTree instance
+     * @see #lazyTree(Resource)
+     */
+    public static FHIRPathTree lazyTree(Element element) {
+        Objects.requireNonNull(element);
+        
+        LazyBuildingVisitor visitor = new LazyBuildingVisitor(null);
+        element.accept(visitor);
+        
+        return new FHIRPathTree(visitor.getRoot(), null);
+    }
+    
     private static class BuildingVisitor extends PathAwareVisitor {
-        private Stack<FHIRPathNode.Builder> builderStack = new Stack<>();
-        private FHIRPathNode root;
+        protected Stack<FHIRPathAbstractNode.Builder> builderStack = new Stack<>();
+        protected FHIRPathNode root;
         private Map<String, FHIRPathNode> pathNodeMap = new HashMap<>();
         
-        private void build() {
+        protected void build() {
             String path = getPath();
             
-            FHIRPathNode.Builder builder = builderStack.pop();
+            FHIRPathAbstractNode.Builder builder = builderStack.pop();
             FHIRPathNode node = builder.path(path).build();
             
             pathNodeMap.put(path, node);
@@ -137,7 +229,7 @@ public class FHIRPathTree {
             return pathNodeMap;
         }
         
-        private FHIRPathNode getRoot() {
+        protected FHIRPathNode getRoot() {
             return root;
         }
         
@@ -220,4 +312,78 @@ public class FHIRPathTree {
             builderStack.peek().value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
         }
     }
+    
+    /**
+     * A visitor that builds a single level of the tree: either the root node (when there is no parent path) or the
+     * children of an existing node. Every node built by this visitor creates its own children on demand.
+     */
+    private static class LazyBuildingVisitor extends BuildingVisitor {
+        private final String parentPath;
+        private final int maxDepth;
+        private final Stack<Visitable> visitableStack = new Stack<>();
+        private Collection<FHIRPathNode> children;
+        
+        private LazyBuildingVisitor(String parentPath) {
+            this.parentPath = parentPath;
+            this.maxDepth = (parentPath == null) ? 0 : 1;
+        }
+        
+        private static Collection<FHIRPathNode> children(Visitable visitable, String name, String path) {
+            LazyBuildingVisitor visitor = new LazyBuildingVisitor(path);
+            visitable.accept(name, -1, visitor);
+            return visitor.children;
+        }
+        
+        @Override
+        public boolean preVisit(Element element) {
+            return builderStack.size() <= maxDepth;
+        }
+        
+        @Override
+        public boolean preVisit(Resource resource) {
+            return builderStack.size() <= maxDepth;
+        }
+        
+        @Override
+        protected void build() {
+            String path = getPath();
+            
+            FHIRPathAbstractNode.Builder builder = builderStack.pop();
+            Visitable visitable = visitableStack.pop();
+            
+            if (builderStack.isEmpty() && parentPath != null) {
+                // the node being expanded already exists; only its children are needed
+                children = builder.children;
+                return;
+            }
+            
+            if (parentPath != null) {
+                path = parentPath + path.substring(path.indexOf("."));
+            }
+            
+            String name = builder.name;
+            String nodePath = path;
+            FHIRPathNode node = builder.path(path)
+                    .lazyChildren(() -> children(visitable, name, nodePath))
+                    .build();
+            
+            if (!builderStack.isEmpty()) {
+                builderStack.peek().children(node);
+            } else {
+                root = node;
+            }
+        }
+        
+        @Override
+        protected void doVisitStart(String elementName, int elementIndex, Element element) {
+            super.doVisitStart(elementName, elementIndex, element);
+            visitableStack.push(element);
+        }
+        
+        @Override
+        protected void doVisitStart(String elementName, int elementIndex, Resource resource) {
+            super.doVisitStart(elementName, elementIndex, resource);
+            visitableStack.push(resource);
+        }
+    }
 }
@@ -6,7 +6,6 @@
 
 package com.ibm.fhir.path.evaluator;
 
-import static com.ibm.fhir.core.util.LRUCache.createLRUCache;
 import static com.ibm.fhir.path.FHIRPathDecimalValue.decimalValue;
 import static com.ibm.fhir.path.FHIRPathIntegerValue.integerValue;
 import static com.ibm.fhir.path.FHIRPathStringValue.EMPTY_STRING;
@@ -27,16 +26,9 @@ import static com.ibm.fhir.path.util.FHIRPathUtil.hasQuantityValue;
 import static com.ibm.fhir.path.util.FHIRPathUtil.hasStringValue;
 import static com.ibm.fhir.path.util.FHIRPathUtil.hasSystemValue;
 import static com.ibm.fhir.path.util.FHIRPathUtil.hasTemporalValue;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isCodedElementNode;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isComparableTo;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isFalse;
 import static com.ibm.fhir.path.util.FHIRPathUtil.isQuantityNode;
 import static com.ibm.fhir.path.util.FHIRPathUtil.isSingleton;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isStringElementNode;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isStringValue;
 import static com.ibm.fhir.path.util.FHIRPathUtil.isTrue;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isTypeCompatible;
-import static com.ibm.fhir.path.util.FHIRPathUtil.isUriElementNode;
 import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
 import static com.ibm.fhir.path.util.FHIRPathUtil.unescape;
 
@@ -45,12 +37,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,6 +49,7 @@ import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
 import com.ibm.fhir.model.annotation.Constraint;
 import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.resource.Resource;
@@ -84,6 +74,7 @@ import com.ibm.fhir.path.FHIRPathTree;
 import com.ibm.fhir.path.FHIRPathType;
 import com.ibm.fhir.path.exception.FHIRPathException;
 import com.ibm.fhir.path.function.FHIRPathFunction;
+import com.ibm.fhir.path.util.FHIRPathUtil;
 
 /**
  * A FHIRPath evaluation engine that implements the FHIRPath 2.0.0 <a href="http://hl7.org/fhirpath/N1/">specification</a>
@@ -95,7 +86,7 @@ public class FHIRPathEvaluator {
     public static final Collection<FHIRPathNode> SINGLETON_FALSE = singleton(FHIRPathBooleanValue.FALSE);
 
     private static final int EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES = 512;
-    private static final Map<String, ExpressionContext> EXPRESSION_CONTEXT_CACHE = createLRUCache(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES);
+    private static final BoundedConcurrentCache<String, ExpressionContext> EXPRESSION_CONTEXT_CACHE = new BoundedConcurrentCache<>(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES);
 
     private final EvaluatingVisitor visitor = new EvaluatingVisitor();
 
@@ -255,11 +246,52 @@ public class FHIRPathEvaluator {
         }
     }
 
+    /**
+     * Evaluate a compiled FHIRPath expression using an existing EvaluationContext against a collection of FHIRPath nodes
+     *
+     * <p>This variant skips the expression cache lookup and is intended for clients that compile an expression once
+     * (see {@link #compile(String)}) and evaluate it many times.
+     *
+     * @param evaluationContext
+     *     the evaluation context
+     * @param expressionContext
+     *     the compiled FHIRPath expression (or sub-expression) to evaluate
+     * @param initialContext
+     *     the initial context as a non-null, potentially empty collection of FHIRPath nodes
+     * @return
+     *     the result of evaluation as a collection of FHIRPath nodes
+     * @throws NullPointerException
+     *     if any of the parameters are null
+     * @throws FHIRPathException
+     *     if an exception occurs during evaluation
+     */
+    public Collection<FHIRPathNode> evaluate(EvaluationContext evaluationContext, ExpressionContext expressionContext, Collection<FHIRPathNode> initialContext) throws FHIRPathException {
+        Objects.requireNonNull(evaluationContext);
+        Objects.requireNonNull(expressionContext);
+        Objects.requireNonNull(initialContext);
+        try {
+            evaluationContext.setExternalConstant("context", initialContext);
+            return visitor.evaluate(evaluationContext, expressionContext, initialContext);
+        } catch (Exception e) {
+            throw new FHIRPathException("An error occurred while evaluating expression: " + expressionContext.getText(), e);
+        }
+    }
+
     private static ExpressionContext getExpressionContext(String expr) {
         return EXPRESSION_CONTEXT_CACHE.computeIfAbsent(Objects.requireNonNull(expr), FHIRPathEvaluator::compile);
     }
 
-    private static ExpressionContext compile(String expr) {
+    /**
+     * Compile a FHIRPath expression into its parse tree without using the expression cache
+     *
+     * <p>The resulting parse tree is immutable and can be shared across threads and evaluator instances.
+     *
+     * @param expr
+     *     the FHIRPath expression to compile
+     * @return
+     *     the compiled expression
+     */
+    public static ExpressionContext compile(String expr) {
         FHIRPathLexer lexer = new FHIRPathLexer(CharStreams.fromString(expr));
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         FHIRPathParser parser = new FHIRPathParser(tokens);
@@ -277,13 +309,12 @@ public class FHIRPathEvaluator {
     }
 
     public static class EvaluatingVisitor extends FHIRPathBaseVisitor<Collection<FHIRPathNode>> {
-        private static final String SYSTEM_NAMESPACE = "System";
 
         private static final int IDENTIFIER_CACHE_MAX_ENTRIES = 2048;
-        private static final Map<String, Collection<FHIRPathNode>> IDENTIFIER_CACHE = createLRUCache(IDENTIFIER_CACHE_MAX_ENTRIES);
+        private static final BoundedConcurrentCache<String, Collection<FHIRPathNode>> IDENTIFIER_CACHE = new BoundedConcurrentCache<>(IDENTIFIER_CACHE_MAX_ENTRIES);
 
         private static final int LITERAL_CACHE_MAX_ENTRIES = 128;
-        private static final Map<String, Collection<FHIRPathNode>> LITERAL_CACHE = createLRUCache(LITERAL_CACHE_MAX_ENTRIES);
+        private static final BoundedConcurrentCache<String, Collection<FHIRPathNode>> LITERAL_CACHE = new BoundedConcurrentCache<>(LITERAL_CACHE_MAX_ENTRIES);
 
         private EvaluationContext evaluationContext;
         private final Stack<Collection<FHIRPathNode>> contextStack = new Stack<>();
@@ -315,52 +346,20 @@ public class FHIRPathEvaluator {
                 throw unexpectedNumberOfArguments(arguments.size(), "all");
             }
             ExpressionContext criteria = arguments.get(0);
-            for (FHIRPathNode node : getCurrentContext()) {
-                pushContext(singleton(node));
-                Collection<FHIRPathNode> result = visit(criteria);
-                if (evaluatesToBoolean(result) && isFalse(result)) {
-                    popContext();
-                    return SINGLETON_FALSE;
-                }
-                popContext();
-            }
-            return SINGLETON_TRUE;
+            return FHIRPathUtil.all(getCurrentContext(), input -> visit(input, criteria));
         }
 
         private Collection<FHIRPathNode> as(Collection<ExpressionContext> arguments) {
             if (arguments.size() != 1) {
                 throw unexpectedNumberOfArguments(arguments.size(), "as");
             }
-            Collection<FHIRPathNode> result = new ArrayList<>();
             ExpressionContext typeName = arguments.iterator().next();
             String identifier = typeName.getText().replace("`", "");
             FHIRPathType type = FHIRPathType.from(identifier);
             if (type == null) {
                 throw new IllegalArgumentException(String.format("Argument '%s' cannot be resolved to a valid type identifier", identifier));
             }
-            for (FHIRPathNode node : getCurrentContext()) {
-                FHIRPathType nodeType = node.type();
-                if (SYSTEM_NAMESPACE.equals(type.namespace()) && node.hasValue()) {
-                    nodeType = node.getValue().type();
-                }
-                if (type.isAssignableFrom(nodeType)) {
-                    result.add(node);
-                }
-            }
-            return result;
-        }
-
-        private Set<String> closure(FHIRPathType type) {
-            if (SYSTEM_NAMESPACE.equals(type.namespace())) {
-                return Collections.emptySet();
-            }
-            // compute type name closure
-            Set<String> closure = new HashSet<>();
-            while (!FHIRPathType.FHIR_ANY.equals(type)) {
-                closure.add(type.getName());
-                type = type.baseType();
-            }
-            return closure;
+            return FHIRPathUtil.ofType(getCurrentContext(), type);
         }
 
         private Collection<FHIRPathNode> exists(List<ExpressionContext> arguments) {
@@ -425,23 +424,13 @@ public class FHIRPathEvaluator {
             if (arguments.size() != 1) {
                 throw unexpectedNumberOfArguments(arguments.size(), "ofType");
             }
-            Collection<FHIRPathNode> result = new ArrayList<>();
             ExpressionContext typeName = arguments.get(0);
             String identifier = typeName.getText().replace("`", "");
             FHIRPathType type = FHIRPathType.from(identifier);
             if (type == null) {
                 throw new IllegalArgumentException(String.format("Argument '%s' cannot be resolved to a valid type identifier", identifier));
             }
-            for (FHIRPathNode node : getCurrentContext()) {
-                FHIRPathType nodeType = node.type();
-                if (SYSTEM_NAMESPACE.equals(type.namespace()) && node.hasValue()) {
-                    nodeType = node.getValue().type();
-                }
-                if (type.isAssignableFrom(nodeType)) {
-                    result.add(node);
-                }
-            }
-            return result;
+            return FHIRPathUtil.ofType(getCurrentContext(), type);
         }
 
         private Collection<FHIRPathNode> popContext() {
@@ -495,15 +484,19 @@ public class FHIRPathEvaluator {
                 throw unexpectedNumberOfArguments(arguments.size(), "where");
             }
             ExpressionContext criteria = arguments.get(0);
-            Collection<FHIRPathNode> result = new ArrayList<>();
-            for (FHIRPathNode node : getCurrentContext()) {
-                pushContext(singleton(node));
-                if (isTrue(visit(criteria))) {
-                    result.add(node);
-                }
+            return FHIRPathUtil.where(getCurrentContext(), input -> visit(input, criteria));
+        }
+
+        /**
+         * Visit a parse tree node with the passed collection as the current context
+         */
+        private Collection<FHIRPathNode> visit(Collection<FHIRPathNode> context, ParseTree ctx) {
+            pushContext(context);
+            try {
+                return visit(ctx);
+            } finally {
                 popContext();
             }
-            return result;
         }
 
         @Override
@@ -696,11 +689,10 @@ public class FHIRPathEvaluator {
             Collection<FHIRPathNode> left = visit(ctx.expression(0));
             Collection<FHIRPathNode> right = visit(ctx.expression(1));
 
-            Set<FHIRPathNode> union = new LinkedHashSet<>(left);
-            union.addAll(right);
+            Collection<FHIRPathNode> result = FHIRPathUtil.union(left, right);
 
             indentLevel--;
-            return new ArrayList<>(union);
+            return result;
         }
 
         @Override
@@ -717,29 +709,13 @@ public class FHIRPathEvaluator {
 
             switch (operator) {
             case "or":
-                // Returns false if both operands evaluate to false, true if either operand evaluates to true, and empty ({ }) otherwise:
-                if (evaluatesToBoolean(left) && isTrue(left)) {
-                    // short-circuit evaluation
-                    result = SINGLETON_TRUE;
-                } else {
-                    // evaluate right operand
-                    Collection<FHIRPathNode> right = visit(ctx.expression(1));
-                    if (evaluatesToBoolean(right) && isTrue(right)) {
-                        result = SINGLETON_TRUE;
-                    } else if (evaluatesToBoolean(left) && evaluatesToBoolean(right) &&
-                            isFalse(left) && isFalse(right)) {
-                        result = SINGLETON_FALSE;
-                    }
-                }
+                // the right operand is only evaluated if the left operand does not evaluate to true
+                result = FHIRPathUtil.or(left, () -> visit(ctx.expression(1)));
                 break;
             case "xor":
                 // evaluate right operand
                 Collection<FHIRPathNode> right = visit(ctx.expression(1));
-
-                // Returns true if exactly one of the operands evaluates to true, false if either both operands evaluate to true or both operands evaluate to false, and the empty collection ({ }) otherwise:
-                if (evaluatesToBoolean(left) && evaluatesToBoolean(right)) {
-                    result = ((isTrue(left) || isTrue(right)) && !(isTrue(left) && isTrue(right))) ? SINGLETON_TRUE : SINGLETON_FALSE;
-                }
+                result = FHIRPathUtil.xor(left, right);
                 break;
             }
 
@@ -752,25 +728,11 @@ public class FHIRPathEvaluator {
             debug(ctx);
             indentLevel++;
 
-            Collection<FHIRPathNode> result = empty();
-
             // evaluate left operand
             Collection<FHIRPathNode> left = visit(ctx.expression(0));
 
-            // Returns true if both operands evaluate to true, false if either operand evaluates to false, and the empty collection ({ }) otherwise.
-            if (evaluatesToBoolean(left) && isFalse(left)) {
-                // short-circuit evaluation
-                result = SINGLETON_FALSE;
-            } else {
-                // evaluate right operand
-                Collection<FHIRPathNode> right = visit(ctx.expression(1));
-                if (evaluatesToBoolean(right) && isFalse(right)) {
-                    result = SINGLETON_FALSE;
-                } else if (evaluatesToBoolean(left) && evaluatesToBoolean(right) &&
-                        isTrue(left) && isTrue(right)) {
-                    result = SINGLETON_TRUE;
-                }
-            }
+            // the right operand is only evaluated if the left operand does not evaluate to false
+            Collection<FHIRPathNode> result = FHIRPathUtil.and(left, () -> visit(ctx.expression(1)));
 
             indentLevel--;
             return result;
@@ -790,18 +752,10 @@ public class FHIRPathEvaluator {
 
             switch (operator) {
             case "in":
-                if ((isCodedElementNode(left) || isStringElementNode(left) || isUriElementNode(left)) && isStringValue(right)) {
-                    // For backwards compatibility per: https://jira.hl7.org/projects/FHIR/issues/FHIR-26605
-                    FHIRPathFunction memberOfFunction = FHIRPathFunction.registry().getFunction("memberOf");
-                    result = memberOfFunction.apply(evaluationContext, left, Collections.singletonList(right));
-                } else if (right.containsAll(left)) {
-                    result = SINGLETON_TRUE;
-                }
+                result = FHIRPathUtil.in(evaluationContext, left, right);
                 break;
             case "contains":
-                if (left.containsAll(right)) {
-                    result = SINGLETON_TRUE;
-                }
+                result = FHIRPathUtil.contains(left, right);
                 break;
             }
 
@@ -817,49 +771,9 @@ public class FHIRPathEvaluator {
             Collection<FHIRPathNode> left = visit(ctx.expression(0));
             Collection<FHIRPathNode> right = visit(ctx.expression(1));
 
-            if (!isSingleton(left) || !isSingleton(right)) {
-                indentLevel--;
-                return SINGLETON_FALSE;
-            }
-
-            Collection<FHIRPathNode> result = SINGLETON_FALSE;
-
-            FHIRPathNode leftNode = getSingleton(left);
-            FHIRPathNode rightNode = getSingleton(right);
-
-            if (hasSystemValue(leftNode) && hasSystemValue(rightNode) &&
-                    !isTypeCompatible(getSystemValue(leftNode), getSystemValue(rightNode))) {
-                throw new IllegalArgumentException("Type: '" + leftNode.type().getName() + "' is not compatible with type: '" + rightNode.type().getName() + "'");
-            }
-
             String operator = ctx.getChild(1).getText();
 
-            if (leftNode.isComparableTo(rightNode)) {
-                switch (operator) {
-                case "<=":
-                    if (leftNode.compareTo(rightNode) <= 0) {
-                        result = SINGLETON_TRUE;
-                    }
-                    break;
-                case "<":
-                    if (leftNode.compareTo(rightNode) < 0) {
-                        result = SINGLETON_TRUE;
-                    }
-                    break;
-                case ">":
-                    if (leftNode.compareTo(rightNode) > 0) {
-                        result = SINGLETON_TRUE;
-                    }
-                    break;
-                case ">=":
-                    if (leftNode.compareTo(rightNode) >= 0) {
-                        result = SINGLETON_TRUE;
-                    }
-                    break;
-                }
-            } else {
-                result = empty();
-            }
+            Collection<FHIRPathNode> result = FHIRPathUtil.inequality(left, right, operator);
 
             indentLevel--;
             return result;
@@ -888,36 +802,17 @@ public class FHIRPathEvaluator {
             Collection<FHIRPathNode> left = visit(ctx.expression(0));
             Collection<FHIRPathNode> right = visit(ctx.expression(1));
 
-            if (left.isEmpty() || right.isEmpty()) {
-                indentLevel--;
-                return empty();
-            }
-
-            if (left.size() != right.size()) {
-                indentLevel--;
-                return SINGLETON_FALSE;
-            }
-
-            if (!isComparableTo(left, right)) {
-                indentLevel--;
-                return empty();
-            }
-
             String operator = ctx.getChild(1).getText();
 
             // TODO: "equals" and "equivalent" have different semantics
             switch (operator) {
             case "=":
             case "~":
-                if (left.equals(right)) {
-                    result = SINGLETON_TRUE;
-                }
+                result = FHIRPathUtil.equality(left, right, true);
                 break;
             case "!=":
             case "!~":
-                if (!left.equals(right)) {
-                    result = SINGLETON_TRUE;
-                }
+                result = FHIRPathUtil.equality(left, right, false);
                 break;
             }
 
@@ -930,19 +825,10 @@ public class FHIRPathEvaluator {
             debug(ctx);
             indentLevel++;
 
-            Collection<FHIRPathNode> result = empty();
-
             Collection<FHIRPathNode> left = visit(ctx.expression(0));
             Collection<FHIRPathNode> right = visit(ctx.expression(1));
 
-            // If the left operand evaluates to true, this operator returns the boolean evaluation of the right operand. If the left operand evaluates to false, this operator returns true. Otherwise, this operator returns true if the right operand evaluates to true, and the empty collection ({ }) otherwise.
-            if (evaluatesToBoolean(left) && evaluatesToBoolean(right)) {
-                // !left || right
-                result = (!isTrue(left) || isTrue(right)) ? SINGLETON_TRUE : SINGLETON_FALSE;
-            } else if ((left.isEmpty() && evaluatesToBoolean(right) && isTrue(right)) ||
-                    (evaluatesToBoolean(left) && isFalse(left) && right.isEmpty())) {
-                result = SINGLETON_TRUE;
-            }
+            Collection<FHIRPathNode> result = FHIRPathUtil.implies(left, right);
 
             indentLevel--;
             return result;
@@ -1109,18 +995,7 @@ public class FHIRPathEvaluator {
             Collection<FHIRPathNode> currentContext = getCurrentContext();
             String identifier = getString(visit(ctx.identifier()));
 
-            if (isSingleton(currentContext)) {
-                FHIRPathNode node = getSingleton(currentContext);
-                if (closure(node.type()).contains(identifier)) {
-                    indentLevel--;
-                    return currentContext;
-                }
-            }
-
-            Collection<FHIRPathNode> result = currentContext.stream()
-                    .flatMap(node -> node.children().stream())
-                    .filter(node -> identifier.equals(node.name()))
-                    .collect(Collectors.toList());
+            Collection<FHIRPathNode> result = FHIRPathUtil.getMembers(currentContext, identifier);
 
             indentLevel--;
             return result;
@@ -1344,8 +1219,6 @@ public class FHIRPathEvaluator {
          */
         public EvaluationContext(Resource resource) {
             this(FHIRPathTree.tree(resource));
-            externalConstantMap.put("rootResource", singleton(tree.getRoot()));
-            externalConstantMap.put("resource", singleton(tree.getRoot()));
         }
 
         /**
@@ -1358,8 +1231,22 @@ public class FHIRPathEvaluator {
             this(FHIRPathTree.tree(element));
         }
 
-        private EvaluationContext(FHIRPathTree tree) {
+        /**
+         * Create an evaluation context where the root of the passed tree is the context root.
+         * If the root is a resource node, sets %resource and %rootResource external constants to the root, but these can be overridden.
+         *
+         * <p>Use this constructor with {@link FHIRPathTree#lazyTree(Resource)} when only a small part of the resource will be
+         * evaluated against, so that the rest of the tree is never built.
+         *
+         * @param tree
+         *     the FHIRPath tree
+         */
+        public EvaluationContext(FHIRPathTree tree) {
             this.tree = tree;
+            if (tree != null && tree.getRoot().isResourceNode()) {
+                externalConstantMap.put("rootResource", singleton(tree.getRoot()));
+                externalConstantMap.put("resource", singleton(tree.getRoot()));
+            }
         }
 
         /**
@@ -7,6 +7,8 @@
 package com.ibm.fhir.path.util;
 
 import static com.ibm.fhir.model.util.ModelSupport.FHIR_STRING;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_FALSE;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_TRUE;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 
@@ -26,13 +28,18 @@ import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import com.ibm.fhir.model.patch.exception.FHIRPatchException;
 import com.ibm.fhir.model.type.Code;
@@ -63,9 +70,13 @@ import com.ibm.fhir.path.SimpleTypeInfo;
 import com.ibm.fhir.path.TupleTypeInfo;
 import com.ibm.fhir.path.TupleTypeInfoElement;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 import com.ibm.fhir.path.exception.FHIRPathException;
+import com.ibm.fhir.path.function.FHIRPathFunction;
 
 public final class FHIRPathUtil {
+    private static final String SYSTEM_NAMESPACE = "System";
+
     private static FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
 
     public static final Set<String> STRING_TRUE_VALUES = new HashSet<>(Arrays.asList("true", "t", "yes", "y", "1", "1.0"));
@@ -574,6 +585,235 @@ public final class FHIRPathUtil {
         return (FHIRPathTemporalValue) node.getValue();
     }
 
+    /**
+     * The names of a type and of its base types, which a member invocation on a node of the type matches, or the
+     * empty set for a System type
+     */
+    public static Set<String> getTypeNameClosure(FHIRPathType type) {
+        if (SYSTEM_NAMESPACE.equals(type.namespace())) {
+            return Collections.emptySet();
+        }
+        // compute type name closure
+        Set<String> closure = new HashSet<>();
+        while (!FHIRPathType.FHIR_ANY.equals(type)) {
+            closure.add(type.getName());
+            type = type.baseType();
+        }
+        return closure;
+    }
+
+    /**
+     * The result of a member invocation on a collection: the collection itself if it is a single node whose type
+     * closure contains the identifier, and the children of its nodes with that name otherwise
+     */
+    public static Collection<FHIRPathNode> getMembers(Collection<FHIRPathNode> nodes, String identifier) {
+        if (isSingleton(nodes)) {
+            FHIRPathNode node = getSingleton(nodes);
+            if (getTypeNameClosure(node.type()).contains(identifier)) {
+                return nodes;
+            }
+        }
+        return nodes.stream()
+                .flatMap(node -> node.children().stream())
+                .filter(node -> identifier.equals(node.name()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The nodes of a collection which are of the passed type; for a System type, the type of the value of a node is used
+     */
+    public static Collection<FHIRPathNode> ofType(Collection<FHIRPathNode> nodes, FHIRPathType type) {
+        boolean systemType = SYSTEM_NAMESPACE.equals(type.namespace());
+        Collection<FHIRPathNode> result = new ArrayList<>();
+        for (FHIRPathNode node : nodes) {
+            FHIRPathType nodeType = node.type();
+            if (systemType && node.hasValue()) {
+                nodeType = node.getValue().type();
+            }
+            if (type.isAssignableFrom(nodeType)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The result of the all function, where the criteria are evaluated against each node of the collection in turn
+     */
+    public static Collection<FHIRPathNode> all(Collection<FHIRPathNode> nodes, Function<Collection<FHIRPathNode>, Collection<FHIRPathNode>> criteria) {
+        for (FHIRPathNode node : nodes) {
+            Collection<FHIRPathNode> result = criteria.apply(singleton(node));
+            if (evaluatesToBoolean(result) && isFalse(result)) {
+                return SINGLETON_FALSE;
+            }
+        }
+        return SINGLETON_TRUE;
+    }
+
+    /**
+     * The result of the where function, where the criteria are evaluated against each node of the collection in turn
+     */
+    public static Collection<FHIRPathNode> where(Collection<FHIRPathNode> nodes, Function<Collection<FHIRPathNode>, Collection<FHIRPathNode>> criteria) {
+        Collection<FHIRPathNode> result = new ArrayList<>();
+        for (FHIRPathNode node : nodes) {
+            if (isTrue(criteria.apply(singleton(node)))) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The result of the or operator; the right operand is only evaluated if the left operand does not evaluate to true
+     */
+    public static Collection<FHIRPathNode> or(Collection<FHIRPathNode> left, Supplier<Collection<FHIRPathNode>> rightOperand) {
+        // Returns false if both operands evaluate to false, true if either operand evaluates to true, and empty ({ }) otherwise:
+        if (evaluatesToBoolean(left) && isTrue(left)) {
+            // short-circuit evaluation
+            return SINGLETON_TRUE;
+        }
+        Collection<FHIRPathNode> right = rightOperand.get();
+        if (evaluatesToBoolean(right) && isTrue(right)) {
+            return SINGLETON_TRUE;
+        } else if (evaluatesToBoolean(left) && evaluatesToBoolean(right) &&
+                isFalse(left) && isFalse(right)) {
+            return SINGLETON_FALSE;
+        }
+        return empty();
+    }
+
+    /**
+     * The result of the xor operator
+     */
+    public static Collection<FHIRPathNode> xor(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right) {
+        // Returns true if exactly one of the operands evaluates to true, false if either both operands evaluate to true or both operands evaluate to false, and the empty collection ({ }) otherwise:
+        if (evaluatesToBoolean(left) && evaluatesToBoolean(right)) {
+            return (isTrue(left) != isTrue(right)) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        }
+        return empty();
+    }
+
+    /**
+     * The result of the and operator; the right operand is only evaluated if the left operand does not evaluate to false
+     */
+    public static Collection<FHIRPathNode> and(Collection<FHIRPathNode> left, Supplier<Collection<FHIRPathNode>> rightOperand) {
+        // Returns true if both operands evaluate to true, false if either operand evaluates to false, and the empty collection ({ }) otherwise.
+        if (evaluatesToBoolean(left) && isFalse(left)) {
+            // short-circuit evaluation
+            return SINGLETON_FALSE;
+        }
+        Collection<FHIRPathNode> right = rightOperand.get();
+        if (evaluatesToBoolean(right) && isFalse(right)) {
+            return SINGLETON_FALSE;
+        } else if (evaluatesToBoolean(left) && evaluatesToBoolean(right) &&
+                isTrue(left) && isTrue(right)) {
+            return SINGLETON_TRUE;
+        }
+        return empty();
+    }
+
+    /**
+     * The result of the implies operator
+     */
+    public static Collection<FHIRPathNode> implies(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right) {
+        // If the left operand evaluates to true, this operator returns the boolean evaluation of the right operand. If the left operand evaluates to false, this operator returns true. Otherwise, this operator returns true if the right operand evaluates to true, and the empty collection ({ }) otherwise.
+        if (evaluatesToBoolean(left) && evaluatesToBoolean(right)) {
+            // !left || right
+            return (!isTrue(left) || isTrue(right)) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        } else if ((left.isEmpty() && evaluatesToBoolean(right) && isTrue(right)) ||
+                (evaluatesToBoolean(left) && isFalse(left) && right.isEmpty())) {
+            return SINGLETON_TRUE;
+        }
+        return empty();
+    }
+
+    /**
+     * The result of the equality operators
+     *
+     * @param equals
+     *     true for the "=" operator, false for the "!=" operator
+     */
+    public static Collection<FHIRPathNode> equality(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right, boolean equals) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return empty();
+        }
+        if (left.size() != right.size()) {
+            return SINGLETON_FALSE;
+        }
+        if (!isComparableTo(left, right)) {
+            return empty();
+        }
+        return (left.equals(right) == equals) ? SINGLETON_TRUE : SINGLETON_FALSE;
+    }
+
+    /**
+     * The result of the comparison operators
+     *
+     * @param operator
+     *     one of "&lt;=", "&lt;", "&gt;" or "&gt;="
+     * @throws IllegalArgumentException
+     *     if the operands are singletons with system values of incompatible types
+     */
+    public static Collection<FHIRPathNode> inequality(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right, String operator) {
+        if (!isSingleton(left) || !isSingleton(right)) {
+            return SINGLETON_FALSE;
+        }
+
+        FHIRPathNode leftNode = getSingleton(left);
+        FHIRPathNode rightNode = getSingleton(right);
+
+        if (hasSystemValue(leftNode) && hasSystemValue(rightNode) &&
+                !isTypeCompatible(getSystemValue(leftNode), getSystemValue(rightNode))) {
+            throw new IllegalArgumentException("Type: '" + leftNode.type().getName() + "' is not compatible with type: '" + rightNode.type().getName() + "'");
+        }
+
+        if (!leftNode.isComparableTo(rightNode)) {
+            return empty();
+        }
+
+        int comparison = leftNode.compareTo(rightNode);
+        switch (operator) {
+        case "<=":
+            return (comparison <= 0) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        case "<":
+            return (comparison < 0) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        case ">":
+            return (comparison > 0) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        case ">=":
+            return (comparison >= 0) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        default:
+            return SINGLETON_FALSE;
+        }
+    }
+
+    /**
+     * The result of the in operator
+     */
+    public static Collection<FHIRPathNode> in(EvaluationContext evaluationContext, Collection<FHIRPathNode> left, Collection<FHIRPathNode> right) {
+        if ((isCodedElementNode(left) || isStringElementNode(left) || isUriElementNode(left)) && isStringValue(right)) {
+            // For backwards compatibility per: https://jira.hl7.org/projects/FHIR/issues/FHIR-26605
+            FHIRPathFunction memberOfFunction = FHIRPathFunction.registry().getFunction("memberOf");
+            return memberOfFunction.apply(evaluationContext, left, Collections.singletonList(right));
+        }
+        return right.containsAll(left) ? SINGLETON_TRUE : SINGLETON_FALSE;
+    }
+
+    /**
+     * The result of the contains operator
+     */
+    public static Collection<FHIRPathNode> contains(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right) {
+        return left.containsAll(right) ? SINGLETON_TRUE : SINGLETON_FALSE;
+    }
+
+    /**
+     * The result of the union operator, without duplicates
+     */
+    public static Collection<FHIRPathNode> union(Collection<FHIRPathNode> left, Collection<FHIRPathNode> right) {
+        Set<FHIRPathNode> union = new LinkedHashSet<>(left);
+        union.addAll(right);
+        return new ArrayList<>(union);
+    }
+
     public static String unescape(String s) {
         StringBuilder sb = new StringBuilder();
         int index = 0;
@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathTree;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+
+public class LazyFHIRPathTreeTest {
+    @DataProvider(name = "examples")
+    public static Object[][] examples() {
+        return new Object[][] {
+            { "json/spec/patient-example.json" },
+            { "json/spec/observation-example.json" },
+            { "json/spec/explanationofbenefit-example.json" },
+            { "json/spec/bundle-transaction.json" }
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testLazyTreeMatchesTree(String example) throws Exception {
+        Resource resource = readResource(example);
+
+        FHIRPathTree tree = FHIRPathTree.tree(resource);
+        FHIRPathTree lazyTree = FHIRPathTree.lazyTree(resource);
+
+        assertFalse(tree.isLazy());
+        assertTrue(lazyTree.isLazy());
+
+        assertEquals(describe(lazyTree.getRoot()), describe(tree.getRoot()));
+
+        for (FHIRPathNode node : tree.getRoot().descendants()) {
+            if (node.path() != null) {
+                FHIRPathNode lazyNode = FHIRPathTree.lazyTree(resource).getNode(node.path());
+                assertEquals(lazyNode, node);
+                assertEquals(lazyNode.path(), node.path());
+                assertEquals(lazyTree.getParent(lazyTree.getNode(node.path())), tree.getParent(node));
+            }
+        }
+    }
+
+    @Test
+    public void testLazyTreeEvaluation() throws Exception {
+        Resource resource = readResource("json/spec/explanationofbenefit-example.json");
+
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        EvaluationContext lazyEvaluationContext = new EvaluationContext(FHIRPathTree.lazyTree(resource));
+
+        for (String expr : new String[] {
+                "ExplanationOfBenefit.patient",
+                "ExplanationOfBenefit.item.adjudication.amount.value",
+                "ExplanationOfBenefit.descendants().where(system.exists()).system",
+                "%resource.id",
+                "ExplanationOfBenefit.item.sequence.exists()" }) {
+            Collection<FHIRPathNode> expected = evaluator.evaluate(evaluationContext, expr);
+            Collection<FHIRPathNode> actual = evaluator.evaluate(lazyEvaluationContext, expr);
+            assertEquals(actual, expected, expr);
+        }
+    }
+
+    @Test
+    public void testLazyTreeNodeReuse() throws Exception {
+        Resource resource = readResource("json/spec/patient-example.json");
+
+        FHIRPathTree lazyTree = FHIRPathTree.lazyTree(resource);
+
+        FHIRPathNode node = lazyTree.getNode("Patient.name[0].family");
+        assertSame(lazyTree.getNode("Patient.name[0].family"), node);
+        assertSame(lazyTree.getParent(node), lazyTree.getNode("Patient.name[0]"));
+        assertNull(lazyTree.getNode("Patient.name[42]"));
+        assertNull(lazyTree.getNode("Observation.status"));
+    }
+
+    private static List<String> describe(FHIRPathNode root) {
+        return root.stream()
+                .map(node -> node.name() + "|" + node.path() + "|" + node.type() + "|" + node.getValue())
+                .collect(Collectors.toList());
+    }
+
+    private static Resource readResource(String path) throws Exception {
+        try (Reader reader = ExamplesUtil.resourceReader(path)) {
+            return FHIRParser.parser(Format.JSON).parse(reader);
+        }
+    }
+}
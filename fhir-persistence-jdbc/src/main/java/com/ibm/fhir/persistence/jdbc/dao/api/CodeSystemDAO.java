@@ -1,11 +1,12 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.persistence.jdbc.dao.api;
 
+import java.util.Collection;
 import java.util.Map;
 
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
@@ -46,4 +47,12 @@ public interface CodeSystemDAO {
      */
     Integer readCodeSystemId(String codeSystem) throws FHIRPersistenceDBConnectException, FHIRPersistenceDataAccessException;
 
+    /**
+     * Read the code_system_ids of the given code system names with a single query
+     * @param codeSystems
+     * @return A map containing key=system-name, value=system-id for each of the names that exist
+     * @throws FHIRPersistenceDataAccessException
+     */
+    Map<String,Integer> readCodeSystemIds(Collection<String> codeSystems) throws FHIRPersistenceDataAccessException;
+
 }
\ No newline at end of file
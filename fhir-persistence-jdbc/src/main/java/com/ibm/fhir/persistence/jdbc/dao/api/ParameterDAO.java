@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -7,6 +7,7 @@
 package com.ibm.fhir.persistence.jdbc.dao.api;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.Map;
 
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
@@ -91,7 +92,25 @@ public interface ParameterDAO extends FHIRDbDAO {
     int acquireCodeSystemId(String codeSystemName) throws FHIRPersistenceException;
 
     /**
-     * Adds a code system name / code system id pair to a candidate collection for population into the CodeSystemsCache.
+     * Acquire the ids of those passed parameter names that already exist, using the cache first and a single
+     * database query for the rest. Names that don't exist yet are not added; use {@link #acquireParameterNameId(String)}.
+     * @param parameterNames The names of valid FHIR search parameters.
+     * @return Map A map of parameter name to parameter id, for the names that exist.
+     * @throws FHIRPersistenceException
+     */
+    Map<String, Integer> acquireExistingParameterNameIds(Collection<String> parameterNames) throws FHIRPersistenceException;
+
+    /**
+     * Acquire the ids of those passed code-system names that already exist, using the cache first and a single
+     * database query for the rest. Names that don't exist yet are not added; use {@link #acquireCodeSystemId(String)}.
+     * @param codeSystemNames The names of valid code-systems, as they would be passed to {@link #acquireCodeSystemId(String)}.
+     * @return Map A map of code-system name (as passed) to code-system id, for the names that exist.
+     * @throws FHIRPersistenceException
+     */
+    Map<String, Integer> acquireExistingCodeSystemIds(Collection<String> codeSystemNames) throws FHIRPersistenceException;
+
+    /**
+     * Adds a code system name / code system id pair to a candidate collection for population into {@link com.ibm.fhir.persistence.jdbc.util.NameIdCache#CODE_SYSTEMS}.
      * This pair must be present as a row in the FHIR DB CODE_SYSTEMS table.
      * @param codeSystemName A valid code system name.
      * @param codeSystemId The id corresponding to the code system name.
@@ -100,7 +119,7 @@ public interface ParameterDAO extends FHIRDbDAO {
     void addCodeSystemsCacheCandidate(String codeSystemName, Integer codeSystemId) throws FHIRPersistenceException;
 
     /**
-     * Adds a parameter name / parameter id pair to a candidate collection for population into the ParameterNamesCache.
+     * Adds a parameter name / parameter id pair to a candidate collection for population into {@link com.ibm.fhir.persistence.jdbc.util.NameIdCache#PARAMETER_NAMES}.
      * This pair must be present as a row in the FHIR DB PARAMETER_NAMES table.
      * @param parameterName A valid search or sort parameter name.
      * @param parameterId The id corresponding to the parameter name.
@@ -1,11 +1,12 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.persistence.jdbc.dao.api;
 
+import java.util.Collection;
 import java.util.Map;
 
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
@@ -39,4 +40,12 @@ public interface ParameterNameDAO {
      */
     Integer readParameterNameId(String parameterName) throws FHIRPersistenceDataAccessException;
 
+    /**
+     * Read the parameter_name_ids of the given parameter names with a single query
+     * @param parameterNames  Valid FHIR search parameter names.
+     * @return A map containing key=parameter-name, value=parameter-name-id for each of the names that exist
+     * @throws FHIRPersistenceDataAccessException
+     */
+    Map<String,Integer> readParameterNameIds(Collection<String> parameterNames) throws FHIRPersistenceDataAccessException;
+
 }
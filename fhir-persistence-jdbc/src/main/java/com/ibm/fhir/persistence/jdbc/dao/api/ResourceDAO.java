@@ -7,8 +7,10 @@
 package com.ibm.fhir.persistence.jdbc.dao.api;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
@@ -174,7 +176,7 @@ public interface ResourceDAO extends FHIRDbDAO {
     Integer readResourceTypeId(String parameterName) throws FHIRPersistenceDBConnectException, FHIRPersistenceDataAccessException;
 
     /**
-     * Adds a resource type / resource id pair to a candidate collection for population into the ResourceTypesCache.
+     * Adds a resource type / resource id pair to a candidate collection for population into {@link com.ibm.fhir.persistence.jdbc.util.NameIdCache#RESOURCE_TYPES}.
      * This pair must be present as a row in the FHIR DB RESOURCE_TYPES table.
      * @param resourceType A valid FHIR resource type.
      * @param resourceTypeId The corresponding id for the resource type.
@@ -197,4 +199,39 @@ public interface ResourceDAO extends FHIRDbDAO {
     Resource insert(Resource resource, List<ExtractedParameterValue> parameters, ParameterDAO parameterDao)
             throws FHIRPersistenceException;
 
+    /**
+     * Inserts the passed Resource DTOs and their associated search parameters as a set. Each DTO must be the first
+     * version of a logical resource that the caller found not to exist. If {@link #isBatchInsertSupported()}, JDBC
+     * batches are shared across the resources for the resource and parameter tables, and a logical id that another
+     * transaction has created in the meantime is skipped; otherwise each resource is stored by
+     * {@link #insert(Resource, List, ParameterDAO)}. After insert, the generated logical resource id is set in each
+     * inserted Resource object.
+     * @param resources The Resource Data Transfer Objects
+     * @param parameters The search parameters of each Resource, in the same order as resources
+     * @param parameterDao The Parameter DAO
+     * @return List<Resource> The Resource DTOs that were inserted, in the order they were passed
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     * @throws FHIRPersistenceException
+     */
+    List<Resource> insertAll(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException;
+
+    /**
+     * @return true if {@link #insertAll(List, List, ParameterDAO)} shares JDBC batches across the resources, false if
+     *         it stores the resources one at a time
+     */
+    boolean isBatchInsertSupported();
+
+    /**
+     * Determines which of the passed logical ids of the passed resource type exist in the database.
+     * @param resourceType The name of the FHIR resource type
+     * @param logicalIds The logical ids to check
+     * @return Set<String> The logical ids that exist
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Set<String> readExistingLogicalIds(String resourceType, Collection<String> logicalIds)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
 }
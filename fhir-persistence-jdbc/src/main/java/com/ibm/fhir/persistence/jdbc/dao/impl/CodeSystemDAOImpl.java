@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -36,6 +38,8 @@ public class CodeSystemDAOImpl implements CodeSystemDAO {
     
     private static final String SQL_SELECT_CODE_SYSTEM_ID = "SELECT CODE_SYSTEM_ID FROM CODE_SYSTEMS WHERE CODE_SYSTEM_NAME = ?";
 
+    private static final String SQL_SELECT_CODE_SYSTEM_IDS = "SELECT CODE_SYSTEM_ID, CODE_SYSTEM_NAME FROM CODE_SYSTEMS WHERE CODE_SYSTEM_NAME IN (%s)";
+
     // The JDBC connection used by this DAO instance
     private final Connection connection;
     
@@ -173,4 +177,46 @@ public class CodeSystemDAOImpl implements CodeSystemDAO {
                 
         return result;
     }
+
+    @Override
+    public Map<String, Integer> readCodeSystemIds(Collection<String> codeSystems) throws FHIRPersistenceDataAccessException {
+        final String METHODNAME = "readCodeSystemIds";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Map<String, Integer> result = new HashMap<>();
+        if (codeSystems.isEmpty()) {
+            log.exiting(CLASSNAME, METHODNAME);
+            return result;
+        }
+
+        String errMsg = "Failure retrieving code systems. count=" + codeSystems.size();
+        long dbCallStartTime;
+        double dbCallDuration;
+
+        String stmtString = String.format(SQL_SELECT_CODE_SYSTEM_IDS, String.join(",", Collections.nCopies(codeSystems.size(), "?")));
+        try (PreparedStatement stmt = connection.prepareStatement(stmtString)) {
+            int i = 1;
+            for (String codeSystem : codeSystems) {
+                stmt.setString(i++, codeSystem);
+            }
+            dbCallStartTime = System.nanoTime();
+            ResultSet resultSet = stmt.executeQuery();
+            dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("DB read code systems complete. executionTime=" + dbCallDuration + "ms");
+            }
+
+            while (resultSet.next()) {
+                result.put(resultSet.getString(2), resultSet.getInt(1));
+            }
+        }
+        catch (Throwable e) {
+            throw new FHIRPersistenceDataAccessException(errMsg,e);
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+
+        return result;
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -7,7 +7,10 @@
 package com.ibm.fhir.persistence.jdbc.dao.impl;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,10 +23,8 @@ import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterNameDAO;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
-import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
-import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCacheUpdater;
-import com.ibm.fhir.persistence.jdbc.util.ParameterNamesCache;
-import com.ibm.fhir.persistence.jdbc.util.ParameterNamesCacheUpdater;
+import com.ibm.fhir.persistence.jdbc.util.CacheUpdater;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
 import com.ibm.fhir.persistence.jdbc.util.SqlParameterEncoder;
 
 /**
@@ -40,8 +41,11 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
     private Map<String, Integer> newCodeSystemIds = new HashMap<>();
 
     private boolean runningInTrx = false;
-    private CodeSystemsCacheUpdater csCacheUpdater = null;
-    private ParameterNamesCacheUpdater pnCacheUpdater = null;
+    private CacheUpdater csCacheUpdater = null;
+    private CacheUpdater pnCacheUpdater = null;
+    // the cache maps of the current tenant/datastore, resolved on first use
+    private NameIdCache.IdMap codeSystemIdMap = null;
+    private NameIdCache.IdMap parameterNameIdMap = null;
     private TransactionSynchronizationRegistry trxSynchRegistry;
 
 
@@ -153,7 +157,7 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
     }
 
     /**
-     * Adds a code system name / code system id pair to a candidate collection for population into the CodeSystemsCache.
+     * Adds a code system name / code system id pair to a candidate collection for population into the code systems cache.
      * This pair must be present as a row in the FHIR DB CODE_SYSTEMS table.
      * @param codeSystemName A valid code system name.
      * @param codeSystemId The id corresponding to the code system name.
@@ -164,16 +168,17 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
         final String METHODNAME = "addCodeSystemsCacheCandidate";
         log.entering(CLASSNAME, METHODNAME);
 
-        if (this.runningInTrx && CodeSystemsCache.isEnabled()) {
+        NameIdCache.IdMap idMap = getCodeSystemIdMap();
+        if (this.runningInTrx && idMap != null) {
             if (this.csCacheUpdater == null) {
-                // Register a new CodeSystemsCacheUpdater for this thread/trx, if one hasn't been already registered.
-                this.csCacheUpdater = new CodeSystemsCacheUpdater(CodeSystemsCache.getCacheNameForTenantDatastore(), this.newCodeSystemIds);
+                // Register a new CacheUpdater for this thread/trx, if one hasn't been already registered.
+                this.csCacheUpdater = new CacheUpdater(idMap, this.newCodeSystemIds);
                 try {
                     trxSynchRegistry.registerInterposedSynchronization(csCacheUpdater);
-                    log.fine("Registered CodeSystemsCacheUpdater.");
+                    log.fine("Registered CacheUpdater for " + idMap + ".");
                 }
                 catch(Throwable e) {
-                    FHIRPersistenceException fx = new FHIRPersistenceException("Failure registering CodeSystemsCacheUpdater");
+                    FHIRPersistenceException fx = new FHIRPersistenceException("Failure registering CacheUpdater for " + idMap);
                     throw severe(log, fx, e);
                 }
             }
@@ -185,7 +190,7 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
     }
 
     /**
-     * Adds a parameter name / parameter id pair to a candidate collection for population into the ParameterNamesCache.
+     * Adds a parameter name / parameter id pair to a candidate collection for population into the parameter names cache.
      * This pair must be present as a row in the FHIR DB PARAMETER_NAMES table.
      * @param parameterName A valid search or sort parameter name.
      * @param parameterId The id corresponding to the parameter name.
@@ -196,16 +201,17 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
         final String METHODNAME = "addParameterNamesCacheCandidate";
         log.entering(CLASSNAME, METHODNAME);
 
-        if (this.runningInTrx && ParameterNamesCache.isEnabled()) {
+        NameIdCache.IdMap idMap = getParameterNameIdMap();
+        if (this.runningInTrx && idMap != null) {
             if (this.pnCacheUpdater == null) {
-                // Register a new ParameterNamesCacheUpdater for this thread/trx, if one hasn't been already registered.
-                this.pnCacheUpdater = new ParameterNamesCacheUpdater(ParameterNamesCache.getCacheNameForTenantDatastore(), this.newParameterNameIds);
+                // Register a new CacheUpdater for this thread/trx, if one hasn't been already registered.
+                this.pnCacheUpdater = new CacheUpdater(idMap, this.newParameterNameIds);
                 try {
                     trxSynchRegistry.registerInterposedSynchronization(pnCacheUpdater);
-                    log.fine("Registered ParameterNamesCacheUpdater.");
+                    log.fine("Registered CacheUpdater for " + idMap + ".");
                 }
                 catch(Throwable e) {
-                    FHIRPersistenceException fx = new FHIRPersistenceException("Failure registering ParameterNamesCacheUpdater");
+                    FHIRPersistenceException fx = new FHIRPersistenceException("Failure registering CacheUpdater for " + idMap);
                     throw severe(log, fx, e);
                 }
             }
@@ -231,7 +237,8 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
         boolean acquiredFromCache;
 
         try {
-            parameterNameId = ParameterNamesCache.getParameterNameId(parameterName);
+            NameIdCache.IdMap idMap = getParameterNameIdMap();
+            parameterNameId = (idMap != null) ? idMap.getId(parameterName) : null;
             if (parameterNameId == null) {
                 acquiredFromCache = false;
                 parameterNameId = this.readOrAddParameterNameId(parameterName);
@@ -242,7 +249,7 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
             }
             if (log.isLoggable(Level.FINE)) {
                 log.fine("paramenterName=" + parameterName + "  parameterNameId=" + parameterNameId +
-                          "  acquiredFromCache=" + acquiredFromCache + "  tenantDatastoreCacheName=" + ParameterNamesCache.getCacheNameForTenantDatastore());
+                          "  acquiredFromCache=" + acquiredFromCache + "  cache=" + idMap);
             }
         }
         finally {
@@ -271,7 +278,8 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
             if (myCodeSystemName == null || myCodeSystemName.isEmpty()) {
                 myCodeSystemName = DEFAULT_TOKEN_SYSTEM;
             }
-            codeSystemId = CodeSystemsCache.getCodeSystemId(myCodeSystemName);
+            NameIdCache.IdMap idMap = getCodeSystemIdMap();
+            codeSystemId = (idMap != null) ? idMap.getId(myCodeSystemName) : null;
             if (codeSystemId == null) {
                 acquiredFromCache = false;
                 myCodeSystemName = SqlParameterEncoder.encode(myCodeSystemName);
@@ -283,7 +291,7 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
             }
             if (log.isLoggable(Level.FINE)) {
                 log.fine("codeSystemName=" + myCodeSystemName + "  codeSystemId=" + codeSystemId +
-                          "  acquiredFromCache=" + acquiredFromCache + "  tenantDatastoreCacheName=" + CodeSystemsCache.getCacheNameForTenantDatastore());
+                          "  acquiredFromCache=" + acquiredFromCache + "  cache=" + idMap);
             }
         }
         finally {
@@ -327,4 +335,104 @@ public class ParameterDAOImpl extends FHIRDbDAOImpl implements ParameterDAO {
         }
     }
 
+    @Override
+    public Map<String, Integer> acquireExistingParameterNameIds(Collection<String> parameterNames) throws FHIRPersistenceException {
+        final String METHODNAME = "acquireExistingParameterNameIds";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Map<String, Integer> result = new HashMap<>();
+        Connection connection = null;
+        try {
+            NameIdCache.IdMap idMap = getParameterNameIdMap();
+            List<String> uncached = new ArrayList<>();
+            for (String parameterName : parameterNames) {
+                Integer parameterNameId = (idMap != null) ? idMap.getId(parameterName) : null;
+                if (parameterNameId != null) {
+                    result.put(parameterName, parameterNameId);
+                } else {
+                    uncached.add(parameterName);
+                }
+            }
+
+            if (!uncached.isEmpty()) {
+                connection = this.getConnection();
+                ParameterNameDAO pnd = new ParameterNameDAOImpl(connection);
+                for (Map.Entry<String, Integer> entry : pnd.readParameterNameIds(uncached).entrySet()) {
+                    result.put(entry.getKey(), entry.getValue());
+                    this.addParameterNamesCacheCandidate(entry.getKey(), entry.getValue());
+                }
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("parameterNames=" + parameterNames.size() + "  fromCache=" + (parameterNames.size() - uncached.size())
+                        + "  found=" + result.size() + "  cache=" + idMap);
+            }
+        }
+        finally {
+            this.cleanup(null, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Integer> acquireExistingCodeSystemIds(Collection<String> codeSystemNames) throws FHIRPersistenceException {
+        final String METHODNAME = "acquireExistingCodeSystemIds";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Map<String, Integer> result = new HashMap<>();
+        Connection connection = null;
+        try {
+            NameIdCache.IdMap idMap = getCodeSystemIdMap();
+            // encoded name -> names as passed (null and empty both map to the default system)
+            Map<String, List<String>> uncached = new HashMap<>();
+            for (String codeSystemName : codeSystemNames) {
+                String myCodeSystemName = (codeSystemName == null || codeSystemName.isEmpty()) ? DEFAULT_TOKEN_SYSTEM : codeSystemName;
+                Integer codeSystemId = (idMap != null) ? idMap.getId(myCodeSystemName) : null;
+                if (codeSystemId != null) {
+                    result.put(codeSystemName, codeSystemId);
+                } else {
+                    uncached.computeIfAbsent(SqlParameterEncoder.encode(myCodeSystemName), k -> new ArrayList<>()).add(codeSystemName);
+                }
+            }
+
+            if (!uncached.isEmpty()) {
+                connection = this.getConnection();
+                CodeSystemDAO csd = new CodeSystemDAOImpl(connection);
+                for (Map.Entry<String, Integer> entry : csd.readCodeSystemIds(uncached.keySet()).entrySet()) {
+                    for (String codeSystemName : uncached.get(entry.getKey())) {
+                        result.put(codeSystemName, entry.getValue());
+                    }
+                    this.addCodeSystemsCacheCandidate(entry.getKey(), entry.getValue());
+                }
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("codeSystemNames=" + codeSystemNames.size() + "  found=" + result.size() + "  cache=" + idMap);
+            }
+        }
+        finally {
+            this.cleanup(null, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return result;
+    }
+
+    /**
+     * @return the code systems cache map of the current tenant/datastore, or null if the cache is disabled
+     */
+    private NameIdCache.IdMap getCodeSystemIdMap() {
+        if (this.codeSystemIdMap == null) {
+            this.codeSystemIdMap = NameIdCache.CODE_SYSTEMS.getIdMap();
+        }
+        return this.codeSystemIdMap;
+    }
+
+    /**
+     * @return the parameter names cache map of the current tenant/datastore, or null if the cache is disabled
+     */
+    private NameIdCache.IdMap getParameterNameIdMap() {
+        if (this.parameterNameIdMap == null) {
+            this.parameterNameIdMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+        }
+        return this.parameterNameIdMap;
+    }
 }
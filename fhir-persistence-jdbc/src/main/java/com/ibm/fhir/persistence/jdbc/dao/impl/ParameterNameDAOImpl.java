@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -35,6 +37,8 @@ public class ParameterNameDAOImpl implements ParameterNameDAO {
 
     private static final String SQL_SELECT_PARAMETER_NAME_ID = "SELECT PARAMETER_NAME_ID FROM PARAMETER_NAMES WHERE PARAMETER_NAME = ?";
 
+    private static final String SQL_SELECT_PARAMETER_NAME_IDS = "SELECT PARAMETER_NAME_ID, PARAMETER_NAME FROM PARAMETER_NAMES WHERE PARAMETER_NAME IN (%s)";
+
     private static final String SQL_CALL_ADD_PARAMETER_NAME = "CALL %s.add_parameter_name(?, ?)";
     
     // The JDBC connection to be used by this instance of the DAO
@@ -174,4 +178,46 @@ public class ParameterNameDAOImpl implements ParameterNameDAO {
                 
         return result;
     }
+
+    @Override
+    public Map<String, Integer> readParameterNameIds(Collection<String> parameterNames) throws FHIRPersistenceDataAccessException {
+        final String METHODNAME = "readParameterNameIds";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Map<String, Integer> result = new HashMap<>();
+        if (parameterNames.isEmpty()) {
+            log.exiting(CLASSNAME, METHODNAME);
+            return result;
+        }
+
+        String errMsg = "Failure retrieving parameter names. count=" + parameterNames.size();
+        long dbCallStartTime;
+        double dbCallDuration;
+
+        String stmtString = String.format(SQL_SELECT_PARAMETER_NAME_IDS, String.join(",", Collections.nCopies(parameterNames.size(), "?")));
+        try (PreparedStatement stmt = connection.prepareStatement(stmtString)) {
+            int i = 1;
+            for (String parameterName : parameterNames) {
+                stmt.setString(i++, parameterName);
+            }
+            dbCallStartTime = System.nanoTime();
+            ResultSet resultSet = stmt.executeQuery();
+            dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("DB select parameter_name_ids. executionTime=" + dbCallDuration + "ms");
+            }
+
+            while (resultSet.next()) {
+                result.put(resultSet.getString(2), resultSet.getInt(1));
+            }
+        }
+        catch (Throwable e) {
+            throw new FHIRPersistenceDataAccessException(errMsg,e);
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+
+        return result;
+    }
 }
@@ -52,7 +52,7 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
     private final int batchSize;
 
     // FK to the logical resource for the parameters being added
-    private final long logicalResourceId;
+    private long logicalResourceId;
 
     // Maintainers: remember to close all statements in AutoCloseable#close()
     private final String insertString;
@@ -188,6 +188,16 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         resourceTokens = c.prepareStatement(insertResourceToken);
     }
 
+    /**
+     * Switch to the logical resource for the parameters visited next. Rows already added to a batch keep the
+     * logical resource id they were added with, so one instance can be shared by the inserts of several resources
+     * of the same type.
+     * @param logicalResourceId
+     */
+    public void setLogicalResourceId(long logicalResourceId) {
+        this.logicalResourceId = logicalResourceId;
+    }
+
     /**
      * Look up the normalized id for the parameter, adding it to the parameter_names table if it doesn't yet exist
      * @param parameterName
@@ -21,10 +21,14 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,15 +39,22 @@ import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
 import com.ibm.fhir.persistence.jdbc.JDBCConstants;
+import com.ibm.fhir.persistence.jdbc.dao.api.ICodeSystemCache;
+import com.ibm.fhir.persistence.jdbc.dao.api.IParameterNameCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.dao.api.ResourceDAO;
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
 import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.QuantityParmVal;
 import com.ibm.fhir.persistence.jdbc.dto.Resource;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceFKVException;
-import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCache;
-import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCacheUpdater;
+import com.ibm.fhir.persistence.jdbc.util.CacheUpdater;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
+import com.ibm.fhir.persistence.jdbc.util.QueryTemplateCache;
 import com.ibm.fhir.persistence.jdbc.util.SqlQueryData;
 
 /**
@@ -101,12 +112,26 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
 
     private static final String DB2_PAGINATION_PARMS = "LIMIT ? OFFSET ?";
 
+    private static final String SQL_READ_LOGICAL_IDS = "SELECT LR.LOGICAL_ID FROM %s_LOGICAL_RESOURCES LR WHERE LR.LOGICAL_ID IN (%s)";
+
+    // The max number of logical ids in the IN list of a single SQL_READ_LOGICAL_IDS query
+    private static final int MAX_LOGICAL_IDS_PER_READ = 500;
+
+    // Obtains count values of fhir_sequence in a single round-trip
+    private static final String SQL_NEXT_SEQUENCE_VALUES = "WITH ids (n) AS (SELECT 1 FROM SYSIBM.SYSDUMMY1 UNION ALL SELECT n + 1 FROM ids WHERE n < ?) "
+            + "SELECT NEXT VALUE FOR fhir_sequence FROM ids";
+
+    // The max number of rows accumulated for a given statement by insertAll before the batch is submitted
+    private static final int INSERT_ALL_BATCH_SIZE = 100;
+
     @SuppressWarnings("unused")
     private FHIRPersistenceContext context;
 
     private Map<String, Integer> newResourceTypeIds = new HashMap<>();
     private boolean runningInTrx = false;
-    private ResourceTypesCacheUpdater rtCacheUpdater = null;
+    private CacheUpdater rtCacheUpdater = null;
+    // the resource types cache map of the current tenant/datastore, resolved on first use
+    private NameIdCache.IdMap resourceTypeIdMap = null;
     private TransactionSynchronizationRegistry trxSynchRegistry;
 
     /**
@@ -273,7 +298,9 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         Object[] bindVariables = queryData.getBindVariables().toArray();
 
         try {
+            long start = System.nanoTime();
             resources = this.runQuery(sqlSelect, bindVariables);
+            QueryTemplateCache.INSTANCE.recordExecution(sqlSelect, System.nanoTime() - start);
         } finally {
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -291,7 +318,9 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         Object[] bindVariables = queryData.getBindVariables().toArray();
 
         try {
+            long start = System.nanoTime();
             count = this.runCountQuery(sqlSelectCount, bindVariables);
+            QueryTemplateCache.INSTANCE.recordExecution(sqlSelectCount, System.nanoTime() - start);
         } finally {
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -410,7 +439,9 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             }
             dbCallStartTime = System.nanoTime();
             resultSet = stmt.executeQuery();
-            dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
+            long dbCallNanos = System.nanoTime()-dbCallStartTime;
+            QueryTemplateCache.INSTANCE.recordExecution(queryData.getQueryString(), dbCallNanos);
+            dbCallDuration = dbCallNanos/1e6;
             if (log.isLoggable(Level.FINE)) {
                 log.fine("DB search for ids complete. " + queryData + "  executionTime=" + dbCallDuration + "ms");
             }
@@ -432,7 +463,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
 
 
      /**
-     * Adds a resource type/ resource id pair to a candidate collection for population into the ResourceTypesCache.
+     * Adds a resource type/ resource id pair to a candidate collection for population into the resource types cache.
      * This pair must be present as a row in the FHIR DB RESOURCE_TYPES table.
      * @param resourceType A valid FHIR resource type.
      * @param resourceTypeId The corresponding id for the resource type.
@@ -443,15 +474,16 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         final String METHODNAME = "addResourceTypeCacheCandidate";
         log.entering(CLASSNAME, METHODNAME);
 
-        if (this.runningInTrx && ResourceTypesCache.isEnabled()) {
+        NameIdCache.IdMap idMap = getResourceTypeIdMap();
+        if (this.runningInTrx && idMap != null) {
             if (this.rtCacheUpdater == null) {
-                // Register a new ResourceTypeCacheUpdater for this thread/trx, if one hasn't been already registered.
-                this.rtCacheUpdater = new ResourceTypesCacheUpdater(ResourceTypesCache.getCacheNameForTenantDatastore(), this.newResourceTypeIds);
+                // Register a new CacheUpdater for this thread/trx, if one hasn't been already registered.
+                this.rtCacheUpdater = new CacheUpdater(idMap, this.newResourceTypeIds);
                 try {
                     trxSynchRegistry.registerInterposedSynchronization(rtCacheUpdater);
-                    log.fine("Registered ResourceTypeCacheUpdater.");
+                    log.fine("Registered CacheUpdater for " + idMap + ".");
                 } catch(Throwable e) {
-                    throw new FHIRPersistenceException("Failure registering ResourceTypesCacheUpdater", e);
+                    throw new FHIRPersistenceException("Failure registering CacheUpdater for " + idMap, e);
                 }
             }
             this.newResourceTypeIds.put(resourceType, resourceTypeId);
@@ -461,11 +493,22 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
 
     }
 
+    /**
+     * @return the resource types cache map of the current tenant/datastore, or null if the cache is disabled
+     */
+    protected NameIdCache.IdMap getResourceTypeIdMap() {
+        if (this.resourceTypeIdMap == null) {
+            this.resourceTypeIdMap = NameIdCache.RESOURCE_TYPES.getIdMap();
+        }
+        return this.resourceTypeIdMap;
+    }
+
     protected  Integer getResourceTypeIdFromCaches(String resourceType) {
-        // Get resourceTypeId from ResourceTypesCache first.
-        Integer resourceTypeId = ResourceTypesCache.getResourceTypeId(resourceType);
+        // Get resourceTypeId from the resource types cache first.
+        NameIdCache.IdMap idMap = getResourceTypeIdMap();
+        Integer resourceTypeId = (idMap != null) ? idMap.getId(resourceType) : null;
         // If no found, then get resourceTypeId from local newResourceTypeIds in case this id is already in newResourceTypeIds
-        // but has not been updated to ResourceTypesCache yet. newResourceTypeIds is updated to ResourceTypesCache only when the
+        // but has not been updated to the cache yet. newResourceTypeIds is updated to the cache only when the
         // current transaction is committed.
         if (resourceTypeId == null) {
             resourceTypeId = this.newResourceTypeIds.get(resourceType);
@@ -502,7 +545,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             }
             if (log.isLoggable(Level.FINE)) {
                 log.fine("resourceType=" + resource.getResourceType() + "  resourceTypeId=" + resourceTypeId +
-                         "  acquiredFromCache=" + acquiredFromCache + "  tenantDatastoreCacheName=" + ResourceTypesCache.getCacheNameForTenantDatastore());
+                         "  acquiredFromCache=" + acquiredFromCache + "  cache=" + getResourceTypeIdMap());
             }
 
             // TODO avoid the round-trip and use the configured data schema name
@@ -565,6 +608,358 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
     }
 
 
+    @Override
+    public boolean isBatchInsertSupported() {
+        return false;
+    }
+
+    @Override
+    public List<Resource> insertAll(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException {
+        // Db2 stores each resource through the add_any_resource stored procedure, which takes care of
+        // locking the logical resource, concurrent creates and versions
+        List<Resource> inserted = new ArrayList<>(resources.size());
+        for (int i = 0; i < resources.size(); i++) {
+            inserted.add(this.insert(resources.get(i), parameters.get(i), parameterDao));
+        }
+        return inserted;
+    }
+
+    /**
+     * Implementation of {@link #insertAll(List, List, ParameterDAO)} for the databases which store resources with
+     * plain SQL statements instead of a stored procedure. The logical resources are claimed one by one, which
+     * locks them in the same way as the single resource insert; all other rows are inserted with JDBC batches
+     * shared by the resources of the set.
+     * @param resources
+     * @param parameters
+     * @param parameterDao
+     * @return the Resource DTOs that were inserted
+     * @throws FHIRPersistenceException
+     */
+    protected List<Resource> insertAllBatched(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "insertAllBatched";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Connection connection = null;
+        long dbCallStartTime;
+        double dbCallDuration;
+
+        try {
+            connection = this.getConnection();
+            dbCallStartTime = System.nanoTime();
+
+            Map<String, Integer> resourceTypeIds = new HashMap<>();
+            for (Resource resource : resources) {
+                if (!resourceTypeIds.containsKey(resource.getResourceType())) {
+                    resourceTypeIds.put(resource.getResourceType(), acquireResourceTypeId(resource.getResourceType(), connection));
+                }
+            }
+
+            // Resolve the ids of the parameter names and code systems of the whole set up front
+            Set<String> parameterNames = new HashSet<>();
+            Set<String> codeSystems = new HashSet<>();
+            for (List<ExtractedParameterValue> resourceParameters : parameters) {
+                if (resourceParameters != null) {
+                    collectNames(resourceParameters, parameterNames, codeSystems);
+                }
+            }
+            Map<String, Integer> parameterNameIds = new HashMap<>(readExistingParameterNameIds(parameterNames, parameterDao, connection));
+            Map<String, Integer> codeSystemIds = new HashMap<>(readExistingCodeSystemIds(codeSystems, parameterDao, connection));
+            IParameterNameCache parameterNameDelegate = getParameterNameCache(parameterDao, connection);
+            ICodeSystemCache codeSystemDelegate = getCodeSystemCache(parameterDao, connection);
+            IParameterNameCache parameterNameCache = parameterName -> {
+                Integer id = parameterNameIds.get(parameterName);
+                if (id == null) {
+                    id = parameterNameDelegate.readOrAddParameterNameId(parameterName);
+                    parameterNameIds.put(parameterName, id);
+                }
+                return id;
+            };
+            ICodeSystemCache codeSystemCache = codeSystem -> {
+                Integer id = codeSystemIds.get(codeSystem);
+                if (id == null) {
+                    id = codeSystemDelegate.readOrAddCodeSystem(codeSystem);
+                    codeSystemIds.put(codeSystem, id);
+                }
+                return id;
+            };
+
+            // Each resource needs a logical_resource_id and a resource_id
+            final Connection sequenceConnection = connection;
+            long[] ids = IdBlockAllocator.FHIR_SEQUENCE.nextValues(connection, resources.size() * 2,
+                    count -> nextSequenceValues(sequenceConnection, count));
+
+            // The system-wide logical resources go first, as every other table refers to them. Inserting the row
+            // locks the logical id until the transaction ends; a logical id that another transaction created since
+            // the caller checked is skipped, and left to the caller to update.
+            List<Resource> inserted = new ArrayList<>(resources.size());
+            Map<String, List<Integer>> indicesByType = new LinkedHashMap<>();
+            for (int i = 0; i < resources.size(); i++) {
+                Resource resource = resources.get(i);
+                if (claimLogicalResource(connection, ids[2 * i], resourceTypeIds.get(resource.getResourceType()), resource.getLogicalId())) {
+                    resource.setId(ids[2 * i]);
+                    inserted.add(resource);
+                    // Group the resources by type, as each type has its own set of tables
+                    indicesByType.computeIfAbsent(resource.getResourceType(), k -> new ArrayList<>()).add(i);
+                } else if (log.isLoggable(Level.FINE)) {
+                    log.fine("Logical resource '" + resource.getResourceType() + "/" + resource.getLogicalId() + "' exists already; skipped");
+                }
+            }
+
+            for (Map.Entry<String, List<Integer>> entry : indicesByType.entrySet()) {
+                String tablePrefix = entry.getKey();
+                List<Integer> indices = entry.getValue();
+
+                // These are new logical resources, so current_resource_id can be set right away instead of
+                // being updated after the resource is inserted
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + tablePrefix + "_logical_resources "
+                        + "(logical_resource_id, logical_id, current_resource_id) VALUES (?, ?, ?)")) {
+                    int count = 0;
+                    for (int i : indices) {
+                        stmt.setLong(1, ids[2 * i]);
+                        stmt.setString(2, resources.get(i).getLogicalId());
+                        stmt.setLong(3, ids[2 * i + 1]);
+                        stmt.addBatch();
+                        if (++count == INSERT_ALL_BATCH_SIZE) {
+                            stmt.executeBatch();
+                            count = 0;
+                        }
+                    }
+                    if (count > 0) {
+                        stmt.executeBatch();
+                    }
+                }
+
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + tablePrefix + "_resources "
+                        + "(resource_id, logical_resource_id, version_id, data, last_updated, is_deleted) VALUES (?, ?, ?, ?, ?, ?)")) {
+                    int count = 0;
+                    for (int i : indices) {
+                        Resource resource = resources.get(i);
+                        stmt.setLong(1, ids[2 * i + 1]);
+                        stmt.setLong(2, ids[2 * i]);
+                        stmt.setInt(3, resource.getVersionId());
+                        stmt.setBytes(4, resource.getData());
+                        stmt.setTimestamp(5, resource.getLastUpdated(), UTC);
+                        stmt.setString(6, resource.isDeleted() ? "Y": "N");
+                        stmt.addBatch();
+                        if (++count == INSERT_ALL_BATCH_SIZE) {
+                            stmt.executeBatch();
+                            count = 0;
+                        }
+                    }
+                    if (count > 0) {
+                        stmt.executeBatch();
+                    }
+                }
+
+                // One visitor per resource type, so the parameter batches are shared by all resources of the type
+                try (ParameterVisitorBatchDAO pvd = new ParameterVisitorBatchDAO(connection, null, tablePrefix,
+                        false, ids[2 * indices.get(0)], INSERT_ALL_BATCH_SIZE, parameterNameCache, codeSystemCache)) {
+                    for (int i : indices) {
+                        if (parameters.get(i) != null) {
+                            pvd.setLogicalResourceId(ids[2 * i]);
+                            for (ExtractedParameterValue p: parameters.get(i)) {
+                                p.accept(pvd);
+                            }
+                        }
+                    }
+                }
+            }
+            dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
+
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Successfully inserted " + inserted.size() + " of " + resources.size() + " Resources. resourceTypes="
+                        + indicesByType.keySet() + " executionTime=" + dbCallDuration + "ms");
+            }
+            return inserted;
+        } catch(FHIRPersistenceDBConnectException | FHIRPersistenceDataAccessException e) {
+            throw e;
+        } catch(SQLIntegrityConstraintViolationException e) {
+            FHIRPersistenceFKVException fx = new FHIRPersistenceFKVException("Encountered FK violation while inserting Resources.");
+            throw severe(log, fx, e);
+        } catch(SQLException e) {
+            SQLException batchException = e.getNextException();
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("SQLException encountered while inserting Resources.");
+            throw severe(log, fx, batchException != null ? batchException : e);
+        } catch(Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resources.");
+            throw severe(log, fx, e);
+        } finally {
+            this.cleanup(null, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Insert the system-wide logical resource record of a new logical resource, unless the logical id exists already.
+     * If it is inserted, the caller holds a lock on it until the end of the transaction.
+     * @param connection
+     * @param logicalResourceId the id for the new logical resource
+     * @param resourceTypeId
+     * @param logicalId
+     * @return true if the logical resource was inserted; false if the logical id exists already
+     * @throws SQLException
+     */
+    protected boolean claimLogicalResource(Connection connection, long logicalResourceId, int resourceTypeId, String logicalId)
+            throws SQLException {
+        final String INS = "INSERT INTO logical_resources (logical_resource_id, resource_type_id, logical_id) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(INS)) {
+            stmt.setLong(1, logicalResourceId);
+            stmt.setInt(2, resourceTypeId);
+            stmt.setString(3, logicalId);
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if ("23505".equals(e.getSQLState())) {
+                // another transaction created the logical resource after the caller checked
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Set<String> readExistingLogicalIds(String resourceType, Collection<String> logicalIds)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "readExistingLogicalIds";
+        log.entering(CLASSNAME, METHODNAME);
+
+        Set<String> existingLogicalIds = new HashSet<>();
+        Connection connection = null;
+        long dbCallStartTime;
+        double dbCallDuration;
+
+        try {
+            connection = this.getConnection();
+            dbCallStartTime = System.nanoTime();
+            List<String> remaining = new ArrayList<>(logicalIds);
+            for (int start = 0; start < remaining.size(); start += MAX_LOGICAL_IDS_PER_READ) {
+                List<String> chunk = remaining.subList(start, Math.min(start + MAX_LOGICAL_IDS_PER_READ, remaining.size()));
+                String stmtString = String.format(SQL_READ_LOGICAL_IDS, resourceType, String.join(",", Collections.nCopies(chunk.size(), "?")));
+                try (PreparedStatement stmt = connection.prepareStatement(stmtString)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    ResultSet resultSet = stmt.executeQuery();
+                    while (resultSet.next()) {
+                        existingLogicalIds.add(resultSet.getString(1));
+                    }
+                }
+            }
+            dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("DB read existing logical ids complete. resourceType=" + resourceType + " found=" + existingLogicalIds.size()
+                        + "/" + logicalIds.size() + " executionTime=" + dbCallDuration + "ms");
+            }
+        } catch (FHIRPersistenceDBConnectException e) {
+            throw e;
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure reading existing logical ids.");
+            throw severe(log, fx, e);
+        } finally {
+            this.cleanup(null, connection);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+
+        return existingLogicalIds;
+    }
+
+    /**
+     * Add the names and code systems used by the passed parameters, including the components of composites.
+     */
+    private void collectNames(List<ExtractedParameterValue> parameters, Set<String> parameterNames, Set<String> codeSystems) {
+        for (ExtractedParameterValue parameter : parameters) {
+            parameterNames.add(parameter.getName());
+            if (parameter instanceof TokenParmVal) {
+                codeSystems.add(((TokenParmVal) parameter).getValueSystem());
+            } else if (parameter instanceof QuantityParmVal) {
+                codeSystems.add(((QuantityParmVal) parameter).getValueSystem());
+            } else if (parameter instanceof CompositeParmVal) {
+                collectNames(((CompositeParmVal) parameter).getComponent(), parameterNames, codeSystems);
+            }
+        }
+    }
+
+    /**
+     * Get the id of the passed resource type, creating it if it doesn't exist yet.
+     * @param resourceType
+     * @param connection the connection used by the calling insert
+     * @return the resource type id
+     * @throws Exception
+     */
+    protected int acquireResourceTypeId(String resourceType, Connection connection) throws Exception {
+        Integer resourceTypeId = getResourceTypeIdFromCaches(resourceType);
+        if (resourceTypeId == null) {
+            resourceTypeId = this.readResourceTypeId(resourceType);
+            this.addResourceTypeCacheCandidate(resourceType, resourceTypeId);
+        }
+        return resourceTypeId;
+    }
+
+    /**
+     * Read the next values of fhir_sequence from the database, bypassing the {@link IdBlockAllocator}.
+     * @param connection
+     * @param count the number of values to obtain
+     * @return the values, in the order they were generated
+     * @throws SQLException
+     */
+    protected long[] nextSequenceValues(Connection connection, int count) throws SQLException {
+        long[] values = new long[count];
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_NEXT_SEQUENCE_VALUES)) {
+            stmt.setInt(1, count);
+            ResultSet rs = stmt.executeQuery();
+            int i = 0;
+            while (rs.next() && i < count) {
+                values[i++] = rs.getLong(1);
+            }
+            if (i < count) {
+                throw new IllegalStateException("fhir_sequence returned " + i + " values instead of " + count);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read the ids of the passed parameter names that already exist.
+     * @param parameterNames
+     * @param parameterDao
+     * @param connection
+     * @return a map of parameter name to id
+     * @throws FHIRPersistenceException
+     */
+    protected Map<String, Integer> readExistingParameterNameIds(Collection<String> parameterNames, ParameterDAO parameterDao, Connection connection)
+            throws FHIRPersistenceException {
+        return parameterDao.acquireExistingParameterNameIds(parameterNames);
+    }
+
+    /**
+     * Read the ids of the passed code systems that already exist.
+     * @param codeSystems
+     * @param parameterDao
+     * @param connection
+     * @return a map of code system (as passed) to id
+     * @throws FHIRPersistenceException
+     */
+    protected Map<String, Integer> readExistingCodeSystemIds(Collection<String> codeSystems, ParameterDAO parameterDao, Connection connection)
+            throws FHIRPersistenceException {
+        return parameterDao.acquireExistingCodeSystemIds(codeSystems);
+    }
+
+    /**
+     * @return the cache used to read or add the parameter names that were not found up front
+     */
+    protected IParameterNameCache getParameterNameCache(ParameterDAO parameterDao, Connection connection) {
+        return new ParameterNameCacheAdapter(parameterDao);
+    }
+
+    /**
+     * @return the cache used to read or add the code systems that were not found up front
+     */
+    protected ICodeSystemCache getCodeSystemCache(ParameterDAO parameterDao, Connection connection) {
+        return new CodeSystemCacheAdapter(parameterDao);
+    }
+
     @Override
     public List<Resource> search(String sqlSelect) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "search";
@@ -667,7 +1062,10 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         String sqlSelect = queryData.getQueryString();
         Object[] bindVariables = queryData.getBindVariables().toArray();
         try {
-            return this.runQuery_STR_VALUES(sqlSelect, bindVariables);
+            long start = System.nanoTime();
+            List<String> values = this.runQuery_STR_VALUES(sqlSelect, bindVariables);
+            QueryTemplateCache.INSTANCE.recordExecution(sqlSelect, System.nanoTime() - start);
+            return values;
         } finally {
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -12,6 +12,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import com.ibm.fhir.persistence.jdbc.dao.api.FhirRefSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 
 /**
  * DAO to obtain the next value from FHIR_REF_SEQUENCE
@@ -30,17 +31,30 @@ public class FhirRefSequenceDAOImpl implements FhirRefSequenceDAO {
 
     @Override
     public int nextValue() throws SQLException {
-        int result;
+        return Math.toIntExact(IdBlockAllocator.FHIR_REF_SEQUENCE.nextValue(conn, this::readValues));
+    }
+
+    /**
+     * Read the next values of FHIR_REF_SEQUENCE from the database, bypassing the {@link IdBlockAllocator}
+     * @param count
+     * @return
+     * @throws SQLException
+     */
+    public long[] readValues(int count) throws SQLException {
+        long[] result = new long[count];
         final String SEQ = "VALUES NEXT VALUE FOR fhir_ref_sequence";
-        
+
         try (PreparedStatement stmt = conn.prepareStatement(SEQ)) {
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                result = rs.getInt(1);
-            }
-            else {
-                // not gonna happen
-                throw new IllegalStateException("no value returned from fhir_ref_sequence!");
+            for (int i = 0; i < count; i++) {
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    result[i] = rs.getInt(1);
+                }
+                else {
+                    // not gonna happen
+                    throw new IllegalStateException("no value returned from fhir_ref_sequence!");
+                }
+                rs.close();
             }
         }
 
@@ -12,9 +12,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import com.ibm.fhir.persistence.jdbc.dao.api.FhirSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 
 /**
- * DAO to obtain the next value from FHIR_SEQUENCE
+ * DAO to obtain the next value from FHIR_SEQUENCE, in blocks reserved by the {@link IdBlockAllocator}
  *
  */
 public class FhirSequenceDAOImpl implements FhirSequenceDAO {
@@ -30,17 +31,32 @@ public class FhirSequenceDAOImpl implements FhirSequenceDAO {
 
     @Override
     public long nextValue() throws SQLException {
-        long result;
+        return IdBlockAllocator.FHIR_SEQUENCE.nextValue(conn, this::readValues);
+    }
+
+    /**
+     * Read the next values of FHIR_SEQUENCE from the database, bypassing the {@link IdBlockAllocator}
+     * @param count
+     * @return
+     * @throws SQLException
+     */
+    public long[] readValues(int count) throws SQLException {
+        long[] result = new long[count];
         final String SEQ = "VALUES NEXT VALUE FOR fhir_sequence";
-        
+
+        // Derby can't combine NEXT VALUE FOR with a generated set of rows, but it runs embedded,
+        // so a statement execution per value is cheap
         try (PreparedStatement stmt = conn.prepareStatement(SEQ)) {
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                result = rs.getLong(1);
-            }
-            else {
-                // not gonna happen
-                throw new IllegalStateException("no value returned from fhir_sequence!");
+            for (int i = 0; i < count; i++) {
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    result[i] = rs.getLong(1);
+                }
+                else {
+                    // not gonna happen
+                    throw new IllegalStateException("no value returned from fhir_sequence!");
+                }
+                rs.close();
             }
         }
 
@@ -8,6 +8,8 @@ package com.ibm.fhir.persistence.jdbc.dto;
 
 import java.sql.Timestamp;
 
+import com.ibm.fhir.persistence.jdbc.util.ParameterDelta;
+
 /**
  * This class defines the Data Transfer Object representing a row in the FHIR Resource table.
  */
@@ -20,6 +22,7 @@ public class Resource {
     private Timestamp lastUpdated;
     private byte[] data;
     private boolean deleted;
+    private ParameterDelta parameterDelta;
 
     
     public Resource() {
@@ -81,6 +84,18 @@ public class Resource {
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
     }
+
+    /**
+     * @return the changes to the search parameters of the version this one replaces, or null if all
+     *     search parameters are to be rewritten
+     */
+    public ParameterDelta getParameterDelta() {
+        return parameterDelta;
+    }
+
+    public void setParameterDelta(ParameterDelta parameterDelta) {
+        this.parameterDelta = parameterDelta;
+    }
     
     @Override
     public String toString() {
@@ -7,14 +7,18 @@
 package com.ibm.fhir.persistence.jdbc.impl;
 
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_PARAMETER_DELTA_UPDATES;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ID_BLOCK_SIZE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_PAYLOAD_CODEC;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_PAYLOAD_COMPRESSION_LEVEL;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_SEARCH_ESTIMATED_TOTAL_TTL_SECONDS;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_UPDATE_CREATE_ENABLED;
 import static com.ibm.fhir.model.type.String.string;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants.MAX_NUM_OF_COMPOSITE_COMPONENTS;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -27,6 +31,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -36,11 +43,10 @@ import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.naming.InitialContext;
 import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import javax.transaction.TransactionSynchronizationRegistry;
 import javax.transaction.UserTransaction;
 
@@ -51,7 +57,7 @@ import com.ibm.fhir.core.context.FHIRPagingContext;
 import com.ibm.fhir.database.utils.api.IConnectionProvider;
 import com.ibm.fhir.exception.FHIRException;
 import com.ibm.fhir.model.format.Format;
-import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
 import com.ibm.fhir.model.parser.FHIRJsonParser;
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.resource.OperationOutcome;
@@ -99,15 +105,26 @@ import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceFKVException;
-import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
+import com.ibm.fhir.persistence.jdbc.util.FingerprintCache;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 import com.ibm.fhir.persistence.jdbc.util.JDBCParameterBuildingVisitor;
 import com.ibm.fhir.persistence.jdbc.util.JDBCQueryBuilder;
-import com.ibm.fhir.persistence.jdbc.util.ParameterNamesCache;
-import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCache;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
+import com.ibm.fhir.persistence.jdbc.util.PageToken;
+import com.ibm.fhir.persistence.jdbc.util.ParameterDelta;
+import com.ibm.fhir.persistence.jdbc.util.QuerySegmentAggregatorFactory;
+import com.ibm.fhir.persistence.jdbc.util.SearchCountCache;
 import com.ibm.fhir.persistence.jdbc.util.SqlQueryData;
+import com.ibm.fhir.persistence.payload.GzipPayloadCodec;
+import com.ibm.fhir.persistence.payload.PayloadCodec;
+import com.ibm.fhir.persistence.payload.PayloadCodecRegistry;
+import com.ibm.fhir.persistence.payload.ResourcePayloadConsumer;
 import com.ibm.fhir.persistence.util.FHIRPersistenceUtil;
+import com.ibm.fhir.persistence.util.ResourceFingerprintVisitor;
+import com.ibm.fhir.persistence.util.SaltHash;
 import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.date.DateTimeHandler;
 import com.ibm.fhir.search.parameters.QueryParameter;
@@ -126,6 +143,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
 
     protected static final String TXN_JNDI_NAME = "java:comp/UserTransaction";
     public static final String TRX_SYNCH_REG_JNDI_NAME = "java:comp/TransactionSynchronizationRegistry";
+    private static final int DEFAULT_ESTIMATED_TOTAL_TTL_SECONDS = 60;
 
     private FHIRDbDAO baseDao;
     private ResourceDAO resourceDao;
@@ -137,6 +155,19 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
     protected UserTransaction userTransaction = null;
     protected Boolean updateCreateEnabled = null;
 
+    // The codec used to encode the payload of the resources written by this instance
+    protected PayloadCodec payloadCodec = null;
+    protected int payloadCompressionLevel = -1;
+
+    // How long a search result count may be reused for _total=estimate
+    protected int estimatedTotalTtlSeconds = DEFAULT_ESTIMATED_TOTAL_TTL_SECONDS;
+
+    // Whether an update only rewrites the search parameters which changed since the previous version
+    protected boolean parameterDeltaUpdatesEnabled = false;
+
+    // Whether an update which does not change the resource keeps the current version instead of writing a new one
+    protected boolean skipUnchangedUpdatesEnabled = false;
+
     // only used outside a web container
     private Connection managedConnection;
 
@@ -153,19 +184,34 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             throw new IllegalStateException("Unable to load the default fhir-server-config.json");
         }
         this.updateCreateEnabled = fhirConfig.getBooleanProperty(PROPERTY_UPDATE_CREATE_ENABLED, Boolean.TRUE);
+        this.payloadCodec = PayloadCodecRegistry.getInstance().getCodec(
+                fhirConfig.getStringProperty(PROPERTY_PAYLOAD_CODEC, GzipPayloadCodec.NAME));
+        this.payloadCompressionLevel = fhirConfig.getIntProperty(PROPERTY_PAYLOAD_COMPRESSION_LEVEL, -1);
+        this.estimatedTotalTtlSeconds = fhirConfig.getIntProperty(PROPERTY_SEARCH_ESTIMATED_TOTAL_TTL_SECONDS,
+                DEFAULT_ESTIMATED_TOTAL_TTL_SECONDS);
+        this.parameterDeltaUpdatesEnabled = fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_PARAMETER_DELTA_UPDATES,
+                Boolean.FALSE);
+        this.skipUnchangedUpdatesEnabled = fhirConfig.getBooleanProperty(PROPERTY_JDBC_SKIP_UNCHANGED_UPDATES,
+                Boolean.FALSE);
         this.userTransaction = retrieveUserTransaction(TXN_JNDI_NAME);
 
-        ParameterNamesCache.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE,
+        NameIdCache.PARAMETER_NAMES.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE,
                                        Boolean.TRUE));
-        CodeSystemsCache.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE,
+        NameIdCache.CODE_SYSTEMS.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE,
                                     Boolean.TRUE));
-        ResourceTypesCache.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE,
+        NameIdCache.RESOURCE_TYPES.setEnabled(fhirConfig.getBooleanProperty(PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE,
                                       Boolean.TRUE));
+        int idBlockSize = Math.max(1, fhirConfig.getIntProperty(PROPERTY_JDBC_ID_BLOCK_SIZE,
+                IdBlockAllocator.DEFAULT_BLOCK_SIZE));
+        IdBlockAllocator.FHIR_SEQUENCE.setBlockSize(idBlockSize);
+        IdBlockAllocator.FHIR_REF_SEQUENCE.setBlockSize(idBlockSize);
 
         sharedConnection = this.createConnection();
         this.resourceDao = FHIRResourceDAOFactory.getResourceDAO(sharedConnection, this.getTrxSynchRegistry());
         this.parameterDao = new ParameterDAOImpl(this.getTrxSynchRegistry());
 
+        this.preloadCaches();
+
         log.exiting(CLASSNAME, METHODNAME);
     }
 
@@ -178,6 +224,12 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         log.entering(CLASSNAME, METHODNAME);
 
         this.updateCreateEnabled = Boolean.parseBoolean(configProps.getProperty("updateCreateEnabled"));
+        this.payloadCodec = PayloadCodecRegistry.getInstance().getCodec(configProps.getProperty("payloadCodec", GzipPayloadCodec.NAME));
+        this.payloadCompressionLevel = Integer.parseInt(configProps.getProperty("payloadCompressionLevel", "-1"));
+        this.estimatedTotalTtlSeconds = Integer.parseInt(configProps.getProperty("estimatedTotalTtlSeconds",
+                Integer.toString(DEFAULT_ESTIMATED_TOTAL_TTL_SECONDS)));
+        this.parameterDeltaUpdatesEnabled = Boolean.parseBoolean(configProps.getProperty("parameterDeltaUpdatesEnabled"));
+        this.skipUnchangedUpdatesEnabled = Boolean.parseBoolean(configProps.getProperty("skipUnchangedUpdatesEnabled"));
 
         FHIRDbDAO dao = new FHIRDbDAOImpl(configProps);
 
@@ -198,6 +250,12 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         log.entering(CLASSNAME, METHODNAME);
 
         this.updateCreateEnabled = Boolean.parseBoolean(configProps.getProperty("updateCreateEnabled"));
+        this.payloadCodec = PayloadCodecRegistry.getInstance().getCodec(configProps.getProperty("payloadCodec", GzipPayloadCodec.NAME));
+        this.payloadCompressionLevel = Integer.parseInt(configProps.getProperty("payloadCompressionLevel", "-1"));
+        this.estimatedTotalTtlSeconds = Integer.parseInt(configProps.getProperty("estimatedTotalTtlSeconds",
+                Integer.toString(DEFAULT_ESTIMATED_TOTAL_TTL_SECONDS)));
+        this.parameterDeltaUpdatesEnabled = Boolean.parseBoolean(configProps.getProperty("parameterDeltaUpdatesEnabled"));
+        this.skipUnchangedUpdatesEnabled = Boolean.parseBoolean(configProps.getProperty("skipUnchangedUpdatesEnabled"));
 
         FHIRDbDAO dao = new FHIRDbDAOImpl(cp.getConnection());
 
@@ -214,54 +272,22 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         final String METHODNAME = "create";
         log.entering(CLASSNAME, METHODNAME);
 
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        String logicalId;
-
-        // We need to update the meta in the resource, so we need a modifiable version
-        Resource.Builder resultResourceBuilder = resource.toBuilder();
-
         try {
             // This create() operation is only called by a REST create. If the given resource
             // contains an id, then for R4 we need to ignore it and replace it with our
             // system-generated value. For the update-or-create scenario, see update().
-            // Default version is 1 for a brand new FHIR Resource.
-            int newVersionNumber = 1;
-            logicalId = UUID.randomUUID().toString();
+            String logicalId = UUID.randomUUID().toString();
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Creating new FHIR Resource of type '" + resource.getClass().getSimpleName() + "'");
             }
 
-            // Set the resource id and meta fields.
-            Instant lastUpdated = Instant.now(ZoneOffset.UTC);
-            resultResourceBuilder.id(logicalId);
-            Meta meta = resource.getMeta();
-            Meta.Builder metaBuilder = meta == null ? Meta.builder() : meta.toBuilder();
-            metaBuilder.versionId(Id.of(Integer.toString(newVersionNumber)));
-            metaBuilder.lastUpdated(lastUpdated);
-            resultResourceBuilder.meta(metaBuilder.build());
-
-            // rebuild the resource with updated meta
-            @SuppressWarnings("unchecked")
-            T updatedResource = (T) resultResourceBuilder.build();
-
-            // Create the new Resource DTO instance.
-            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = new com.ibm.fhir.persistence.jdbc.dto.Resource();
-            resourceDTO.setLogicalId(logicalId);
-            resourceDTO.setVersionId(newVersionNumber);
-            Timestamp timestamp = FHIRUtilities.convertToTimestamp(lastUpdated.getValue());
-            resourceDTO.setLastUpdated(timestamp);
-            resourceDTO.setResourceType(updatedResource.getClass().getSimpleName());
-
-            // Serialize and compress the Resource
-            GZIPOutputStream zipStream = new GZIPOutputStream(stream);
-            FHIRGenerator.generator( Format.JSON, false).generate(updatedResource, zipStream);
-            zipStream.finish();
-            resourceDTO.setData(stream.toByteArray());
-            zipStream.close();
+            PreparedResource<T> prepared = prepareNewResource(resource, logicalId);
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = prepared.resourceDTO;
 
             // Persist the Resource DTO.
             this.getResourceDao().setPersistenceContext(context);
-            this.getResourceDao().insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), this.parameterDao);
+            this.getResourceDao().insert(resourceDTO, prepared.parameters, this.parameterDao);
+            cacheFingerprint(prepared.resource);
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -269,7 +295,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
 
             SingleResourceResult.Builder<T> resultBuilder = new SingleResourceResult.Builder<T>()
                     .success(true)
-                    .resource(updatedResource);
+                    .resource(prepared.resource);
 
             // Add supplemental issues to the OperationOutcome
             if (!supplementalIssues.isEmpty()) {
@@ -298,6 +324,240 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
     }
 
+    @Override
+    public <T extends Resource> List<SingleResourceResult<T>> createAll(FHIRPersistenceContext context, List<T> resources) throws FHIRPersistenceException {
+        final String METHODNAME = "createAll";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            // As in create(), any ids in the given resources are replaced with system-generated values
+            List<String> logicalIds = new ArrayList<>(resources.size());
+            for (int i = 0; i < resources.size(); i++) {
+                logicalIds.add(UUID.randomUUID().toString());
+            }
+            List<SingleResourceResult<T>> results = insertAll(context, resources, logicalIds);
+
+            // A generated logical id that somehow exists already gets another try with a new one
+            for (int i = 0; i < resources.size(); i++) {
+                if (results.get(i) == null) {
+                    results.set(i, create(context, resources.get(i)));
+                }
+            }
+            return results;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public <T extends Resource> List<SingleResourceResult<T>> updateAll(FHIRPersistenceContext context, List<T> resources) throws FHIRPersistenceException {
+        final String METHODNAME = "updateAll";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            if (!updateCreateEnabled) {
+                // every resource must exist already, so there's nothing to insert as a set
+                return FHIRPersistence.super.updateAll(context, resources);
+            }
+            if (!this.getResourceDao().isBatchInsertSupported()) {
+                // each resource goes through the stored procedure, which takes care of concurrent creates and versions
+                return FHIRPersistence.super.updateAll(context, resources);
+            }
+
+            // Find out which of the resources don't exist yet
+            Map<String, Set<String>> logicalIdsByType = new LinkedHashMap<>();
+            for (T resource : resources) {
+                if (resource.getId() != null) {
+                    logicalIdsByType.computeIfAbsent(resource.getClass().getSimpleName(), k -> new HashSet<>()).add(resource.getId());
+                }
+            }
+            this.getResourceDao().setPersistenceContext(context);
+            Map<String, Set<String>> existingLogicalIdsByType = new HashMap<>();
+            for (Entry<String, Set<String>> entry : logicalIdsByType.entrySet()) {
+                existingLogicalIdsByType.put(entry.getKey(), this.getResourceDao().readExistingLogicalIds(entry.getKey(), entry.getValue()));
+            }
+
+            // The first occurrence of each new logical id is inserted as part of the set; everything else
+            // (existing resources and repeated ids) is updated one at a time afterwards, in the given order.
+            // This includes the new logical ids that another transaction (e.g. another import partition) creates
+            // between this check and the insert: insertAll skips those, and update() then locks and versions them.
+            List<Integer> newIndices = new ArrayList<>();
+            List<T> newResources = new ArrayList<>();
+            List<String> newLogicalIds = new ArrayList<>();
+            Set<String> claimedKeys = new HashSet<>();
+            for (int i = 0; i < resources.size(); i++) {
+                T resource = resources.get(i);
+                String resourceType = resource.getClass().getSimpleName();
+                if (resource.getId() != null && !existingLogicalIdsByType.get(resourceType).contains(resource.getId())
+                        && claimedKeys.add(resourceType + "/" + resource.getId())) {
+                    newIndices.add(i);
+                    newResources.add(resource);
+                    newLogicalIds.add(resource.getId());
+                }
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Inserting " + newResources.size() + " of " + resources.size() + " resources as a set");
+            }
+
+            List<SingleResourceResult<T>> results = new ArrayList<>(Collections.nCopies(resources.size(), null));
+            List<SingleResourceResult<T>> newResults = insertAll(context, newResources, newLogicalIds);
+            for (int i = 0; i < newIndices.size(); i++) {
+                results.set(newIndices.get(i), newResults.get(i));
+            }
+            for (int i = 0; i < resources.size(); i++) {
+                if (results.get(i) == null) {
+                    T resource = resources.get(i);
+                    results.set(i, update(context, resource.getId(), resource));
+                }
+            }
+            return results;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Stores the passed resources as the first version of new logical resources with the passed logical ids.
+     * All resources that can be prepared are inserted as a set by a single {@link ResourceDAO#insertAll} call;
+     * a resource that fails preparation (e.g. search parameter extraction) gets an unsuccessful result.
+     * A resource whose logical id turned out to exist already is not stored, and its result is left null.
+     */
+    private <T extends Resource> List<SingleResourceResult<T>> insertAll(FHIRPersistenceContext context, List<T> resources, List<String> logicalIds)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "insertAll";
+        log.entering(CLASSNAME, METHODNAME);
+
+        List<SingleResourceResult<T>> results = new ArrayList<>(Collections.nCopies(resources.size(), null));
+        List<Integer> preparedIndices = new ArrayList<>();
+        List<PreparedResource<T>> preparedResources = new ArrayList<>();
+        List<List<OperationOutcome.Issue>> preparedIssues = new ArrayList<>();
+        List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOs = new ArrayList<>();
+        List<List<ExtractedParameterValue>> parameters = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < resources.size(); i++) {
+                int issueCount = supplementalIssues.size();
+                try {
+                    PreparedResource<T> prepared = prepareNewResource(resources.get(i), logicalIds.get(i));
+                    parameters.add(prepared.parameters);
+                    resourceDTOs.add(prepared.resourceDTO);
+                    preparedIndices.add(i);
+                    preparedResources.add(prepared);
+                    preparedIssues.add(new ArrayList<>(supplementalIssues.subList(issueCount, supplementalIssues.size())));
+                }
+                catch(FHIRPersistenceException e) {
+                    results.set(i, new SingleResourceResult.Builder<T>()
+                            .success(false)
+                            .outcome(FHIRUtil.buildOperationOutcome(e, false))
+                            .build());
+                }
+                catch(Throwable e) {
+                    // don't chain the exception to avoid leaking secrets
+                    FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while preparing a resource to be stored.");
+                    log.log(Level.SEVERE, fx.getMessage(), e);
+                    results.set(i, new SingleResourceResult.Builder<T>()
+                            .success(false)
+                            .outcome(FHIRUtil.buildOperationOutcome(fx, false))
+                            .build());
+                }
+            }
+
+            // Persist the Resource DTOs as a set.
+            Set<com.ibm.fhir.persistence.jdbc.dto.Resource> insertedDTOs = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!resourceDTOs.isEmpty()) {
+                this.getResourceDao().setPersistenceContext(context);
+                insertedDTOs.addAll(this.getResourceDao().insertAll(resourceDTOs, parameters, this.parameterDao));
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Persisted " + insertedDTOs.size() + " of " + resourceDTOs.size() + " FHIR Resources as a set");
+                }
+            }
+
+            for (int i = 0; i < preparedIndices.size(); i++) {
+                PreparedResource<T> prepared = preparedResources.get(i);
+                if (!insertedDTOs.contains(prepared.resourceDTO)) {
+                    // the logical id exists already
+                    continue;
+                }
+                cacheFingerprint(prepared.resource);
+                SingleResourceResult.Builder<T> resultBuilder = new SingleResourceResult.Builder<T>()
+                        .success(true)
+                        .resource(prepared.resource);
+
+                // Add supplemental issues to the OperationOutcome
+                if (!preparedIssues.get(i).isEmpty()) {
+                    resultBuilder.outcome(OperationOutcome.builder()
+                        .issue(preparedIssues.get(i))
+                        .build());
+                }
+                results.set(preparedIndices.get(i), resultBuilder.build());
+            }
+
+            return results;
+        }
+        catch(FHIRPersistenceFKVException e) {
+            log.log(Level.SEVERE, this.performCacheDiagnostics());
+            throw e;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Prepares the passed resource to be stored as the first version of a new logical resource: sets its id and meta,
+     * builds the Resource DTO with the encoded payload and extracts the search parameters.
+     * Used by both {@link #create(FHIRPersistenceContext, Resource)} and {@link #insertAll}.
+     * @param resource the resource as passed by the caller
+     * @param logicalId the logical id of the new logical resource
+     * @return the prepared resource
+     * @throws Exception
+     */
+    private <T extends Resource> PreparedResource<T> prepareNewResource(T resource, String logicalId) throws Exception {
+        // Default version is 1 for a brand new FHIR Resource.
+        int newVersionNumber = 1;
+
+        // Set the resource id and meta fields.
+        Instant lastUpdated = Instant.now(ZoneOffset.UTC);
+        Meta meta = resource.getMeta();
+        Meta.Builder metaBuilder = meta == null ? Meta.builder() : meta.toBuilder();
+        metaBuilder.versionId(Id.of(Integer.toString(newVersionNumber)));
+        metaBuilder.lastUpdated(lastUpdated);
+
+        // rebuild the resource with updated meta
+        @SuppressWarnings("unchecked")
+        T updatedResource = (T) resource.toBuilder().id(logicalId).meta(metaBuilder.build()).build();
+
+        // Create the new Resource DTO instance.
+        com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = new com.ibm.fhir.persistence.jdbc.dto.Resource();
+        resourceDTO.setLogicalId(logicalId);
+        resourceDTO.setVersionId(newVersionNumber);
+        Timestamp timestamp = FHIRUtilities.convertToTimestamp(lastUpdated.getValue());
+        resourceDTO.setLastUpdated(timestamp);
+        resourceDTO.setResourceType(updatedResource.getClass().getSimpleName());
+
+        // Serialize and encode the Resource
+        resourceDTO.setData(encodePayload(updatedResource));
+
+        return new PreparedResource<>(updatedResource, resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO));
+    }
+
+    /**
+     * A resource with its id and meta set, ready to be inserted as a new logical resource
+     */
+    private static class PreparedResource<T extends Resource> {
+        private final T resource;
+        private final com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO;
+        private final List<ExtractedParameterValue> parameters;
+
+        private PreparedResource(T resource, com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO, List<ExtractedParameterValue> parameters) {
+            this.resource = resource;
+            this.resourceDTO = resourceDTO;
+            this.parameters = parameters;
+        }
+    }
+
     @Override
     public <T extends Resource> SingleResourceResult<T> update(FHIRPersistenceContext context, String logicalId, T resource)
             throws FHIRPersistenceException {
@@ -305,8 +565,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         log.entering(CLASSNAME, METHODNAME);
 
         Class<? extends Resource> resourceType = resource.getClass();
-        com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO;
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO = null;
 
         // Resources are immutable, so we need a new builder to update it (since R4)
         Resource.Builder resultResourceBuilder = resource.toBuilder();
@@ -314,13 +573,14 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         try {
             // Assume we have no existing resource.
             int existingVersion = 0;
+            Resource existingResource = null;
 
             // Compute the new version # from the existing version #.
 
             // If the "previous resource" is set in the persistence event, then get the
             // existing version # from that.
             if (context.getPersistenceEvent() != null && context.getPersistenceEvent().isPrevFhirResourceSet()) {
-                Resource existingResource = context.getPersistenceEvent().getPrevFhirResource();
+                existingResource = context.getPersistenceEvent().getPrevFhirResource();
                 if (existingResource != null) {
                     log.fine("Using pre-fetched 'previous' resource.");
                     String version = existingResource.getMeta().getVersionId().getValue();
@@ -346,6 +606,54 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
                 throw new FHIRPersistenceResourceNotFoundException(msg);
             }
 
+            // Compare the fingerprints once; they are used for both the no-op check and the parameter delta.
+            // The fingerprint of the existing version is normally cached from when it was written; only on a miss
+            // is its payload read and parsed.
+            List<String> fingerprintKey = FingerprintCache.key(resourceType.getSimpleName(), logicalId);
+            FingerprintCache.Fingerprint existingFingerprint = null;
+            SaltHash baseline = null;
+            if (parameterDeltaUpdatesEnabled || skipUnchangedUpdatesEnabled) {
+                if (existingResource != null) {
+                    baseline = fingerprint(existingResource, null);
+                } else if (existingResourceDTO != null && !existingResourceDTO.isDeleted()) {
+                    existingFingerprint = FingerprintCache.INSTANCE.get(fingerprintKey, existingVersion);
+                    if (existingFingerprint != null) {
+                        baseline = existingFingerprint.getSaltHash();
+                    } else {
+                        existingResource = convertResourceDTO(existingResourceDTO, resourceType, null);
+                        baseline = fingerprint(existingResource, null);
+                    }
+                }
+            }
+            SaltHash newFingerprint = (baseline != null) ? fingerprint(resource, baseline) : null;
+            boolean unchanged = baseline != null && baseline.equals(newFingerprint);
+
+            // If the resource would not change apart from its version and lastUpdated time, then return the
+            // current version instead of writing a new one, as long as that is still the version compared against.
+            if (unchanged && skipUnchangedUpdatesEnabled) {
+                if (existingResourceDTO == null) {
+                    existingResourceDTO = this.getResourceDao().read(logicalId, resourceType.getSimpleName());
+                }
+                if (existingResourceDTO != null && !existingResourceDTO.isDeleted()
+                        && existingResourceDTO.getVersionId() == existingVersion) {
+                    if (log.isLoggable(Level.FINE)) {
+                        log.fine("FHIR Resource '" + resourceType.getSimpleName() + "/" + logicalId + "' is unchanged; keeping version="
+                                + existingVersion);
+                    }
+                    // Without the parsed existing version, the resource passed in has the same content, and only
+                    // needs the version and lastUpdated of the existing version.
+                    @SuppressWarnings("unchecked")
+                    T currentResource = (existingResource != null) ? (T) existingResource : (T) resource.toBuilder()
+                            .meta(withVersion(resource.getMeta(), existingVersion, existingFingerprint.getLastUpdated()))
+                            .build();
+                    return new SingleResourceResult.Builder<T>()
+                            .success(true)
+                            .unchanged(true)
+                            .resource(currentResource)
+                            .build();
+                }
+            }
+
             // Bump up the existing version # to get the new version.
             int newVersionNumber = existingVersion + 1;
 
@@ -360,11 +668,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
 
             // Set the resource id and meta fields.
 //            resultBuilder.id(logicalId);
-            Meta meta = resource.getMeta();
-            Meta.Builder metaBuilder = meta == null ? Meta.builder() : meta.toBuilder();
-            metaBuilder.versionId(Id.of(Integer.toString(newVersionNumber)));
-            metaBuilder.lastUpdated(lastUpdated);
-            resultResourceBuilder.meta(metaBuilder.build());
+            resultResourceBuilder.meta(withVersion(resource.getMeta(), newVersionNumber, lastUpdated));
 
             @SuppressWarnings("unchecked")
             T updatedResource = (T) resultResourceBuilder.build();
@@ -377,16 +681,25 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             resourceDTO.setLastUpdated(timestamp);
             resourceDTO.setResourceType(updatedResource.getClass().getSimpleName());
 
-            // Serialize and compress the Resource
-            GZIPOutputStream zipStream = new GZIPOutputStream(stream);
-            FHIRGenerator.generator(Format.JSON, false).generate(updatedResource, zipStream);
-            zipStream.finish();
-            resourceDTO.setData(stream.toByteArray());
-            zipStream.close();
+            // Serialize and encode the Resource
+            resourceDTO.setData(encodePayload(updatedResource));
+
+            List<ExtractedParameterValue> parameters = this.extractSearchParameters(updatedResource, resourceDTO);
+            if (parameterDeltaUpdatesEnabled && baseline != null) {
+                if (existingResource == null && !unchanged) {
+                    // the parameters of the existing version are extracted from its parsed payload
+                    existingResource = convertResourceDTO(existingResourceDTO, resourceType, null);
+                }
+                resourceDTO.setParameterDelta(computeParameterDelta(existingResource, unchanged, parameters, resourceDTO));
+            }
 
             // Persist the Resource DTO.
             this.getResourceDao().setPersistenceContext(context);
-            this.getResourceDao().insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), this.parameterDao);
+            this.getResourceDao().insert(resourceDTO, parameters, this.parameterDao);
+            if (isFingerprintCacheUsed()) {
+                cacheFingerprint(fingerprintKey, resourceDTO.getVersionId(), lastUpdated,
+                        (newFingerprint != null) ? newFingerprint : fingerprint(updatedResource, null));
+            }
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -429,88 +742,50 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         final String METHODNAME = "search";
         log.entering(CLASSNAME, METHODNAME);
 
-        List<Resource> resources = Collections.emptyList();
         MultiResourceResult.Builder<Resource> resultBuilder = new MultiResourceResult.Builder<>();
         FHIRSearchContext searchContext = context.getSearchContext();
-        JDBCQueryBuilder queryBuilder;
-        List<Long> sortedIdList;
-        List<com.ibm.fhir.persistence.jdbc.dto.Resource> unsortedResultsList;
-        int searchResultCount = 0;
-        SqlQueryData countQuery;
-        SqlQueryData query;
 
         try {
-            checkModifiers(searchContext);
-            queryBuilder = new JDBCQueryBuilder(this.getParameterDao(),
-                                                this.getResourceDao());
-
-            countQuery = queryBuilder.buildCountQuery(resourceType, searchContext);
-            if (countQuery != null) {
-                searchResultCount = this.getResourceDao().searchCount(countQuery);
-                if (log.isLoggable(Level.FINE)) {
-                    log.fine("searchResultCount = " + searchResultCount);
-                }
-                searchContext.setTotalCount(searchResultCount);
-
-                List<OperationOutcome.Issue> issues = validatePagingContext(searchContext);
-                if (!issues.isEmpty()) {
-                    resultBuilder.outcome(OperationOutcome.builder()
-                        .issue(issues)
-                        .build());
-                    if (!searchContext.isLenient()) {
-                        return resultBuilder.success(false).build();
-                    }
-                }
-
-                // For _summary=count or pageSize == 0, we return only the count
-                if (searchResultCount > 0
-                        && !SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
-                        && searchContext.getPageSize() > 0) {
-                    query = queryBuilder.buildQuery(resourceType, searchContext);
-
-                    List<String> elements = searchContext.getElementsParameters();
-
-                    //Only consider _summary if _elements parameter is empty
-                    if (elements == null && searchContext.hasSummaryParameter()) {
-                        Set<String> summaryElements = null;
-                        SummaryValueSet summary = searchContext.getSummaryParameter();
-
-                        switch (summary) {
-                        case TRUE:
-                            summaryElements = JsonSupport.getSummaryElementNames(resourceType);
-                            break;
-                        case TEXT:
-                            summaryElements = SearchUtil.getSummaryTextElementNames(resourceType);
-                            break;
-                        case DATA:
-                            summaryElements = JsonSupport.getSummaryDataElementNames(resourceType);
-                            break;
-                        default:
-                            break;
-                        }
+            List<OperationOutcome.Issue> issues = new ArrayList<>();
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = searchForResourceDTOs(searchContext, resourceType, issues);
+            if (!issues.isEmpty()) {
+                resultBuilder.outcome(OperationOutcome.builder()
+                    .issue(issues)
+                    .build());
+            }
+            if (resourceDTOList == null) {
+                return resultBuilder.success(false).build();
+            }
 
-                        if (summaryElements != null) {
-                            elements = new ArrayList<>();
-                            elements.addAll(summaryElements);
-                        }
+            List<Resource> resources = Collections.emptyList();
+            if (!resourceDTOList.isEmpty()) {
+                List<String> elements = searchContext.getElementsParameters();
+
+                //Only consider _summary if _elements parameter is empty
+                if (elements == null && searchContext.hasSummaryParameter()) {
+                    Set<String> summaryElements = null;
+                    SummaryValueSet summary = searchContext.getSummaryParameter();
+
+                    switch (summary) {
+                    case TRUE:
+                        summaryElements = JsonSupport.getSummaryElementNames(resourceType);
+                        break;
+                    case TEXT:
+                        summaryElements = SearchUtil.getSummaryTextElementNames(resourceType);
+                        break;
+                    case DATA:
+                        summaryElements = JsonSupport.getSummaryDataElementNames(resourceType);
+                        break;
+                    default:
+                        break;
                     }
 
-                    if (searchContext.hasSortParameters()) {
-                        // Sorting results of a system-level search is limited, and has a different logic path
-                        // than other sorted searches.
-                        if (resourceType.equals(Resource.class)) {
-                           resources = this.convertResourceDTOList(this.resourceDao.search(query), resourceType, elements);
-                        }
-                        else {
-                            sortedIdList = this.resourceDao.searchForIds(query);
-                            resources = this.buildSortedFhirResources(context, resourceType, sortedIdList, elements);
-                        }
-                    }
-                    else {
-                        unsortedResultsList = this.getResourceDao().search(query);
-                        resources = this.convertResourceDTOList(unsortedResultsList, resourceType, elements);
+                    if (summaryElements != null) {
+                        elements = new ArrayList<>();
+                        elements.addAll(summaryElements);
                     }
                 }
+                resources = this.convertResourceDTOList(resourceDTOList, resourceType, elements);
             }
 
             return resultBuilder
@@ -531,6 +806,195 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         }
     }
 
+    @Override
+    public int searchPayloads(FHIRPersistenceContext context, Class<? extends Resource> resourceType, ResourcePayloadConsumer consumer)
+            throws FHIRPersistenceException {
+        final String METHODNAME = "searchPayloads";
+        log.entering(CLASSNAME, METHODNAME);
+
+        FHIRSearchContext searchContext = context.getSearchContext();
+        SummaryValueSet summary = searchContext.getSummaryParameter();
+        if (searchContext.getElementsParameters() != null
+                || (summary != null && summary != SummaryValueSet.FALSE && summary != SummaryValueSet.COUNT)) {
+            // The stored payloads would have to be filtered
+            log.exiting(CLASSNAME, METHODNAME);
+            return FHIRPersistence.super.searchPayloads(context, resourceType, consumer);
+        }
+
+        int count = 0;
+        try {
+            List<OperationOutcome.Issue> issues = new ArrayList<>();
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = searchForResourceDTOs(searchContext, resourceType, issues);
+            if (resourceDTOList == null) {
+                throw new FHIRPersistenceException("Invalid paging context").withIssue(issues);
+            }
+
+            // Pass the decoded payloads as they were stored, without parsing and generating them again
+            for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
+                try (InputStream in = PayloadCodecRegistry.getInstance().decode(resourceDTO.getData())) {
+                    consumer.accept(resourceDTO.getLogicalId(), in);
+                }
+                count++;
+            }
+            return count;
+        }
+        catch(FHIRPersistenceException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a search operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Run the count and page queries of a search, and set the total count, last page number and next page token of
+     * the search context accordingly.
+     *
+     * @param searchContext the search context of the current request
+     * @param resourceType the type of the resources searched, or Resource for a system-level search
+     * @param issues receives the issues found with the paging context
+     * @return the Resource DTOs of the requested page, in the order of the search; empty if only the count was
+     *         requested; null if the paging context is invalid and the search is not lenient
+     */
+    private List<com.ibm.fhir.persistence.jdbc.dto.Resource> searchForResourceDTOs(FHIRSearchContext searchContext,
+            Class<? extends Resource> resourceType, List<OperationOutcome.Issue> issues) throws Exception {
+        checkModifiers(searchContext);
+        JDBCQueryBuilder queryBuilder = new JDBCQueryBuilder(this.getParameterDao(), this.getResourceDao());
+
+        // Without a count, the page query reads one extra row to tell whether there is a next page
+        boolean countRequired = isCountRequired(searchContext);
+        int searchResultCount = 0;
+        if (countRequired) {
+            SqlQueryData countQuery = queryBuilder.buildCountQuery(resourceType, searchContext);
+            if (countQuery == null) {
+                return Collections.emptyList();
+            }
+            searchResultCount = countSearchResults(countQuery, searchContext);
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("searchResultCount = " + searchResultCount);
+            }
+            searchContext.setTotalCount(searchResultCount);
+        }
+
+        issues.addAll(validatePagingContext(searchContext, countRequired));
+        if (!issues.isEmpty() && !searchContext.isLenient()) {
+            return null;
+        }
+
+        // For _summary=count or pageSize == 0, we return only the count
+        if ((countRequired && searchResultCount == 0)
+                || SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
+                || searchContext.getPageSize() == 0) {
+            return Collections.emptyList();
+        }
+
+        SqlQueryData query = queryBuilder.buildQuery(resourceType, searchContext, !countRequired);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+
+        // Sorting results of a system-level search is limited, and has a different logic path
+        // than other sorted searches.
+        if (searchContext.hasSortParameters() && !resourceType.equals(Resource.class)) {
+            List<Long> sortedIdList = this.getResourceDao().searchForIds(query);
+            if (!countRequired) {
+                sortedIdList = removeLookAheadRow(searchContext, sortedIdList);
+            }
+            return this.getSortedResourceDTOs(resourceType, sortedIdList);
+        }
+        List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = this.getResourceDao().search(query);
+        if (!countRequired) {
+            resourceDTOList = removeLookAheadRow(searchContext, resourceDTOList);
+        }
+        if (!searchContext.hasSortParameters()) {
+            setNextPageToken(resourceType, searchContext, resourceDTOList);
+        }
+        return resourceDTOList;
+    }
+
+    /**
+     * @return the Resource DTOs of the passed resource ids, in the same order
+     */
+    private List<com.ibm.fhir.persistence.jdbc.dto.Resource> getSortedResourceDTOs(Class<? extends Resource> resourceType,
+            List<Long> sortedIdList) throws FHIRPersistenceException {
+        Map<Long, com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOMap = new HashMap<>();
+        for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : this.getResourceDTOs(resourceType, sortedIdList)) {
+            resourceDTOMap.put(resourceDTO.getId(), resourceDTO);
+        }
+        List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList = new ArrayList<>(sortedIdList.size());
+        for (Long resourceId : sortedIdList) {
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = resourceDTOMap.get(resourceId);
+            if (resourceDTO != null) {
+                resourceDTOList.add(resourceDTO);
+            }
+        }
+        return resourceDTOList;
+    }
+
+    /**
+     * Issue the token that lets the next page of a search ordered by RESOURCE_ID seek past the last row of this page.
+     */
+    private void setNextPageToken(Class<? extends Resource> resourceType, FHIRSearchContext searchContext,
+            List<com.ibm.fhir.persistence.jdbc.dto.Resource> page) {
+        if (QuerySegmentAggregatorFactory.supportsPageToken(searchContext)
+                && !page.isEmpty() && page.size() == searchContext.getPageSize()
+                && searchContext.getPageNumber() < searchContext.getLastPageNumber()) {
+            long lastResourceId = page.get(page.size() - 1).getId();
+            searchContext.setNextPageToken(PageToken.encode(searchContext.getPageNumber() + 1, searchContext.getPageSize(),
+                    PageToken.queryHash(resourceType, searchContext), lastResourceId));
+        }
+    }
+
+    /**
+     * @return false if the search results don't need to be counted; with _total=none they are still counted for
+     *         _summary=count, and for _include/_revinclude searches, whose pages can't be extended by a row because
+     *         they also hold the included resources. In that case, the total is reported as accurate.
+     */
+    private boolean isCountRequired(FHIRSearchContext searchContext) {
+        if (TotalValueSet.NONE.equals(searchContext.getTotalParameter())) {
+            if (!SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
+                    && !searchContext.hasIncludeParameters() && !searchContext.hasRevIncludeParameters()) {
+                return false;
+            }
+            searchContext.setTotalParameter(TotalValueSet.ACCURATE);
+        }
+        return true;
+    }
+
+    /**
+     * Run the count query, unless _total=estimate and the count of the same query was cached recently.
+     */
+    private int countSearchResults(SqlQueryData countQuery, FHIRSearchContext searchContext) throws FHIRPersistenceException {
+        if (TotalValueSet.ESTIMATE.equals(searchContext.getTotalParameter())) {
+            Integer estimate = SearchCountCache.INSTANCE.get(countQuery, this.estimatedTotalTtlSeconds);
+            if (estimate == null) {
+                estimate = this.getResourceDao().searchCount(countQuery);
+                SearchCountCache.INSTANCE.put(countQuery, estimate);
+            }
+            return estimate;
+        }
+        return this.getResourceDao().searchCount(countQuery);
+    }
+
+    /**
+     * Remove the extra row read by a look-ahead page query, and set the last page number according to whether it
+     * was found.
+     */
+    private <T> List<T> removeLookAheadRow(FHIRPagingContext pagingContext, List<T> page) {
+        int pageSize = pagingContext.getPageSize();
+        if (page.size() > pageSize) {
+            pagingContext.setLastPageNumber(pagingContext.getPageNumber() + 1);
+            return page.subList(0, pageSize);
+        }
+        pagingContext.setLastPageNumber(pagingContext.getPageNumber());
+        return page;
+    }
+
     /**
      * @throws FHIRPersistenceException if the search context contains one or more unsupported modifiers
      */
@@ -563,7 +1027,6 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
 
         com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO = null;
         T existingResource = null;
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
 
         Resource.Builder resourceBuilder;
 
@@ -614,12 +1077,8 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             resourceDTO.setLogicalId(logicalId);
             resourceDTO.setVersionId(newVersionNumber);
 
-            // Serialize and compress the Resource
-            GZIPOutputStream zipStream = new GZIPOutputStream(stream);
-            FHIRGenerator.generator(Format.JSON, false).generate(updatedResource, zipStream);
-            zipStream.finish();
-            resourceDTO.setData(stream.toByteArray());
-            zipStream.close();
+            // Serialize and encode the Resource
+            resourceDTO.setData(encodePayload(updatedResource));
 
             Timestamp timestamp = FHIRUtilities.convertToTimestamp(lastUpdated.getValue());
             resourceDTO.setLastUpdated(timestamp);
@@ -806,6 +1265,14 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
      *     a list of operation outcome issues if the paging context has invalid parameters
      */
     private List<OperationOutcome.Issue> validatePagingContext(FHIRPagingContext pagingContext) {
+        return validatePagingContext(pagingContext, true);
+    }
+
+    /**
+     * @param totalCountKnown
+     *     false if the results were not counted; the last page number is then set when the page has been read
+     */
+    private List<OperationOutcome.Issue> validatePagingContext(FHIRPagingContext pagingContext, boolean totalCountKnown) {
         List<OperationOutcome.Issue> issues = new ArrayList<>();
 
         int pageSize = pagingContext.getPageSize();
@@ -820,10 +1287,15 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
             pagingContext.setPageSize(10);
         }
 
-        int lastPageNumber = Math.max(((pagingContext.getTotalCount() + pageSize - 1) / pageSize), 1);
+        int pageNumber = pagingContext.getPageNumber();
+        int lastPageNumber;
+        if (totalCountKnown) {
+            lastPageNumber = Math.max(((pagingContext.getTotalCount() + pageSize - 1) / pageSize), 1);
+        } else {
+            lastPageNumber = Math.max(pageNumber, 1);
+        }
         pagingContext.setLastPageNumber(lastPageNumber);
 
-        int pageNumber = pagingContext.getPageNumber();
         if (pageNumber < 1) {
             issues.add(OperationOutcome.Issue.builder()
                 .severity(pagingContext.isLenient() ? IssueSeverity.WARNING : IssueSeverity.ERROR)
@@ -997,13 +1469,55 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
     private String performCacheDiagnostics() {
 
         StringBuffer diags = new StringBuffer();
-        diags.append(ParameterNamesCache.dumpCacheContents()).append(ParameterNamesCache.reportCacheDiscrepancies(this.parameterDao));
-        diags.append(CodeSystemsCache.dumpCacheContents()).append(CodeSystemsCache.reportCacheDiscrepancies(this.parameterDao));
-        diags.append(ResourceTypesCache.dumpCacheContents()).append(ResourceTypesCache.reportCacheDiscrepancies(this.resourceDao));
+        diags.append(NameIdCache.PARAMETER_NAMES.dumpCacheContents());
+        diags.append(NameIdCache.CODE_SYSTEMS.dumpCacheContents());
+        diags.append(NameIdCache.RESOURCE_TYPES.dumpCacheContents());
+        try {
+            diags.append(NameIdCache.PARAMETER_NAMES.reportCacheDiscrepancies(this.parameterDao.readAllSearchParameterNames()));
+            diags.append(NameIdCache.CODE_SYSTEMS.reportCacheDiscrepancies(this.parameterDao.readAllCodeSystems()));
+            diags.append(NameIdCache.RESOURCE_TYPES.reportCacheDiscrepancies(this.resourceDao.readAllResourceTypeNames()));
+        } catch (FHIRPersistenceDBConnectException | FHIRPersistenceDataAccessException e) {
+            log.log(Level.SEVERE, "Failure obtaining the contents of the cached tables.", e);
+            diags.append(System.lineSeparator()).append("Could not report on cache discrepancies.").append(System.lineSeparator());
+        }
 
         return diags.toString();
     }
 
+    /**
+     * Fills the parameter names, code systems and resource types caches of the current tenant/datastore from the
+     * database, the first time they are used. This is only done outside of a global transaction, so that the
+     * caches never see rows that might still be rolled back.
+     */
+    private void preloadCaches() {
+        final String METHODNAME = "preloadCaches";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            if (this.userTransaction != null && this.userTransaction.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                return;
+            }
+
+            NameIdCache.IdMap idMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+            if (idMap != null && idMap.claimPreload()) {
+                idMap.preload(this.parameterDao.readAllSearchParameterNames());
+            }
+            idMap = NameIdCache.CODE_SYSTEMS.getIdMap();
+            if (idMap != null && idMap.claimPreload()) {
+                idMap.preload(this.parameterDao.readAllCodeSystems());
+            }
+            idMap = NameIdCache.RESOURCE_TYPES.getIdMap();
+            if (idMap != null && idMap.claimPreload()) {
+                idMap.preload(this.resourceDao.readAllResourceTypeNames());
+            }
+        } catch (Exception e) {
+            // the caches still fill up on demand
+            log.log(Level.WARNING, "Failure preloading the JDBC PL caches.", e);
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     /**
      * Looks up and returns an instance of TransactionSynchronizationRegistry, which is used in support of writing committed
      * data to JDBC PL in-memory caches.
@@ -1029,6 +1543,115 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         return this.trxSynchRegistry;
     }
 
+    /**
+     * Computes the fingerprint of a resource, which ignores the id, meta.versionId and meta.lastUpdated.
+     * @param resource - The resource.
+     * @param baseline - The fingerprint to compare it with, whose salt is used; null for a new salt.
+     */
+    private SaltHash fingerprint(Resource resource, SaltHash baseline) {
+        ResourceFingerprintVisitor fingerprint = (baseline != null) ? new ResourceFingerprintVisitor(baseline) : new ResourceFingerprintVisitor();
+        resource.accept(resource.getClass().getSimpleName(), fingerprint);
+        return fingerprint.getSaltAndHash();
+    }
+
+    /**
+     * Caches the fingerprint of the first version of a new resource, see
+     * {@link #cacheFingerprint(List, int, Instant, SaltHash)}.
+     */
+    private void cacheFingerprint(Resource resource) {
+        if (isFingerprintCacheUsed()) {
+            cacheFingerprint(FingerprintCache.key(resource.getClass().getSimpleName(), resource.getId()),
+                    Integer.parseInt(resource.getMeta().getVersionId().getValue()), resource.getMeta().getLastUpdated(),
+                    fingerprint(resource, null));
+        }
+    }
+
+    /**
+     * @return true if updates compare fingerprints, and the fingerprints of the versions written can be cached once
+     *         their JTA transaction has committed
+     */
+    private boolean isFingerprintCacheUsed() {
+        return (parameterDeltaUpdatesEnabled || skipUnchangedUpdatesEnabled) && this.trxSynchRegistry != null;
+    }
+
+    /**
+     * Caches the fingerprint of a version that was just written, once its transaction has committed, so that the
+     * next update of the resource doesn't need to parse it.
+     */
+    private void cacheFingerprint(List<String> key, int versionId, Instant lastUpdated, SaltHash saltHash) {
+        FingerprintCache.Fingerprint fingerprint = new FingerprintCache.Fingerprint(versionId, lastUpdated, saltHash);
+        try {
+            this.trxSynchRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // No operation
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        FingerprintCache.INSTANCE.put(key, fingerprint);
+                    }
+                }
+            });
+        } catch (IllegalStateException e) {
+            // no active transaction; the fingerprint is computed from the payload on the next update
+            log.fine("Not caching the fingerprint of " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the passed meta (which may be null) with the passed version and lastUpdated
+     */
+    private static Meta withVersion(Meta meta, int versionId, Instant lastUpdated) {
+        Meta.Builder metaBuilder = meta == null ? Meta.builder() : meta.toBuilder();
+        metaBuilder.versionId(Id.of(Integer.toString(versionId)));
+        metaBuilder.lastUpdated(lastUpdated);
+        return metaBuilder.build();
+    }
+
+    /**
+     * Computes the changes to the search parameters of a resource from its previous version. If the two versions
+     * have the same fingerprint, none of the parameter rows are touched: the searches on _id and _lastUpdated are
+     * answered from the resource tables themselves. If the search parameters of the previous version can't be
+     * extracted, no delta is returned and all of the parameters of the resource are rewritten instead.
+     * @param previousResource - The version of the resource being replaced.
+     * @param unchanged - Whether the version replacing it has the same fingerprint.
+     * @param parameters - The search parameters extracted from the version replacing it.
+     * @param resourceDTO - A Resource DTO representation of the version replacing it.
+     * @return the delta, or null if all of the parameters must be rewritten
+     * @throws Exception
+     */
+    private ParameterDelta computeParameterDelta(Resource previousResource, boolean unchanged,
+            List<ExtractedParameterValue> parameters, com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO) throws Exception {
+        final String METHODNAME = "computeParameterDelta";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            ParameterDelta delta;
+            if (unchanged) {
+                delta = ParameterDelta.unchanged();
+            } else {
+                List<ExtractedParameterValue> previousParameters;
+                try {
+                    previousParameters = this.extractSearchParameters(previousResource, resourceDTO);
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Unable to extract the search parameters of the previous version of '"
+                            + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "'; rewriting all of its parameters", e);
+                    return null;
+                }
+                delta = ParameterDelta.compute(previousParameters, parameters);
+            }
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Changed search parameters of '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "': "
+                        + delta.getChangedNames());
+            }
+            return delta;
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     /**
      * Extracts search parameters for the passed FHIR Resource.
      * @param fhirResource - Some FHIR Resource
@@ -1512,6 +2135,17 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         return resources;
     }
 
+    /**
+     * Serializes the passed Resource and encodes it with the configured payload codec.
+     * @param resource - The FHIR Resource to be stored.
+     * @return byte[] - The payload to be stored in the data column of the Resource DTO.
+     * @throws FHIRGeneratorException
+     * @throws IOException
+     */
+    private byte[] encodePayload(Resource resource) throws FHIRGeneratorException, IOException {
+        return PayloadCodecRegistry.getInstance().encode(resource, this.payloadCodec, this.payloadCompressionLevel);
+    }
+
     /**
      * Converts the passed Resource Data Transfer Object to a FHIR Resource object.
      * @param resourceDTO - A valid Resource DTO
@@ -1528,7 +2162,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, FHIRPersistence
         T resource = null;
         try {
             if (resourceDTO != null) {
-                InputStream in = new GZIPInputStream(new ByteArrayInputStream(resourceDTO.getData()));
+                InputStream in = PayloadCodecRegistry.getInstance().decode(resourceDTO.getData());
                 if (elements != null) {
                     // parse/filter the resource using elements
                     resource = FHIRParser.parser(Format.JSON).as(FHIRJsonParser.class).parseAndFilter(in, elements);
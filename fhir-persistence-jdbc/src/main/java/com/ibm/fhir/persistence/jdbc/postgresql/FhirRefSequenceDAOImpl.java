@@ -12,6 +12,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import com.ibm.fhir.persistence.jdbc.dao.api.FhirRefSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 
 /**
  * DAO to obtain the next value from FHIR_REF_SEQUENCE
@@ -29,16 +30,29 @@ public class FhirRefSequenceDAOImpl implements FhirRefSequenceDAO {
 
     @Override
     public int nextValue() throws SQLException {
-        int result;
-        final String SEQ = "select nextval('fhir_ref_sequence')";
+        return Math.toIntExact(IdBlockAllocator.FHIR_REF_SEQUENCE.nextValue(conn, this::readValues));
+    }
+
+    /**
+     * Read the next values of FHIR_REF_SEQUENCE from the database in a single round trip, bypassing the {@link IdBlockAllocator}
+     * @param count
+     * @return
+     * @throws SQLException
+     */
+    public long[] readValues(int count) throws SQLException {
+        long[] result = new long[count];
+        final String SEQ = "select nextval('fhir_ref_sequence') from generate_series(1, ?)";
 
         try (PreparedStatement stmt = conn.prepareStatement(SEQ)) {
+            stmt.setInt(1, count);
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                result = rs.getInt(1);
-            } else {
+            int i = 0;
+            while (rs.next() && i < count) {
+                result[i++] = rs.getInt(1);
+            }
+            if (i < count) {
                 // not gonna happen
-                throw new IllegalStateException("no value returned from fhir_ref_sequence!");
+                throw new IllegalStateException("fhir_ref_sequence returned " + i + " values instead of " + count);
             }
         }
 
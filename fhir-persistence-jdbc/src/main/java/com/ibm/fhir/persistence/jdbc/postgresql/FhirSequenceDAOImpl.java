@@ -12,6 +12,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import com.ibm.fhir.persistence.jdbc.dao.api.FhirSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 
 /**
  * DAO to obtain the next value from FHIR_SEQUENCE
@@ -28,16 +29,29 @@ public class FhirSequenceDAOImpl implements FhirSequenceDAO {
 
     @Override
     public long nextValue() throws SQLException {
-        long result;
-        final String SEQ = "select nextval('fhir_sequence')";
+        return IdBlockAllocator.FHIR_SEQUENCE.nextValue(conn, this::readValues);
+    }
+
+    /**
+     * Read the next values of FHIR_SEQUENCE from the database in a single round trip, bypassing the {@link IdBlockAllocator}
+     * @param count
+     * @return
+     * @throws SQLException
+     */
+    public long[] readValues(int count) throws SQLException {
+        long[] result = new long[count];
+        final String SEQ = "select nextval('fhir_sequence') from generate_series(1, ?)";
 
         try (PreparedStatement stmt = conn.prepareStatement(SEQ)) {
+            stmt.setInt(1, count);
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                result = rs.getLong(1);
-            } else {
+            int i = 0;
+            while (rs.next() && i < count) {
+                result[i++] = rs.getLong(1);
+            }
+            if (i < count) {
                 // not gonna happen
-                throw new IllegalStateException("no value returned from fhir_sequence!");
+                throw new IllegalStateException("fhir_sequence returned " + i + " values instead of " + count);
             }
         }
 
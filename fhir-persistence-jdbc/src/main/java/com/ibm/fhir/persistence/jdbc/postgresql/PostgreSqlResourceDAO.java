@@ -14,7 +14,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,6 +30,9 @@ import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
 import com.ibm.fhir.persistence.jdbc.dao.api.CodeSystemDAO;
 import com.ibm.fhir.persistence.jdbc.dao.api.FhirRefSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.dao.api.FhirSequenceDAO;
+import com.ibm.fhir.persistence.jdbc.dao.api.ICodeSystemCache;
+import com.ibm.fhir.persistence.jdbc.dao.api.IParameterNameCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterNameDAO;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterVisitorBatchDAO;
@@ -35,7 +42,7 @@ import com.ibm.fhir.persistence.jdbc.dto.Resource;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceFKVException;
-import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCache;
+import com.ibm.fhir.persistence.jdbc.util.ParameterDelta;
 
 /**
  * Data access object for writing FHIR resources to an postgresql database.
@@ -109,7 +116,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
 
             if (logger.isLoggable(Level.FINE)) {
                 logger.fine("resourceType=" + resource.getResourceType() + "  resourceTypeId=" + resourceTypeId +
-                         "  acquiredFromCache=" + acquiredFromCache + "  tenantDatastoreCacheName=" + ResourceTypesCache.getCacheNameForTenantDatastore());
+                         "  acquiredFromCache=" + acquiredFromCache + "  cache=" + getResourceTypeIdMap());
             }
 
             lastUpdated = resource.getLastUpdated();
@@ -119,6 +126,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
 
             long resourceId = this.storeResource(resource.getResourceType(),
                 parameters,
+                resource.getParameterDelta(),
                 resource.getLogicalId(),
                 resource.getData(),
                 lastUpdated,
@@ -181,6 +189,8 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
      *
      * @param tablePrefix
      * @param parameters
+     * @param p_delta
+     *     the changes to the parameters of the current version, or null to replace all of them
      * @param p_logical_id
      * @param p_payload
      * @param p_last_updated
@@ -191,7 +201,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
      * @return the resource_id for the entry we created
      * @throws Exception
      */
-    public long storeResource(String tablePrefix, List<ExtractedParameterValue> parameters, String p_logical_id, byte[] p_payload, Timestamp p_last_updated, boolean p_is_deleted,
+    public long storeResource(String tablePrefix, List<ExtractedParameterValue> parameters, ParameterDelta p_delta, String p_logical_id, byte[] p_payload, Timestamp p_last_updated, boolean p_is_deleted,
         String p_source_key, Integer p_version, Connection conn) throws Exception {
 
         final String METHODNAME = "storeResource() for " + tablePrefix + " resource";
@@ -204,11 +214,16 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
         boolean v_new_resource = false;
         boolean v_not_found = false;
         boolean v_duplicate = false;
+        boolean v_current_deleted = false;
+        boolean v_apply_delta = false;
         int v_version = 0;
         int v_insert_version = 0;
 
         String v_resource_type = tablePrefix;
 
+        // Ids are handed out from blocks of fhir_sequence values reserved ahead of time
+        FhirSequenceDAO fhirSequenceDAO = new FhirSequenceDAOImpl(conn);
+
         // Map the resource type name to the normalized id value in the database
         v_resource_type_id = getResourceTypeId(v_resource_type, conn);
         if (v_resource_type_id == null) {
@@ -233,16 +248,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
         // Create the logical resource if we don't have it already
         if (v_not_found) {
             // grab the id we want to use for the new logical resource instance
-            final String sql2 = "SELECT nextval('fhir_sequence')";
-            try (PreparedStatement stmt = conn.prepareStatement(sql2)) {
-                ResultSet res = stmt.executeQuery();
-                if (res.next()) {
-                    v_logical_resource_id = res.getLong(1);
-                } else {
-                    // not going to happen, unless someone butchers the statement being executed
-                    throw new IllegalStateException("VALUES failed to return a row: " + sql2);
-                }
-            }
+            v_logical_resource_id = fhirSequenceDAO.nextValue();
 
             try {
                 // insert the system-wide logical resource record.
@@ -332,12 +338,13 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
             }
 
             // Grab the version value for the current version (identified by v_current_resource_id)
-            final String sql4 = "SELECT version_id FROM " + tablePrefix + "_resources WHERE resource_id = ?";
+            final String sql4 = "SELECT version_id, is_deleted FROM " + tablePrefix + "_resources WHERE resource_id = ?";
             try (PreparedStatement stmt = conn.prepareStatement(sql4)) {
                 stmt.setLong(1, v_current_resource_id);
                 ResultSet res = stmt.executeQuery();
                 if (res.next()) {
                     v_version = res.getInt(1);
+                    v_current_deleted = "Y".equals(res.getString(2));
                 } else {
                     throw new IllegalStateException("current resource not found: "
                             + tablePrefix + "_resources.resource_id=" + v_current_resource_id);
@@ -348,15 +355,23 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
             //resource, and so we only need to delete parameters if the given version is
             // later than the current version
             if (p_version == null || p_version > v_version) {
-                // existing resource, so need to delete all its parameters
-                // delete composites first, or else the foreign keys there restrict deletes on referenced tables
-                deleteFromParameterTable(conn, tablePrefix + "_composites", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_str_values", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_number_values", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_date_values", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_latlng_values", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_token_values", v_logical_resource_id);
-                deleteFromParameterTable(conn, tablePrefix + "_quantity_values", v_logical_resource_id);
+                // A delta only describes the parameters of the version it was computed from, and a deleted
+                // version has no parameters at all, so anything else falls back to replacing all of them
+                v_apply_delta = p_delta != null && !v_current_deleted && p_version != null && p_version == v_version + 1;
+                if (v_apply_delta) {
+                    // only delete the rows of the parameters which changed
+                    deleteFromParameterTables(conn, tablePrefix, v_logical_resource_id, p_delta);
+                } else {
+                    // existing resource, so need to delete all its parameters
+                    // delete composites first, or else the foreign keys there restrict deletes on referenced tables
+                    deleteFromParameterTable(conn, tablePrefix + "_composites", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_str_values", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_number_values", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_date_values", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_latlng_values", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_token_values", v_logical_resource_id);
+                    deleteFromParameterTable(conn, tablePrefix + "_quantity_values", v_logical_resource_id);
+                }
             }
         }
 
@@ -374,16 +389,7 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
          * Create the new resource version.
          * uses last_updated time from the app-server, so we have consistency between the various DAOs
          */
-        String sql2 = "SELECT nextval('fhir_sequence')";
-        try (PreparedStatement stmt = conn.prepareStatement(sql2)) {
-            ResultSet res = stmt.executeQuery();
-            if (res.next()) {
-                v_resource_id = res.getLong(1); //Assign result of the above query
-            } else {
-                // unlikely
-                throw new IllegalStateException("no row returned: " + sql2);
-            }
-        }
+        v_resource_id = fhirSequenceDAO.nextValue();
 
         // Finally we get to the big resource data insert
         String sql3 = "INSERT INTO " + tablePrefix + "_resources (resource_id, logical_resource_id, version_id, data, last_updated, is_deleted) "
@@ -413,11 +419,12 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
             // To keep things simple for the postgresql use-case, we just use a visitor to
             // handle inserts of parameters directly in the resource parameter tables.
             // Note we don't get any parameters for the resource soft-delete operation
-            if (parameters != null) {
+            List<ExtractedParameterValue> v_parameters = v_apply_delta ? p_delta.getInserts() : parameters;
+            if (v_parameters != null && !v_parameters.isEmpty()) {
                 // postgresql doesn't support partitioned multi-tenancy, so we disable it on the DAO:
                 try (ParameterVisitorBatchDAO pvd = new ParameterVisitorBatchDAO(conn, null, tablePrefix, false, v_logical_resource_id, 100,
                     new ParameterNameCacheAdapter(parameterNameDAO), new CodeSystemCacheAdapter(codeSystemDAO))) {
-                    for (ExtractedParameterValue p: parameters) {
+                    for (ExtractedParameterValue p: v_parameters) {
                         p.accept(pvd);
                     }
                 }
@@ -428,6 +435,69 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
     }
 
 
+    @Override
+    public boolean isBatchInsertSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Resource> insertAll(List<Resource> resources, List<List<ExtractedParameterValue>> parameters, ParameterDAO parameterDao)
+            throws FHIRPersistenceException {
+        return insertAllBatched(resources, parameters, parameterDao);
+    }
+
+    @Override
+    protected boolean claimLogicalResource(Connection connection, long logicalResourceId, int resourceTypeId, String logicalId)
+            throws SQLException {
+        // A failed statement would abort the whole PostgreSQL transaction, so the duplicate is skipped by the insert itself
+        final String INS = "INSERT INTO logical_resources (logical_resource_id, resource_type_id, logical_id) VALUES (?, ?, ?) "
+                + "ON CONFLICT DO NOTHING";
+        try (PreparedStatement stmt = connection.prepareStatement(INS)) {
+            stmt.setLong(1, logicalResourceId);
+            stmt.setInt(2, resourceTypeId);
+            stmt.setString(3, logicalId);
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    @Override
+    protected int acquireResourceTypeId(String resourceType, Connection connection) throws Exception {
+        Integer resourceTypeId = getResourceTypeIdFromCaches(resourceType);
+        if (resourceTypeId == null) {
+            this.fhirRefSequenceDAO = new FhirRefSequenceDAOImpl(connection);
+            resourceTypeId = getOrCreateResourceType(resourceType, connection);
+            this.addResourceTypeCacheCandidate(resourceType, resourceTypeId);
+        }
+        return resourceTypeId;
+    }
+
+    @Override
+    protected long[] nextSequenceValues(Connection connection, int count) throws SQLException {
+        return new FhirSequenceDAOImpl(connection).readValues(count);
+    }
+
+    @Override
+    protected Map<String, Integer> readExistingParameterNameIds(Collection<String> parameterNames, ParameterDAO parameterDao, Connection connection)
+            throws FHIRPersistenceException {
+        return new PostgreSqlParameterNamesDAO(connection, new FhirRefSequenceDAOImpl(connection)).readParameterNameIds(parameterNames);
+    }
+
+    @Override
+    protected Map<String, Integer> readExistingCodeSystemIds(Collection<String> codeSystems, ParameterDAO parameterDao, Connection connection)
+            throws FHIRPersistenceException {
+        return new PostgreSqlCodeSystemDAO(connection, new FhirRefSequenceDAOImpl(connection)).readCodeSystemIds(codeSystems);
+    }
+
+    @Override
+    protected IParameterNameCache getParameterNameCache(ParameterDAO parameterDao, Connection connection) {
+        return new ParameterNameCacheAdapter(new PostgreSqlParameterNamesDAO(connection, new FhirRefSequenceDAOImpl(connection)));
+    }
+
+    @Override
+    protected ICodeSystemCache getCodeSystemCache(ParameterDAO parameterDao, Connection connection) {
+        return new CodeSystemCacheAdapter(new PostgreSqlCodeSystemDAO(connection, new FhirRefSequenceDAOImpl(connection)));
+    }
+
     /**
      * Delete all parameters for the given resourceId from the parameters table
      *
@@ -445,6 +515,45 @@ public class PostgreSqlResourceDAO extends ResourceDAOImpl {
         }
     }
 
+    /**
+     * Delete the rows of the changed parameters described by the given delta, leaving the rows of
+     * all other parameters of the resource as they are
+     *
+     * @param conn
+     * @param tablePrefix
+     * @param logicalResourceId
+     * @param delta
+     * @throws SQLException
+     * @throws FHIRPersistenceException
+     */
+    protected void deleteFromParameterTables(Connection conn, String tablePrefix, long logicalResourceId, ParameterDelta delta)
+            throws SQLException, FHIRPersistenceException {
+        IParameterNameCache parameterNameCache = new ParameterNameCacheAdapter(parameterNameDAO);
+        Map<String, Integer> parameterNameIds = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : delta.getDeletes(tablePrefix).entrySet()) {
+            StringBuilder delete = new StringBuilder("DELETE FROM ").append(entry.getKey())
+                    .append(" WHERE logical_resource_id = ? AND parameter_name_id IN (");
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                delete.append(i == 0 ? "?" : ",?");
+            }
+            delete.append(")");
+            try (PreparedStatement stmt = conn.prepareStatement(delete.toString())) {
+                // bind parameters
+                int i = 1;
+                stmt.setLong(i++, logicalResourceId);
+                for (String parameterName : entry.getValue()) {
+                    Integer parameterNameId = parameterNameIds.get(parameterName);
+                    if (parameterNameId == null) {
+                        parameterNameId = parameterNameCache.readOrAddParameterNameId(parameterName);
+                        parameterNameIds.put(parameterName, parameterNameId);
+                    }
+                    stmt.setInt(i++, parameterNameId);
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+
     /**
      * Read the id for the named type
      * @param resourceTypeName
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2018,2019
+ * (C) Copyright IBM Corp. 2018,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -14,63 +14,70 @@ import javax.transaction.Status;
 import javax.transaction.Synchronization;
 
 /**
- * This is an abstract base class encapsulating functionality related to adding entries to a 
- * JDBC PL in-memory cache.
+ * This class encapsulates functionality related to adding entries to a JDBC PL in-memory cache.
+ * It writes its cache candidates to the {@link NameIdCache.IdMap} it was created for upon a transaction commit.
  */
-public abstract class CacheUpdater implements Synchronization {
+public class CacheUpdater implements Synchronization {
     private static final String CLASSNAME = CacheUpdater.class.getName();
     private static final Logger log = Logger.getLogger(CLASSNAME);
-        
-    private Map<String, Integer> cacheCandidates;
-    private String tenantDatastoreCacheName;
-    
-    
-    public CacheUpdater(String tenantDatastoreCacheName, Map<String, Integer> newCacheCandidates) {
+
+    private final NameIdCache.IdMap idMap;
+    private final Map<String, Integer> cacheCandidates;
+
+    /**
+     * @param idMap The tenant-datastore cache map, resolved when the transaction started writing candidates.
+     * @param newCacheCandidates The collection of candidates, which continues to be filled after registration.
+     */
+    public CacheUpdater(NameIdCache.IdMap idMap, Map<String, Integer> newCacheCandidates) {
         super();
-        Objects.requireNonNull(newCacheCandidates);
-        this.setCacheCandidates(newCacheCandidates);
-        this.setTenantDatastoreCacheName(tenantDatastoreCacheName);
+        this.idMap = Objects.requireNonNull(idMap);
+        this.cacheCandidates = Objects.requireNonNull(newCacheCandidates);
     }
-    
+
      /**
       * Writes candidate cache entries to the appropriate cache after being notified by
-      * the Trx Synchronization service that the transaction on the current thread 
+      * the Trx Synchronization service that the transaction on the current thread
       * has successfully committed.
       */
     @Override
     public void afterCompletion(int completionStatus) {
         final String METHODNAME = "afterCompletion";
         log.entering(CLASSNAME, METHODNAME);
-        
+
         if (completionStatus == Status.STATUS_COMMITTED) {
             this.commitCacheCandidates();
         }
-                
+
         this.clearCacheCandidates();
-        
+
         log.exiting(CLASSNAME, METHODNAME);
     }
 
-     
     @Override
     public void beforeCompletion() {
     }
-    
+
     /**
-     * Implemented by subclasses to perform the mechanics of writing cache candidate entries
-     * to the appropriate cache.
+     * Writes the cache candidate entries to the cache.
      */
-    public abstract void commitCacheCandidates();
-    
+    public void commitCacheCandidates() {
+        final String METHODNAME = "commitCacheCandidates";
+        log.entering(CLASSNAME, METHODNAME);
+
+        this.idMap.putIds(this.cacheCandidates);
+
+        log.exiting(CLASSNAME, METHODNAME);
+    }
+
     /**
      * Empties the collection of cache candidates.
      */
     public void clearCacheCandidates() {
         final String METHODNAME = "clearCacheCandidates";
         log.entering(CLASSNAME, METHODNAME);
-        
-        this.getCacheCandidates().clear();
-        
+
+        this.cacheCandidates.clear();
+
         log.exiting(CLASSNAME, METHODNAME);
     }
 
@@ -78,16 +85,7 @@ public abstract class CacheUpdater implements Synchronization {
         return cacheCandidates;
     }
 
-    public void setCacheCandidates(Map<String, Integer> cacheCandidates) {
-        this.cacheCandidates = cacheCandidates;
+    public NameIdCache.IdMap getIdMap() {
+        return idMap;
     }
-
-    public String getTenantDatastoreCacheName() {
-        return tenantDatastoreCacheName;
-    }
-
-    public void setTenantDatastoreCacheName(String tenantDatastoreCacheName) {
-        this.tenantDatastoreCacheName = tenantDatastoreCacheName;
-    }
-
 }
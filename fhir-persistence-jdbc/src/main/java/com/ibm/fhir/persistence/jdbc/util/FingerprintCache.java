@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.model.type.Instant;
+import com.ibm.fhir.persistence.util.SaltHash;
+
+/**
+ * An in-memory cache of the fingerprints of the latest versions of resources, computed when the versions were
+ * written, so that an update can be compared with the version it replaces without reading and parsing its payload.
+ *
+ * <p>Fingerprints are keyed by tenant, datastore, resource type and logical id, and carry the version they were
+ * computed for. Since a committed version of a resource never changes, a fingerprint is valid for as long as its
+ * version is the current version of the resource; a fingerprint of any other version is ignored. Fingerprints must
+ * only be put once the transaction which wrote their version has committed.
+ */
+public class FingerprintCache {
+    public static final FingerprintCache INSTANCE = new FingerprintCache(10000);
+
+    private final BoundedConcurrentCache<List<String>, Fingerprint> fingerprints;
+
+    public FingerprintCache(int maxEntries) {
+        this.fingerprints = new BoundedConcurrentCache<>(maxEntries);
+    }
+
+    /**
+     * @return the key of the passed resource in the tenant and datastore of the current request
+     */
+    public static List<String> key(String resourceType, String logicalId) {
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        return Arrays.asList(requestContext.getTenantId(), requestContext.getDataStoreId(), resourceType, logicalId);
+    }
+
+    /**
+     * @param key
+     *     the key of the resource, see {@link #key(String, String)}
+     * @param versionId
+     *     the current version of the resource
+     * @return the fingerprint of the passed version of the resource, or null if it isn't cached
+     */
+    public Fingerprint get(List<String> key, int versionId) {
+        Fingerprint fingerprint = fingerprints.get(key);
+        return (fingerprint != null && fingerprint.getVersionId() == versionId) ? fingerprint : null;
+    }
+
+    /**
+     * Cache the fingerprint of a committed version of a resource.
+     *
+     * @param key
+     *     the key of the resource, see {@link #key(String, String)}
+     */
+    public void put(List<String> key, Fingerprint fingerprint) {
+        fingerprints.put(key, fingerprint);
+    }
+
+    public void clear() {
+        fingerprints.clear();
+    }
+
+    /**
+     * The fingerprint of a version of a resource, along with the meta.lastUpdated of that version
+     */
+    public static final class Fingerprint {
+        private final int versionId;
+        private final Instant lastUpdated;
+        private final SaltHash saltHash;
+
+        public Fingerprint(int versionId, Instant lastUpdated, SaltHash saltHash) {
+            this.versionId = versionId;
+            this.lastUpdated = lastUpdated;
+            this.saltHash = saltHash;
+        }
+
+        public int getVersionId() {
+            return versionId;
+        }
+
+        public Instant getLastUpdated() {
+            return lastUpdated;
+        }
+
+        public SaltHash getSaltHash() {
+            return saltHash;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Hands out values of a database sequence from blocks reserved ahead of time, so that obtaining an id usually
+ * does not cost a round trip to the database.
+ *
+ * <p>Each database (identified by the URL and user name of the connection) has its own block. Values are taken
+ * from the current block without locking; when a block is used up, a single thread reads the next block from the
+ * database with the passed {@link BlockReader} while the others wait for it. With a block size of 1, every value
+ * is read from the database and nothing is reserved.
+ *
+ * <p>Sequence values are not transactional, so the values of a block can be used by any transaction. Values that
+ * are reserved but never used (when the server stops, for example) leave gaps in the sequence, which is harmless
+ * because the ids only need to be unique. When several servers share a database, each of them hands out the values
+ * of its own block, so ids are not assigned in the order in which the resources are written; they never were in
+ * commit order anyway, and the keyset paging of searches only relies on the ids being unique.
+ *
+ * <p>The reserved blocks are not discarded when a database is dropped and created again with the same URL; call
+ * {@link #clear()} in that case.
+ */
+public class IdBlockAllocator {
+    private static final String CLASSNAME = IdBlockAllocator.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    /**
+     * The allocator for FHIR_SEQUENCE, which provides the logical resource and resource ids
+     */
+    public static final IdBlockAllocator FHIR_SEQUENCE = new IdBlockAllocator("fhir_sequence", DEFAULT_BLOCK_SIZE);
+
+    /**
+     * The allocator for FHIR_REF_SEQUENCE, which provides the ids of code systems, parameter names and resource types
+     */
+    public static final IdBlockAllocator FHIR_REF_SEQUENCE = new IdBlockAllocator("fhir_ref_sequence", DEFAULT_BLOCK_SIZE);
+
+    /**
+     * Reads new values from a database sequence
+     */
+    @FunctionalInterface
+    public interface BlockReader {
+        /**
+         * @param count
+         *     the number of values to read
+         * @return the next count values of the sequence
+         * @throws SQLException
+         */
+        long[] readBlock(int count) throws SQLException;
+    }
+
+    private final String sequenceName;
+    private volatile int blockSize;
+
+    // database URL~user name -> the block currently handed out
+    private final ConcurrentHashMap<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+
+    public IdBlockAllocator(String sequenceName, int blockSize) {
+        this.sequenceName = sequenceName;
+        setBlockSize(blockSize);
+    }
+
+    /**
+     * @param connection
+     *     a connection to the database of the sequence
+     * @param reader
+     *     used to read a new block of values from the database when the current block is used up
+     * @return the next value of the sequence
+     * @throws SQLException
+     */
+    public long nextValue(Connection connection, BlockReader reader) throws SQLException {
+        int blockSize = this.blockSize;
+        if (blockSize == 1) {
+            return readBlock(reader, 1)[0];
+        }
+        AtomicReference<Block> current = currentBlock(connection);
+        while (true) {
+            Block block = current.get();
+            if (block != null) {
+                int index = block.next.getAndIncrement();
+                if (index < block.values.length) {
+                    return block.values[index];
+                }
+            }
+            synchronized (current) {
+                // another thread may have replaced the block while we were waiting
+                if (current.get() == block) {
+                    current.set(new Block(readBlock(reader, blockSize)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param connection
+     *     a connection to the database of the sequence
+     * @param count
+     *     the number of values to obtain
+     * @param reader
+     *     used to read new values from the database
+     * @return the next count values of the sequence
+     * @throws SQLException
+     */
+    public long[] nextValues(Connection connection, int count, BlockReader reader) throws SQLException {
+        if (count >= blockSize) {
+            // a request that would use up a whole block is read in a single round trip of its own
+            return readBlock(reader, count);
+        }
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = nextValue(connection, reader);
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of values reserved each time a block is used up
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Sets the number of values reserved each time a block is used up; 1 reads every value from the database.
+     * Blocks that were already reserved are still handed out once the block size is greater than 1 again.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Discards the reserved blocks of all databases
+     */
+    public void clear() {
+        blocks.clear();
+    }
+
+    private AtomicReference<Block> currentBlock(Connection connection) throws SQLException {
+        // the tenants and datastores that share a database also share its sequences
+        DatabaseMetaData metaData = connection.getMetaData();
+        String key = metaData.getURL() + "~" + metaData.getUserName();
+        AtomicReference<Block> current = blocks.get(key);
+        if (current == null) {
+            current = blocks.computeIfAbsent(key, k -> new AtomicReference<>());
+        }
+        return current;
+    }
+
+    private long[] readBlock(BlockReader reader, int count) throws SQLException {
+        long[] values = reader.readBlock(count);
+        if (values.length != count) {
+            throw new IllegalStateException(sequenceName + " returned " + values.length + " values instead of " + count);
+        }
+        log.fine(() -> "Reserved " + count + " values of " + sequenceName);
+        return values;
+    }
+
+    private static final class Block {
+        private final long[] values;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Block(long[] values) {
+            this.values = values;
+        }
+    }
+}
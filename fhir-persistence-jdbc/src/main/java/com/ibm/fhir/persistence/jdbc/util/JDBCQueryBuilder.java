@@ -127,7 +127,7 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
         QuerySegmentAggregator helper;
         SqlQueryData query = null;
 
-        helper = this.buildQueryCommon(resourceType, searchContext);
+        helper = this.buildQueryCommon(resourceType, searchContext, false);
         if (helper != null) {
             query = helper.buildCountQuery();
         }
@@ -138,6 +138,23 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
 
     @Override
     public SqlQueryData buildQuery(Class<?> resourceType, FHIRSearchContext searchContext) throws Exception {
+        return buildQuery(resourceType, searchContext, false);
+    }
+
+    /**
+     * Builds a query that returns the requested page of the search results.
+     * 
+     * @param resourceType
+     *                      - The type of resource being searched for.
+     * @param searchContext
+     *                      - The search context containing the search parameters.
+     * @param lookAhead
+     *                      - If true, the query also returns the first row of the next page (if any), so that the
+     *                        caller can tell whether there is a next page without counting the search results.
+     * @return SqlQueryData - A query SQL string and its bind variables
+     * @throws Exception
+     */
+    public SqlQueryData buildQuery(Class<?> resourceType, FHIRSearchContext searchContext, boolean lookAhead) throws Exception {
         final String METHODNAME = "buildQuery";
         log.entering(CLASSNAME, METHODNAME,
                 new Object[] { resourceType.getSimpleName(), searchContext.getSearchParameters() });
@@ -145,7 +162,7 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
         SqlQueryData query = null;
         QuerySegmentAggregator helper;
 
-        helper = this.buildQueryCommon(resourceType, searchContext);
+        helper = this.buildQueryCommon(resourceType, searchContext, lookAhead);
         if (helper != null) {
             query = helper.buildQuery();
         }
@@ -162,12 +179,14 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
      *                      The type of FHIR resource being searched for.
      * @param searchContext
      *                      The search context containing search parameters.
+     * @param lookAhead
+     *                      If true, the page is extended by one row.
      * @return QuerySegmentAggregator - A query builder helper containing processed
      *         query segments.
      * @throws Exception
      */
-    private QuerySegmentAggregator buildQueryCommon(Class<?> resourceType, FHIRSearchContext searchContext)
-            throws Exception {
+    private QuerySegmentAggregator buildQueryCommon(Class<?> resourceType, FHIRSearchContext searchContext,
+            boolean lookAhead) throws Exception {
         final String METHODNAME = "buildQueryCommon";
         log.entering(CLASSNAME, METHODNAME,
                 new Object[] { resourceType.getSimpleName(), searchContext.getSearchParameters() });
@@ -198,8 +217,8 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
         boolean isValidQuery = true;
 
         helper =
-                QuerySegmentAggregatorFactory.buildQuerySegmentAggregator(resourceType, offset, pageSize,
-                        this.parameterDao, this.resourceDao, searchContext);
+                QuerySegmentAggregatorFactory.buildQuerySegmentAggregator(resourceType, offset,
+                        lookAhead ? pageSize + 1 : pageSize, this.parameterDao, this.resourceDao, searchContext);
 
         // Special logic for handling LocationPosition queries. These queries have interdependencies between
         // a couple of related input query parameters
@@ -655,7 +674,7 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
 
     private void appendMidChainParm(StringBuilder whereClauseSegment, QueryParameter currentParm, String chainedParmVar)
             throws FHIRPersistenceDBConnectException, FHIRPersistenceDataAccessException, FHIRPersistenceException {
-        Integer parameterNameId = ParameterNamesCache.getParameterNameId(currentParm.getCode());
+        Integer parameterNameId = NameIdCache.PARAMETER_NAMES.getId(currentParm.getCode());
         if (parameterNameId == null) {
             parameterNameId = this.parameterDao.readParameterNameId(currentParm.getCode());
             if (parameterNameId != null) {
@@ -962,7 +981,7 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
                     }
                     whereClauseSegment.append(tableAlias + DOT).append(CODE_SYSTEM_ID).append(operator)
                             .append(BIND_VAR);
-                    codeSystemId = CodeSystemsCache.getCodeSystemId(value.getValueSystem());
+                    codeSystemId = NameIdCache.CODE_SYSTEMS.getId(value.getValueSystem());
                     if (codeSystemId == null) {
                         codeSystemId = this.parameterDao.readCodeSystemId(value.getValueSystem());
                         if (codeSystemId != null) {
@@ -1158,7 +1177,7 @@ public class JDBCQueryBuilder extends AbstractQueryBuilder<SqlQueryData> {
 
         // Build this piece of the segment:
         // (P1.PARAMETER_NAME_ID = x
-        parameterNameId = ParameterNamesCache.getParameterNameId(queryParmName);
+        parameterNameId = NameIdCache.PARAMETER_NAMES.getId(queryParmName);
         if (parameterNameId == null) {
             // only try to read, not create
             parameterNameId = this.parameterDao.readParameterNameId(queryParmName);
@@ -0,0 +1,293 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+
+/**
+ * An in-memory cache of name to id mappings for one of the JDBC PL lookup tables (code systems, parameter names
+ * or resource types).
+ *
+ * <p>Each FHIR tenant/datastore combination has its own {@link IdMap}. The maps are organized by tenantId, then by
+ * datastoreId, so resolving the map for the current request does not build a composite key. Callers that perform
+ * many lookups in the same request should resolve the map once with {@link #getIdMap()} and keep it.
+ *
+ * <p>New entries are only added to an IdMap after the transaction that created them commits (see
+ * {@link CacheUpdater}), or in bulk from the contents of the backing table (see {@link IdMap#preload(Map)}).
+ */
+public class NameIdCache {
+    private static final String CLASSNAME = NameIdCache.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    /**
+     * The cache for FHIR Systems that are part of Token type Search parameters; keys are SQL-encoded system names
+     */
+    public static final NameIdCache CODE_SYSTEMS = new NameIdCache("CodeSystemsCache", SqlParameterEncoder::encode);
+
+    /**
+     * The cache for FHIR Search Parameter names
+     */
+    public static final NameIdCache PARAMETER_NAMES = new NameIdCache("ParameterNamesCache", UnaryOperator.identity());
+
+    /**
+     * The cache for FHIR resource type names
+     */
+    public static final NameIdCache RESOURCE_TYPES = new NameIdCache("ResourceTypesCache", UnaryOperator.identity());
+
+    private final String cacheName;
+    private final UnaryOperator<String> keyEncoder;
+    private volatile boolean enabled = true;
+
+    // tenantId -> datastoreId -> IdMap
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, IdMap>> idMaps = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private NameIdCache(String cacheName, UnaryOperator<String> keyEncoder) {
+        this.cacheName = cacheName;
+        this.keyEncoder = keyEncoder;
+    }
+
+    /**
+     * @return the IdMap for the tenant and datastore of the current request, or null if this cache is disabled
+     */
+    public IdMap getIdMap() {
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        return getIdMap(requestContext.getTenantId(), requestContext.getDataStoreId());
+    }
+
+    /**
+     * @param tenantId
+     *     the tenant id
+     * @param dataStoreId
+     *     the datastore id
+     * @return the IdMap for the passed tenant and datastore, or null if this cache is disabled
+     */
+    public IdMap getIdMap(String tenantId, String dataStoreId) {
+        if (!enabled) {
+            return null;
+        }
+        ConcurrentHashMap<String, IdMap> tenantMaps = idMaps.get(tenantId);
+        if (tenantMaps == null) {
+            tenantMaps = idMaps.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>());
+        }
+        IdMap idMap = tenantMaps.get(dataStoreId);
+        if (idMap == null) {
+            idMap = tenantMaps.computeIfAbsent(dataStoreId, k -> {
+                log.fine(cacheName + " - Added new cache map for tenantId=" + tenantId + " datastoreId=" + dataStoreId);
+                return new IdMap(tenantId, dataStoreId);
+            });
+        }
+        return idMap;
+    }
+
+    /**
+     * Retrieves the id for the passed name, for the current tenant-datastore.
+     *
+     * @param name
+     *     the name to look up
+     * @return the corresponding id, or null if it is not cached or the cache is disabled
+     */
+    public Integer getId(String name) {
+        IdMap idMap = getIdMap();
+        return (idMap != null) ? idMap.getId(name) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables this cache; when a disabled cache is enabled, any old entries are discarded.
+     */
+    public void setEnabled(boolean newEnabled) {
+        if (newEnabled != enabled) {
+            synchronized (this) {
+                if (newEnabled && !enabled) {
+                    idMaps.clear();
+                }
+                enabled = newEnabled;
+            }
+        }
+    }
+
+    /**
+     * Discards all entries, for all tenants and datastores
+     */
+    public void clear() {
+        idMaps.clear();
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * @return the total number of entries, for all tenants and datastores
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, IdMap> tenantMaps : idMaps.values()) {
+            for (IdMap idMap : tenantMaps.values()) {
+                size += idMap.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found an id
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find an id
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the ratio of lookups that found an id, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return (total == 0) ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * @return String - A formatted representation of the entire cache, including its statistics.
+     */
+    public String dumpCacheContents() {
+        ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> mapOfMaps = new ConcurrentHashMap<>();
+        for (ConcurrentHashMap<String, IdMap> tenantMaps : idMaps.values()) {
+            for (IdMap idMap : tenantMaps.values()) {
+                mapOfMaps.put(idMap.getTenantId() + "~" + idMap.getDataStoreId(), idMap.ids);
+            }
+        }
+        return CacheUtil.dumpCacheContents(cacheName, mapOfMaps)
+                + cacheName + " size=" + size() + " hits=" + getHitCount() + " misses=" + getMissCount() + CacheUtil.NEWLINE;
+    }
+
+    /**
+     * Determines and reports any discrepancies between the current tenant-datastore cache and the contents of the
+     * backing table.
+     *
+     * @param dbMap the contents of the backing table
+     * @return String - A report detailing cache/db discrepancies.
+     */
+    public String reportCacheDiscrepancies(Map<String, Integer> dbMap) {
+        IdMap idMap = getIdMap();
+        if (idMap == null) {
+            return "";
+        }
+        return CacheUtil.reportCacheDiscrepancies(cacheName, idMap.ids, dbMap);
+    }
+
+    /**
+     * The name to id mappings of a single tenant/datastore combination
+     */
+    public final class IdMap {
+        private final String tenantId;
+        private final String dataStoreId;
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicBoolean preloaded = new AtomicBoolean();
+
+        private IdMap(String tenantId, String dataStoreId) {
+            this.tenantId = tenantId;
+            this.dataStoreId = dataStoreId;
+        }
+
+        /**
+         * @param name the name to look up
+         * @return the corresponding id, or null if it is not cached
+         */
+        public Integer getId(String name) {
+            Integer id = ids.get(keyEncoder.apply(name));
+            if (id != null) {
+                hitCount.increment();
+            } else {
+                missCount.increment();
+            }
+            return id;
+        }
+
+        /**
+         * Adds the passed name/id pair, unless the name is already mapped.
+         * The pair must be present as a row in the backing table.
+         */
+        public void putId(String name, Integer id) {
+            String key = keyEncoder.apply(name);
+            if (ids.putIfAbsent(key, id) == null && log.isLoggable(Level.FINE)) {
+                log.fine(cacheName + " - Added new cache entry, key=" + key + "  value=" + id + "  tenantId=" + tenantId
+                        + "  datastoreId=" + dataStoreId);
+            }
+        }
+
+        /**
+         * Adds the passed name/id pairs; see {@link #putId(String, Integer)}
+         */
+        public void putIds(Map<String, Integer> newIds) {
+            for (Map.Entry<String, Integer> entry : newIds.entrySet()) {
+                putId(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Claims the one-time preload of this map. Only the first caller gets true and is then expected to call
+         * {@link #preload(Map)} with the committed contents of the backing table.
+         */
+        public boolean claimPreload() {
+            return preloaded.compareAndSet(false, true);
+        }
+
+        /**
+         * Adds all of the passed name/id pairs, which must be the committed contents of the backing table
+         */
+        public void preload(Map<String, Integer> dbMap) {
+            preloaded.set(true);
+            putIds(dbMap);
+            if (log.isLoggable(Level.FINE)) {
+                log.fine(cacheName + " - Preloaded " + dbMap.size() + " entries for tenantId=" + tenantId
+                        + " datastoreId=" + dataStoreId);
+            }
+        }
+
+        public boolean isPreloaded() {
+            return preloaded.get();
+        }
+
+        public int size() {
+            return ids.size();
+        }
+
+        public String getTenantId() {
+            return tenantId;
+        }
+
+        public String getDataStoreId() {
+            return dataStoreId;
+        }
+
+        @Override
+        public String toString() {
+            return cacheName + "[tenantId=" + tenantId + ", datastoreId=" + dataStoreId + "]";
+        }
+    }
+}
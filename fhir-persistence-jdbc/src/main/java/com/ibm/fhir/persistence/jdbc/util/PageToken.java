@@ -0,0 +1,137 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.parameters.QueryParameter;
+import com.ibm.fhir.search.parameters.QueryParameterValue;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used for keyset (seek) pagination of searches that are
+ * ordered by RESOURCE_ID.
+ *
+ * <p>A token identifies the page it was issued for, the page size and the query of the search, and carries the
+ * RESOURCE_ID of the last row of the previous page, so that the page can be read with {@code RESOURCE_ID > ?}
+ * instead of skipping all preceding rows with OFFSET. A token that can't be decoded, or that was issued for another
+ * page, page size or query, is ignored, and the page is read by offset.
+ */
+public class PageToken {
+    private static final Logger log = Logger.getLogger(PageToken.class.getName());
+
+    private static final char SEPARATOR = ':';
+
+    // the number of bytes of the SHA-256 digest of the query kept in the token
+    private static final int QUERY_HASH_LENGTH = 12;
+
+    private PageToken() {
+        // No operation
+    }
+
+    /**
+     * @param pageNumber the page the token is issued for
+     * @param pageSize the page size of the search
+     * @param queryHash the hash of the query of the search, see {@link #queryHash(Class, FHIRSearchContext)}
+     * @param lastResourceId the RESOURCE_ID of the last row of the preceding page
+     * @return the token
+     */
+    public static String encode(int pageNumber, int pageSize, String queryHash, long lastResourceId) {
+        String value = Integer.toString(pageNumber) + SEPARATOR + Integer.toString(pageSize) + SEPARATOR + queryHash
+                + SEPARATOR + Long.toString(lastResourceId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token the token passed by the client, may be null
+     * @param pageNumber the requested page
+     * @param pageSize the page size of the search
+     * @param queryHash the hash of the query of the search, see {@link #queryHash(Class, FHIRSearchContext)}
+     * @return the RESOURCE_ID after which the requested page starts, or null if the token is absent, invalid or
+     *         was issued for another page, page size or query
+     */
+    public static Long decode(String token, int pageNumber, int pageSize, String queryHash) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = value.split(String.valueOf(SEPARATOR), -1);
+            if (parts.length != 4) {
+                log.fine("Ignoring invalid page token '" + token + "'");
+                return null;
+            }
+            if (Integer.parseInt(parts[0]) != pageNumber || Integer.parseInt(parts[1]) != pageSize
+                    || !parts[2].equals(queryHash)) {
+                log.fine("Ignoring page token '" + token + "' issued for another page, page size or query");
+                return null;
+            }
+            return Long.parseLong(parts[3]);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException
+            log.fine("Ignoring invalid page token '" + token + "'");
+            return null;
+        }
+    }
+
+    /**
+     * @param resourceType the resource type of the search
+     * @param searchContext the search
+     * @return a hash of the resource types and search parameters of the search, which doesn't depend on the order
+     *         in which the search parameters were passed
+     */
+    public static String queryHash(Class<?> resourceType, FHIRSearchContext searchContext) {
+        List<String> parameters = new ArrayList<>();
+        for (QueryParameter parameter : searchContext.getSearchParameters()) {
+            StringBuilder normalized = new StringBuilder();
+            appendParameter(normalized, parameter);
+            parameters.add(normalized.toString());
+        }
+        Collections.sort(parameters);
+
+        StringBuilder query = new StringBuilder(resourceType.getSimpleName());
+        if (searchContext.getSearchResourceTypes() != null) {
+            List<String> searchResourceTypes = new ArrayList<>(searchContext.getSearchResourceTypes());
+            Collections.sort(searchResourceTypes);
+            query.append('\n').append(searchResourceTypes);
+        }
+        for (String parameter : parameters) {
+            query.append('\n').append(parameter);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, QUERY_HASH_LENGTH));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void appendParameter(StringBuilder normalized, QueryParameter parameter) {
+        normalized.append(parameter.getCode())
+            .append('|').append(parameter.getModifier() != null ? parameter.getModifier().value() : "")
+            .append('|').append(parameter.getModifierResourceTypeName() != null ? parameter.getModifierResourceTypeName() : "")
+            .append('|').append(parameter.isInclusionCriteria());
+        for (QueryParameterValue value : parameter.getValues()) {
+            // the upper bound of a date isn't part of the serialized value
+            normalized.append('|').append(value).append('~').append(value.getValueDateUpperBound());
+        }
+        if (parameter.getNextParameter() != null) {
+            normalized.append('.');
+            appendParameter(normalized, parameter.getNextParameter());
+        }
+    }
+}
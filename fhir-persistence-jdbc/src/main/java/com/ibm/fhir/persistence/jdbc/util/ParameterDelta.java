@@ -0,0 +1,336 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.DateParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValueVisitor;
+import com.ibm.fhir.persistence.jdbc.dto.LocationParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.NumberParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.QuantityParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.StringParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+
+/**
+ * The difference between the search parameter values of the current version of a resource and those of the
+ * version replacing it, used to rewrite only the parameter rows that actually change on update.
+ *
+ * <p>Each extracted value is reduced to a canonical key which covers everything written to its parameter
+ * table(s). The keys are grouped by parameter name, and a parameter name is considered changed when its
+ * multiset of keys differs between the two versions. The rows of a changed name are deleted and its new values
+ * inserted; the rows of all other names are left alone. Comparing whole names rather than single rows means
+ * the delta never depends on row identity, which the parameter tables do not expose.
+ */
+public class ParameterDelta {
+
+    // The parameter tables in the order in which they must be cleared; composites reference the rows of the
+    // other type-specific tables, so they go first. Tables starting with '_' are prefixed with the resource type.
+    private static final String COMPOSITES = "_composites";
+    private static final String STR_VALUES = "_str_values";
+    private static final String NUMBER_VALUES = "_number_values";
+    private static final String DATE_VALUES = "_date_values";
+    private static final String LATLNG_VALUES = "_latlng_values";
+    private static final String TOKEN_VALUES = "_token_values";
+    private static final String QUANTITY_VALUES = "_quantity_values";
+    private static final String RESOURCE_STR_VALUES = "resource_str_values";
+    private static final String RESOURCE_DATE_VALUES = "resource_date_values";
+    private static final String RESOURCE_TOKEN_VALUES = "resource_token_values";
+    private static final List<String> TABLES = Collections.unmodifiableList(Arrays.asList(COMPOSITES, STR_VALUES,
+            NUMBER_VALUES, DATE_VALUES, LATLNG_VALUES, TOKEN_VALUES, QUANTITY_VALUES, RESOURCE_STR_VALUES,
+            RESOURCE_DATE_VALUES, RESOURCE_TOKEN_VALUES));
+
+    private static final String BASE = "Resource";
+
+    // table -> names of the changed parameters which have rows in that table
+    private final Map<String, Set<String>> deletes;
+
+    // the new values of the changed parameters
+    private final List<ExtractedParameterValue> inserts;
+
+    private ParameterDelta(Map<String, Set<String>> deletes, List<ExtractedParameterValue> inserts) {
+        this.deletes = deletes;
+        this.inserts = inserts;
+    }
+
+    /**
+     * @return a delta which leaves all parameter rows as they are
+     */
+    public static ParameterDelta unchanged() {
+        return new ParameterDelta(Collections.emptyMap(), Collections.emptyList());
+    }
+
+    /**
+     * Compute the delta between the parameter values of two versions of a resource
+     *
+     * @param previous
+     *     the values extracted from the version currently stored
+     * @param current
+     *     the values extracted from the version replacing it
+     * @return the delta
+     * @throws FHIRPersistenceException
+     */
+    public static ParameterDelta compute(List<ExtractedParameterValue> previous, List<ExtractedParameterValue> current)
+            throws FHIRPersistenceException {
+        Map<String, List<String>> previousKeys = keysByName(previous);
+        Map<String, List<String>> currentKeys = keysByName(current);
+
+        Set<String> changedNames = new HashSet<>();
+        for (Map.Entry<String, List<String>> entry : previousKeys.entrySet()) {
+            if (!entry.getValue().equals(currentKeys.get(entry.getKey()))) {
+                changedNames.add(entry.getKey());
+            }
+        }
+        for (String name : currentKeys.keySet()) {
+            if (!previousKeys.containsKey(name)) {
+                changedNames.add(name);
+            }
+        }
+
+        Map<String, Set<String>> deletes = new HashMap<>();
+        List<ExtractedParameterValue> inserts = new ArrayList<>();
+        if (!changedNames.isEmpty()) {
+            TableVisitor tables = new TableVisitor();
+            for (ExtractedParameterValue value : previous) {
+                if (changedNames.contains(value.getName())) {
+                    tables.add(value, deletes);
+                }
+            }
+            for (ExtractedParameterValue value : current) {
+                if (changedNames.contains(value.getName())) {
+                    tables.add(value, deletes);
+                    inserts.add(value);
+                }
+            }
+        }
+        return new ParameterDelta(deletes, inserts);
+    }
+
+    /**
+     * @return true if no parameter rows need to be deleted or inserted
+     */
+    public boolean isEmpty() {
+        return deletes.isEmpty() && inserts.isEmpty();
+    }
+
+    /**
+     * @param tablePrefix
+     *     the resource type name used to prefix the type-specific parameter tables
+     * @return the names of the changed parameters by the table holding their rows, in the order in which the tables
+     *     must be cleared
+     */
+    public Map<String, Set<String>> getDeletes(String tablePrefix) {
+        Map<String, Set<String>> result = new LinkedHashMap<>();
+        for (String table : TABLES) {
+            Set<String> names = deletes.get(table);
+            if (names != null) {
+                result.put(table.startsWith("_") ? tablePrefix + table : table, names);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the new values of the changed parameters
+     */
+    public List<ExtractedParameterValue> getInserts() {
+        return inserts;
+    }
+
+    /**
+     * @return the names of the changed parameters
+     */
+    public Set<String> getChangedNames() {
+        Set<String> result = new TreeSet<>();
+        for (Set<String> names : deletes.values()) {
+            result.addAll(names);
+        }
+        return result;
+    }
+
+    private static Map<String, List<String>> keysByName(List<ExtractedParameterValue> values) throws FHIRPersistenceException {
+        Map<String, List<String>> result = new HashMap<>();
+        KeyVisitor keys = new KeyVisitor();
+        for (ExtractedParameterValue value : values) {
+            String key = keys.key(value);
+            if (key != null) {
+                result.computeIfAbsent(value.getName(), k -> new ArrayList<>()).add(key);
+            }
+        }
+        for (List<String> list : result.values()) {
+            Collections.sort(list);
+        }
+        return result;
+    }
+
+    private static boolean isBase(ExtractedParameterValue value) {
+        return BASE.equals(value.getBase());
+    }
+
+    /**
+     * Builds the canonical key of a parameter value. Values which are not stored (references and uris) get no key.
+     */
+    private static final class KeyVisitor implements ExtractedParameterValueVisitor {
+        private StringBuilder key;
+
+        private String key(ExtractedParameterValue value) throws FHIRPersistenceException {
+            key = new StringBuilder();
+            value.accept(this);
+            return key.length() == 0 ? null : key.toString();
+        }
+
+        @Override
+        public void visit(StringParmVal param) {
+            key.append(isBase(param) ? "S*" : "S");
+            append(param.getValueString());
+        }
+
+        @Override
+        public void visit(NumberParmVal param) {
+            key.append('N');
+            append(param.getValueNumber());
+            append(param.getValueNumberLow());
+            append(param.getValueNumberHigh());
+        }
+
+        @Override
+        public void visit(DateParmVal param) {
+            key.append(isBase(param) ? "D*" : "D");
+            append(param.getValueDateStart());
+            append(param.getValueDateEnd());
+        }
+
+        @Override
+        public void visit(TokenParmVal param) {
+            key.append(isBase(param) ? "T*" : "T");
+            append(param.getValueSystem());
+            append(param.getValueCode());
+        }
+
+        @Override
+        public void visit(QuantityParmVal param) {
+            key.append('Q');
+            append(param.getValueSystem());
+            append(param.getValueCode());
+            append(param.getValueNumber());
+            append(param.getValueNumberLow());
+            append(param.getValueNumberHigh());
+        }
+
+        @Override
+        public void visit(LocationParmVal param) {
+            key.append('L');
+            append(param.getValueLatitude());
+            append(param.getValueLongitude());
+        }
+
+        @Override
+        public void visit(CompositeParmVal param) throws FHIRPersistenceException {
+            key.append('C');
+            // the order of the components is significant
+            for (ExtractedParameterValue component : param.getComponent()) {
+                key.append('[');
+                component.accept(this);
+                key.append(']');
+            }
+        }
+
+        private void append(Object value) {
+            if (value == null) {
+                key.append("|-");
+            } else {
+                // length-prefixed, so that no value can be mistaken for the start of the next one
+                String s = value instanceof Timestamp ? timestamp((Timestamp) value) : value.toString();
+                key.append('|').append(s.length()).append(':').append(s);
+            }
+        }
+
+        private static String timestamp(Timestamp value) {
+            // independent of the default time zone
+            return value.getTime() + "." + value.getNanos();
+        }
+    }
+
+    /**
+     * Collects the tables holding the rows of a parameter value
+     */
+    private static final class TableVisitor implements ExtractedParameterValueVisitor {
+        private Set<String> tables;
+
+        private void add(ExtractedParameterValue value, Map<String, Set<String>> deletes) throws FHIRPersistenceException {
+            tables = new HashSet<>();
+            value.accept(this);
+            for (String table : tables) {
+                deletes.computeIfAbsent(table, k -> new HashSet<>()).add(value.getName());
+            }
+        }
+
+        @Override
+        public void visit(StringParmVal param) {
+            tables.add(isBase(param) ? RESOURCE_STR_VALUES : STR_VALUES);
+        }
+
+        @Override
+        public void visit(NumberParmVal param) {
+            tables.add(NUMBER_VALUES);
+        }
+
+        @Override
+        public void visit(DateParmVal param) {
+            tables.add(isBase(param) ? RESOURCE_DATE_VALUES : DATE_VALUES);
+        }
+
+        @Override
+        public void visit(TokenParmVal param) {
+            tables.add(isBase(param) ? RESOURCE_TOKEN_VALUES : TOKEN_VALUES);
+        }
+
+        @Override
+        public void visit(QuantityParmVal param) {
+            tables.add(QUANTITY_VALUES);
+        }
+
+        @Override
+        public void visit(LocationParmVal param) {
+            tables.add(LATLNG_VALUES);
+        }
+
+        @Override
+        public void visit(CompositeParmVal param) {
+            // the component rows always go to the type-specific tables, under the name of the composite
+            tables.add(COMPOSITES);
+            for (ExtractedParameterValue component : param.getComponent()) {
+                if (component instanceof StringParmVal) {
+                    tables.add(STR_VALUES);
+                } else if (component instanceof NumberParmVal) {
+                    tables.add(NUMBER_VALUES);
+                } else if (component instanceof DateParmVal) {
+                    tables.add(DATE_VALUES);
+                } else if (component instanceof TokenParmVal) {
+                    tables.add(TOKEN_VALUES);
+                } else if (component instanceof QuantityParmVal) {
+                    tables.add(QUANTITY_VALUES);
+                } else if (component instanceof LocationParmVal) {
+                    tables.add(LATLNG_VALUES);
+                }
+            }
+        }
+    }
+}
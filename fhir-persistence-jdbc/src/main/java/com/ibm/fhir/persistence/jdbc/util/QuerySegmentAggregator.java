@@ -81,6 +81,9 @@ public class QuerySegmentAggregator {
 
     private int offset;
     private int pageSize;
+
+    // when set, only rows with a greater RESOURCE_ID are selected (keyset pagination)
+    private Long afterResourceId;
     protected ParameterDAO parameterDao;
     protected ResourceDAO resourceDao;
 
@@ -107,6 +110,16 @@ public class QuerySegmentAggregator {
         this.resourceTypes = resourceTypes;
     }
 
+    /**
+     * Restricts the query to rows with a RESOURCE_ID greater than the passed value, which is the RESOURCE_ID
+     * of the last row of the previous page. Only valid with the default ordering, and the offset should then be 0.
+     * 
+     * @param afterResourceId
+     */
+    public void setAfterResourceId(Long afterResourceId) {
+        this.afterResourceId = afterResourceId;
+    }
+
     /**
      * Adds a query segment, which is a where clause segment corresponding to the
      * passed query Parameter and its encapsulated search values.
@@ -152,19 +165,21 @@ public class QuerySegmentAggregator {
             StringBuilder queryString = new StringBuilder();
             queryString.append(SELECT_ROOT);
             buildFromClause(queryString, resourceType.getSimpleName());
+            addSeekPredicate(queryString);
             buildWhereClause(queryString, null);
 
             // Bind Variables
             List<Object> allBindVariables = new ArrayList<>();
             allBindVariables.addAll(idsObjects);
             allBindVariables.addAll(lastUpdatedObjects);
+            addSeekBindVariable(allBindVariables);
             for (SqlQueryData querySegment : this.querySegments) {
                 allBindVariables.addAll(querySegment.getBindVariables());
             }
 
             // Add default ordering
             queryString.append(DEFAULT_ORDERING);
-            this.addPaginationClauses(queryString);
+            this.addPaginationClauses(queryString, allBindVariables);
             queryData = new SqlQueryData(queryString.toString(), allBindVariables);
         }
 
@@ -262,10 +277,16 @@ public class QuerySegmentAggregator {
 
                 queryString.append(subSelectRoot);
                 buildFromClause(queryString, resourceTypeName);
+                if (addFinalClauses) {
+                    addSeekPredicate(queryString);
+                }
 
                 // An important step here is to add _id and _lastUpdated
                 allBindVariables.addAll(idsObjects);
                 allBindVariables.addAll(lastUpdatedObjects);
+                if (addFinalClauses) {
+                    addSeekBindVariable(allBindVariables);
+                }
 
                 buildWhereClause(queryString, resourceTypeName);
 
@@ -282,7 +303,7 @@ public class QuerySegmentAggregator {
         // Add Ordering and Pagination
         if (addFinalClauses) {
             queryString.append(DEFAULT_ORDERING);
-            this.addPaginationClauses(queryString);
+            this.addPaginationClauses(queryString, allBindVariables);
         }
 
         SqlQueryData queryData = new SqlQueryData(queryString.toString(), allBindVariables);
@@ -312,6 +333,24 @@ public class QuerySegmentAggregator {
         log.exiting(CLASSNAME, METHODNAME);
     }
 
+    /**
+     * Appends the keyset pagination predicate to the join condition of the resources table, if a page is
+     * read after a known RESOURCE_ID. Its bind variable follows those of the _id and _lastUpdated derived tables.
+     * 
+     * @param fromClause the FROM clause built by {@link #buildFromClause(StringBuilder, String)}
+     */
+    protected void addSeekPredicate(StringBuilder fromClause) {
+        if (afterResourceId != null) {
+            fromClause.append("AND R.RESOURCE_ID > ? ");
+        }
+    }
+
+    private void addSeekBindVariable(List<Object> bindVariables) {
+        if (afterResourceId != null) {
+            bindVariables.add(afterResourceId);
+        }
+    }
+
     /*
      * Processes the From Clause for _id, as _id is contained in the
      * LOGICAL_RESOURCES
@@ -390,6 +429,11 @@ public class QuerySegmentAggregator {
      * Builds the WHERE clause for the query being generated. This method aggregates
      * the contained query segments, and ties those segments back
      * to the appropriate parameter table alias.
+     * <p>
+     * The generated text only depends on the shape of the search (the resource type,
+     * the query segment strings, which hold bind markers for all search values, and
+     * the type and modifier of each parameter), so it is taken from the
+     * {@link QueryTemplateCache} when the same shape was already generated.
      * 
      * @param whereClause
      * @param overrideType if not null, then it's the default type used in the
@@ -401,10 +445,36 @@ public class QuerySegmentAggregator {
         log.entering(CLASSNAME, METHODNAME);
 
         // Override the Type is null, then use the default type here. 
-        if (overrideType == null) {
-            overrideType = this.resourceType.getSimpleName();
+        String type = (overrideType != null) ? overrideType : this.resourceType.getSimpleName();
+        whereClause.append(QueryTemplateCache.INSTANCE.getTemplate(whereClauseShape(type),
+                shape -> generateWhereClause(type)));
+
+        log.exiting(CLASSNAME, METHODNAME);
+    }
+
+    /**
+     * @return the key identifying the text generated by {@link #generateWhereClause(String)} for the passed type
+     */
+    private List<Object> whereClauseShape(String overrideType) {
+        List<Object> shape = new ArrayList<>(1 + 4 * this.querySegments.size());
+        shape.add(overrideType);
+        for (int i = 0; i < this.querySegments.size(); i++) {
+            QueryParameter param = this.searchQueryParameters.get(i);
+            shape.add(param.getCode());
+            shape.add(param.getType());
+            shape.add(param.getModifier());
+            shape.add(this.querySegments.get(i).getQueryString());
+            if (Type.COMPOSITE.equals(param.getType()) && param.getValues() != null && !param.getValues().isEmpty()) {
+                for (QueryParameter component : param.getValues().get(0).getComponent()) {
+                    shape.add(component.getType());
+                }
+            }
         }
+        return shape;
+    }
 
+    private String generateWhereClause(String overrideType) {
+        StringBuilder whereClause = new StringBuilder();
         String whereClauseSegment;
 
         for (int i = 0; i < this.querySegments.size(); i++) {
@@ -465,7 +535,7 @@ public class QuerySegmentAggregator {
             } // end if SKIP_WHERE
         } // end for
 
-        log.exiting(CLASSNAME, METHODNAME);
+        return whereClause.toString();
     }
 
     public static String tableName(String resourceType, QueryParameter param) {
@@ -521,18 +591,24 @@ public class QuerySegmentAggregator {
     /**
      * Adds the appropriate pagination clauses to the passed query string buffer,
      * based on the type
-     * of database we're running against.
+     * of database we're running against. The page size and offset are passed as
+     * bind variables, so that every page of a search shares the same SQL text.
      * 
-     * @param queryString A query string buffer.
+     * @param queryString   A query string buffer.
+     * @param bindVariables The bind variables of the query, to which the pagination
+     *                      values are appended in the order of their markers.
      * @throws Exception
      */
-    protected void addPaginationClauses(StringBuilder queryString) throws Exception {
+    protected void addPaginationClauses(StringBuilder queryString, List<Object> bindVariables) throws Exception {
 
         if (this.parameterDao.isDb2Database()) {
-            queryString.append(" LIMIT ").append(this.pageSize).append(" OFFSET ").append(this.offset);
+            queryString.append(" LIMIT ? OFFSET ?");
+            bindVariables.add(this.pageSize);
+            bindVariables.add(this.offset);
         } else {
-            queryString.append(" OFFSET ").append(this.offset).append(" ROWS")
-                    .append(" FETCH NEXT ").append(this.pageSize).append(" ROWS ONLY");
+            queryString.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+            bindVariables.add(this.offset);
+            bindVariables.add(this.pageSize);
         }
     }
-}
\ No newline at end of file
+}
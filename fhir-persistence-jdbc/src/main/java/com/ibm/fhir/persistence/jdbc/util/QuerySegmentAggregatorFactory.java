@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2018,2019
+ * (C) Copyright IBM Corp. 2018,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -39,7 +39,16 @@ public class QuerySegmentAggregatorFactory {
             qsa = new SortedQuerySegmentAggregator(resourceType, offset, pageSize, parameterDao, resourceDao, searchContext.getSortParameters());
         }
         else {
-            qsa = new QuerySegmentAggregator(resourceType, offset, pageSize, parameterDao, resourceDao);
+            // Unsorted results are ordered by RESOURCE_ID, so a valid page token lets us seek instead of skipping rows
+            Long afterResourceId = supportsPageToken(searchContext)
+                    ? PageToken.decode(searchContext.getPageToken(), searchContext.getPageNumber(), searchContext.getPageSize(),
+                            PageToken.queryHash(resourceType, searchContext)) : null;
+            if (afterResourceId != null) {
+                qsa = new QuerySegmentAggregator(resourceType, 0, pageSize, parameterDao, resourceDao);
+                qsa.setAfterResourceId(afterResourceId);
+            } else {
+                qsa = new QuerySegmentAggregator(resourceType, offset, pageSize, parameterDao, resourceDao);
+            }
         }
         
         if( Resource.class.equals(resourceType) && searchContext.getSearchResourceTypes()!= null) {
@@ -50,5 +59,16 @@ public class QuerySegmentAggregatorFactory {
         return qsa;
         
     }
+
+    /**
+     * @return true if the results of the passed search are ordered by RESOURCE_ID only, so that its pages can be
+     *         read with a page token. The token seeks past the RESOURCE_ID of the last row of the previous page,
+     *         not past a point in commit order, so a resource written while the pages are read shows up on a later
+     *         page only if its id is greater than that one; paging by offset gives no better guarantee.
+     */
+    public static boolean supportsPageToken(FHIRSearchContext searchContext) {
+        return !searchContext.hasIncludeParameters() && !searchContext.hasRevIncludeParameters()
+                && !searchContext.hasSortParameters();
+    }
     
 }
@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+
+/**
+ * An in-memory cache of the SQL text generated for a search shape, together with execution statistics per shape.
+ *
+ * <p>All search values are passed to the database as bind variables, so the generated SQL only depends on the shape
+ * of the search: the resource type and the name, type and modifier of each parameter, along with the number of
+ * values and prefixes used. Searches of the same shape therefore share one SQL string, which is both generated once
+ * on the client and prepared once by the database statement cache.
+ *
+ * <p>Execution statistics are keyed by the SQL string itself. To keep their footprint bounded, only the first
+ * {@code maxShapes} distinct statements are tracked individually; the executions of any other statement are added
+ * to a single overflow entry.
+ */
+public class QueryTemplateCache {
+    public static final QueryTemplateCache INSTANCE = new QueryTemplateCache(1024, 256);
+
+    // the number of shapes reported by getStatistics()
+    private static final int REPORTED_SHAPES = 20;
+    private static final int REPORTED_SQL_LENGTH = 300;
+    private static final String OVERFLOW = "<other>";
+
+    private final BoundedConcurrentCache<List<Object>, String> templates;
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+    private final int maxShapes;
+
+    /**
+     * @param maxTemplates
+     *     the maximum number of generated SQL strings held by the cache
+     * @param maxShapes
+     *     the maximum number of distinct statements for which execution statistics are kept
+     */
+    public QueryTemplateCache(int maxTemplates, int maxShapes) {
+        this.templates = new BoundedConcurrentCache<>(maxTemplates);
+        this.maxShapes = maxShapes;
+    }
+
+    /**
+     * Get the SQL text for the passed shape, generating and caching it if it is not cached yet
+     *
+     * @param shape
+     *     a list of values that uniquely determines the generated text
+     * @param generator
+     *     the function used to generate the text of a shape that is not cached yet
+     * @return the SQL text for the shape
+     */
+    public String getTemplate(List<Object> shape, Function<List<Object>, String> generator) {
+        return templates.computeIfAbsent(shape, generator);
+    }
+
+    /**
+     * Record one execution of the passed statement
+     *
+     * @param sql
+     *     the SQL text of the statement
+     * @param elapsedNanos
+     *     the time taken to execute the statement, in nanoseconds
+     */
+    public void recordExecution(String sql, long elapsedNanos) {
+        Timing timing = timings.get(sql);
+        if (timing == null) {
+            // the bound is approximate under concurrent inserts, which is fine for statistics
+            String key = (timings.size() < maxShapes) ? sql : OVERFLOW;
+            timing = timings.computeIfAbsent(key, k -> new Timing());
+        }
+        timing.record(elapsedNanos);
+    }
+
+    /**
+     * @return a summary of the template cache and of the statements with the highest total execution time
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("templates: ").append(templates).append(System.lineSeparator());
+
+        List<Map.Entry<String, Timing>> entries = new ArrayList<>(timings.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Timing> e) -> e.getValue().totalNanos.sum()).reversed());
+        for (Map.Entry<String, Timing> entry : entries.subList(0, Math.min(REPORTED_SHAPES, entries.size()))) {
+            Timing timing = entry.getValue();
+            long count = timing.count.sum();
+            long totalNanos = timing.totalNanos.sum();
+            String sql = entry.getKey();
+            if (sql.length() > REPORTED_SQL_LENGTH) {
+                sql = sql.substring(0, REPORTED_SQL_LENGTH) + "...";
+            }
+            sb.append("count=").append(count)
+                .append(", totalMs=").append(TimeUnit.NANOSECONDS.toMillis(totalNanos))
+                .append(", avgMs=").append(count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count))
+                .append(", maxMs=").append(TimeUnit.NANOSECONDS.toMillis(timing.maxNanos.get()))
+                .append(", sql=").append(sql)
+                .append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of executions recorded for the passed statement, or 0 if it is not tracked individually
+     */
+    public long getExecutionCount(String sql) {
+        Timing timing = timings.get(sql);
+        return (timing != null) ? timing.count.sum() : 0;
+    }
+
+    /**
+     * Remove all cached templates and execution statistics
+     */
+    public void clear() {
+        templates.clear();
+        timings.clear();
+    }
+
+    private static final class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+        }
+    }
+}
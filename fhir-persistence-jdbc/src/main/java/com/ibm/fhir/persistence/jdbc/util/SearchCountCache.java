@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+
+/**
+ * An in-memory cache of search result counts, used to answer searches with {@code _total=estimate}.
+ *
+ * <p>Counts are keyed by tenant, datastore, count query and bind variables, and are reused until they are older
+ * than the time-to-live passed by the caller. A cached count does not reflect the resources written since it was
+ * taken, which is acceptable for an estimate.
+ */
+public class SearchCountCache {
+    public static final SearchCountCache INSTANCE = new SearchCountCache(2048);
+
+    private final BoundedConcurrentCache<Key, Count> counts;
+
+    public SearchCountCache(int maxEntries) {
+        this.counts = new BoundedConcurrentCache<>(maxEntries);
+    }
+
+    /**
+     * @param countQuery
+     *     the count query
+     * @param ttlSeconds
+     *     the maximum age of a cached count, in seconds
+     * @return the count cached for the passed query in the tenant and datastore of the current request, or null if
+     *     there is none or it has expired
+     */
+    public Integer get(SqlQueryData countQuery, long ttlSeconds) {
+        Key key = key(countQuery);
+        Count count = counts.get(key);
+        if (count == null) {
+            return null;
+        }
+        if (System.nanoTime() - count.createdNanos > TimeUnit.SECONDS.toNanos(ttlSeconds)) {
+            counts.remove(key);
+            return null;
+        }
+        return count.value;
+    }
+
+    /**
+     * Cache the count of the passed query for the tenant and datastore of the current request.
+     */
+    public void put(SqlQueryData countQuery, int value) {
+        counts.put(key(countQuery), new Count(value, System.nanoTime()));
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    private static Key key(SqlQueryData countQuery) {
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        return new Key(requestContext.getTenantId(), requestContext.getDataStoreId(), countQuery.getQueryString(),
+                new ArrayList<>(countQuery.getBindVariables()));
+    }
+
+    private static final class Key {
+        private final String tenantId;
+        private final String dataStoreId;
+        private final String queryString;
+        private final List<Object> bindVariables;
+        private final int hashCode;
+
+        private Key(String tenantId, String dataStoreId, String queryString, List<Object> bindVariables) {
+            this.tenantId = tenantId;
+            this.dataStoreId = dataStoreId;
+            this.queryString = queryString;
+            this.bindVariables = bindVariables;
+            this.hashCode = Objects.hash(tenantId, dataStoreId, queryString, bindVariables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && Objects.equals(tenantId, other.tenantId)
+                    && Objects.equals(dataStoreId, other.dataStoreId)
+                    && Objects.equals(queryString, other.queryString)
+                    && Objects.equals(bindVariables, other.bindVariables);
+        }
+    }
+
+    private static final class Count {
+        private final int value;
+        private final long createdNanos;
+
+        private Count(int value, long createdNanos) {
+            this.value = value;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -112,8 +112,9 @@ public class SortedQuerySegmentAggregator extends QuerySegmentAggregator {
             // Add in order-by clause.
             sysLvlQueryString.append(this.buildSysLvlOrderByClause());
             // Add pagination clauses.
-            this.addPaginationClauses(sysLvlQueryString);
-            queryData = new SqlQueryData(sysLvlQueryString.toString(), queryData.getBindVariables());
+            List<Object> allBindVariables = new ArrayList<>(queryData.getBindVariables());
+            this.addPaginationClauses(sysLvlQueryString, allBindVariables);
+            queryData = new SqlQueryData(sysLvlQueryString.toString(), allBindVariables);
         } else {
             StringBuilder sqlSortQuery = new StringBuilder();
             // Build SELECT clause
@@ -144,7 +145,7 @@ public class SortedQuerySegmentAggregator extends QuerySegmentAggregator {
             sqlSortQuery.append(this.buildOrderByClause());
 
             // Add in clauses to support pagination
-            this.addPaginationClauses(sqlSortQuery);
+            this.addPaginationClauses(sqlSortQuery, allBindVariables);
 
             queryData = new SqlQueryData(sqlSortQuery.toString(), allBindVariables);
         }
@@ -298,7 +299,7 @@ public class SortedQuerySegmentAggregator extends QuerySegmentAggregator {
         // Build the LEFT OUTER JOINs needed to access the required sort parameters.
         int sortParmIndex = 1;
         for (SortParameter sortParm : this.sortParameters) {
-            sortParameterNameId = ParameterNamesCache.getParameterNameId(sortParm.getCode());
+            sortParameterNameId = NameIdCache.PARAMETER_NAMES.getId(sortParm.getCode());
             if (sortParameterNameId == null) {
                 // Only read...don't try and create the parameter name if it doesn't exist
                 sortParameterNameId = this.parameterDao.readParameterNameId(sortParm.getCode());
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -20,6 +20,9 @@ public class SqlParameterEncoder {
 
     private static final String BLACKLIST_CHARACTERS_REGEX = "['\"]";
 
+    // shared, as compiling the pattern costs more than encoding a typical parameter
+    private static final SqlParameterEncoder DEFAULT_ENCODER = new SqlParameterEncoder();
+
     private final String escapeCharacter;
     private final String blackListCharactersRegex;
     private final Pattern escapeCharacterPattern;
@@ -47,7 +50,11 @@ public class SqlParameterEncoder {
     }
     
     public static String encode(String parameter) {
-        return encode(parameter, DEFAULT_ESCAPE_CHARACTER, BLACKLIST_CHARACTERS_REGEX);
+        // most parameters contain no blacklisted characters and are returned as-is
+        if (parameter != null && parameter.indexOf('\'') == -1 && parameter.indexOf('"') == -1) {
+            return parameter;
+        }
+        return DEFAULT_ENCODER.encodeParameter(parameter);
     }
 
     public static String encode(String parameter, String defaultEscapeCharacter, String blackListCharactersRegex) {
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -23,7 +23,7 @@ import java.util.Set;
 
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
-import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
 import com.ibm.fhir.search.SearchConstants.Prefix;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.QueryParameterValue;
@@ -120,7 +120,7 @@ public class QuantityParmBehaviorUtil {
          * <code>value <> ? AND system = ? AND code = ?</code>
          */
         if (isPresent(system)) {
-            Integer systemId = CodeSystemsCache.getCodeSystemId(system);
+            Integer systemId = NameIdCache.CODE_SYSTEMS.getId(system);
             if (systemId == null) {
                 systemId = parameterDao.readCodeSystemId(system);
                 if (systemId != null) {
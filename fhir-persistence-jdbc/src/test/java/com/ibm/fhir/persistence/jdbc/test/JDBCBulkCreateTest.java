@@ -0,0 +1,82 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.jdbc.FHIRResourceDAOFactory;
+import com.ibm.fhir.persistence.jdbc.dao.api.ResourceDAO;
+import com.ibm.fhir.persistence.jdbc.dao.impl.FHIRDbDAOImpl;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterDAOImpl;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.Resource;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
+import com.ibm.fhir.persistence.test.common.AbstractBulkCreateTest;
+
+/**
+ * Concrete subclass for bulk create tests run against the JDBC schema.
+ */
+public class JDBCBulkCreateTest extends AbstractBulkCreateTest {
+    
+    private Properties testProps;
+    
+    public JDBCBulkCreateTest() throws Exception {
+        this.testProps = TestUtil.readTestProperties("test.jdbc.properties");
+    }
+
+    @Override
+    public void bootstrapDatabase() throws Exception {
+        DerbyInitializer derbyInit;
+        String dbDriverName = this.testProps.getProperty("dbDriverName");
+        if (dbDriverName != null && dbDriverName.contains("derby")) {
+            derbyInit = new DerbyInitializer(this.testProps);
+            derbyInit.bootstrapDb(false);
+        }
+    }
+    
+    @Override
+    public FHIRPersistence getPersistenceImpl() throws Exception {
+        return new FHIRPersistenceJDBCImpl(this.testProps);
+    }
+
+    @Test(dependsOnMethods = { "testUpdateAll" })
+    public void testInsertAllSkipsExistingLogicalIds() throws Exception {
+        // the logical id was created by another transaction after the caller found it to be new
+        Resource resourceDTO = new Resource();
+        resourceDTO.setLogicalId(patientId1);
+        resourceDTO.setVersionId(1);
+        resourceDTO.setResourceType("Patient");
+        resourceDTO.setLastUpdated(new Timestamp(System.currentTimeMillis()));
+        resourceDTO.setData(new byte[0]);
+
+        try (Connection connection = new FHIRDbDAOImpl(this.testProps).getConnection()) {
+            ResourceDAO resourceDao = FHIRResourceDAOFactory.getResourceDAO(connection);
+            if (!resourceDao.isBatchInsertSupported()) {
+                return;
+            }
+            List<List<ExtractedParameterValue>> parameters = Collections.singletonList(null);
+            List<Resource> inserted = resourceDao.insertAll(Collections.singletonList(resourceDTO), parameters, new ParameterDAOImpl(connection));
+            assertTrue(inserted.isEmpty());
+        }
+
+        Patient read = persistence.read(getDefaultPersistenceContext(), Patient.class, patientId1).getResource();
+        assertEquals(read.getMeta().getVersionId().getValue(), "2");
+    }
+}
@@ -16,6 +16,7 @@ import com.ibm.fhir.database.utils.derby.DerbyMaster;
 import com.ibm.fhir.database.utils.derby.DerbyPropertyAdapter;
 import com.ibm.fhir.database.utils.derby.DerbyTranslator;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
 import com.ibm.fhir.schema.derby.DerbyFhirDatabase;
 
 /**
@@ -89,6 +90,9 @@ public class DerbyInitializer {
             // wipes the disk content of the database. Hopefully there aren't any
             // open connections at this point
             DerbyMaster.dropDatabase(DB_NAME);
+            // ids reserved from the sequences of the old database must not be handed out
+            IdBlockAllocator.FHIR_SEQUENCE.clear();
+            IdBlockAllocator.FHIR_REF_SEQUENCE.clear();
         }
 
         // Inject the DB_NAME into the dbProps
@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator;
+import com.ibm.fhir.persistence.jdbc.util.IdBlockAllocator.BlockReader;
+
+/**
+ * Tests the allocation of sequence values from blocks reserved ahead of time
+ */
+public class IdBlockAllocatorTest {
+
+    /**
+     * A stand-in for a database sequence, which counts the round trips made to it
+     */
+    private static class Sequence implements BlockReader {
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public long[] readBlock(int count) {
+            reads.incrementAndGet();
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = value.incrementAndGet();
+            }
+            return values;
+        }
+    }
+
+    private static final Connection DB1 = connection("jdbc:derby:db1");
+    private static final Connection DB2 = connection("jdbc:derby:db2");
+
+    @Test
+    public void testValuesComeFromBlocks() throws Exception {
+        IdBlockAllocator allocator = new IdBlockAllocator("test_sequence", 10);
+        Sequence sequence = new Sequence();
+
+        for (int i = 1; i <= 25; i++) {
+            assertEquals(allocator.nextValue(DB1, sequence), i);
+        }
+        assertEquals(sequence.reads.get(), 3);
+    }
+
+    @Test
+    public void testLargeRequestIsReadDirectly() throws Exception {
+        IdBlockAllocator allocator = new IdBlockAllocator("test_sequence", 10);
+        Sequence sequence = new Sequence();
+
+        assertEquals(allocator.nextValue(DB1, sequence), 1);
+        long[] values = allocator.nextValues(DB1, 20, sequence);
+        assertEquals(values.length, 20);
+        assertEquals(values[0], 11);
+        assertEquals(sequence.reads.get(), 2);
+
+        // the rest of the first block is still used
+        values = allocator.nextValues(DB1, 3, sequence);
+        assertEquals(values[0], 2);
+        assertEquals(values[2], 4);
+        assertEquals(sequence.reads.get(), 2);
+    }
+
+    @Test
+    public void testDatabasesHaveTheirOwnBlocks() throws Exception {
+        IdBlockAllocator allocator = new IdBlockAllocator("test_sequence", 10);
+        Sequence sequence1 = new Sequence();
+        Sequence sequence2 = new Sequence();
+
+        assertEquals(allocator.nextValue(DB1, sequence1), 1);
+        assertEquals(allocator.nextValue(DB2, sequence2), 1);
+        assertEquals(allocator.nextValue(DB1, sequence1), 2);
+        assertEquals(sequence1.reads.get(), 1);
+        assertEquals(sequence2.reads.get(), 1);
+    }
+
+    @Test
+    public void testBlockSizeOfOneReadsEveryValue() throws Exception {
+        IdBlockAllocator allocator = new IdBlockAllocator("test_sequence", 1);
+        Sequence sequence = new Sequence();
+
+        // the connection isn't even asked for its database
+        assertEquals(allocator.nextValue(null, sequence), 1);
+        assertEquals(allocator.nextValue(null, sequence), 2);
+        assertEquals(allocator.nextValues(null, 3, sequence)[2], 5);
+        assertEquals(sequence.reads.get(), 3);
+    }
+
+    @Test
+    public void testConcurrentAllocationIsUnique() throws Exception {
+        IdBlockAllocator allocator = new IdBlockAllocator("test_sequence", 7);
+        Sequence sequence = new Sequence();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> values = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        values.add(allocator.nextValue(DB1, sequence));
+                    }
+                    return values;
+                }));
+            }
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                all.addAll(future.get());
+            }
+            assertEquals(all.size(), 8000);
+            assertTrue(sequence.value.get() < 8000 + 8 * 7);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return a stand-in for a connection to the database with the passed URL, which only provides its metadata
+     */
+    private static Connection connection(String url) {
+        DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(IdBlockAllocatorTest.class.getClassLoader(),
+            new Class<?>[] { DatabaseMetaData.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "getURL":
+                    return url;
+                case "getUserName":
+                    return "fhirserver";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        return (Connection) Proxy.newProxyInstance(IdBlockAllocatorTest.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                if ("getMetaData".equals(method.getName())) {
+                    return metaData;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
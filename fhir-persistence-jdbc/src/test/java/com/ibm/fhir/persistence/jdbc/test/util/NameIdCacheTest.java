@@ -0,0 +1,127 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.transaction.Status;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.persistence.jdbc.util.CacheUpdater;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
+
+/**
+ * Tests the tenant/datastore specific name to id caches of the JDBC PL
+ */
+public class NameIdCacheTest {
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        NameIdCache.PARAMETER_NAMES.clear();
+        NameIdCache.CODE_SYSTEMS.clear();
+        FHIRRequestContext.get().setTenantId("tenant1");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        NameIdCache.PARAMETER_NAMES.setEnabled(true);
+        FHIRRequestContext.get().setTenantId("default");
+    }
+
+    @Test
+    public void testTenantIsolation() throws Exception {
+        NameIdCache.IdMap idMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+        assertSame(NameIdCache.PARAMETER_NAMES.getIdMap(), idMap);
+        assertEquals(idMap.getTenantId(), "tenant1");
+
+        idMap.putId("code", 1);
+        assertEquals(NameIdCache.PARAMETER_NAMES.getId("code"), Integer.valueOf(1));
+
+        FHIRRequestContext.get().setTenantId("tenant2");
+        assertNull(NameIdCache.PARAMETER_NAMES.getId("code"));
+        assertEquals(NameIdCache.PARAMETER_NAMES.size(), 1);
+    }
+
+    @Test
+    public void testStatistics() {
+        NameIdCache.IdMap idMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+        long hits = NameIdCache.PARAMETER_NAMES.getHitCount();
+        long misses = NameIdCache.PARAMETER_NAMES.getMissCount();
+
+        idMap.putId("code", 1);
+        idMap.getId("code");
+        idMap.getId("code");
+        idMap.getId("status");
+
+        assertEquals(NameIdCache.PARAMETER_NAMES.getHitCount() - hits, 2);
+        assertEquals(NameIdCache.PARAMETER_NAMES.getMissCount() - misses, 1);
+        assertTrue(NameIdCache.PARAMETER_NAMES.getHitRate() > 0);
+    }
+
+    @Test
+    public void testCodeSystemKeysAreEncoded() {
+        NameIdCache.IdMap idMap = NameIdCache.CODE_SYSTEMS.getIdMap();
+        idMap.putId("http://example.org/'system'", 7);
+        assertEquals(idMap.getId("http://example.org/system"), Integer.valueOf(7));
+        assertEquals(idMap.getId("http://example.org/'system'"), Integer.valueOf(7));
+    }
+
+    @Test
+    public void testPreload() {
+        NameIdCache.IdMap idMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+        assertTrue(idMap.claimPreload());
+        assertFalse(idMap.claimPreload());
+
+        Map<String, Integer> dbMap = new HashMap<>();
+        dbMap.put("code", 1);
+        dbMap.put("status", 2);
+        idMap.preload(dbMap);
+
+        assertTrue(idMap.isPreloaded());
+        assertEquals(idMap.size(), 2);
+        assertEquals(idMap.getId("status"), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testCacheUpdater() {
+        NameIdCache.IdMap idMap = NameIdCache.PARAMETER_NAMES.getIdMap();
+
+        Map<String, Integer> candidates = new HashMap<>();
+        CacheUpdater updater = new CacheUpdater(idMap, candidates);
+        candidates.put("code", 1);
+        updater.afterCompletion(Status.STATUS_ROLLEDBACK);
+        assertNull(idMap.getId("code"));
+        assertTrue(candidates.isEmpty());
+
+        candidates.put("code", 1);
+        updater.afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(idMap.getId("code"), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testDisabled() {
+        NameIdCache.PARAMETER_NAMES.getIdMap().putId("code", 1);
+        NameIdCache.PARAMETER_NAMES.setEnabled(false);
+        assertNull(NameIdCache.PARAMETER_NAMES.getIdMap());
+        assertNull(NameIdCache.PARAMETER_NAMES.getId("code"));
+
+        // re-enabling discards the old entries
+        NameIdCache.PARAMETER_NAMES.setEnabled(true);
+        assertNull(NameIdCache.PARAMETER_NAMES.getId("code"));
+    }
+}
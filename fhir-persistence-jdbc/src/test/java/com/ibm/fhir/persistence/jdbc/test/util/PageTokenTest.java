@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.persistence.jdbc.util.PageToken;
+import com.ibm.fhir.search.SearchConstants.Type;
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.context.FHIRSearchContextFactory;
+import com.ibm.fhir.search.parameters.QueryParameter;
+import com.ibm.fhir.search.parameters.QueryParameterValue;
+
+/**
+ * Tests the continuation tokens used for keyset pagination
+ */
+public class PageTokenTest {
+    private static final String QUERY_HASH = "query";
+
+    @Test
+    public void testRoundTrip() {
+        String token = PageToken.encode(5, 10, QUERY_HASH, 123456789012L);
+        assertEquals(PageToken.decode(token, 5, 10, QUERY_HASH), Long.valueOf(123456789012L));
+    }
+
+    @Test
+    public void testTokenOfAnotherPageIsIgnored() {
+        assertNull(PageToken.decode(PageToken.encode(5, 10, QUERY_HASH, 42), 6, 10, QUERY_HASH));
+    }
+
+    @Test
+    public void testTokenOfAnotherPageSizeIsIgnored() {
+        assertNull(PageToken.decode(PageToken.encode(5, 10, QUERY_HASH, 42), 5, 20, QUERY_HASH));
+    }
+
+    @Test
+    public void testTokenOfAnotherQueryIsIgnored() {
+        assertNull(PageToken.decode(PageToken.encode(5, 10, QUERY_HASH, 42), 5, 10, "another query"));
+    }
+
+    @Test
+    public void testInvalidTokenIsIgnored() {
+        assertNull(PageToken.decode(null, 1, 10, QUERY_HASH));
+        assertNull(PageToken.decode("", 1, 10, QUERY_HASH));
+        assertNull(PageToken.decode("not a token!", 1, 10, QUERY_HASH));
+        assertNull(PageToken.decode(PageToken.encode(1, 10, QUERY_HASH, 42).substring(1), 1, 10, QUERY_HASH));
+    }
+
+    @Test
+    public void testQueryHash() {
+        QueryParameter family = parameter(Type.STRING, "family", value("Doe", null, null));
+        QueryParameter birthdate = parameter(Type.DATE, "birthdate", value(null, "2020-01-01T00:00:00Z", "2020-12-31T23:59:59Z"));
+        String queryHash = PageToken.queryHash(Patient.class, searchContext(family, birthdate));
+
+        // the order of the search parameters doesn't matter
+        assertEquals(PageToken.queryHash(Patient.class, searchContext(birthdate, family)), queryHash);
+
+        // but their values do, including the precision of a date
+        QueryParameter day = parameter(Type.DATE, "birthdate", value(null, "2020-01-01T00:00:00Z", "2020-01-01T23:59:59Z"));
+        assertNotEquals(PageToken.queryHash(Patient.class, searchContext(family, day)), queryHash);
+        assertNotEquals(PageToken.queryHash(Patient.class, searchContext(family)), queryHash);
+
+        // and so does the resource type
+        assertNotEquals(PageToken.queryHash(Observation.class, searchContext(family, birthdate)), queryHash);
+    }
+
+    private static FHIRSearchContext searchContext(QueryParameter... parameters) {
+        FHIRSearchContext searchContext = FHIRSearchContextFactory.createSearchContext();
+        searchContext.setSearchParameters(new ArrayList<>(Arrays.asList(parameters)));
+        return searchContext;
+    }
+
+    private static QueryParameter parameter(Type type, String code, QueryParameterValue value) {
+        return new QueryParameter(type, code, null, null, Collections.singletonList(value));
+    }
+
+    private static QueryParameterValue value(String valueString, String lowerBound, String upperBound) {
+        QueryParameterValue value = new QueryParameterValue();
+        value.setValueString(valueString);
+        value.setValueDateLowerBound(lowerBound != null ? Instant.parse(lowerBound) : null);
+        value.setValueDateUpperBound(upperBound != null ? Instant.parse(upperBound) : null);
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.DateParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.StringParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+import com.ibm.fhir.persistence.jdbc.util.ParameterDelta;
+
+/**
+ * Tests the computation of the search parameter changes between two versions of a resource
+ */
+public class ParameterDeltaTest {
+
+    private static StringParmVal string(String name, String value) {
+        StringParmVal p = new StringParmVal();
+        p.setName(name);
+        p.setResourceType("Patient");
+        p.setValueString(value);
+        return p;
+    }
+
+    private static TokenParmVal token(String name, String system, String code) {
+        TokenParmVal p = new TokenParmVal();
+        p.setName(name);
+        p.setResourceType("Patient");
+        p.setValueSystem(system);
+        p.setValueCode(code);
+        return p;
+    }
+
+    private static DateParmVal baseDate(String name, long millis) {
+        DateParmVal p = new DateParmVal();
+        p.setName(name);
+        p.setResourceType("Patient");
+        p.setBase("Resource");
+        p.setValueDateStart(new Timestamp(millis));
+        p.setValueDateEnd(new Timestamp(millis));
+        return p;
+    }
+
+    private static CompositeParmVal composite(String name, ExtractedParameterValue... components) {
+        CompositeParmVal p = new CompositeParmVal();
+        p.setName(name);
+        p.setResourceType("Patient");
+        p.setComponent(new ArrayList<>(Arrays.asList(components)));
+        return p;
+    }
+
+    @Test
+    public void testSameValuesInAnotherOrderAreUnchanged() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(string("name", "a"), string("name", "b"), token("gender", null, "male"));
+        List<ExtractedParameterValue> current = Arrays.asList(token("gender", null, "male"), string("name", "b"), string("name", "a"));
+
+        ParameterDelta delta = ParameterDelta.compute(previous, current);
+        assertTrue(delta.isEmpty());
+        assertTrue(delta.getInserts().isEmpty());
+        assertTrue(delta.getDeletes("Patient").isEmpty());
+    }
+
+    @Test
+    public void testOnlyChangedNamesAreRewritten() throws Exception {
+        StringParmVal newName = string("name", "c");
+        List<ExtractedParameterValue> previous = Arrays.asList(string("name", "a"), string("name", "b"), token("gender", null, "male"));
+        List<ExtractedParameterValue> current = Arrays.asList(string("name", "a"), newName, token("gender", null, "male"));
+
+        ParameterDelta delta = ParameterDelta.compute(previous, current);
+        assertFalse(delta.isEmpty());
+        assertEquals(delta.getChangedNames(), Collections.singleton("name"));
+
+        // all the values of a changed name are replaced, not just the one which changed
+        assertEquals(delta.getInserts().size(), 2);
+        assertTrue(delta.getInserts().contains(newName));
+
+        Map<String, Set<String>> deletes = delta.getDeletes("Patient");
+        assertEquals(deletes.size(), 1);
+        assertEquals(deletes.get("Patient_str_values"), Collections.singleton("name"));
+    }
+
+    @Test
+    public void testDuplicateValuesAreCounted() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(string("name", "a"), string("name", "a"));
+        List<ExtractedParameterValue> current = Arrays.asList(string("name", "a"));
+
+        ParameterDelta delta = ParameterDelta.compute(previous, current);
+        assertEquals(delta.getChangedNames(), Collections.singleton("name"));
+        assertEquals(delta.getInserts().size(), 1);
+    }
+
+    @Test
+    public void testAddedAndRemovedNames() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(string("name", "a"), baseDate("_lastUpdated", 1000));
+        List<ExtractedParameterValue> current = Arrays.asList(token("gender", "http://hl7.org/fhir/administrative-gender", "male"),
+                baseDate("_lastUpdated", 2000));
+
+        ParameterDelta delta = ParameterDelta.compute(previous, current);
+        assertEquals(delta.getChangedNames().size(), 3);
+        assertEquals(delta.getInserts().size(), 2);
+
+        Map<String, Set<String>> deletes = delta.getDeletes("Patient");
+        assertEquals(deletes.get("Patient_str_values"), Collections.singleton("name"));
+        assertEquals(deletes.get("Patient_token_values"), Collections.singleton("gender"));
+        // parameters of the base resource are stored in the shared tables
+        assertEquals(deletes.get("resource_date_values"), Collections.singleton("_lastUpdated"));
+    }
+
+    @Test
+    public void testCompositesAreClearedFirst() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(
+                composite("code-value", token("code", "http://loinc.org", "1234-5"), string("value", "x")));
+        List<ExtractedParameterValue> current = Arrays.asList(
+                composite("code-value", token("code", "http://loinc.org", "1234-5"), string("value", "y")));
+
+        ParameterDelta delta = ParameterDelta.compute(previous, current);
+        Map<String, Set<String>> deletes = delta.getDeletes("Observation");
+        assertEquals(new ArrayList<>(deletes.keySet()),
+                Arrays.asList("Observation_composites", "Observation_str_values", "Observation_token_values"));
+        for (Set<String> names : deletes.values()) {
+            assertEquals(names, Collections.singleton("code-value"));
+        }
+    }
+
+    @Test
+    public void testComponentOrderIsSignificant() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(composite("c", string("a", "1"), string("b", "2")));
+        List<ExtractedParameterValue> current = Arrays.asList(composite("c", string("b", "2"), string("a", "1")));
+        assertFalse(ParameterDelta.compute(previous, current).isEmpty());
+    }
+
+    @Test
+    public void testValuesCannotRunTogether() throws Exception {
+        List<ExtractedParameterValue> previous = Arrays.asList(token("identifier", "ab", "c"));
+        List<ExtractedParameterValue> current = Arrays.asList(token("identifier", "a", "bc"));
+        assertFalse(ParameterDelta.compute(previous, current).isEmpty());
+    }
+
+    @Test
+    public void testUnchanged() {
+        ParameterDelta delta = ParameterDelta.unchanged();
+        assertTrue(delta.isEmpty());
+        assertTrue(delta.getChangedNames().isEmpty());
+    }
+}
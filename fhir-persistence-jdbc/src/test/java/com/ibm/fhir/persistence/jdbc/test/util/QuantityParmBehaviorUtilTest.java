@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,7 @@ import static org.testng.Assert.assertEquals;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -27,7 +28,7 @@ import com.ibm.fhir.persistence.jdbc.JDBCConstants;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
-import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
+import com.ibm.fhir.persistence.jdbc.util.NameIdCache;
 import com.ibm.fhir.persistence.jdbc.util.type.NumberParmBehaviorUtil;
 import com.ibm.fhir.persistence.jdbc.util.type.QuantityParmBehaviorUtil;
 import com.ibm.fhir.search.SearchConstants;
@@ -235,6 +236,16 @@ public class QuantityParmBehaviorUtilTest {
                 return 0;
             }
 
+            @Override
+            public Map<String, Integer> acquireExistingParameterNameIds(Collection<String> parameterNames) throws FHIRPersistenceException {
+                return null;
+            }
+
+            @Override
+            public Map<String, Integer> acquireExistingCodeSystemIds(Collection<String> codeSystemNames) throws FHIRPersistenceException {
+                return null;
+            }
+
             @Override
             public void addCodeSystemsCacheCandidate(String codeSystemName, Integer codeSystemId)
                     throws FHIRPersistenceException {
@@ -300,7 +311,7 @@ public class QuantityParmBehaviorUtilTest {
 
     @Test
     public void testAddSystemIfPresentWithNonNullCache() throws FHIRPersistenceException {
-        CodeSystemsCache.putCodeSystemId("quantity~default", "system-example-quantity", 1);
+        NameIdCache.CODE_SYSTEMS.getIdMap("quantity", "default").putId("system-example-quantity", 1);
         String expectedSql = " AND BASIC.CODE_SYSTEM_ID = ?";
         boolean sendNull = true;
         String system = "system-example-quantity";
@@ -0,0 +1,61 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.jdbc.util.QueryTemplateCache;
+
+/**
+ * Tests the cache of generated search SQL and the per-shape execution statistics
+ */
+public class QueryTemplateCacheTest {
+
+    @Test
+    public void testTemplateIsGeneratedOncePerShape() {
+        QueryTemplateCache cache = new QueryTemplateCache(16, 16);
+        AtomicInteger generated = new AtomicInteger();
+
+        String first = cache.getTemplate(Arrays.asList("Patient", "name", "P1.STR_VALUE = ?"),
+                shape -> "SQL" + generated.incrementAndGet());
+        String second = cache.getTemplate(Arrays.asList("Patient", "name", "P1.STR_VALUE = ?"),
+                shape -> "SQL" + generated.incrementAndGet());
+        String other = cache.getTemplate(Arrays.asList("Observation", "name", "P1.STR_VALUE = ?"),
+                shape -> "SQL" + generated.incrementAndGet());
+
+        assertEquals(generated.get(), 2);
+        assertSame(second, first);
+        assertEquals(other, "SQL2");
+    }
+
+    @Test
+    public void testExecutionStatistics() {
+        QueryTemplateCache cache = new QueryTemplateCache(16, 2);
+        cache.recordExecution("SELECT 1", 1_000_000);
+        cache.recordExecution("SELECT 1", 3_000_000);
+        cache.recordExecution("SELECT 2", 1_000_000);
+        // beyond the number of tracked shapes
+        cache.recordExecution("SELECT 3", 1_000_000);
+
+        assertEquals(cache.getExecutionCount("SELECT 1"), 2);
+        assertEquals(cache.getExecutionCount("SELECT 2"), 1);
+        assertEquals(cache.getExecutionCount("SELECT 3"), 0);
+
+        String statistics = cache.getStatistics();
+        assertTrue(statistics.contains("count=2, totalMs=4, avgMs=2, maxMs=3, sql=SELECT 1"), statistics);
+
+        cache.clear();
+        assertEquals(cache.getExecutionCount("SELECT 1"), 0);
+    }
+}
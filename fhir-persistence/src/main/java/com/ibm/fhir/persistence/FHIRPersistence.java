@@ -6,11 +6,21 @@
 
 package com.ibm.fhir.persistence;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
 import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceNotSupportedException;
+import com.ibm.fhir.persistence.payload.ResourcePayloadConsumer;
 
 /**
  * This interface defines the contract between the FHIR Server's REST API layer and the underlying
@@ -30,6 +40,26 @@ public interface FHIRPersistence {
      */
     <T extends Resource> SingleResourceResult<T> create(FHIRPersistenceContext context, T resource) throws FHIRPersistenceException;
 
+    /**
+     * Stores a set of new FHIR Resources in the datastore; equivalent to calling {@link #create(FHIRPersistenceContext, Resource)}
+     * for each resource, but implementations may store the set with fewer interactions with the datastore.
+     *
+     * <p>A resource that could not be stored is reported by an unsuccessful result; if an exception is thrown,
+     * none of the resources should be considered stored and the current transaction must be rolled back.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resources the FHIR Resource instances to be created in the datastore
+     * @return a list with a SingleResourceResult for each resource, in the same order as resources
+     * @throws FHIRPersistenceException
+     */
+    default <T extends Resource> List<SingleResourceResult<T>> createAll(FHIRPersistenceContext context, List<T> resources) throws FHIRPersistenceException {
+        List<SingleResourceResult<T>> results = new ArrayList<>(resources.size());
+        for (T resource : resources) {
+            results.add(create(context, resource));
+        }
+        return results;
+    }
+
     /**
      * Retrieves the most recent version of a FHIR Resource from the datastore.
      *
@@ -69,6 +99,27 @@ public interface FHIRPersistence {
      */
     <T extends Resource> SingleResourceResult<T> update(FHIRPersistenceContext context, String logicalId, T resource) throws FHIRPersistenceException;
 
+    /**
+     * Updates a set of FHIR Resources, each identified by its own logical id; equivalent to calling
+     * {@link #update(FHIRPersistenceContext, String, Resource)} for each resource, but implementations may store
+     * the resources that don't exist yet with fewer interactions with the datastore.
+     *
+     * <p>A resource that could not be stored is reported by an unsuccessful result; if an exception is thrown,
+     * none of the resources should be considered stored and the current transaction must be rolled back.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resources the new contents of the FHIR Resources to be stored; each must have an id
+     * @return a list with a SingleResourceResult for each resource, in the same order as resources
+     * @throws FHIRPersistenceException
+     */
+    default <T extends Resource> List<SingleResourceResult<T>> updateAll(FHIRPersistenceContext context, List<T> resources) throws FHIRPersistenceException {
+        List<SingleResourceResult<T>> results = new ArrayList<>(resources.size());
+        for (T resource : resources) {
+            results.add(update(context, resource.getId(), resource));
+        }
+        return results;
+    }
+
     /**
      * Deletes the specified FHIR Resource from the datastore.
      *
@@ -106,6 +157,46 @@ public interface FHIRPersistence {
      */
     MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType) throws FHIRPersistenceException;
 
+    /**
+     * Performs a search like {@link #search(FHIRPersistenceContext, Class)}, but passes the JSON form of each
+     * resource in the search result to the consumer instead of returning the parsed resources, in the same order.
+     * Implementations may pass the stored payload without parsing and re-serializing it when no _elements or
+     * _summary filtering is requested.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type which is the target of the search
+     * @param consumer receives the JSON form of each resource
+     * @return the number of resources passed to the consumer
+     * @throws FHIRPersistenceException if the search fails or is invalid (for example, a strict search for a page
+     *         that doesn't exist), or the consumer throws an IOException
+     */
+    default int searchPayloads(FHIRPersistenceContext context, Class<? extends Resource> resourceType, ResourcePayloadConsumer consumer)
+            throws FHIRPersistenceException {
+        MultiResourceResult<Resource> result = search(context, resourceType);
+        if (!result.isSuccess()) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("The search was not successful");
+            if (result.getOutcome() != null) {
+                fx.withIssue(result.getOutcome().getIssue());
+            }
+            throw fx;
+        }
+        int count = 0;
+        for (Resource resource : result.getResource()) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                FHIRGenerator.generator(Format.JSON).generate(resource, out);
+                consumer.accept(resource.getId(), new ByteArrayInputStream(out.toByteArray()));
+                count++;
+            } catch (FHIRGeneratorException | IOException e) {
+                throw new FHIRPersistenceException("Unable to pass resource '" + resource.getId() + "' to the consumer", e);
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns true iff the persistence layer implementation supports transactions.
      */
@@ -22,11 +22,13 @@ public class SingleResourceResult<T extends Resource> {
     final boolean success;
     final T resource;
     final OperationOutcome outcome;
+    final boolean unchanged;
     
     private SingleResourceResult(Builder<T> builder) {
         success = ValidationSupport.requireNonNull(builder.success, "success");
         resource = builder.resource;
         outcome = builder.outcome;
+        unchanged = builder.unchanged;
         if (!success && (outcome == null || outcome.getIssue().isEmpty())) {
             throw new IllegalStateException("Failed interaction results must include an OperationOutcome with one or more issue.");
         }
@@ -59,12 +61,23 @@ public class SingleResourceResult<T extends Resource> {
     public OperationOutcome getOutcome() {
         return outcome;
     }
+    /**
+     * Whether the interaction left the resource unchanged, in which case the resource is the current version
+     * and no new version was written
+     * 
+     * @return
+     *     whether the resource was left unchanged
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
     
     // result builder
     public static class Builder<T extends Resource> {
         boolean success;
         T resource;
         OperationOutcome outcome;
+        boolean unchanged;
         
         /**
          * Whether or not the interaction was successful
@@ -112,6 +125,20 @@ public class SingleResourceResult<T extends Resource> {
             return this;
         }
         
+        /**
+         * Whether the interaction left the resource unchanged
+         * 
+         * @param unchanged
+         *     true if no new version was written because the resource would not have changed
+         * 
+         * @return
+         *     A reference to this Builder instance
+         */
+        public Builder<T> unchanged(boolean unchanged) {
+            this.unchanged = unchanged;
+            return this;
+        }
+        
         /**
          * Build the {@link SingleResourceResult}
          * 
@@ -0,0 +1,80 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Raw deflate without the GZIP header and CRC, which saves a few bytes and a checksum pass per payload.
+ * Payloads are decoded the same way regardless of the compression level they were written with.
+ */
+public class DeflatePayloadCodec implements PayloadCodec {
+    public static final String NAME = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public int getId() {
+        return 2;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream newEncoder(OutputStream out, int compressionLevel) throws IOException {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        byte[] dictionary = getDictionary();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream newDecoder(InputStream in) throws IOException {
+        Inflater inflater = new Inflater(true);
+        byte[] dictionary = getDictionary();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the preset dictionary shared by the encoder and decoder, or null if none is used
+     */
+    protected byte[] getDictionary() {
+        return null;
+    }
+}
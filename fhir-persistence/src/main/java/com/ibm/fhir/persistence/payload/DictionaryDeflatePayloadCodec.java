@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Raw deflate with a preset dictionary of the keys, systems and fragments that are most common in FHIR JSON.
+ * Small resources gain the most, because deflate can refer to the dictionary instead of first spelling out each
+ * string once.
+ *
+ * <p>The dictionary was derived from the compact JSON of the non-definitional spec examples (narrative and meta
+ * removed): the token sequences found in the most documents, weighted by their length, with the most valuable ones
+ * at the end where deflate can reach them with the shortest distances. The dictionary is part of the stored format,
+ * so it must never change; a new dictionary needs a new codec id.
+ */
+public class DictionaryDeflatePayloadCodec extends DeflatePayloadCodec {
+    public static final String NAME = "deflate-dictionary";
+
+    private static final String DICTIONARY_RESOURCE = "fhir-json-v1.dict";
+    private static final byte[] DICTIONARY = loadDictionary();
+
+    @Override
+    public int getId() {
+        return 3;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected byte[] getDictionary() {
+        return DICTIONARY;
+    }
+
+    private static byte[] loadDictionary() {
+        try (InputStream in = DictionaryDeflatePayloadCodec.class.getResourceAsStream(DICTIONARY_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Payload dictionary not found: " + DICTIONARY_RESOURCE);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load payload dictionary: " + DICTIONARY_RESOURCE, e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The original payload format: a plain GZIP stream without a codec header.
+ */
+public class GzipPayloadCodec implements PayloadCodec {
+    public static final String NAME = "gzip";
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream newEncoder(OutputStream out, final int compressionLevel) throws IOException {
+        return new GZIPOutputStream(out) {
+            {
+                if (compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+                    def.setLevel(compressionLevel);
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream newDecoder(InputStream in) throws IOException {
+        return new GZIPInputStream(in);
+    }
+}
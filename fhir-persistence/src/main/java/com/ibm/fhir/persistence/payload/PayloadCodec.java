@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes the serialized (JSON) form of a resource into the bytes that are stored by a persistence layer, and decodes
+ * those bytes again.
+ *
+ * <p>Each stored payload records the id of the codec that wrote it (see {@link PayloadCodecRegistry}), so payloads
+ * written by different codecs can coexist in the same datastore. Once payloads have been written with a given id,
+ * the format produced for that id must never change.
+ *
+ * <p>Additional codecs are discovered using the jdk's ServiceLoader. To register one, implement this interface
+ * and list the implementation class name in a file called
+ * META-INF/services/com.ibm.fhir.persistence.payload.PayloadCodec within your jar.
+ * Ids 1 through 127 are reserved for the built-in codecs.
+ */
+public interface PayloadCodec {
+
+    /**
+     * @return the id recorded with each payload written by this codec; a value between 1 and 255,
+     *         or 0 for the legacy GZIP format, which is recognized by its own header instead
+     */
+    int getId();
+
+    /**
+     * @return the name used to select this codec in the configuration
+     */
+    String getName();
+
+    /**
+     * Create a stream that encodes the bytes written to it into the passed stream.
+     * Closing the returned stream must complete the encoded data, but needn't close the passed stream.
+     * @param out the stream receiving the encoded bytes
+     * @param compressionLevel the compression level (0-9) or -1 for the default of the codec;
+     *        ignored by codecs that don't compress
+     * @return the encoding stream
+     * @throws IOException
+     */
+    OutputStream newEncoder(OutputStream out, int compressionLevel) throws IOException;
+
+    /**
+     * Create a stream that decodes the bytes read from the passed stream.
+     * @param in the stream providing the encoded bytes, positioned after the payload header
+     * @return the decoding stream
+     * @throws IOException
+     */
+    InputStream newDecoder(InputStream in) throws IOException;
+}
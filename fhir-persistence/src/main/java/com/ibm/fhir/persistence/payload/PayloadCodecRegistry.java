@@ -0,0 +1,132 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
+import com.ibm.fhir.model.resource.Resource;
+
+/**
+ * The registry of the available {@link PayloadCodec} implementations, which also reads and writes the stored
+ * payload format.
+ *
+ * <p>A payload written by a codec with a non-zero id starts with a two byte header: {@link #HEADER_MAGIC} followed
+ * by the codec id. Payloads without this header are in the original GZIP format (which always starts with 0x1f),
+ * so rows written before codecs were configurable can still be read.
+ */
+public class PayloadCodecRegistry {
+    private static final Logger log = Logger.getLogger(PayloadCodecRegistry.class.getName());
+
+    /**
+     * The first byte of a payload with a codec header
+     */
+    public static final byte HEADER_MAGIC = (byte) 0xFB;
+
+    private static final PayloadCodecRegistry INSTANCE = new PayloadCodecRegistry();
+
+    private final Map<String, PayloadCodec> codecsByName = new HashMap<>();
+    private final PayloadCodec[] codecsById = new PayloadCodec[256];
+
+    private PayloadCodecRegistry() {
+        for (PayloadCodec codec : Arrays.asList(new GzipPayloadCodec(), new IdentityPayloadCodec(),
+                new DeflatePayloadCodec(), new DictionaryDeflatePayloadCodec())) {
+            register(codec);
+        }
+        for (PayloadCodec codec : ServiceLoader.load(PayloadCodec.class)) {
+            if (codec.getId() < 128) {
+                log.warning("Ignoring payload codec '" + codec.getName() + "'; id " + codec.getId() + " is reserved");
+                continue;
+            }
+            register(codec);
+        }
+    }
+
+    public static PayloadCodecRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private void register(PayloadCodec codec) {
+        int id = codec.getId();
+        if (id < 0 || id > 255) {
+            throw new IllegalArgumentException("Payload codec '" + codec.getName() + "' has invalid id: " + id);
+        }
+        if (codecsById[id] != null || codecsByName.containsKey(codec.getName())) {
+            throw new IllegalStateException("Duplicate payload codec: " + codec.getName() + " [id=" + id + "]");
+        }
+        codecsById[id] = codec;
+        codecsByName.put(codec.getName(), codec);
+        if (log.isLoggable(Level.FINE)) {
+            log.fine("Registered payload codec: " + codec.getName() + " [id=" + id + "]");
+        }
+    }
+
+    /**
+     * @param name the name of a registered codec
+     * @return the codec
+     * @throws IllegalArgumentException if no codec has the passed name
+     */
+    public PayloadCodec getCodec(String name) {
+        PayloadCodec codec = codecsByName.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown payload codec: " + name);
+        }
+        return codec;
+    }
+
+    /**
+     * Serialize the passed resource as JSON and encode it with the passed codec.
+     * @param resource the resource to store
+     * @param codec the codec used to encode the serialized resource
+     * @param compressionLevel the compression level (0-9) or -1 for the default of the codec
+     * @return the payload, including the codec header
+     * @throws FHIRGeneratorException
+     * @throws IOException
+     */
+    public byte[] encode(Resource resource, PayloadCodec codec, int compressionLevel) throws FHIRGeneratorException, IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        if (codec.getId() != 0) {
+            stream.write(HEADER_MAGIC);
+            stream.write(codec.getId());
+        }
+        try (OutputStream encoder = codec.newEncoder(stream, compressionLevel)) {
+            FHIRGenerator.generator(Format.JSON, false).generate(resource, encoder);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Open a stream that reads the serialized (JSON) resource contained in the passed payload.
+     * @param payload a payload previously returned by {@link #encode(Resource, PayloadCodec, int)}, or written in the
+     *        original GZIP format
+     * @return the decoding stream, which the caller must close
+     * @throws IOException if the payload was written by a codec that isn't registered, or can't be decoded
+     */
+    public InputStream decode(byte[] payload) throws IOException {
+        if (payload.length >= 2 && payload[0] == HEADER_MAGIC) {
+            int id = payload[1] & 0xFF;
+            PayloadCodec codec = codecsById[id];
+            if (codec == null) {
+                throw new IOException("Payload was written by an unknown codec: id=" + id);
+            }
+            return codec.newDecoder(new ByteArrayInputStream(payload, 2, payload.length - 2));
+        }
+        return codecsById[0].newDecoder(new ByteArrayInputStream(payload));
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.payload;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the serialized form of each resource of a search result, as passed by
+ * {@link com.ibm.fhir.persistence.FHIRPersistence#searchPayloads}.
+ */
+@FunctionalInterface
+public interface ResourcePayloadConsumer {
+
+    /**
+     * @param logicalId
+     *     the logical id of the resource
+     * @param payload
+     *     the compact JSON form of the resource, without a trailing line break; only valid until this method returns
+     * @throws IOException
+     *     if the payload can't be processed; the search is aborted
+     */
+    void accept(String logicalId, InputStream payload) throws IOException;
+}
@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.payload.PayloadCodec;
+import com.ibm.fhir.persistence.payload.PayloadCodecRegistry;
+
+/**
+ * Tests the encoding and decoding of stored payloads with each of the built-in codecs.
+ */
+public class PayloadCodecRegistryTest {
+    private final PayloadCodecRegistry registry = PayloadCodecRegistry.getInstance();
+
+    @DataProvider(name = "codecs")
+    public Object[][] codecs() {
+        return new Object[][] {
+            { "gzip", -1 },
+            { "gzip", 1 },
+            { "identity", -1 },
+            { "deflate", -1 },
+            { "deflate", 9 },
+            { "deflate-dictionary", -1 }
+        };
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(String codecName, int compressionLevel) throws Exception {
+        Patient patient = TestUtil.readExampleResource("json/ibm/complete-mock/Patient-1.json");
+        PayloadCodec codec = registry.getCodec(codecName);
+
+        byte[] payload = registry.encode(patient, codec, compressionLevel);
+        if (codec.getId() != 0) {
+            assertEquals(payload[0], PayloadCodecRegistry.HEADER_MAGIC);
+            assertEquals(payload[1] & 0xFF, codec.getId());
+        }
+        assertEquals(decode(payload), patient);
+    }
+
+    @Test
+    public void testLegacyGzipPayload() throws Exception {
+        Patient patient = TestUtil.readExampleResource("json/ibm/complete-mock/Patient-1.json");
+
+        // the format written before payload codecs were introduced
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        GZIPOutputStream zipStream = new GZIPOutputStream(stream);
+        FHIRGenerator.generator(Format.JSON, false).generate(patient, zipStream);
+        zipStream.finish();
+        zipStream.close();
+
+        assertEquals(decode(stream.toByteArray()), patient);
+        assertEquals(registry.encode(patient, registry.getCodec("gzip"), -1)[0], (byte) 0x1f);
+    }
+
+    @Test
+    public void testDictionaryIsSmaller() throws Exception {
+        Patient patient = TestUtil.readExampleResource("json/ibm/minimal/Patient-1.json");
+        int deflated = registry.encode(patient, registry.getCodec("deflate"), -1).length;
+        int dictionary = registry.encode(patient, registry.getCodec("deflate-dictionary"), -1).length;
+        assertTrue(dictionary < deflated, "dictionary=" + dictionary + " deflate=" + deflated);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnknownCodecId() throws Exception {
+        decode(new byte[] { PayloadCodecRegistry.HEADER_MAGIC, (byte) 200, '{', '}' });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCodecName() {
+        registry.getCodec("lz77-turbo");
+    }
+
+    private Resource decode(byte[] payload) throws Exception {
+        try (InputStream in = registry.decode(payload)) {
+            return FHIRParser.parser(Format.JSON).parse(in);
+        }
+    }
+}
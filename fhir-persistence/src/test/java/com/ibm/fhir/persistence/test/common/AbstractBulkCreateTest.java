@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static com.ibm.fhir.model.type.String.string;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Device;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.persistence.SingleResourceResult;
+
+/**
+ * This class contains tests for the createAll and updateAll bulk operations.
+ */
+public abstract class AbstractBulkCreateTest extends AbstractPersistenceTest {
+    private final String familyName = "bulk-" + UUID.randomUUID().toString();
+    protected String patientId1;
+
+    @Test
+    public void testCreateAll() throws Exception {
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+        Patient patient = TestUtil.readExampleResource("json/ibm/minimal/Patient-1.json");
+        patient = patient.toBuilder().name(HumanName.builder().family(string(familyName)).build()).build();
+
+        List<Resource> resources = Arrays.asList(device, patient, device, patient);
+        List<SingleResourceResult<Resource>> results = persistence.createAll(getDefaultPersistenceContext(), resources);
+        assertEquals(results.size(), resources.size());
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            SingleResourceResult<Resource> result = results.get(i);
+            assertTrue(result.isSuccess());
+            Resource resource = result.getResource();
+            assertNotNull(resource);
+            assertEquals(resource.getClass(), resources.get(i).getClass());
+            assertNotNull(resource.getId());
+            assertEquals(resource.getMeta().getVersionId().getValue(), "1");
+            ids.add(resource.getId());
+
+            Resource read = persistence.read(getDefaultPersistenceContext(), resource.getClass(), resource.getId()).getResource();
+            assertNotNull(read);
+            assertEquals(read.getMeta().getVersionId().getValue(), "1");
+        }
+        assertEquals(ids.size(), resources.size());
+        this.patientId1 = results.get(1).getResource().getId();
+    }
+
+    @Test(dependsOnMethods = { "testCreateAll" })
+    public void testSearchCreatedResources() throws Exception {
+        List<Resource> patients = runQueryTest(Patient.class, "family", familyName);
+        assertEquals(patients.size(), 2);
+    }
+
+    @Test(dependsOnMethods = { "testCreateAll" })
+    public void testUpdateAll() throws Exception {
+        Patient template = TestUtil.readExampleResource("json/ibm/minimal/Patient-1.json");
+        String newId = UUID.randomUUID().toString();
+
+        List<Resource> resources = new ArrayList<>();
+        resources.add(template.toBuilder().id(newId).build());
+        resources.add(template.toBuilder().id(patientId1).build());
+        resources.add(template.toBuilder().id(newId).active(com.ibm.fhir.model.type.Boolean.TRUE).build());
+
+        List<SingleResourceResult<Resource>> results = persistence.updateAll(getDefaultPersistenceContext(), resources);
+        assertEquals(results.size(), resources.size());
+        for (SingleResourceResult<Resource> result : results) {
+            assertTrue(result.isSuccess());
+        }
+        assertEquals(results.get(0).getResource().getId(), newId);
+        assertEquals(results.get(0).getResource().getMeta().getVersionId().getValue(), "1");
+        assertEquals(results.get(1).getResource().getId(), patientId1);
+        assertEquals(results.get(1).getResource().getMeta().getVersionId().getValue(), "2");
+        assertEquals(results.get(2).getResource().getId(), newId);
+        assertEquals(results.get(2).getResource().getMeta().getVersionId().getValue(), "2");
+
+        Patient read = persistence.read(getDefaultPersistenceContext(), Patient.class, newId).getResource();
+        assertEquals(read.getMeta().getVersionId().getValue(), "2");
+        assertEquals(read.getActive(), com.ibm.fhir.model.type.Boolean.TRUE);
+        assertNotEquals(read.getId(), patientId1);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016,2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -12,6 +12,8 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertNotNull;
 import static com.ibm.fhir.model.test.TestUtil.isResourceInResponse;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -22,6 +24,9 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
 import com.ibm.fhir.model.resource.Basic;
 import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
@@ -38,6 +43,7 @@ import com.ibm.fhir.persistence.MultiResourceResult;
 import com.ibm.fhir.persistence.context.FHIRHistoryContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.util.SearchUtil;
 
@@ -120,6 +126,75 @@ public abstract class AbstractPagingTest extends AbstractPersistenceTest {
         assertTrue(isResourceInResponse(resource3, results));
     }
     
+    // paging with the page token of the previous page must return the same pages as paging by page number
+    @Test
+    public void testSearchPagingWithPageToken() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        String pageToken = null;
+        for (int page = 1; page <= 3; page++) {
+            FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+            searchContext.setPageNumber(page);
+            searchContext.setPageToken(pageToken);
+            List<Resource> seekResults = runQueryTest(searchContext, Basic.class, queryParameters, 1).getResource();
+            pageToken = searchContext.getNextPageToken();
+
+            searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+            searchContext.setPageNumber(page);
+            List<Resource> offsetResults = runQueryTest(searchContext, Basic.class, queryParameters, 1).getResource();
+
+            assertEquals(seekResults.size(), 1, "expected number of results");
+            assertEquals(seekResults.get(0).getId(), offsetResults.get(0).getId(), "page " + page);
+        }
+        assertEquals(pageToken, null, "no token is issued for the last page");
+    }
+
+    // paging without a total must return the same pages as paging with a total, and find the last page on its own
+    @Test
+    public void testSearchPagingWithoutTotal() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("_sort", Collections.singletonList("integer"));
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        for (int page = 1; page <= 3; page++) {
+            FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+            searchContext.setPageNumber(page);
+            searchContext.setTotalParameter(TotalValueSet.NONE);
+            List<Resource> noTotalResults = runQueryTest(searchContext, Basic.class, queryParameters, 1).getResource();
+            assertEquals(searchContext.getLastPageNumber(), page == 3 ? 3 : page + 1, "last page number");
+
+            searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+            searchContext.setPageNumber(page);
+            List<Resource> totalResults = runQueryTest(searchContext, Basic.class, queryParameters, 1).getResource();
+
+            assertEquals(noTotalResults.size(), 1, "expected number of results");
+            assertEquals(noTotalResults.get(0).getId(), totalResults.get(0).getId(), "page " + page);
+        }
+    }
+
+    // the payloads passed by searchPayloads must be the JSON of the resources returned by search, in the same order
+    @Test
+    public void testSearchPayloads() throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("_sort", Collections.singletonList("integer"));
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        List<Resource> results = runQueryTest(Basic.class, queryParameters, 10);
+
+        FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        searchContext.setPageSize(10);
+        List<Resource> payloads = new ArrayList<>();
+        int count = persistence.searchPayloads(getPersistenceContextForSearch(searchContext), Basic.class, (logicalId, payload) -> {
+            try {
+                Resource resource = FHIRParser.parser(Format.JSON).parse(payload);
+                assertEquals(resource.getId(), logicalId);
+                payloads.add(resource);
+            } catch (FHIRParserException e) {
+                throw new IOException(e);
+            }
+        });
+        assertEquals(count, 3);
+        assertEquals(payloads, results);
+    }
+
     // history results should be sorted with oldest versions last
     @Test
     public void testHistoryPaging() throws Exception {
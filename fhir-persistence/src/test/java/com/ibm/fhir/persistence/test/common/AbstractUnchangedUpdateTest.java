@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static com.ibm.fhir.model.type.String.string;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.model.type.code.AdministrativeGender;
+import com.ibm.fhir.persistence.SingleResourceResult;
+
+/**
+ * This class contains tests for updates which do not change the resource, and for the search parameters
+ * of updates which only change some of them. The concrete subclasses are expected to enable the detection of
+ * unchanged updates in their persistence implementation.
+ */
+public abstract class AbstractUnchangedUpdateTest extends AbstractPersistenceTest {
+    private final String familyName = "unchanged-" + UUID.randomUUID().toString();
+    private Patient patient;
+
+    @Test
+    public void testCreate() throws Exception {
+        Patient template = TestUtil.readExampleResource("json/ibm/minimal/Patient-1.json");
+        template = template.toBuilder()
+                .name(HumanName.builder().family(string(familyName)).build())
+                .gender(AdministrativeGender.FEMALE)
+                .build();
+        patient = persistence.create(getDefaultPersistenceContext(), template).getResource();
+        assertEquals(patient.getMeta().getVersionId().getValue(), "1");
+    }
+
+    @Test(dependsOnMethods = { "testCreate" })
+    public void testUnchangedUpdate() throws Exception {
+        // the version and lastUpdated time are ignored in the comparison
+        Patient update = patient.toBuilder()
+                .meta(patient.getMeta().toBuilder().versionId(null).lastUpdated(null).build())
+                .build();
+        SingleResourceResult<Patient> result = persistence.update(getDefaultPersistenceContext(), patient.getId(), update);
+        assertTrue(result.isSuccess());
+        assertTrue(result.isUnchanged());
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "1");
+        assertEquals(result.getResource().getMeta().getLastUpdated(), patient.getMeta().getLastUpdated());
+
+        Patient read = persistence.read(getDefaultPersistenceContext(), Patient.class, patient.getId()).getResource();
+        assertEquals(read.getMeta().getVersionId().getValue(), "1");
+    }
+
+    @Test(dependsOnMethods = { "testUnchangedUpdate" })
+    public void testChangedUpdate() throws Exception {
+        Patient update = patient.toBuilder()
+                .name(HumanName.builder().family(string(familyName + "-2")).build())
+                .build();
+        SingleResourceResult<Patient> result = persistence.update(getDefaultPersistenceContext(), patient.getId(), update);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isUnchanged());
+        assertEquals(result.getResource().getMeta().getVersionId().getValue(), "2");
+    }
+
+    @Test(dependsOnMethods = { "testChangedUpdate" })
+    public void testSearchAfterChangedUpdate() throws Exception {
+        // the parameter which changed is replaced
+        assertEquals(runQueryTest(Patient.class, "family", familyName + "-2").size(), 1);
+        assertEquals(runQueryTest(Patient.class, "family", familyName).size(), 0);
+
+        // the parameters which did not change are still there
+        Map<String, List<String>> queryParms = new HashMap<>();
+        queryParms.put("family", Collections.singletonList(familyName + "-2"));
+        queryParms.put("gender", Collections.singletonList("female"));
+        List<Resource> patients = runQueryTest(Patient.class, queryParms);
+        assertEquals(patients.size(), 1);
+        assertEquals(patients.get(0).getMeta().getVersionId().getValue(), "2");
+    }
+}
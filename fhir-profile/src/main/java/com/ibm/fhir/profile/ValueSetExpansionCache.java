@@ -0,0 +1,375 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.profile;
+
+import static com.ibm.fhir.profile.ValueSetSupport.expand;
+import static com.ibm.fhir.profile.ValueSetSupport.getContains;
+import static com.ibm.fhir.profile.ValueSetSupport.getValueSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.model.resource.StructureDefinition;
+import com.ibm.fhir.model.resource.ValueSet;
+import com.ibm.fhir.model.resource.ValueSet.Expansion.Contains;
+import com.ibm.fhir.model.type.ElementDefinition;
+import com.ibm.fhir.model.type.ElementDefinition.Binding;
+import com.ibm.fhir.model.type.code.BindingStrength;
+import com.ibm.fhir.registry.FHIRRegistry;
+
+/**
+ * A cache of value set expansions, stored as compact code sets for membership checks.
+ *
+ * <p>Each value set is expanded at most once at a time: the first caller runs the expansion and concurrent callers
+ * for the same value set wait for its result, while lookups of other value sets are not blocked. Expansions that
+ * fail are cached as empty code set maps.
+ */
+public final class ValueSetExpansionCache {
+    private static final Logger log = Logger.getLogger(ValueSetExpansionCache.class.getName());
+
+    public static final String VERSION_UNKNOWN = "<version unknown>";
+
+    private static final ValueSetExpansionCache INSTANCE = new ValueSetExpansionCache();
+    private static final int MAX_ENTRIES = 1024;
+
+    private final BoundedConcurrentCache<String, FutureTask<CodeSetMap>> cache = new BoundedConcurrentCache<>(MAX_ENTRIES);
+    // systems and versions are shared by the code set maps of many value sets
+    private final Map<String, String> interned = new ConcurrentHashMap<>();
+
+    private final LongAdder expansionCount = new LongAdder();
+    private final LongAdder expansionFailureCount = new LongAdder();
+    private final LongAdder totalExpansionNanos = new LongAdder();
+    private final LongAccumulator maxExpansionNanos = new LongAccumulator(Math::max, 0);
+
+    private ValueSetExpansionCache() { }
+
+    public static ValueSetExpansionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the code set map of the value set with the given url, expanding the value set if it is not cached.
+     *
+     * @param url
+     *     the url of a value set in the registry
+     * @return
+     *     the code set map, which is empty if the value set is empty or could not be expanded
+     */
+    public CodeSetMap getCodeSetMap(String url) {
+        FutureTask<CodeSetMap> task = cache.computeIfAbsent(url, k -> new FutureTask<>(() -> computeCodeSetMap(k)));
+        // only the first caller runs the expansion; the others wait for it in get()
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CodeSetMap.EMPTY;
+        } catch (ExecutionException e) {
+            log.log(Level.WARNING, "Unable to expand value set with url: " + url, e.getCause());
+            cache.remove(url);
+            return CodeSetMap.EMPTY;
+        }
+    }
+
+    /**
+     * Expand the value sets of the required and extensible bindings of the given profiles.
+     *
+     * @param profileUrls
+     *     the urls of profiles in the registry
+     * @return
+     *     the number of value sets that were expanded or already cached
+     */
+    public int warmUp(Collection<String> profileUrls) {
+        Set<String> valueSetUrls = new LinkedHashSet<>();
+        for (String profileUrl : profileUrls) {
+            StructureDefinition profile = ProfileSupport.getProfile(profileUrl);
+            if (profile == null || profile.getSnapshot() == null) {
+                log.warning("Unable to warm up the value sets of profile '" + profileUrl + "': profile not found");
+                continue;
+            }
+            for (ElementDefinition elementDefinition : profile.getSnapshot().getElement()) {
+                Binding binding = elementDefinition.getBinding();
+                if (binding != null && binding.getValueSet() != null && binding.getValueSet().getValue() != null
+                        && (BindingStrength.REQUIRED.equals(binding.getStrength())
+                                || BindingStrength.EXTENSIBLE.equals(binding.getStrength()))) {
+                    valueSetUrls.add(binding.getValueSet().getValue());
+                }
+            }
+        }
+        int count = 0;
+        for (String valueSetUrl : valueSetUrls) {
+            if (FHIRRegistry.getInstance().hasResource(valueSetUrl, ValueSet.class)) {
+                getCodeSetMap(valueSetUrl);
+                count++;
+            }
+        }
+        log.info("Warmed up " + count + " value set expansion(s) for " + profileUrls.size() + " profile(s)");
+        return count;
+    }
+
+    /**
+     * @return the number of value set expansions that were run
+     */
+    public long getExpansionCount() {
+        return expansionCount.sum();
+    }
+
+    /**
+     * @return the number of value set expansions that failed
+     */
+    public long getExpansionFailureCount() {
+        return expansionFailureCount.sum();
+    }
+
+    /**
+     * @return the total time spent expanding value sets, in milliseconds
+     */
+    public long getTotalExpansionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalExpansionNanos.sum());
+    }
+
+    /**
+     * @return the time taken by the slowest value set expansion, in milliseconds
+     */
+    public long getMaxExpansionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxExpansionNanos.get());
+    }
+
+    /**
+     * @return the number of value sets in the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all cached expansions, e.g. after the value sets or code systems in the registry have changed.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + cache.size() + ", expansions=" + getExpansionCount() + ", failures=" + getExpansionFailureCount()
+                + ", totalExpansionMillis=" + getTotalExpansionMillis() + ", maxExpansionMillis=" + getMaxExpansionMillis();
+    }
+
+    private CodeSetMap computeCodeSetMap(String url) {
+        ValueSet valueSet = getValueSet(url);
+        long start = System.nanoTime();
+        try {
+            ValueSet expanded = expand(valueSet);
+            if (expanded == null || expanded.getExpansion() == null) {
+                return CodeSetMap.EMPTY;
+            }
+            Map<String, List<String>> codeListMap = new LinkedHashMap<>();
+            for (Contains contains : getContains(expanded.getExpansion())) {
+                String system = (contains.getSystem() != null) ? contains.getSystem().getValue() : null;
+                String version = (contains.getVersion() != null && contains.getVersion().getValue() != null) ? contains.getVersion().getValue() : VERSION_UNKNOWN;
+                String code = (contains.getCode() != null) ? contains.getCode().getValue() : null;
+                if (system != null && code != null) {
+                    codeListMap.computeIfAbsent(system + "|" + version, k -> new ArrayList<>()).add(code);
+                }
+            }
+            return createCodeSetMap(codeListMap);
+        } catch (Exception e) {
+            expansionFailureCount.increment();
+            String version = (valueSet != null && valueSet.getVersion() != null) ? valueSet.getVersion().getValue() : "<no version>";
+            log.log(Level.WARNING, String.format("Unable to expand value set with url: %s and version: %s", url, version), e);
+            return CodeSetMap.EMPTY;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            expansionCount.increment();
+            totalExpansionNanos.add(elapsed);
+            maxExpansionNanos.accumulate(elapsed);
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Expanded value set '" + url + "' in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            }
+        }
+    }
+
+    private CodeSetMap createCodeSetMap(Map<String, List<String>> codeListMap) {
+        if (codeListMap.isEmpty()) {
+            return CodeSetMap.EMPTY;
+        }
+        int size = codeListMap.size();
+        String[] systems = new String[size];
+        String[] versions = new String[size];
+        CodeSet[] codeSets = new CodeSet[size];
+        int i = 0;
+        for (Map.Entry<String, List<String>> entry : codeListMap.entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf('|');
+            systems[i] = intern(key.substring(0, separator));
+            versions[i] = intern(key.substring(separator + 1));
+            codeSets[i] = new CodeSet(entry.getValue());
+            i++;
+        }
+        return new CodeSetMap(systems, versions, codeSets);
+    }
+
+    private String intern(String value) {
+        String existing = interned.putIfAbsent(value, value);
+        return (existing != null) ? existing : value;
+    }
+
+    /**
+     * The codes of an expanded value set, grouped by code system and code system version.
+     */
+    public static final class CodeSetMap {
+        static final CodeSetMap EMPTY = new CodeSetMap(new String[0], new String[0], new CodeSet[0]);
+
+        // parallel arrays, in the order in which the systems and versions first appear in the expansion
+        private final String[] systems;
+        private final String[] versions;
+        private final CodeSet[] codeSets;
+
+        private CodeSetMap(String[] systems, String[] versions, CodeSet[] codeSets) {
+            this.systems = systems;
+            this.versions = versions;
+            this.codeSets = codeSets;
+        }
+
+        public boolean isEmpty() {
+            return codeSets.length == 0;
+        }
+
+        /**
+         * Determine whether the provided code is in the code set associated with the provided system and version.
+         *
+         * <p>If the system and version are non-null, then the code set of that system and version is checked. If
+         * the code is not found there, then the code set of the system with an unknown version (in cases where the
+         * expanded value set did not have a version available during the expansion) is checked. If only the system
+         * is non-null, then the first code set of that system is checked. Finally, if both system and version are
+         * null, the code is looked up in every code set.
+         *
+         * @param system
+         *     the system of the focal coded element (can be null)
+         * @param version
+         *     the version of the focal coded element (can be null)
+         * @param code
+         *     the code used in the membership check
+         * @return
+         *     true if a code set is found and the provided code is a member of that code set, false otherwise
+         */
+        public boolean contains(String system, String version, String code) {
+            if (system != null && version != null) {
+                CodeSet codeSet = get(system, version);
+                if (codeSet != null) {
+                    if (codeSet.contains(code)) {
+                        return true;
+                    } else {
+                        codeSet = get(system, VERSION_UNKNOWN);
+                        if (codeSet != null) {
+                            return codeSet.contains(code);
+                        }
+                    }
+                }
+            } else if (system != null) {
+                for (int i = 0; i < systems.length; i++) {
+                    if (systems[i].equals(system)) {
+                        return codeSets[i].contains(code);
+                    }
+                }
+            } else {
+                for (CodeSet codeSet : codeSets) {
+                    if (codeSet.contains(code)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the number of codes in all code sets
+         */
+        public int size() {
+            int size = 0;
+            for (CodeSet codeSet : codeSets) {
+                size += codeSet.size();
+            }
+            return size;
+        }
+
+        private CodeSet get(String system, String version) {
+            for (int i = 0; i < systems.length; i++) {
+                if (systems[i].equals(system) && versions[i].equals(version)) {
+                    return codeSets[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An immutable set of codes in an open-addressing hash table, which needs a single reference per slot instead
+     * of an entry object per code.
+     */
+    static final class CodeSet {
+        private final String[] table;
+        private final int mask;
+        private final int size;
+
+        CodeSet(Collection<String> codes) {
+            int capacity = Integer.highestOneBit(Math.max(2, codes.size() * 2 - 1)) << 1;
+            table = new String[capacity];
+            mask = capacity - 1;
+            int count = 0;
+            for (String code : codes) {
+                int index = index(code);
+                while (table[index] != null && !table[index].equals(code)) {
+                    index = (index + 1) & mask;
+                }
+                if (table[index] == null) {
+                    table[index] = code;
+                    count++;
+                }
+            }
+            size = count;
+        }
+
+        boolean contains(String code) {
+            if (code == null) {
+                return false;
+            }
+            int index = index(code);
+            String candidate;
+            while ((candidate = table[index]) != null) {
+                if (candidate.equals(code)) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int index(String code) {
+            int h = code.hashCode();
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
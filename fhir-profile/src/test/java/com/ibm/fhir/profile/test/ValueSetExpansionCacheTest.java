@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.profile.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.profile.ValueSetExpansionCache;
+import com.ibm.fhir.profile.ValueSetExpansionCache.CodeSetMap;
+
+public class ValueSetExpansionCacheTest {
+    private static final String CS1 = "http://ibm.com/fhir/CodeSystem/cs1";
+
+    @Test
+    public void testContains() throws Exception {
+        CodeSetMap codeSetMap = ValueSetExpansionCache.getInstance().getCodeSetMap("http://ibm.com/fhir/ValueSet/vs1|1.0.0");
+        Assert.assertFalse(codeSetMap.isEmpty());
+        Assert.assertEquals(codeSetMap.size(), 3);
+
+        Assert.assertTrue(codeSetMap.contains(CS1, "1.0.0", "a"));
+        Assert.assertTrue(codeSetMap.contains(CS1, null, "b"));
+        Assert.assertTrue(codeSetMap.contains(null, null, "c"));
+        Assert.assertFalse(codeSetMap.contains(CS1, "1.0.0", "d"));
+        Assert.assertFalse(codeSetMap.contains(CS1, "2.0.0", "a"));
+        Assert.assertFalse(codeSetMap.contains("http://example.com/cs", null, "a"));
+        Assert.assertFalse(codeSetMap.contains(CS1, "1.0.0", null));
+    }
+
+    @Test
+    public void testConcurrentLookupsExpandOnce() throws Exception {
+        ValueSetExpansionCache cache = ValueSetExpansionCache.getInstance();
+        String url = "http://ibm.com/fhir/ValueSet/vs2|1.0.0";
+        long expansionCount = cache.getExpansionCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CodeSetMap>> futures = new ArrayList<>();
+            Callable<CodeSetMap> lookup = () -> cache.getCodeSetMap(url);
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(lookup));
+            }
+            CodeSetMap first = futures.get(0).get();
+            for (Future<CodeSetMap> future : futures) {
+                Assert.assertSame(future.get(), first);
+            }
+            Assert.assertEquals(first.size(), 5);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(cache.getExpansionCount(), expansionCount + 1);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2020
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -78,6 +78,9 @@ public class SearchConstants {
     // _page
     public static final String PAGE = "_page";
 
+    // _pageToken
+    public static final String PAGE_TOKEN = "_pageToken";
+
     // _elements
     public static final String ELEMENTS = "_elements";
 
@@ -86,6 +89,9 @@ public class SearchConstants {
     
     // _summary
     public static final String SUMMARY = "_summary";
+
+    // _total
+    public static final String TOTAL = "_total";
     
     // _pretty
     public static final String PRETTY = "_pretty";
@@ -95,7 +101,7 @@ public class SearchConstants {
 
     // set as unmodifiable
     public static final List<String> SEARCH_RESULT_PARAMETER_NAMES =
-            Collections.unmodifiableList(Arrays.asList(SORT, COUNT, PAGE, INCLUDE, REVINCLUDE, ELEMENTS, SUMMARY));
+            Collections.unmodifiableList(Arrays.asList(SORT, COUNT, PAGE, PAGE_TOKEN, INCLUDE, REVINCLUDE, ELEMENTS, SUMMARY, TOTAL));
     
     // set as unmodifiable
     public static final List<String> SYSTEM_LEVEL_SORT_PARAMETER_NAMES = Collections.unmodifiableList(Arrays.asList("_id", "_lastUpdated"));
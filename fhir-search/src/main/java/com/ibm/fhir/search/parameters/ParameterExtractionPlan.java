@@ -0,0 +1,222 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.ibm.fhir.search.parameters;
+
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathParser.ExpressionContext;
+import com.ibm.fhir.path.FHIRPathParser.UnionExpressionContext;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.exception.FHIRPathException;
+
+/**
+ * A compiled plan for extracting the values of a list of SearchParameters from a resource.
+ *
+ * <p>Each SearchParameter expression is compiled once and split into its top-level union operands
+ * (e.g. {@code Observation.code | Observation.component.code}). Operands that appear in more than one expression
+ * are shared, so each distinct operand is evaluated at most once per resource, and only when one of the
+ * SearchParameters that needs it is requested.
+ *
+ * <p>Plans are immutable and thread-safe; the per-resource state lives in {@link Evaluation}.
+ */
+public class ParameterExtractionPlan {
+    private final List<SearchParameter> parameters;
+    private final List<ExpressionContext> operands;
+    // for each parameter, the indexes of its union operands in the operands list (null if the parameter has no expression)
+    private final int[][] parameterOperands;
+
+    private ParameterExtractionPlan(List<SearchParameter> parameters, List<ExpressionContext> operands, int[][] parameterOperands) {
+        this.parameters = parameters;
+        this.operands = operands;
+        this.parameterOperands = parameterOperands;
+    }
+
+    /**
+     * Compile a plan for the passed list of SearchParameters
+     *
+     * @param parameters
+     *     the SearchParameters, in the order in which their values will be requested
+     * @return
+     *     a new plan
+     */
+    public static ParameterExtractionPlan compile(List<SearchParameter> parameters) {
+        List<SearchParameter> planParameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        List<ExpressionContext> operands = new ArrayList<>();
+        Map<String, Integer> operandIndexes = new HashMap<>();
+        int[][] parameterOperands = new int[planParameters.size()][];
+
+        for (int i = 0; i < planParameters.size(); i++) {
+            com.ibm.fhir.model.type.String expression = planParameters.get(i).getExpression();
+            if (expression == null || expression.getValue() == null) {
+                continue;
+            }
+            String expr = expression.getValue();
+
+            List<ExpressionContext> unionOperands = new ArrayList<>();
+            collectUnionOperands(FHIRPathEvaluator.compile(expr), unionOperands);
+
+            int[] indexes = new int[unionOperands.size()];
+            for (int j = 0; j < unionOperands.size(); j++) {
+                ExpressionContext operand = unionOperands.get(j);
+                Integer index = operandIndexes.get(sourceText(expr, operand));
+                if (index == null) {
+                    index = operands.size();
+                    operands.add(operand);
+                    operandIndexes.put(sourceText(expr, operand), index);
+                }
+                indexes[j] = index;
+            }
+            parameterOperands[i] = indexes;
+        }
+
+        return new ParameterExtractionPlan(planParameters, Collections.unmodifiableList(operands), parameterOperands);
+    }
+
+    /**
+     * Flatten a (left-associative) chain of union expressions into its operands
+     */
+    private static void collectUnionOperands(ExpressionContext ctx, List<ExpressionContext> result) {
+        if (ctx instanceof UnionExpressionContext) {
+            UnionExpressionContext union = (UnionExpressionContext) ctx;
+            collectUnionOperands(union.expression(0), result);
+            collectUnionOperands(union.expression(1), result);
+        } else {
+            result.add(ctx);
+        }
+    }
+
+    /**
+     * The exact source text of an operand; unlike getText() this keeps the whitespace between tokens
+     */
+    private static String sourceText(String expr, ExpressionContext ctx) {
+        if (ctx.getStart() == null || ctx.getStop() == null || ctx.getStop().getStopIndex() < ctx.getStart().getStartIndex()) {
+            return ctx.getText();
+        }
+        return expr.substring(ctx.getStart().getStartIndex(), ctx.getStop().getStopIndex() + 1).trim();
+    }
+
+    /**
+     * Indicates whether this plan was compiled from exactly the passed SearchParameter instances (in the same order)
+     *
+     * @param parameters
+     *     the SearchParameters
+     * @return
+     *     true if this plan can be used to extract the values of the passed SearchParameters, otherwise false
+     */
+    public boolean isCompiledFrom(List<SearchParameter> parameters) {
+        if (parameters.size() != this.parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i) != this.parameters.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the SearchParameters of this plan, in plan order
+     */
+    public List<SearchParameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the number of distinct expression operands evaluated by this plan
+     */
+    public int getOperandCount() {
+        return operands.size();
+    }
+
+    /**
+     * Start evaluating this plan against a single resource
+     *
+     * @param evaluator
+     *     the evaluator to use for all operands
+     * @param evaluationContext
+     *     the evaluation context of the resource
+     * @return
+     *     a new Evaluation, which is not thread-safe
+     */
+    public Evaluation evaluation(FHIRPathEvaluator evaluator, EvaluationContext evaluationContext) {
+        return new Evaluation(evaluator, evaluationContext);
+    }
+
+    /**
+     * The evaluation of a plan against a single resource; operand results are memoized
+     */
+    public class Evaluation {
+        private final FHIRPathEvaluator evaluator;
+        private final EvaluationContext evaluationContext;
+        private final Collection<FHIRPathNode> initialContext;
+        private final List<Collection<FHIRPathNode>> results;
+        private final List<FHIRPathException> failures;
+
+        private Evaluation(FHIRPathEvaluator evaluator, EvaluationContext evaluationContext) {
+            this.evaluator = evaluator;
+            this.evaluationContext = evaluationContext;
+            this.initialContext = singleton(evaluationContext.getTree().getRoot());
+            this.results = new ArrayList<>(Collections.nCopies(operands.size(), null));
+            this.failures = new ArrayList<>(Collections.nCopies(operands.size(), null));
+        }
+
+        /**
+         * Evaluate the expression of the SearchParameter at the passed index of the plan
+         *
+         * @param parameterIndex
+         *     the index of the SearchParameter in {@link ParameterExtractionPlan#getParameters()}
+         * @return
+         *     the result of evaluation, or null if the SearchParameter has no expression
+         * @throws FHIRPathException
+         *     if an exception occurs while evaluating one of the operands of the expression
+         */
+        public Collection<FHIRPathNode> evaluate(int parameterIndex) throws FHIRPathException {
+            int[] indexes = parameterOperands[parameterIndex];
+            if (indexes == null) {
+                return null;
+            }
+            if (indexes.length == 1) {
+                return evaluateOperand(indexes[0]);
+            }
+            // union semantics: merge and eliminate duplicates, preserving order
+            Set<FHIRPathNode> union = new LinkedHashSet<>();
+            for (int index : indexes) {
+                union.addAll(evaluateOperand(index));
+            }
+            return new ArrayList<>(union);
+        }
+
+        private Collection<FHIRPathNode> evaluateOperand(int index) throws FHIRPathException {
+            if (failures.get(index) != null) {
+                throw failures.get(index);
+            }
+            Collection<FHIRPathNode> result = results.get(index);
+            if (result == null) {
+                try {
+                    result = evaluator.evaluate(evaluationContext, operands.get(index), initialContext);
+                } catch (FHIRPathException e) {
+                    failures.set(index, e);
+                    throw e;
+                }
+                results.set(index, result);
+            }
+            return result;
+        }
+    }
+}
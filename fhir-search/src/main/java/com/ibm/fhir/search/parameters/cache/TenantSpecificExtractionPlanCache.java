@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.search.parameters.ParameterExtractionPlan;
+
+/**
+ * This class implements a cache of {@link ParameterExtractionPlan} objects organized by tenantId, then by resource type.
+ *
+ * A cached plan is only reused while it was compiled from the same SearchParameter instances that currently apply
+ * to the resource type; when the tenant's search parameters or filter rules are reloaded, the plan is recompiled
+ * on next use.
+ */
+public class TenantSpecificExtractionPlanCache {
+    private static final String CLASSNAME = TenantSpecificExtractionPlanCache.class.getName();
+    private static final Logger log = Logger.getLogger(CLASSNAME);
+
+    private final Map<String, Map<String, ParameterExtractionPlan>> cacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * Get the extraction plan for the passed tenant and resource type, compiling a new one if needed
+     *
+     * @param tenantId
+     *     the tenant id
+     * @param resourceType
+     *     the resource type (simple name, e.g. "Patient")
+     * @param parameters
+     *     the SearchParameters that currently apply to the resource type
+     * @return
+     *     a plan compiled from the passed SearchParameters
+     */
+    public ParameterExtractionPlan getPlan(String tenantId, String resourceType, List<SearchParameter> parameters) {
+        Map<String, ParameterExtractionPlan> tenantPlans = cacheMap.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>());
+        ParameterExtractionPlan plan = tenantPlans.get(resourceType);
+        if (plan == null || !plan.isCompiledFrom(parameters)) {
+            plan = ParameterExtractionPlan.compile(parameters);
+            tenantPlans.put(resourceType, plan);
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Compiled extraction plan for tenant-id '" + tenantId + "' and resource type '" + resourceType
+                        + "': " + parameters.size() + " parameters, " + plan.getOperandCount() + " distinct operands");
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Remove all cached plans
+     */
+    public void clear() {
+        cacheMap.clear();
+    }
+}
@@ -39,6 +39,7 @@ import com.ibm.fhir.model.type.code.ResourceType;
 import com.ibm.fhir.model.util.JsonSupport;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathTree;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 import com.ibm.fhir.path.exception.FHIRPathException;
@@ -46,6 +47,7 @@ import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SearchConstants.Modifier;
 import com.ibm.fhir.search.SearchConstants.Type;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.compartment.CompartmentUtil;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.context.FHIRSearchContextFactory;
@@ -53,10 +55,12 @@ import com.ibm.fhir.search.date.DateTimeHandler;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 import com.ibm.fhir.search.exception.SearchExceptionUtil;
 import com.ibm.fhir.search.parameters.InclusionParameter;
+import com.ibm.fhir.search.parameters.ParameterExtractionPlan;
 import com.ibm.fhir.search.parameters.ParametersMap;
 import com.ibm.fhir.search.parameters.ParametersUtil;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.QueryParameterValue;
+import com.ibm.fhir.search.parameters.cache.TenantSpecificExtractionPlanCache;
 import com.ibm.fhir.search.parameters.cache.TenantSpecificSearchParameterCache;
 import com.ibm.fhir.search.sort.Sort;
 import com.ibm.fhir.search.uri.UriBuilder;
@@ -123,6 +127,11 @@ public class SearchUtil {
      */
     private static TenantSpecificSearchParameterCache searchParameterCache = new TenantSpecificSearchParameterCache();
 
+    /*
+     * Compiled extraction plans, organized by tenant-id and resource type, used by extractParameterValues.
+     */
+    private static TenantSpecificExtractionPlanCache extractionPlanCache = new TenantSpecificExtractionPlanCache();
+
     private SearchUtil() {
         // No Operation
         // Hides the Initialization
@@ -537,13 +546,19 @@ public class SearchUtil {
         // Get the Parameters for the class.
         Class<?> resourceType = resource.getClass();
 
-        // Create one time.
+        // Create one time; the tree is built lazily since most expressions only touch a few paths of the resource.
         FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
-        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        EvaluationContext evaluationContext = new EvaluationContext(FHIRPathTree.lazyTree(resource));
 
         List<SearchParameter> parameters = getApplicableSearchParameters(resourceType.getSimpleName());
 
-        for (SearchParameter parameter : parameters) {
+        // Shared sub-expressions are evaluated once per resource through the compiled plan.
+        ParameterExtractionPlan plan = extractionPlanCache.getPlan(FHIRRequestContext.get().getTenantId(),
+                resourceType.getSimpleName(), parameters);
+        ParameterExtractionPlan.Evaluation evaluation = plan.evaluation(evaluator, evaluationContext);
+
+        for (int i = 0; i < parameters.size(); i++) {
+            SearchParameter parameter = parameters.get(i);
 
             com.ibm.fhir.model.type.String expression = parameter.getExpression();
 
@@ -565,7 +580,7 @@ public class SearchUtil {
                 continue;
             }
             try {
-                Collection<FHIRPathNode> tmpResults = evaluator.evaluate(evaluationContext, expression.getValue());
+                Collection<FHIRPathNode> tmpResults = evaluation.evaluate(i);
 
                 if (log.isLoggable(Level.FINEST)) {
                     log.finest("Expression [" + expression.getValue() + "] parameter-code ["
@@ -1093,6 +1108,8 @@ public class SearchUtil {
             } else if (SearchConstants.PAGE.equals(name)) {
                 int pageNumber = Integer.parseInt(first);
                 context.setPageNumber(pageNumber);
+            } else if (SearchConstants.PAGE_TOKEN.equals(name)) {
+                context.setPageToken(first);
             } else if (SearchConstants.SORT.equals(name)) {
                 // in R4, we only look for _sort
                 sort.parseSortParameter(resourceTypeName, context, values, lenient);
@@ -1102,6 +1119,8 @@ public class SearchUtil {
                 parseElementsParameter(resourceType, context, values, lenient);
             } else if (SearchConstants.SUMMARY.equals(name) && first != null) {
                 context.setSummaryParameter(SummaryValueSet.from(first));
+            } else if (SearchConstants.TOTAL.equals(name) && first != null) {
+                context.setTotalParameter(TotalValueSet.from(first));
             }
         } catch (FHIRSearchException se) {
             throw se;
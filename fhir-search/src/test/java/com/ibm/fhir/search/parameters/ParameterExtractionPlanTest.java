@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.parameters;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.PublicationStatus;
+import com.ibm.fhir.model.type.code.ResourceType;
+import com.ibm.fhir.model.type.code.SearchParamType;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.search.parameters.cache.TenantSpecificExtractionPlanCache;
+import com.ibm.fhir.search.test.BaseSearchTest;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Tests that a compiled {@link ParameterExtractionPlan} produces the same values as evaluating each
+ * SearchParameter expression on its own.
+ */
+public class ParameterExtractionPlanTest extends BaseSearchTest {
+
+    @DataProvider(name = "examples")
+    public static Object[][] examples() {
+        return new Object[][] {
+            { "json/spec/observation-example.json" },
+            { "json/spec/observation-example-bmd.json" },
+            { "json/spec/patient-example.json" },
+            { "json/spec/explanationofbenefit-example.json" }
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testPlanMatchesExpressions(String example) throws Exception {
+        Resource resource = readResource(example);
+        List<SearchParameter> parameters = SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName());
+
+        ParameterExtractionPlan plan = ParameterExtractionPlan.compile(parameters);
+        assertTrue(plan.isCompiledFrom(parameters));
+
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        ParameterExtractionPlan.Evaluation evaluation = plan.evaluation(FHIRPathEvaluator.evaluator(), new EvaluationContext(resource));
+
+        for (int i = 0; i < parameters.size(); i++) {
+            SearchParameter parameter = parameters.get(i);
+            if (parameter.getExpression() == null) {
+                assertNull(evaluation.evaluate(i));
+                continue;
+            }
+            Collection<FHIRPathNode> expected = evaluator.evaluate(evaluationContext, parameter.getExpression().getValue());
+            assertEquals(new ArrayList<>(evaluation.evaluate(i)), new ArrayList<>(expected), parameter.getCode().getValue());
+        }
+    }
+
+    @Test
+    public void testSharedOperands() throws Exception {
+        List<SearchParameter> parameters = new ArrayList<>();
+        parameters.add(searchParameter("code", "Observation.code"));
+        parameters.add(searchParameter("combo-code", "Observation.code | Observation.component.code"));
+        parameters.add(searchParameter("component-code", "Observation.component.code"));
+
+        ParameterExtractionPlan plan = ParameterExtractionPlan.compile(parameters);
+        assertEquals(plan.getOperandCount(), 2);
+
+        List<SearchParameter> copy = new ArrayList<>(parameters);
+        assertTrue(plan.isCompiledFrom(copy));
+        copy.set(0, parameters.get(0).toBuilder().build());
+        assertFalse(plan.isCompiledFrom(copy));
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        List<SearchParameter> parameters = new ArrayList<>();
+        parameters.add(searchParameter("code", "Observation.code"));
+
+        TenantSpecificExtractionPlanCache cache = new TenantSpecificExtractionPlanCache();
+        ParameterExtractionPlan plan = cache.getPlan("default", "Observation", parameters);
+        assertSame(cache.getPlan("default", "Observation", new ArrayList<>(parameters)), plan);
+
+        parameters.add(searchParameter("component-code", "Observation.component.code"));
+        assertFalse(cache.getPlan("default", "Observation", parameters) == plan);
+    }
+
+    private static SearchParameter searchParameter(String code, String expression) {
+        return SearchParameter.builder()
+                .url(Uri.of("http://ibm.com/fhir/SearchParameter/Observation-" + code))
+                .name(com.ibm.fhir.model.type.String.of(code))
+                .status(PublicationStatus.ACTIVE)
+                .description(com.ibm.fhir.model.type.Markdown.of(code))
+                .code(Code.of(code))
+                .base(ResourceType.OBSERVATION)
+                .type(SearchParamType.TOKEN)
+                .expression(com.ibm.fhir.model.type.String.of(expression))
+                .build();
+    }
+
+    private static Resource readResource(String path) throws Exception {
+        try (Reader reader = ExamplesUtil.resourceReader(path)) {
+            return FHIRParser.parser(Format.JSON).parse(reader);
+        }
+    }
+}
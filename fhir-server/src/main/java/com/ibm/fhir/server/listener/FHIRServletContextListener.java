@@ -7,6 +7,9 @@
 package com.ibm.fhir.server.listener;
 
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_CHECK_REFERENCE_TYPES;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_CONFIG_WATCH_DEBOUNCE_MILLIS;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_CONFIG_WATCH_ENABLED;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_INTERN_PRIMITIVES;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_BOOTSTRAP_DB;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_KAFKA_CONNECTIONPROPS;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_KAFKA_ENABLED;
@@ -22,6 +25,7 @@ import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_NATS_TLS_ENABLED;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_NATS_TRUSTSTORE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_NATS_TRUSTSTORE_PW;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_SERVER_REGISTRY_RESOURCE_PROVIDER_ENABLED;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_VALUE_SET_WARM_UP_PROFILES;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_WEBSOCKET_ENABLED;
 
 import java.util.List;
@@ -44,9 +48,11 @@ import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.config.PropertyGroup.PropertyEntry;
+import com.ibm.fhir.core.TenantSpecificFileBasedCache;
 import com.ibm.fhir.database.utils.derby.DerbyServerPropertiesMgr;
 import com.ibm.fhir.model.config.FHIRModelConfig;
 import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.notification.FHIRNotificationService;
 import com.ibm.fhir.notification.websocket.impl.FHIRNotificationServiceEndpointConfig;
 import com.ibm.fhir.notifications.kafka.impl.FHIRNotificationKafkaPublisher;
 import com.ibm.fhir.notifications.nats.impl.FHIRNotificationNATSPublisher;
@@ -54,9 +60,12 @@ import com.ibm.fhir.operation.registry.FHIROperationRegistry;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 import com.ibm.fhir.persistence.jdbc.util.DerbyBootstrapper;
+import com.ibm.fhir.persistence.jdbc.util.QueryTemplateCache;
+import com.ibm.fhir.profile.ValueSetExpansionCache;
 import com.ibm.fhir.registry.FHIRRegistry;
 import com.ibm.fhir.search.util.SearchUtil;
 import com.ibm.fhir.server.registry.ServerRegistryResourceProvider;
+import com.ibm.fhir.server.util.ResourceReadCache;
 
 @WebListener("IBM FHIR Server Servlet Context Listener")
 public class FHIRServletContextListener implements ServletContextListener {
@@ -171,11 +180,23 @@ public class FHIRServletContextListener implements ServletContextListener {
             Boolean checkReferenceTypes = fhirConfig.getBooleanProperty(PROPERTY_CHECK_REFERENCE_TYPES, Boolean.TRUE);
             FHIRModelConfig.setCheckReferenceTypes(checkReferenceTypes);
 
+            Boolean internPrimitives = fhirConfig.getBooleanProperty(PROPERTY_INTERN_PRIMITIVES, Boolean.FALSE);
+            FHIRModelConfig.setInternPrimitives(internPrimitives);
+
             bootstrapDerbyDatabases(fhirConfig);
 
+            Boolean configWatchEnabled = fhirConfig.getBooleanProperty(PROPERTY_CONFIG_WATCH_ENABLED, Boolean.FALSE);
+            if (configWatchEnabled) {
+                log.info("Watching configuration files for changes.");
+                TenantSpecificFileBasedCache.enableWatching(fhirConfig.getIntProperty(PROPERTY_CONFIG_WATCH_DEBOUNCE_MILLIS, 500));
+            }
+
             log.fine("Initializing FHIRRegistry...");
             FHIRRegistry.getInstance();
 
+            // The resource cache is enabled per tenant, but it must see the writes of every tenant.
+            FHIRPersistenceInterceptorMgr.getInstance().addInterceptor(ResourceReadCache.getInstance());
+
             Boolean serverRegistryResourceProviderEnabled = fhirConfig.getBooleanProperty(PROPERTY_SERVER_REGISTRY_RESOURCE_PROVIDER_ENABLED, Boolean.FALSE);
             if (serverRegistryResourceProviderEnabled) {
                 log.info("Registering ServerRegistryResourceProvider...");
@@ -184,6 +205,14 @@ public class FHIRServletContextListener implements ServletContextListener {
                 FHIRPersistenceInterceptorMgr.getInstance().addInterceptor(provider);
             }
 
+            List<String> warmUpProfiles = fhirConfig.getStringListProperty(PROPERTY_VALUE_SET_WARM_UP_PROFILES);
+            if (warmUpProfiles != null && !warmUpProfiles.isEmpty()) {
+                log.info("Expanding the value sets bound by " + warmUpProfiles.size() + " profile(s) in the background...");
+                Thread warmUp = new Thread(() -> ValueSetExpansionCache.getInstance().warmUp(warmUpProfiles), "fhir-valueset-warmup");
+                warmUp.setDaemon(true);
+                warmUp.start();
+            }
+
             // Finally, set our "initComplete" flag to true.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.TRUE);
         } catch(Throwable t) {
@@ -262,6 +291,18 @@ public class FHIRServletContextListener implements ServletContextListener {
             // Set our "initComplete" flag back to false.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.FALSE);
 
+            String resourceCacheStatistics = ResourceReadCache.getInstance().getStatistics();
+            if (!resourceCacheStatistics.isEmpty()) {
+                log.info("Resource cache statistics:" + System.lineSeparator() + resourceCacheStatistics);
+            }
+            log.info("Search query statistics:" + System.lineSeparator() + QueryTemplateCache.INSTANCE.getStatistics());
+
+            // Stop the watchers of the tenant-specific file caches and close their watch services.
+            TenantSpecificFileBasedCache.disableWatching();
+
+            // Deliver any queued notification events before the publishers go away.
+            FHIRNotificationService.getInstance().shutdown();
+
             // If we previously initialized the Kafka publisher, then shut it down now.
             if (kafkaPublisher != null) {
                 kafkaPublisher.shutdown();
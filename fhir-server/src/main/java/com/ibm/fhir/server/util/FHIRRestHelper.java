@@ -20,14 +20,27 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -59,8 +72,8 @@ import com.ibm.fhir.model.type.code.HTTPVerb;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.model.util.LocalReferenceIndex;
 import com.ibm.fhir.model.util.ModelSupport;
-import com.ibm.fhir.model.util.ReferenceMappingVisitor;
 import com.ibm.fhir.operation.FHIROperation;
 import com.ibm.fhir.operation.context.FHIROperationContext;
 import com.ibm.fhir.operation.registry.FHIROperationRegistry;
@@ -75,6 +88,7 @@ import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceNotFoundException;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 import com.ibm.fhir.persistence.util.FHIRPersistenceUtil;
@@ -83,6 +97,7 @@ import com.ibm.fhir.rest.FHIRResourceHelpers;
 import com.ibm.fhir.rest.FHIRRestOperationResponse;
 import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SummaryValueSet;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 import com.ibm.fhir.search.util.SearchUtil;
@@ -112,16 +127,39 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             .appendPattern(", dd-MMM-yy HH:mm:ss")
             .optionalEnd().toFormatter();
 
+    // The JNDI name of the container-managed executor used to process batch bundle entries in parallel
+    private static final String BATCH_EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+    private static volatile ExecutorService batchExecutor = null;
+    private static volatile boolean batchExecutorLookupWarned = false;
+
     private FHIRPersistence persistence = null;
 
+    // Used to obtain a separate persistence instance for each thread that processes batch bundle entries in parallel.
+    private PersistenceHelper persistenceHelper = null;
+
     // These values are used for correlating requests within a bundle.
     private String bundleTransactionCorrelationId = null;
     private String bundleRequestCorrelationId = null;
 
+    // The local references within the entries of the bundle being processed.
+    private LocalReferenceIndex localReferenceIndex = null;
+
     public FHIRRestHelper(FHIRPersistence persistence) {
         this.persistence = persistence;
     }
 
+    /**
+     * @param persistence
+     *            the persistence instance used for the current request
+     * @param persistenceHelper
+     *            used to obtain additional persistence instances when the entries of a batch bundle are processed in
+     *            parallel (see {@link FHIRConfiguration#PROPERTY_BATCH_PARALLELISM})
+     */
+    public FHIRRestHelper(FHIRPersistence persistence, PersistenceHelper persistenceHelper) {
+        this.persistence = persistence;
+        this.persistenceHelper = persistenceHelper;
+    }
+
     @Override
     public FHIRRestOperationResponse doCreate(String type, Resource resource, String ifNoneExist,
             Map<String, String> requestProperties) throws Exception {
@@ -152,6 +190,8 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 // Perform the search using the "If-None-Exist" header value.
                 try {
                     MultivaluedMap<String, String> searchParameters = getQueryParameterMap(ifNoneExist);
+                    // only the number of entries on the first page is checked, so the total isn't needed
+                    searchParameters.putSingle(SearchConstants.TOTAL, TotalValueSet.NONE.value());
                     responseBundle =
                             doSearch(type, null, null, searchParameters, null, requestProperties, resource);
                 } catch (FHIROperationException e) {
@@ -298,6 +338,8 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 try {
                     MultivaluedMap<String, String> searchParameters =
                             getQueryParameterMap(searchQueryString);
+                    // only the number of entries on the first page is checked, so the total isn't needed
+                    searchParameters.putSingle(SearchConstants.TOTAL, TotalValueSet.NONE.value());
                     responseBundle =
                             doSearch(type, null, null, searchParameters, null, requestProperties, newResource);
                 } catch (FHIROperationException e) {
@@ -433,10 +475,14 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             ior.setLocationURI(FHIRUtil.buildLocationURI(ModelSupport.getTypeName(newResource.getClass()), newResource));
             event.getProperties().put(FHIRPersistenceEvent.PROPNAME_RESOURCE_LOCATION_URI, ior.getLocationURI().toString());
 
-            // Invoke the 'afterUpdate' interceptor methods.
+            // Invoke the 'afterUpdate' interceptor methods. When the persistence layer kept the current
+            // version because the resource didn't change, there is nothing to notify.
             if (updateCreate) {
                 ior.setStatus(Response.Status.CREATED);
                 getInterceptorMgr().fireAfterCreateEvent(event);
+            } else if (result.isUnchanged()) {
+                ior.setStatus(Response.Status.OK);
+                log.fine("Resource unchanged; skipping the 'afterUpdate' interceptors.");
             } else {
                 ior.setStatus(Response.Status.OK);
                 if (patch != null) {
@@ -522,6 +568,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 try {
                     MultivaluedMap<String, String> searchParameters = getQueryParameterMap(searchQueryString);
                     searchParameters.putSingle(SearchConstants.COUNT, Integer.toString(searchPageSize));
+                    searchParameters.putSingle(SearchConstants.TOTAL, TotalValueSet.ACCURATE.value());
                     // TODO add support for collecting the warnings from the search
                     responseBundle = doSearch(type, null, null, searchParameters, null, requestProperties, null);
                 } catch (FHIROperationException e) {
@@ -691,6 +738,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                         HTTPHandlingPreference.LENIENT.equals(requestContext.getHandlingPreference()));
             }
 
+            // The resource cache only holds committed, non-deleted resources.
+            boolean useCache = !includeDeleted && searchContext == null && !isTransactionActive();
+
             // Start a new txn in the persistence layer if one is not already active.
             txn.begin();
 
@@ -701,7 +751,19 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             FHIRPersistenceContext persistenceContext =
                     FHIRPersistenceContextFactory.createPersistenceContext(event, includeDeleted, searchContext);
-            resource = persistence.read(persistenceContext, resourceType, id).getResource();
+            ResourceReadCache.Slot cacheSlot = null;
+            if (useCache) {
+                resource = ResourceReadCache.getInstance().getLatest(type, id);
+                if (resource == null) {
+                    cacheSlot = ResourceReadCache.getInstance().getLatestSlot(type, id);
+                }
+            }
+            if (resource == null) {
+                resource = persistence.read(persistenceContext, resourceType, id).getResource();
+                if (resource != null && cacheSlot != null) {
+                    cacheSlot.offer(resource);
+                }
+            }
             if (resource == null && throwExcOnNull) {
                 throw new FHIRPersistenceResourceNotFoundException("Resource '" + type + "/" + id + "' not found.");
             }
@@ -763,6 +825,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             Class<? extends Resource> resourceType =
                     getResourceType(resourceTypeName);
 
+            // The resource cache only holds committed, non-deleted resources.
+            boolean useCache = !isTransactionActive();
+
             // Start a new txn in the persistence layer if one is not already active.
             txn.begin();
 
@@ -773,10 +838,18 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             FHIRPersistenceContext persistenceContext =
                     FHIRPersistenceContextFactory.createPersistenceContext(event);
-            resource = persistence.vread(persistenceContext, resourceType, id, versionId).getResource();
+            if (useCache) {
+                resource = ResourceReadCache.getInstance().getVersion(type, id, versionId);
+            }
             if (resource == null) {
-                throw new FHIRPersistenceResourceNotFoundException("Resource '"
-                        + resourceType.getSimpleName() + "/" + id + "' version " + versionId + " not found.");
+                resource = persistence.vread(persistenceContext, resourceType, id, versionId).getResource();
+                if (resource == null) {
+                    throw new FHIRPersistenceResourceNotFoundException("Resource '"
+                            + resourceType.getSimpleName() + "/" + id + "' version " + versionId + " not found.");
+                }
+                if (useCache) {
+                    ResourceReadCache.getInstance().putVersion(type, id, versionId, resource);
+                }
             }
 
             event.setFhirResource(resource);
@@ -924,6 +997,19 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(compartment, compartmentId, resourceType, queryParameters,
                     HTTPHandlingPreference.LENIENT.equals(requestContext.getHandlingPreference()));
 
+            // Client searches without a _total parameter use the default of the tenant
+            if (requestUri != null && !searchContext.hasTotalParameter()) {
+                String defaultTotal = FHIRConfigHelper.getStringProperty(FHIRConfiguration.PROPERTY_SEARCH_DEFAULT_TOTAL, null);
+                if (defaultTotal != null) {
+                    try {
+                        searchContext.setTotalParameter(TotalValueSet.from(defaultTotal));
+                    } catch (IllegalArgumentException e) {
+                        log.warning("Ignoring invalid value '" + defaultTotal + "' for property "
+                                + FHIRConfiguration.PROPERTY_SEARCH_DEFAULT_TOTAL);
+                    }
+                }
+            }
+
             FHIRPersistenceContext persistenceContext =
                     FHIRPersistenceContextFactory.createPersistenceContext(event, searchContext);
             List<Resource> resources =
@@ -1077,6 +1163,14 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return persistence.getTransaction();
     }
 
+    /**
+     * @return true if a transaction is already active on the current thread
+     */
+    private boolean isTransactionActive() throws Exception {
+        FHIRPersistenceTransaction txn = getTransaction();
+        return txn != null && txn.isActive();
+    }
+
     /**
      * Validate the input resource and throw if there are validation errors
      *
@@ -1087,7 +1181,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
      */
     private List<OperationOutcome.Issue> validateInput(Resource resource)
             throws FHIRValidationException, FHIROperationException {
-        List<OperationOutcome.Issue> issues = FHIRValidator.validator().validate(resource);
+        List<OperationOutcome.Issue> issues = newValidator().validate(resource);
         if (!issues.isEmpty()) {
             for (OperationOutcome.Issue issue : issues) {
                 if (FHIRUtil.isFailure(issue.getSeverity())) {
@@ -1107,6 +1201,135 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return issues;
     }
 
+    /**
+     * @return the minimum number of nested resources for which they are validated in parallel; less than 1 if parallel
+     *         validation is disabled (see {@link FHIRConfiguration#PROPERTY_VALIDATION_PARALLEL_THRESHOLD})
+     */
+    private int getValidationParallelThreshold() {
+        return FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_VALIDATION_PARALLEL_THRESHOLD, 0);
+    }
+
+    /**
+     * @return a validator which validates the nested resources of large resources in parallel on the container-managed
+     *         executor, when that is configured and the executor is available; otherwise a sequential validator
+     */
+    private FHIRValidator newValidator() {
+        int threshold = getValidationParallelThreshold();
+        Executor executor = (threshold > 0) ? getValidationExecutor() : null;
+        return (executor != null) ? FHIRValidator.validator(threshold, executor) : FHIRValidator.validator();
+    }
+
+    /**
+     * @return the container-managed executor, wrapped so that each task runs with its own copy of the current request
+     *         context; null if the executor is not available
+     */
+    private static Executor getValidationExecutor() {
+        ExecutorService executor = getBatchExecutor();
+        return (executor != null) ? withRequestContext(executor, FHIRRequestContext.get()) : null;
+    }
+
+    /**
+     * @return an executor which runs each task on the passed executor with its own copy of the passed request context
+     */
+    static Executor withRequestContext(Executor executor, FHIRRequestContext requestContext) {
+        return task -> {
+            FHIRRequestContext taskContext = new FHIRRequestContext(requestContext);
+            executor.execute(() -> {
+                FHIRRequestContext.set(taskContext);
+                try {
+                    task.run();
+                } finally {
+                    FHIRRequestContext.remove();
+                }
+            });
+        };
+    }
+
+    /**
+     * Starts the validation of the resources of the request bundle entries on the container-managed executor, when
+     * the bundle holds enough of them for parallel validation to be configured.
+     *
+     * @return the validation task of each entry, by entry index (null for entries without a resource), or null if the
+     *         entries are to be validated sequentially
+     */
+    private List<FutureTask<List<OperationOutcome.Issue>>> forkEntryValidations(Bundle bundle) {
+        int threshold = getValidationParallelThreshold();
+        if (threshold < 1) {
+            return null;
+        }
+        long count = bundle.getEntry().stream().filter(entry -> entry.getResource() != null).count();
+        if (count < threshold) {
+            return null;
+        }
+        Executor executor = getValidationExecutor();
+        if (executor == null) {
+            return null;
+        }
+        log.fine("Validating the resources of " + count + " bundle request entries in parallel");
+        return forkEntryValidations(bundle, threshold, executor);
+    }
+
+    /**
+     * Starts the validation of the resources of the request bundle entries on the passed executor
+     *
+     * @return the validation task of each entry, by entry index (null for entries without a resource)
+     */
+    static List<FutureTask<List<OperationOutcome.Issue>>> forkEntryValidations(Bundle bundle, int threshold,
+            Executor executor) {
+        List<FutureTask<List<OperationOutcome.Issue>>> entryValidations = new ArrayList<>(bundle.getEntry().size());
+        for (Bundle.Entry entry : bundle.getEntry()) {
+            Resource resource = entry.getResource();
+            if (resource == null) {
+                entryValidations.add(null);
+                continue;
+            }
+            FutureTask<List<OperationOutcome.Issue>> entryValidation =
+                    new FutureTask<>(() -> FHIRValidator.validator(threshold, executor).validate(resource));
+            entryValidations.add(entryValidation);
+            try {
+                executor.execute(entryValidation);
+            } catch (RejectedExecutionException e) {
+                // the entry is validated on the request thread when its issues are needed
+                log.log(Level.FINE, "Unable to validate a bundle request entry in parallel", e);
+            }
+        }
+        return entryValidations;
+    }
+
+    /**
+     * Waits for the validation of a request bundle entry started by {@link #forkEntryValidations(Bundle)}.
+     * If no thread of the executor has started the validation yet, it is done on the current thread.
+     *
+     * @throws FHIRValidationException if an error occurred during the validation
+     */
+    static List<OperationOutcome.Issue> joinEntryValidation(FutureTask<List<OperationOutcome.Issue>> entryValidation)
+            throws FHIRValidationException, InterruptedException {
+        entryValidation.run();
+        try {
+            return entryValidation.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FHIRValidationException) {
+                throw (FHIRValidationException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FHIRValidationException("An error occurred during validation", e.getCause());
+        }
+    }
+
+    /**
+     * Cancels the validations started by {@link #forkEntryValidations(Bundle)}; a no-op for the validations which
+     * completed already
+     */
+    static void cancelEntryValidations(List<FutureTask<List<OperationOutcome.Issue>>> entryValidations) {
+        for (FutureTask<List<OperationOutcome.Issue>> entryValidation : entryValidations) {
+            if (entryValidation != null) {
+                entryValidation.cancel(false);
+            }
+        }
+    }
+
     /**
      * @param issues
      * @return
@@ -1133,6 +1356,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private Bundle validateBundle(Bundle bundle) throws Exception {
         log.entering(this.getClass().getName(), "validateBundle");
 
+        List<FutureTask<List<OperationOutcome.Issue>>> entryValidations = null;
         try {
             // Make sure the bundle isn't empty
             if (bundle == null) {
@@ -1175,7 +1399,14 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             List<Bundle.Entry> responseList = new ArrayList<Bundle.Entry>();
 
+            // When configured, the entry resources are validated concurrently up front and the issues of each entry
+            // are picked up in entry order below.
+            entryValidations = forkEntryValidations(bundle);
+
+            int entryIndex = -1;
             for (Bundle.Entry requestEntry : bundle.getEntry()) {
+                entryIndex++;
+
                 // Create a corresponding response entry and add it to the response bundle.
                 Bundle.Entry.Response response;
                 Bundle.Entry responseEntry = null;
@@ -1209,8 +1440,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
                     // If the request entry contains a resource, then validate it now.
                     if (resource != null) {
-                        List<OperationOutcome.Issue> issues =
-                                FHIRValidator.validator().validate(resource);
+                        List<OperationOutcome.Issue> issues = (entryValidations != null) ?
+                                joinEntryValidation(entryValidations.get(entryIndex)) :
+                                newValidator().validate(resource);
                         if (!issues.isEmpty()) {
                             if (anyFailureInIssues(issues)) {
                                 if (requestType == BundleType.ValueSet.TRANSACTION) {
@@ -1280,6 +1512,10 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             return responseBundle;
         } finally {
+            if (entryValidations != null) {
+                // the validations which did not complete are no longer needed after a failure
+                cancelEntryValidations(entryValidations);
+            }
             log.exiting(this.getClass().getName(), "validateBundle");
         }
     }
@@ -1458,6 +1694,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             }
 
             Map<String, String> localRefMap = new HashMap<>();
+            localReferenceIndex = new LocalReferenceIndex(requestBundle, LOCAL_REF_PREFIX);
 
             // Next, process entries in the correct order.
             responseBundle = processEntriesForMethod(requestBundle, responseBundle, HTTPVerb.DELETE,
@@ -1484,6 +1721,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             // Clear both correlation id fields since we're done processing the bundle.
             bundleRequestCorrelationId = null;
             bundleTransactionCorrelationId = null;
+            localReferenceIndex = null;
 
             if (txn != null) {
                 txn.rollback();
@@ -1552,382 +1790,785 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             // Now visit each of the request entries using the list of indices obtained above.
             // Use hashmap to store both the index and the according updated response bundle entry.
-            HashMap<Integer, Bundle.Entry> responseIndexAndEntries =
-                    new HashMap<Integer, Bundle.Entry>();
+            Map<Integer, Bundle.Entry> responseIndexAndEntries = new HashMap<Integer, Bundle.Entry>();
+
+            // The 'create' entries of a 'transaction' bundle are stored as sets; whatever is left is processed below.
+            if (failFast && httpMethod.equals(HTTPVerb.POST) && isCreateSetEligible(requestBundle, entryIndices)) {
+                entryIndices = processCreateEntrySets(requestBundle, responseBundle, entryIndices, localRefMap,
+                        bundleRequestCorrelationId, responseIndexAndEntries);
+            }
+
+            int parallelism = getBatchParallelism(requestBundle, httpMethod, entryIndices, failFast);
+            if (parallelism > 1) {
+                responseIndexAndEntries.putAll(processEntriesInParallel(requestBundle, responseBundle, entryIndices,
+                        parallelism, localRefMap, bundleRequestCorrelationId));
+            } else {
+                for (Integer entryIndex : entryIndices) {
+                    responseIndexAndEntries.put(entryIndex, processEntry(requestBundle, responseBundle, entryIndex,
+                            failFast, localRefMap, bundleRequestCorrelationId));
+                }
+            }
+
+            // Now, let's re-construct the responseBundle
+            responseBundle = reconstructResponseBundle(responseBundle, responseIndexAndEntries);
+            return responseBundle;
+
+        } finally {
+            log.exiting(this.getClass().getName(), "processEntriesForMethod");
+        }
+    }
+
+    /**
+     * Determines how many threads should process the specified entries of a request bundle.
+     * Only the entries of a 'batch' bundle are ever processed in parallel, and only when that is configured for the
+     * current tenant and the entries cannot observe each other's results.
+     *
+     * @return the number of threads to use; 1 if the entries must be processed sequentially
+     */
+    private int getBatchParallelism(Bundle requestBundle, HTTPVerb httpMethod, List<Integer> entryIndices,
+            boolean failFast) throws Exception {
+        if (failFast || persistenceHelper == null || entryIndices.size() < 2) {
+            return 1;
+        }
+        int parallelism = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_BATCH_PARALLELISM, 1);
+        if (parallelism < 2) {
+            return 1;
+        }
+        if (hasEntryDependencies(requestBundle, httpMethod, entryIndices, localReferenceIndex)) {
+            return 1;
+        }
+        if (getBatchExecutor() == null) {
+            return 1;
+        }
+        return Math.min(parallelism, entryIndices.size());
+    }
+
+    /**
+     * Determines whether any of the specified entries of a request bundle, all of which use the passed method, must
+     * observe the result of another one of them.
+     *
+     * @return true if the entries must be processed sequentially
+     */
+    static boolean hasEntryDependencies(Bundle requestBundle, HTTPVerb httpMethod, List<Integer> entryIndices,
+            LocalReferenceIndex localReferenceIndex) throws Exception {
+        Set<String> localIdentifiers = new HashSet<>();
+        Set<String> paths = new HashSet<>();
+        for (Integer entryIndex : entryIndices) {
+            Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+            Bundle.Entry.Request request = requestEntry.getRequest();
+            if (httpMethod.equals(HTTPVerb.POST)) {
+                // A conditional create must see the resources created by the entries before it.
+                if (request.getIfNoneExist() != null) {
+                    log.fine("Processing POST entries sequentially because the batch contains a conditional create");
+                    return true;
+                }
+                if (requestEntry.getFullUrl() != null && requestEntry.getFullUrl().getValue() != null
+                        && requestEntry.getFullUrl().getValue().startsWith(LOCAL_REF_PREFIX)) {
+                    localIdentifiers.add(requestEntry.getFullUrl().getValue());
+                }
+            } else if (httpMethod.equals(HTTPVerb.PUT) || httpMethod.equals(HTTPVerb.DELETE)) {
+                // Interactions on the same resource must be applied in order.
+                if (!paths.add(new FHIRUrlParser(request.getUrl().getValue()).getPath())) {
+                    log.fine("Processing " + httpMethod.getValue()
+                            + " entries sequentially because more than one entry targets the same resource");
+                    return true;
+                }
+            }
+        }
+
+        // A create that references a resource created by another entry depends on that entry.
+        if (!localIdentifiers.isEmpty()) {
             for (Integer entryIndex : entryIndices) {
-                Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
-                Bundle.Entry responseEntry = responseBundle.getEntry().get(entryIndex);
-                Bundle.Entry.Builder responseEntryBuilder = responseEntry.toBuilder();
+                if (!Collections.disjoint(localReferenceIndex.getLocalReferences(entryIndex), localIdentifiers)) {
+                    log.fine("Processing POST entries sequentially because they reference each other");
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-                Bundle.Entry.Request request = requestEntry.getRequest();
-                Bundle.Entry.Response response = responseEntry.getResponse();
+    /**
+     * Processes the specified request entries of a 'batch' bundle on up to 'parallelism' threads.
+     * The current thread processes entries with this helper; each additional thread uses its own persistence instance,
+     * so every entry is still processed in its own persistence transaction.
+     *
+     * @return the updated response entries, keyed by entry index
+     */
+    private Map<Integer, Bundle.Entry> processEntriesInParallel(Bundle requestBundle, Bundle responseBundle,
+            List<Integer> entryIndices, int parallelism, Map<String, String> localRefMap,
+            String bundleRequestCorrelationId) throws Exception {
+        log.fine("Processing " + entryIndices.size() + " bundle request entries on " + parallelism + " threads");
+
+        Map<String, String> concurrentLocalRefMap = new ConcurrentHashMap<>(localRefMap);
+        Map<Integer, Bundle.Entry> responseIndexAndEntries = processInParallel(getBatchExecutor(), parallelism,
+                entryIndices,
+                entryIndex -> processEntry(requestBundle, responseBundle, entryIndex, false, concurrentLocalRefMap,
+                        bundleRequestCorrelationId),
+                () -> {
+                    FHIRRestHelper workerHelper = new FHIRRestHelper(persistenceHelper.getFHIRPersistenceImplementation());
+                    workerHelper.localReferenceIndex = localReferenceIndex;
+                    return entryIndex -> workerHelper.processEntry(requestBundle, responseBundle, entryIndex, false,
+                            concurrentLocalRefMap, bundleRequestCorrelationId);
+                });
+
+        localRefMap.putAll(concurrentLocalRefMap);
+        return responseIndexAndEntries;
+    }
 
-                StringBuffer requestDescription = new StringBuffer();
-                long initialTime = System.currentTimeMillis();
+    /**
+     * Processes a single request bundle entry
+     */
+    @FunctionalInterface
+    interface EntryProcessor<T> {
+        T process(int entryIndex) throws Exception;
+    }
+
+    /**
+     * Processes the specified entries on the current thread and on 'parallelism - 1' threads of the passed executor.
+     * Each thread claims the next unprocessed entry until all of them have been claimed. The executor threads create
+     * their processor with 'workerProcessorFactory' and run with their own copy of the current request context.
+     * Once one thread fails, the others stop claiming entries, and the first failure is thrown after all of them have
+     * finished.
+     *
+     * @return the result of each entry, keyed by entry index
+     */
+    static <T> Map<Integer, T> processInParallel(ExecutorService executor, int parallelism, List<Integer> entryIndices,
+            EntryProcessor<T> processor, Callable<EntryProcessor<T>> workerProcessorFactory) throws Exception {
+        Map<Integer, T> results = new ConcurrentHashMap<>();
+        AtomicInteger nextEntry = new AtomicInteger();
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        List<Future<Void>> workers = new ArrayList<>(parallelism - 1);
+        for (int i = 1; i < parallelism; i++) {
+            // each thread gets its own copy, as the request context is mutable
+            FHIRRequestContext workerContext = new FHIRRequestContext(requestContext);
+            workers.add(executor.submit(() -> {
+                FHIRRequestContext.set(workerContext);
                 try {
-                    FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
-
-                    String path = requestURL.getPath();
-                    String query = requestURL.getQuery();
-                    if (log.isLoggable(Level.FINER)) {
-                        log.finer("Processing bundle request entry " + entryIndex + "; method="
-                                + request.getMethod().getValue() + ", url="
-                                + request.getUrl().getValue());
-                        log.finer("--> path: " + path);
-                        log.finer("--> query: " + query);
+                    processEntries(workerProcessorFactory.call(), entryIndices, nextEntry, results);
+                } finally {
+                    FHIRRequestContext.remove();
+                }
+                return null;
+            }));
+        }
+
+        Exception failure = null;
+        try {
+            processEntries(processor, entryIndices, nextEntry, results);
+        } catch (Exception e) {
+            failure = e;
+        }
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Processes entries until all of the specified entries have been claimed by this or another thread.
+     * When processing an entry fails, no more entries are claimed by any of the threads.
+     */
+    private static <T> void processEntries(EntryProcessor<T> processor, List<Integer> entryIndices,
+            AtomicInteger nextEntry, Map<Integer, T> results) throws Exception {
+        int i;
+        while ((i = nextEntry.getAndIncrement()) < entryIndices.size()) {
+            int entryIndex = entryIndices.get(i);
+            try {
+                results.put(entryIndex, processor.process(entryIndex));
+            } catch (Exception e) {
+                nextEntry.set(entryIndices.size());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the container-managed executor used to process batch bundle entries in parallel, or null if it is not
+     * available (in which case entries are processed sequentially). Threads created outside of the container would not
+     * have access to the JNDI resources and transactions needed by the persistence layer.
+     * A failed lookup is retried the next time, so the executor is picked up once it becomes available.
+     */
+    private static ExecutorService getBatchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            try {
+                executor = (ExecutorService) new InitialContext().lookup(BATCH_EXECUTOR_JNDI_NAME);
+                batchExecutor = executor;
+            } catch (NamingException | ClassCastException e) {
+                // only warn once; the lookup keeps failing in environments without the executor
+                Level level = batchExecutorLookupWarned ? Level.FINE : Level.WARNING;
+                batchExecutorLookupWarned = true;
+                log.log(level, "Unable to look up '" + BATCH_EXECUTOR_JNDI_NAME
+                        + "'; batch bundle entries will be processed sequentially", e);
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Determines whether the specified POST entries of a 'transaction' bundle can be stored as sets.
+     * This is only the case when there is more than one of them and each is a plain (non-conditional) 'create'.
+     */
+    private boolean isCreateSetEligible(Bundle requestBundle, List<Integer> entryIndices) throws Exception {
+        if (entryIndices.size() < 2) {
+            return false;
+        }
+        for (Integer entryIndex : entryIndices) {
+            Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+            Bundle.Entry.Request request = requestEntry.getRequest();
+            if (requestEntry.getResource() == null || request.getIfNoneExist() != null) {
+                return false;
+            }
+            String[] pathTokens = new FHIRUrlParser(request.getUrl().getValue()).getPathTokens();
+            if (pathTokens.length != 1 || pathTokens[0].startsWith("$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the resources of the specified 'create' request entries of a 'transaction' bundle with as few calls to
+     * {@link FHIRPersistence#createAll(FHIRPersistenceContext, List)} as possible.
+     * An entry that references the local identifier of another entry can only be created after that entry,
+     * so the entries are created in waves; each wave holds the entries whose local references are all resolved.
+     *
+     * @return the indices of the entries that are left to be processed one at a time because their local references
+     *         are circular
+     */
+    private List<Integer> processCreateEntrySets(Bundle requestBundle, Bundle responseBundle, List<Integer> entryIndices,
+            Map<String, String> localRefMap, String bundleRequestCorrelationId,
+            Map<Integer, Bundle.Entry> responseIndexAndEntries) throws Exception {
+        try {
+            // Collect the local identifiers of the entries, and the ones that each entry refers to.
+            Map<Integer, String> localIdentifiers = new HashMap<>();
+            for (Integer entryIndex : entryIndices) {
+                String localIdentifier = retrieveLocalIdentifier(requestBundle.getEntry().get(entryIndex), localRefMap);
+                if (localIdentifier != null) {
+                    if (localIdentifiers.containsValue(localIdentifier)) {
+                        String msg = "Duplicate local identifier encountered in bundled request entry: "
+                                + localIdentifier;
+                        throw buildRestException(msg, IssueType.DUPLICATE);
                     }
+                    localIdentifiers.put(entryIndex, localIdentifier);
+                }
+            }
+            Map<Integer, Set<String>> localReferences = new HashMap<>();
+            for (Integer entryIndex : entryIndices) {
+                Set<String> references = new HashSet<>(localReferenceIndex.getLocalReferences(entryIndex));
+                references.retainAll(localIdentifiers.values());
+                localReferences.put(entryIndex, references);
+            }
 
-                    // Log our initial info message for this request.
-                    requestDescription.append("entryIndex:[");
-                    requestDescription.append(entryIndex);
-                    requestDescription.append("] correlationId:[");
-                    requestDescription.append(bundleRequestCorrelationId);
-                    requestDescription.append("] method:[");
-                    requestDescription.append(request.getMethod().getValue());
-                    requestDescription.append("] uri:[");
-                    requestDescription.append(request.getUrl().getValue());
-                    requestDescription.append("]");
-                    log.info("Received bundle request: " + requestDescription.toString());
-
-                    String[] pathTokens = requestURL.getPathTokens();
-                    MultivaluedMap<String, String> queryParams = requestURL.getQueryParameters();
-
-                    // Construct the absolute requestUri to be used for any response bundles associated
-                    // with history and search requests.
-                    String absoluteUri =
-                            getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
-
-                    if (request.getMethod().equals(HTTPVerb.GET)) {
-                        Resource resource = null;
-                        int httpStatus = SC_OK;
-
-                        // Process a GET (read, vread, history, search, etc.).
-                        // Determine the type of request from the path tokens.
-                        if (pathTokens.length > 0
-                                && pathTokens[pathTokens.length - 1].startsWith("$")) {
-                            // This is a custom operation request
-
-                            // Chop off the '$' and save the name
-                            String operationName = pathTokens[pathTokens.length - 1].substring(1);
-
-                            // FHIROperationContext operationContext;
-                            switch (pathTokens.length) {
-                            case 1: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createSystemOperationContext();
-                                resource =
-                                        doInvoke(operationContext, null, null, null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            case 2: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createResourceTypeOperationContext();
-                                resource =
-                                        doInvoke(operationContext, pathTokens[0], null, null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            case 3: {
-                                FHIROperationContext operationContext =
-                                        FHIROperationContext.createInstanceOperationContext();
-                                resource =
-                                        doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, null, queryParams, null);
-                            }
-                                break;
-                            default:
-                                String msg = "Invalid URL for custom operation '"
-                                        + pathTokens[pathTokens.length - 1] + "'";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
-                        } else if (pathTokens.length == 1) {
-                            // This is a 'search' request.
-                            if ("_search".equals(pathTokens[0])) {
-                                resource =
-                                        doSearch("Resource", null, null, queryParams, absoluteUri, null, null);
-                            } else {
-                                resource =
-                                        doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            // This is a 'read' request.
-                            resource =
-                                    doRead(pathTokens[0], pathTokens[1], true, false, null, null);
-                        } else if (pathTokens.length == 3) {
-                            if ("_history".equals(pathTokens[2])) {
-                                // This is a 'history' request.
-                                resource =
-                                        doHistory(pathTokens[0], pathTokens[1], queryParams, absoluteUri, null);
-                            } else {
-                                // This is a compartment based search
-                                resource =
-                                        doSearch(pathTokens[2], pathTokens[0], pathTokens[1], queryParams, absoluteUri, null, null);
-                            }
-                        } else if (pathTokens.length == 4 && pathTokens[2].equals("_history")) {
-                            // This is a 'vread' request.
-                            resource = doVRead(pathTokens[0], pathTokens[1], pathTokens[3], null);
-                        } else {
-                            String msg = "Unrecognized path in request URL: " + path;
-                            throw buildRestException(msg, IssueType.NOT_FOUND);
-                        }
+            List<Integer> remainingIndices = new ArrayList<>(entryIndices);
+            while (!remainingIndices.isEmpty()) {
+                List<Integer> wave = new ArrayList<>();
+                for (Integer entryIndex : remainingIndices) {
+                    if (localRefMap.keySet().containsAll(localReferences.get(entryIndex))) {
+                        wave.add(entryIndex);
+                    }
+                }
+                if (wave.isEmpty()) {
+                    log.fine("Processing " + remainingIndices.size()
+                            + " create entries one at a time because they reference each other");
+                    break;
+                }
+                remainingIndices.removeAll(wave);
+                createEntrySet(requestBundle, responseBundle, wave, localIdentifiers, localRefMap,
+                        bundleRequestCorrelationId, responseIndexAndEntries);
+            }
+            return remainingIndices;
+        } catch (FHIROperationException e) {
+            String msg = "Error while processing request bundle.";
+            throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+        }
+    }
 
-                        // Save the results of the operation in the bundle response field.
-                        Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                        responseBuilder.status(string(Integer.toString(httpStatus)));
-                        setBundleResponseStatus(response, httpStatus, requestDescription.toString(), initialTime);
-
-                        responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(resource).response(responseBuilder.build()).build());
-                    } else if (request.getMethod().equals(HTTPVerb.POST)) {
-                        // Process a POST (create or search, or custom operation).
-                        if (pathTokens.length > 0
-                                && pathTokens[pathTokens.length - 1].startsWith("$")) {
-                            // This is a custom operation request
-
-                            // Chop off the '$' and save the name
-                            String operationName = pathTokens[pathTokens.length - 1].substring(1);
-
-                            // Retrieve the resource from the request entry.
-                            Resource resource = requestEntry.getResource();
-
-                            FHIROperationContext operationContext;
-                            Resource result;
-                            switch (pathTokens.length) {
-                            case 1:
-                                operationContext =
-                                        FHIROperationContext.createSystemOperationContext();
-                                result = doInvoke(operationContext, null, null, null, operationName, resource, queryParams, null);
-                                break;
-                            case 2:
-                                operationContext =
-                                        FHIROperationContext.createResourceTypeOperationContext();
-                                result = doInvoke(operationContext, pathTokens[0], null, null, operationName, resource, queryParams, null);
-                                break;
-                            case 3:
-                                operationContext =
-                                        FHIROperationContext.createInstanceOperationContext();
-                                result = doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, resource, queryParams, null);
-                                break;
-                            default:
-                                String msg = "Invalid URL for custom operation '"
-                                        + pathTokens[pathTokens.length - 1] + "'";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
+    /**
+     * Creates the resources of the specified 'create' request entries with a single call to the persistence layer.
+     * Each entry is validated and passed to the persistence interceptors just like a single 'create'.
+     */
+    private void createEntrySet(Bundle requestBundle, Bundle responseBundle, List<Integer> entryIndices,
+            Map<Integer, String> localIdentifiers, Map<String, String> localRefMap, String bundleRequestCorrelationId,
+            Map<Integer, Bundle.Entry> responseIndexAndEntries) throws Exception {
+        long initialTime = System.currentTimeMillis();
+        List<String> requestDescriptions = new ArrayList<>(entryIndices.size());
+        List<Resource> resources = new ArrayList<>(entryIndices.size());
+        List<List<Issue>> warnings = new ArrayList<>(entryIndices.size());
+        List<FHIRPersistenceEvent> events = new ArrayList<>(entryIndices.size());
 
-                            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                            // Add warning and hint issues to response outcome if any.
-                            if (result instanceof OperationOutcome) {
-                                if (((OperationOutcome) result).getIssue() != null) {
-                                    responseBuilder.outcome(result);
-                                }
-                            }
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
 
-                            responseBuilder.status(string(Integer.toString(SC_OK)));
-                            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                                    .resource(result)
-                                    .response(responseBuilder.build())
-                                    .build());
-                            setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
-
-                        } else if (pathTokens.length == 2 && "_search".equals(pathTokens[1])) {
-                            // This is a 'search' request.
-                            Bundle searchResults =
-                                    doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
-
-                            // Save the results of the operation in the bundle response field.
-                            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                            responseBuilder.status(string(Integer.toString(SC_OK)));
-
-                            responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                                    .resource(searchResults)
-                                    .response(responseBuilder.build())
-                                    .build());
-
-                            setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
-                        } else if (pathTokens.length == 1) {
-                            // This is a 'create' request.
-
-                            // Retrieve the local identifier from the request entry (if present).
-                            String localIdentifier =
-                                    retrieveLocalIdentifier(requestEntry, localRefMap);
-
-                            // Retrieve the resource from the request entry.
-                            Resource resource = requestEntry.getResource();
-                            if (resource == null) {
-                                String msg =
-                                        "BundleEntry.resource is required for bundled create requests.";
-                                throw buildRestException(msg, IssueType.NOT_FOUND);
-                            }
+        try {
+            for (Integer entryIndex : entryIndices) {
+                Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+                Bundle.Entry.Request request = requestEntry.getRequest();
+                String requestDescription = "entryIndex:[" + entryIndex + "] correlationId:[" + bundleRequestCorrelationId
+                        + "] method:[" + request.getMethod().getValue() + "] uri:[" + request.getUrl().getValue() + "]";
+                log.info("Received bundle request: " + requestDescription);
+                requestDescriptions.add(requestDescription);
+
+                // Convert any local references found within the resource to their
+                // corresponding external reference.
+                Resource resource = localReferenceIndex.mapLocalReferences(entryIndex, requestEntry.getResource(), localRefMap);
+
+                // Make sure the expected type (specified in the URL string) is congruent with the actual type
+                // of the resource.
+                String type = new FHIRUrlParser(request.getUrl().getValue()).getPathTokens()[0];
+                String resourceType = ModelSupport.getTypeName(resource.getClass());
+                if (!resourceType.equals(type)) {
+                    String msg = "Resource type '" + resourceType
+                            + "' does not match type specified in request URI: " + type;
+                    throw buildRestException(msg, IssueType.INVALID);
+                }
 
-                            // Convert any local references found within the resource to their
-                            // corresponding external reference.
-
-                            ReferenceMappingVisitor<Resource> visitor =
-                                    new ReferenceMappingVisitor<Resource>(localRefMap);
-                            resource.accept(visitor);
-                            resource = visitor.getResult();
-
-                            // Perform the 'create' operation.
-                            String ifNoneExist = request.getIfNoneExist() != null
-                                    ? request.getIfNoneExist().getValue() : null;
-                            FHIRRestOperationResponse ior =
-                                    doCreate(pathTokens[0], resource, ifNoneExist, null);
-
-                            // Get the updated resource from FHIRRestOperationResponse which has the correct ID, meta
-                            // etc.
-                            resource = ior.getResource();
-
-                            // Process and replace bundler Entry
-                            Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, resource, ior.getOperationOutcome(),
-                                    ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
-
-                            responseIndexAndEntries.put(entryIndex, resultEntry);
-
-                            // Next, if a local identifier was present, we'll need to map this to the
-                            // correct external identifier (e.g. Patient/12345).
-                            addLocalRefMapping(localRefMap, localIdentifier, resource);
-                        } else {
-                            String msg =
-                                    "Request URL for bundled create requests should have a path with exactly one token (<resourceType>).";
-                            throw buildRestException(msg, IssueType.NOT_FOUND);
-                        }
-                    } else if (request.getMethod().equals(HTTPVerb.PUT)) {
-                        String type = null;
-                        String id = null;
-
-                        // Process a PUT (update).
-                        if (pathTokens.length == 1) {
-                            // A single-part url would be a conditional update: <type>?<query>
-                            type = pathTokens[0];
-                            if (query == null || query.isEmpty()) {
-                                String msg =
-                                        "A search query string is required for a conditional update operation.";
-                                throw buildRestException(msg, IssueType.INVALID);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            // A two-part url would be a normal update: <type>/<id>.
-                            type = pathTokens[0];
-                            id = pathTokens[1];
-                        } else {
-                            // A url with any other pattern is an error.
-                            String msg = "Request URL for bundled PUT request should have path part with either one or two tokens "
-                                    + "(<resourceType> or <resourceType>/<id>).";
-                            throw buildRestException(msg, IssueType.INVALID);
-                        }
+                // Validate the input and, if valid, start collecting supplemental warnings
+                List<Issue> entryWarnings = new ArrayList<>(validateInput(resource));
+                if (resource.getId() != null) {
+                    String msg = "The create request resource included id: '" + resource.getId() + "'; this id has been replaced";
+                    entryWarnings.add(FHIRUtil.buildOperationOutcomeIssue(IssueSeverity.INFORMATION, IssueType.INFORMATIONAL, msg));
+                }
 
-                        // Retrieve the resource from the request entry.
-                        Resource resource = requestEntry.getResource();
+                // Invoke the 'beforeCreate' interceptor methods.
+                FHIRPersistenceEvent event =
+                        new FHIRPersistenceEvent(resource, buildPersistenceEventProperties(type, null, null, null));
+                getInterceptorMgr().fireBeforeCreateEvent(event);
 
-                        // Convert any local references found within the resource to their
-                        // corresponding external reference.
-                        ReferenceMappingVisitor<Resource> visitor =
-                                new ReferenceMappingVisitor<Resource>(localRefMap);
-                        resource.accept(visitor);
-                        resource = visitor.getResult();
-
-                        // Perform the 'update' operation.
-                        String ifMatchBundleValue = null;
-                        if (request.getIfMatch() != null) {
-                            ifMatchBundleValue = request.getIfMatch().getValue();
-                        }
-                        FHIRRestOperationResponse ior =
-                                doUpdate(type, id, resource, ifMatchBundleValue, query, null);
-
-                        // Process and replace bundler Entry
-                        Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
-                                ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
-
-                        responseIndexAndEntries.put(entryIndex, resultEntry);
-
-                    } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
-                        String type = null;
-                        String id = null;
-
-                        // Process a DELETE.
-                        if (pathTokens.length == 1) {
-                            // A single-part url would be a conditional delete: <type>?<query>
-                            type = pathTokens[0];
-                            if (query == null || query.isEmpty()) {
-                                String msg =
-                                        "A search query string is required for a conditional delete operation.";
-                                throw buildRestException(msg, IssueType.INVALID);
-                            }
-                        } else if (pathTokens.length == 2) {
-                            type = pathTokens[0];
-                            id = pathTokens[1];
-                        } else {
-                            String msg = "Request URL for bundled DELETE request should have path part with one or two tokens "
-                                    + "(<resourceType> or <resourceType>/<id>).";
-                            throw buildRestException(msg, IssueType.INVALID);
-                        }
+                resources.add(resource);
+                warnings.add(entryWarnings);
+                events.add(event);
+            }
+
+            // The persistence context is shared by the whole set, so it is not tied to the event of any one entry.
+            FHIRPersistenceContext persistenceContext = FHIRPersistenceContextFactory.createPersistenceContext(null);
+            List<SingleResourceResult<Resource>> results = persistence.createAll(persistenceContext, resources);
+
+            for (int i = 0; i < entryIndices.size(); i++) {
+                Integer entryIndex = entryIndices.get(i);
+                SingleResourceResult<Resource> result = results.get(i);
+                if (!result.isSuccess()) {
+                    String msg = "Unable to create the resource of bundled request entry " + entryIndex;
+                    if (result.getOutcome() != null) {
+                        throw new FHIROperationException(msg).withIssue(result.getOutcome().getIssue());
+                    }
+                    throw buildRestException(msg, IssueType.EXCEPTION);
+                }
+
+                // R4: remember model objects are immutable, so we get back a new resource with the id/meta stuff
+                Resource resource = result.getResource();
+                List<Issue> entryWarnings = warnings.get(i);
+                if (result.getOutcome() != null) {
+                    entryWarnings.addAll(result.getOutcome().getIssue());
+                }
+                FHIRPersistenceEvent event = events.get(i);
+                event.setFhirResource(resource); // update event with latest
+
+                // Build our location URI and add it to the interceptor event structure since it is now known.
+                URI locationURI = FHIRUtil.buildLocationURI(ModelSupport.getTypeName(resource.getClass()), resource);
+                event.getProperties().put(FHIRPersistenceEvent.PROPNAME_RESOURCE_LOCATION_URI, locationURI.toString());
+
+                // Invoke the 'afterCreate' interceptor methods.
+                getInterceptorMgr().fireAfterCreateEvent(event);
+
+                responseIndexAndEntries.put(entryIndex, setBundleResponseFields(responseBundle.getEntry().get(entryIndex),
+                        resource, FHIRUtil.buildOperationOutcome(entryWarnings), locationURI,
+                        Response.Status.CREATED.getStatusCode(), requestDescriptions.get(i), initialTime));
+
+                // Next, if a local identifier was present, we'll need to map this to the
+                // correct external identifier (e.g. Patient/12345).
+                addLocalRefMapping(localRefMap, localIdentifiers.get(entryIndex), resource);
+            }
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+        }
+    }
+
+    /**
+     * Processes a single request entry of the specified request bundle.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param responseBundle
+     *            the bundle containing the corresponding response entries
+     * @param entryIndex
+     *            the index of the request entry to process
+     * @return the updated response entry
+     */
+    private Bundle.Entry processEntry(Bundle requestBundle, Bundle responseBundle, int entryIndex,
+            boolean failFast, Map<String, String> localRefMap, String bundleRequestCorrelationId)
+            throws Exception {
+        Bundle.Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+        Bundle.Entry responseEntry = responseBundle.getEntry().get(entryIndex);
+        Bundle.Entry.Builder responseEntryBuilder = responseEntry.toBuilder();
 
-                        // Perform the 'delete' operation.
-                        FHIRRestOperationResponse ior = doDelete(type, id, query, null);
+        Bundle.Entry.Request request = requestEntry.getRequest();
+        Bundle.Entry.Response response = responseEntry.getResponse();
 
-                        // Process and replace bundler Entry
-                        Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
-                                null, ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+        Bundle.Entry processedEntry;
+        StringBuffer requestDescription = new StringBuffer();
+        long initialTime = System.currentTimeMillis();
+        try {
+            FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
 
-                        responseIndexAndEntries.put(entryIndex, resultEntry);
+            String path = requestURL.getPath();
+            String query = requestURL.getQuery();
+            if (log.isLoggable(Level.FINER)) {
+                log.finer("Processing bundle request entry " + entryIndex + "; method="
+                        + request.getMethod().getValue() + ", url="
+                        + request.getUrl().getValue());
+                log.finer("--> path: " + path);
+                log.finer("--> query: " + query);
+            }
+
+            // Log our initial info message for this request.
+            requestDescription.append("entryIndex:[");
+            requestDescription.append(entryIndex);
+            requestDescription.append("] correlationId:[");
+            requestDescription.append(bundleRequestCorrelationId);
+            requestDescription.append("] method:[");
+            requestDescription.append(request.getMethod().getValue());
+            requestDescription.append("] uri:[");
+            requestDescription.append(request.getUrl().getValue());
+            requestDescription.append("]");
+            log.info("Received bundle request: " + requestDescription.toString());
+
+            String[] pathTokens = requestURL.getPathTokens();
+            MultivaluedMap<String, String> queryParams = requestURL.getQueryParameters();
+
+            // Construct the absolute requestUri to be used for any response bundles associated
+            // with history and search requests.
+            String absoluteUri =
+                    getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
+
+            if (request.getMethod().equals(HTTPVerb.GET)) {
+                Resource resource = null;
+                int httpStatus = SC_OK;
+
+                // Process a GET (read, vread, history, search, etc.).
+                // Determine the type of request from the path tokens.
+                if (pathTokens.length > 0
+                        && pathTokens[pathTokens.length - 1].startsWith("$")) {
+                    // This is a custom operation request
+
+                    // Chop off the '$' and save the name
+                    String operationName = pathTokens[pathTokens.length - 1].substring(1);
+
+                    // FHIROperationContext operationContext;
+                    switch (pathTokens.length) {
+                    case 1: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createSystemOperationContext();
+                        resource =
+                                doInvoke(operationContext, null, null, null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    case 2: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createResourceTypeOperationContext();
+                        resource =
+                                doInvoke(operationContext, pathTokens[0], null, null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    case 3: {
+                        FHIROperationContext operationContext =
+                                FHIROperationContext.createInstanceOperationContext();
+                        resource =
+                                doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, null, queryParams, null);
+                    }
+                        break;
+                    default:
+                        String msg = "Invalid URL for custom operation '"
+                                + pathTokens[pathTokens.length - 1] + "'";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
+                    }
+                } else if (pathTokens.length == 1) {
+                    // This is a 'search' request.
+                    if ("_search".equals(pathTokens[0])) {
+                        resource =
+                                doSearch("Resource", null, null, queryParams, absoluteUri, null, null);
                     } else {
-                        // Internal error, should not get here!
-                        throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
+                        resource =
+                                doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
                     }
-                } catch (FHIRPersistenceResourceNotFoundException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+                } else if (pathTokens.length == 2) {
+                    // This is a 'read' request.
+                    resource =
+                            doRead(pathTokens[0], pathTokens[1], true, false, null, null);
+                } else if (pathTokens.length == 3) {
+                    if ("_history".equals(pathTokens[2])) {
+                        // This is a 'history' request.
+                        resource =
+                                doHistory(pathTokens[0], pathTokens[1], queryParams, absoluteUri, null);
+                    } else {
+                        // This is a compartment based search
+                        resource =
+                                doSearch(pathTokens[2], pathTokens[0], pathTokens[1], queryParams, absoluteUri, null, null);
                     }
+                } else if (pathTokens.length == 4 && pathTokens[2].equals("_history")) {
+                    // This is a 'vread' request.
+                    resource = doVRead(pathTokens[0], pathTokens[1], pathTokens[3], null);
+                } else {
+                    String msg = "Unrecognized path in request URL: " + path;
+                    throw buildRestException(msg, IssueType.NOT_FOUND);
+                }
+
+                // Save the results of the operation in the bundle response field.
+                Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+                responseBuilder.status(string(Integer.toString(httpStatus)));
+                setBundleResponseStatus(response, httpStatus, requestDescription.toString(), initialTime);
+
+                processedEntry = responseEntryBuilder.resource(resource).response(responseBuilder.build()).build();
+            } else if (request.getMethod().equals(HTTPVerb.POST)) {
+                // Process a POST (create or search, or custom operation).
+                if (pathTokens.length > 0
+                        && pathTokens[pathTokens.length - 1].startsWith("$")) {
+                    // This is a custom operation request
+
+                    // Chop off the '$' and save the name
+                    String operationName = pathTokens[pathTokens.length - 1].substring(1);
+
+                    // Retrieve the resource from the request entry.
+                    Resource resource = requestEntry.getResource();
+
+                    FHIROperationContext operationContext;
+                    Resource result;
+                    switch (pathTokens.length) {
+                    case 1:
+                        operationContext =
+                                FHIROperationContext.createSystemOperationContext();
+                        result = doInvoke(operationContext, null, null, null, operationName, resource, queryParams, null);
+                        break;
+                    case 2:
+                        operationContext =
+                                FHIROperationContext.createResourceTypeOperationContext();
+                        result = doInvoke(operationContext, pathTokens[0], null, null, operationName, resource, queryParams, null);
+                        break;
+                    case 3:
+                        operationContext =
+                                FHIROperationContext.createInstanceOperationContext();
+                        result = doInvoke(operationContext, pathTokens[0], pathTokens[1], null, operationName, resource, queryParams, null);
+                        break;
+                    default:
+                        String msg = "Invalid URL for custom operation '"
+                                + pathTokens[pathTokens.length - 1] + "'";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
+                    }
+
                     Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(SC_NOT_FOUND)));
+                    // Add warning and hint issues to response outcome if any.
+                    if (result instanceof OperationOutcome) {
+                        if (((OperationOutcome) result).getIssue() != null) {
+                            responseBuilder.outcome(result);
+                        }
+                    }
 
-                    responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                            .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    responseBuilder.status(string(Integer.toString(SC_OK)));
+                    processedEntry = responseEntryBuilder
+                            .resource(result)
                             .response(responseBuilder.build())
-                            .build());
+                            .build();
+                    setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
 
-                    setBundleResponseStatus(response, SC_NOT_FOUND, requestDescription.toString(), initialTime);
-                } catch (FHIRPersistenceResourceDeletedException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
-                    }
+                } else if (pathTokens.length == 2 && "_search".equals(pathTokens[1])) {
+                    // This is a 'search' request.
+                    Bundle searchResults =
+                            doSearch(pathTokens[0], null, null, queryParams, absoluteUri, null, null);
+
+                    // Save the results of the operation in the bundle response field.
                     Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(SC_GONE)));
+                    responseBuilder.status(string(Integer.toString(SC_OK)));
 
-                    responseIndexAndEntries.put(entryIndex, responseEntryBuilder
-                            .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    processedEntry = responseEntryBuilder
+                            .resource(searchResults)
                             .response(responseBuilder.build())
-                            .build());
+                            .build();
 
-                    setBundleResponseStatus(response, SC_GONE, requestDescription.toString(), initialTime);
-                } catch (FHIROperationException e) {
-                    if (failFast) {
-                        String msg = "Error while processing request bundle.";
-                        throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+                    setBundleResponseStatus(response, SC_OK, requestDescription.toString(), initialTime);
+                } else if (pathTokens.length == 1) {
+                    // This is a 'create' request.
+
+                    // Retrieve the local identifier from the request entry (if present).
+                    String localIdentifier =
+                            retrieveLocalIdentifier(requestEntry, localRefMap);
+
+                    // Retrieve the resource from the request entry.
+                    Resource resource = requestEntry.getResource();
+                    if (resource == null) {
+                        String msg =
+                                "BundleEntry.resource is required for bundled create requests.";
+                        throw buildRestException(msg, IssueType.NOT_FOUND);
                     }
 
-                    Status status;
-                    if (e instanceof FHIRSearchException) {
-                        status = Status.BAD_REQUEST;
-                    } else {
-                        status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
+                    // Convert any local references found within the resource to their
+                    // corresponding external reference.
+                    resource = localReferenceIndex.mapLocalReferences(entryIndex, resource, localRefMap);
+
+                    // Perform the 'create' operation.
+                    String ifNoneExist = request.getIfNoneExist() != null
+                            ? request.getIfNoneExist().getValue() : null;
+                    FHIRRestOperationResponse ior =
+                            doCreate(pathTokens[0], resource, ifNoneExist, null);
+
+                    // Get the updated resource from FHIRRestOperationResponse which has the correct ID, meta
+                    // etc.
+                    resource = ior.getResource();
+
+                    // Process and replace bundler Entry
+                    Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, resource, ior.getOperationOutcome(),
+                            ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+
+                    processedEntry = resultEntry;
+
+                    // Next, if a local identifier was present, we'll need to map this to the
+                    // correct external identifier (e.g. Patient/12345).
+                    addLocalRefMapping(localRefMap, localIdentifier, resource);
+                } else {
+                    String msg =
+                            "Request URL for bundled create requests should have a path with exactly one token (<resourceType>).";
+                    throw buildRestException(msg, IssueType.NOT_FOUND);
+                }
+            } else if (request.getMethod().equals(HTTPVerb.PUT)) {
+                String type = null;
+                String id = null;
+
+                // Process a PUT (update).
+                if (pathTokens.length == 1) {
+                    // A single-part url would be a conditional update: <type>?<query>
+                    type = pathTokens[0];
+                    if (query == null || query.isEmpty()) {
+                        String msg =
+                                "A search query string is required for a conditional update operation.";
+                        throw buildRestException(msg, IssueType.INVALID);
                     }
+                } else if (pathTokens.length == 2) {
+                    // A two-part url would be a normal update: <type>/<id>.
+                    type = pathTokens[0];
+                    id = pathTokens[1];
+                } else {
+                    // A url with any other pattern is an error.
+                    String msg = "Request URL for bundled PUT request should have path part with either one or two tokens "
+                            + "(<resourceType> or <resourceType>/<id>).";
+                    throw buildRestException(msg, IssueType.INVALID);
+                }
 
-                    Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
-                    responseBuilder.status(string(Integer.toString(status.getStatusCode())));
+                // Retrieve the resource from the request entry.
+                Resource resource = requestEntry.getResource();
 
-                    responseIndexAndEntries.put(entryIndex, responseEntryBuilder.resource(FHIRUtil.buildOperationOutcome(e, false))
-                            .response(responseBuilder.build()).build());
+                // Convert any local references found within the resource to their
+                // corresponding external reference.
+                resource = localReferenceIndex.mapLocalReferences(entryIndex, resource, localRefMap);
 
-                    setBundleResponseStatus(response, status.getStatusCode(), requestDescription.toString(), initialTime);
+                // Perform the 'update' operation.
+                String ifMatchBundleValue = null;
+                if (request.getIfMatch() != null) {
+                    ifMatchBundleValue = request.getIfMatch().getValue();
                 }
-            } // end foreach entry
+                FHIRRestOperationResponse ior =
+                        doUpdate(type, id, resource, ifMatchBundleValue, query, null);
 
-            // Now, let's re-construct the responseBundle
-            responseBundle = reconstructResponseBundle(responseBundle, responseIndexAndEntries);
-            return responseBundle;
+                // Process and replace bundler Entry
+                Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
+                        ior.getLocationURI(), ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
 
-        } finally {
-            log.exiting(this.getClass().getName(), "processEntriesForMethod");
+                processedEntry = resultEntry;
+
+            } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
+                String type = null;
+                String id = null;
+
+                // Process a DELETE.
+                if (pathTokens.length == 1) {
+                    // A single-part url would be a conditional delete: <type>?<query>
+                    type = pathTokens[0];
+                    if (query == null || query.isEmpty()) {
+                        String msg =
+                                "A search query string is required for a conditional delete operation.";
+                        throw buildRestException(msg, IssueType.INVALID);
+                    }
+                } else if (pathTokens.length == 2) {
+                    type = pathTokens[0];
+                    id = pathTokens[1];
+                } else {
+                    String msg = "Request URL for bundled DELETE request should have path part with one or two tokens "
+                            + "(<resourceType> or <resourceType>/<id>).";
+                    throw buildRestException(msg, IssueType.INVALID);
+                }
+
+                // Perform the 'delete' operation.
+                FHIRRestOperationResponse ior = doDelete(type, id, query, null);
+
+                // Process and replace bundler Entry
+                Bundle.Entry resultEntry = setBundleResponseFields(responseEntry, ior.getResource(), ior.getOperationOutcome(),
+                        null, ior.getStatus().getStatusCode(), requestDescription.toString(), initialTime);
+
+                processedEntry = resultEntry;
+            } else {
+                // Internal error, should not get here!
+                throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
+            }
+        } catch (FHIRPersistenceResourceNotFoundException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(SC_NOT_FOUND)));
+
+            processedEntry = responseEntryBuilder
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build())
+                    .build();
+
+            setBundleResponseStatus(response, SC_NOT_FOUND, requestDescription.toString(), initialTime);
+        } catch (FHIRPersistenceResourceDeletedException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(SC_GONE)));
+
+            processedEntry = responseEntryBuilder
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build())
+                    .build();
+
+            setBundleResponseStatus(response, SC_GONE, requestDescription.toString(), initialTime);
+        } catch (FHIROperationException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+
+            Status status;
+            if (e instanceof FHIRSearchException) {
+                status = Status.BAD_REQUEST;
+            } else {
+                status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
+            }
+
+            Bundle.Entry.Response.Builder responseBuilder = response.toBuilder();
+            responseBuilder.status(string(Integer.toString(status.getStatusCode())));
+
+            processedEntry = responseEntryBuilder.resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(responseBuilder.build()).build();
+
+            setBundleResponseStatus(response, status.getStatusCode(), requestDescription.toString(), initialTime);
         }
+        return processedEntry;
     }
 
     /**
@@ -1936,7 +2577,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
      * @return
      */
     private Bundle reconstructResponseBundle(Bundle responseBundle,
-        HashMap<Integer, Bundle.Entry> responseIndexAndEntries) {
+        Map<Integer, Bundle.Entry> responseIndexAndEntries) {
         // Re-construct the responseBundle
         List<Bundle.Entry> responseEntries = new ArrayList<Bundle.Entry>();
         for (int i = 0; i < responseBundle.getEntry().size(); i++) {
@@ -2186,13 +2827,16 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private Bundle createSearchBundle(List<Resource> resources, FHIRSearchContext searchContext, String type)
         throws Exception {
 
-        // throws if we have a count of more than 2,147,483,647 resources
-        UnsignedInt totalCount = UnsignedInt.of(searchContext.getTotalCount());
         // generate ID for this bundle and set total
         Bundle.Builder bundleBuider = Bundle.builder()
                                             .type(BundleType.SEARCHSET)
-                                            .id(UUID.randomUUID().toString())
-                                            .total(totalCount);
+                                            .id(UUID.randomUUID().toString());
+
+        // with _total=none, the number of matches was not counted
+        if (!TotalValueSet.NONE.equals(searchContext.getTotalParameter())) {
+            // throws if we have a count of more than 2,147,483,647 resources
+            bundleBuider.total(UnsignedInt.of(searchContext.getTotalCount()));
+        }
 
         for (Resource resource : resources) {
             if (resource.getId() == null) {
@@ -2340,6 +2984,11 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 // add new _page parameter to the query string
                 nextLinkUrl += "_page=" + nextPageNumber;
 
+                // let the persistence layer seek to the next page instead of skipping the preceding rows
+                if (context.getNextPageToken() != null) {
+                    nextLinkUrl += "&" + SearchConstants.PAGE_TOKEN + "=" + context.getNextPageToken();
+                }
+
                 // create 'next' link
                 Bundle.Link nextLink =
                         Bundle.Link.builder().relation(string("next")).url(Url.of(nextLinkUrl)).build();
@@ -2349,8 +2998,11 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             int prevPageNumber = context.getPageNumber() - 1;
             if (prevPageNumber > 0) {
 
-                // starting with the original request URI
-                String prevLinkUrl = requestUri;
+                // starting with the original request URI, without the token of the current page
+                String prevLinkUrl = requestUri.replaceAll(SearchConstants.PAGE_TOKEN + "=[^&]*&?", "");
+                if (prevLinkUrl.endsWith("&")) {
+                    prevLinkUrl = prevLinkUrl.substring(0, prevLinkUrl.length() - 1);
+                }
 
                 // remove existing _page parameters from the query string
                 prevLinkUrl =
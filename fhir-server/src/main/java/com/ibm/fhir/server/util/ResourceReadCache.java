@@ -0,0 +1,425 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import com.ibm.fhir.config.FHIRConfigHelper;
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
+import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptor;
+import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptorException;
+
+/**
+ * A read-through cache of parsed resources for the 'read' and 'vread' interactions, with a size-bounded cache per
+ * tenant/datastore.
+ *
+ * <p>Specific versions never change once they are committed, so 'vread' entries are never invalidated. 'read'
+ * entries hold the latest version of a resource; the cache is registered as a persistence interceptor and each
+ * create, update, patch or delete raises a per-resource version floor. Entries below the floor are never returned,
+ * and a resource read from the database is only cached if its version is at least the floor.
+ *
+ * <p>The 'after' interceptor methods run before the transaction commits, so until then a concurrent read may still see
+ * the previous committed version. Each write therefore also records its floor in a pending floor map, which is not
+ * subject to eviction and which only holds the floors of the writes whose transaction has not completed yet. A write
+ * raises the floor of the slot of its resource if the slot exists, and a slot obtained for a read picks up the
+ * pending floor of its resource, so the previous version is never cached, even if the slot is evicted and recreated
+ * while the write is in progress. Writes never create slots, so they don't evict cached resources. A rolled back
+ * update only costs cache misses for that resource until its slot is evicted.
+ *
+ * <p>Callers must only use the cache outside of an enclosing transaction, so that uncommitted versions are never
+ * cached. Writes that bypass the interceptors (for example bulk import) or that are made by another server are not
+ * seen by the cache.
+ */
+public class ResourceReadCache implements FHIRPersistenceInterceptor {
+    private static final Logger log = Logger.getLogger(ResourceReadCache.class.getName());
+
+    private static final String TRX_SYNCH_REG_JNDI_NAME = "java:comp/TransactionSynchronizationRegistry";
+
+    private static final ResourceReadCache INSTANCE = new ResourceReadCache(null);
+
+    // the caches keyed by "tenantId~datastoreId"; DISABLED marks a tenant/datastore without a cache
+    private final ConcurrentHashMap<String, TenantCache> tenantCaches = new ConcurrentHashMap<>();
+    private static final TenantCache DISABLED = new TenantCache(null);
+
+    // the size of the cache of every tenant/datastore; null to use the configuration of each tenant
+    private final Integer maxEntries;
+
+    private volatile TransactionSynchronizationRegistry trxSynchRegistry = null;
+
+    /**
+     * @param maxEntries the size of the cache of every tenant/datastore, regardless of their configuration; null to
+     *        use the configuration of each tenant
+     */
+    ResourceReadCache(Integer maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public static ResourceReadCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param type the resource type name
+     * @param id the logical id
+     * @return the latest version of the resource, or null if it is not cached (or the cache is disabled)
+     */
+    public Resource getLatest(String type, String id) {
+        TenantCache cache = getTenantCache();
+        if (cache == null) {
+            return null;
+        }
+        Slot slot = cache.latest.get(latestKey(type, id));
+        Resource resource = (slot != null) ? slot.get() : null;
+        cache.record(resource != null);
+        return resource;
+    }
+
+    /**
+     * Get the slot into which the latest version of the resource is offered after it has been read from the
+     * database. The slot must be obtained before the database read, so that an invalidation that happens while the
+     * read is in flight is not lost.
+     *
+     * @param type the resource type name
+     * @param id the logical id
+     * @return the slot, or null if the cache is disabled
+     */
+    public Slot getLatestSlot(String type, String id) {
+        TenantCache cache = getTenantCache();
+        if (cache == null) {
+            return null;
+        }
+        String key = latestKey(type, id);
+        Slot slot = cache.latest.computeIfAbsent(key, k -> new Slot());
+        // the slot may have been evicted and recreated while a write to the resource is in progress
+        Integer pendingFloor = cache.pendingFloors.get(key);
+        if (pendingFloor != null) {
+            slot.raiseFloor(pendingFloor);
+        }
+        return slot;
+    }
+
+    /**
+     * @param type the resource type name
+     * @param id the logical id
+     * @param versionId the version id
+     * @return the specified version of the resource, or null if it is not cached (or the cache is disabled)
+     */
+    public Resource getVersion(String type, String id, String versionId) {
+        TenantCache cache = getTenantCache();
+        if (cache == null) {
+            return null;
+        }
+        Resource resource = cache.versions.get(versionKey(type, id, versionId));
+        cache.record(resource != null);
+        return resource;
+    }
+
+    /**
+     * @param type the resource type name
+     * @param id the logical id
+     * @param versionId the version id
+     * @param resource the (committed, not deleted) version of the resource
+     */
+    public void putVersion(String type, String id, String versionId, Resource resource) {
+        TenantCache cache = getTenantCache();
+        if (cache != null) {
+            cache.versions.put(versionKey(type, id, versionId), resource);
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a resource for the current tenant/datastore
+     */
+    public long getHitCount() {
+        TenantCache cache = getTenantCache();
+        return (cache != null) ? cache.hitCount.sum() : 0;
+    }
+
+    /**
+     * @return the number of lookups that did not find a resource for the current tenant/datastore
+     */
+    public long getMissCount() {
+        TenantCache cache = getTenantCache();
+        return (cache != null) ? cache.missCount.sum() : 0;
+    }
+
+    /**
+     * @return the ratio of lookups that found a resource for the current tenant/datastore, or 0 if there have been
+     *         no lookups
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return (total == 0) ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * @return a summary of the statistics of each tenant/datastore cache
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        tenantCaches.forEach((key, cache) -> {
+            if (cache != DISABLED) {
+                sb.append(key).append(": ").append(cache).append(System.lineSeparator());
+            }
+        });
+        return sb.toString();
+    }
+
+    @Override
+    public void afterCreate(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
+        invalidate(event);
+    }
+
+    @Override
+    public void afterUpdate(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
+        invalidate(event);
+    }
+
+    @Override
+    public void afterPatch(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
+        invalidate(event);
+    }
+
+    @Override
+    public void afterDelete(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
+        invalidate(event);
+    }
+
+    /**
+     * Raise the version floor of the resource of the passed event to the version it was just written with, until
+     * the transaction of the write completes.
+     */
+    private void invalidate(FHIRPersistenceEvent event) {
+        TenantCache cache = getTenantCache();
+        if (cache == null) {
+            return;
+        }
+        Resource resource = event.getFhirResource();
+        String type = event.getFhirResourceType();
+        String id = (resource != null && resource.getId() != null) ? resource.getId() : event.getFhirResourceId();
+        if (resource != null && type == null) {
+            type = resource.getClass().getSimpleName();
+        }
+        if (type == null || id == null) {
+            return;
+        }
+        // without a version, nothing is cached for this resource until its slot is evicted
+        int floor = Integer.MAX_VALUE;
+        if (resource != null) {
+            int version = versionOf(resource);
+            if (version > 0) {
+                floor = version;
+            }
+        }
+        String key = latestKey(type, id);
+        // the pending floor first, so that a slot created for a read after this either sees it or is raised below
+        cache.pendingFloors.merge(key, floor, Math::max);
+        Slot slot = cache.latest.get(key);
+        if (slot != null) {
+            slot.raiseFloor(floor);
+        }
+        if (log.isLoggable(Level.FINEST)) {
+            log.finest("Raised version floor of '" + type + "/" + id + "' to " + floor);
+        }
+        // a higher floor recorded by another write stays until that write completes
+        final Integer writtenFloor = floor;
+        afterCompletion(() -> cache.pendingFloors.remove(key, writtenFloor));
+    }
+
+    /**
+     * Run the passed action once the current transaction has completed; right away if there is no transaction.
+     */
+    void afterCompletion(Runnable action) {
+        TransactionSynchronizationRegistry registry = getTrxSynchRegistry();
+        if (registry == null || registry.getTransactionKey() == null) {
+            // not within a transaction, so the write has been committed already
+            action.run();
+            return;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * @return the container's transaction synchronization registry, or null if it is not available
+     */
+    private TransactionSynchronizationRegistry getTrxSynchRegistry() {
+        TransactionSynchronizationRegistry registry = trxSynchRegistry;
+        if (registry == null) {
+            try {
+                registry = (TransactionSynchronizationRegistry) new InitialContext().lookup(TRX_SYNCH_REG_JNDI_NAME);
+                trxSynchRegistry = registry;
+            } catch (NamingException e) {
+                log.log(Level.FINE, "Unable to look up '" + TRX_SYNCH_REG_JNDI_NAME + "'", e);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @return the cache of the tenant/datastore of the current request, or null if it has no cache
+     */
+    private TenantCache getTenantCache() {
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+        String key = requestContext.getTenantId() + "~" + requestContext.getDataStoreId();
+        TenantCache cache = tenantCaches.get(key);
+        if (cache == null) {
+            // the configuration of the current request context is the configuration of this tenant
+            cache = tenantCaches.computeIfAbsent(key, k -> createTenantCache());
+        }
+        return (cache != DISABLED) ? cache : null;
+    }
+
+    private TenantCache createTenantCache() {
+        if (this.maxEntries != null) {
+            return new TenantCache(this.maxEntries);
+        }
+        if (!FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_RESOURCE_CACHE_ENABLED, Boolean.FALSE)) {
+            return DISABLED;
+        }
+        int maxEntries = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_RESOURCE_CACHE_MAX_ENTRIES, 1000);
+        if (maxEntries < 1) {
+            return DISABLED;
+        }
+        return new TenantCache(maxEntries);
+    }
+
+    private static String latestKey(String type, String id) {
+        return type + "/" + id;
+    }
+
+    private static String versionKey(String type, String id, String versionId) {
+        return type + "/" + id + "/_history/" + versionId;
+    }
+
+    /**
+     * @return the version of the resource, or 0 if it has none
+     */
+    private static int versionOf(Resource resource) {
+        if (resource.getMeta() == null || resource.getMeta().getVersionId() == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(resource.getMeta().getVersionId().getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The cached latest version of a single resource together with its version floor.
+     */
+    public static final class Slot {
+        private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+
+        private Slot() {
+        }
+
+        private Resource get() {
+            return state.get().resource;
+        }
+
+        /**
+         * Cache the passed resource, read from the database, unless a newer version has been written since.
+         *
+         * @param resource the latest (committed, not deleted) version of the resource
+         */
+        public void offer(Resource resource) {
+            Objects.requireNonNull(resource);
+            int version = versionOf(resource);
+            if (version == 0) {
+                return;
+            }
+            state.updateAndGet(current -> {
+                if (version < current.floor || version < current.version) {
+                    return current;
+                }
+                return new State(resource, version, current.floor);
+            });
+        }
+
+        private void raiseFloor(int floor) {
+            state.updateAndGet(current -> {
+                int newFloor = Math.max(current.floor, floor);
+                if (current.resource != null && current.version >= newFloor) {
+                    return current;
+                }
+                return new State(null, 0, newFloor);
+            });
+        }
+    }
+
+    private static final class State {
+        private static final State EMPTY = new State(null, 0, 0);
+
+        private final Resource resource;
+        private final int version;
+        private final int floor;
+
+        private State(Resource resource, int version, int floor) {
+            this.resource = resource;
+            this.version = version;
+            this.floor = floor;
+        }
+    }
+
+    private static final class TenantCache {
+        private final BoundedConcurrentCache<String, Slot> latest;
+        private final BoundedConcurrentCache<String, Resource> versions;
+        // the floors of the writes whose transaction has not completed yet; only ever removed by the writes themselves
+        private final ConcurrentMap<String, Integer> pendingFloors = new ConcurrentHashMap<>();
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+
+        private TenantCache(Integer maxEntries) {
+            this.latest = (maxEntries != null) ? new BoundedConcurrentCache<>(maxEntries) : null;
+            this.versions = (maxEntries != null) ? new BoundedConcurrentCache<>(maxEntries) : null;
+        }
+
+        private void record(boolean hit) {
+            if (hit) {
+                hitCount.increment();
+            } else {
+                missCount.increment();
+            }
+        }
+
+        @Override
+        public String toString() {
+            long hits = hitCount.sum();
+            long total = hits + missCount.sum();
+            return "latest=" + latest.size() + ", versions=" + versions.size() + ", pendingFloors=" + pendingFloors.size()
+                    + ", maxEntries=" + latest.getMaxEntries()
+                    + ", hits=" + hits + ", misses=" + missCount.sum()
+                    + ", hitRate=" + ((total == 0) ? 0.0 : (double) hits / total);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.CodeableConcept;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.HTTPVerb;
+import com.ibm.fhir.model.type.code.ObservationStatus;
+import com.ibm.fhir.model.util.LocalReferenceIndex;
+
+/**
+ * Tests the dependency detection and the parallel processing of the entries of a 'batch' bundle
+ */
+public class FHIRRestHelperBatchTest {
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIndependentCreates() throws Exception {
+        Bundle bundle = bundle(
+            post("urn:uuid:1", patient(), null),
+            post("urn:uuid:2", observation("Patient/existing"), null));
+        assertFalse(hasEntryDependencies(bundle, HTTPVerb.POST));
+    }
+
+    @Test
+    public void testConditionalCreate() throws Exception {
+        Bundle bundle = bundle(
+            post(null, patient(), null),
+            post(null, patient(), "identifier=123"));
+        assertTrue(hasEntryDependencies(bundle, HTTPVerb.POST));
+    }
+
+    @Test
+    public void testLocalReference() throws Exception {
+        Bundle bundle = bundle(
+            post("urn:uuid:1", patient(), null),
+            post("urn:uuid:2", observation("urn:uuid:1"), null));
+        assertTrue(hasEntryDependencies(bundle, HTTPVerb.POST));
+    }
+
+    @Test
+    public void testSameResourceTwice() throws Exception {
+        Bundle bundle = bundle(
+            request(HTTPVerb.PUT, "Patient/1", patient()),
+            request(HTTPVerb.PUT, "Patient/2", patient()),
+            request(HTTPVerb.PUT, "Patient/1", patient()));
+        assertTrue(hasEntryDependencies(bundle, HTTPVerb.PUT));
+
+        bundle = bundle(
+            request(HTTPVerb.DELETE, "Patient/1", null),
+            request(HTTPVerb.DELETE, "Patient/1?_format=json", null));
+        assertTrue(hasEntryDependencies(bundle, HTTPVerb.DELETE));
+    }
+
+    @Test
+    public void testDifferentResources() throws Exception {
+        Bundle bundle = bundle(
+            request(HTTPVerb.PUT, "Patient/1", patient()),
+            request(HTTPVerb.PUT, "Patient/2", patient()),
+            request(HTTPVerb.PUT, "Observation/1", observation("Patient/1")));
+        assertFalse(hasEntryDependencies(bundle, HTTPVerb.PUT));
+    }
+
+    @Test
+    public void testResultsByEntryIndex() throws Exception {
+        FHIRRequestContext requestContext = new FHIRRequestContext("tenant1", "dsid1");
+        FHIRRequestContext.set(requestContext);
+        try {
+            List<Integer> entryIndices = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                entryIndices.add(i * 2);
+            }
+            Set<FHIRRequestContext> workerContexts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            Map<Integer, String> results = FHIRRestHelper.processInParallel(executor, 3, entryIndices,
+                entryIndex -> process(entryIndex, "main"),
+                () -> entryIndex -> {
+                    FHIRRequestContext workerContext = FHIRRequestContext.get();
+                    assertEquals(workerContext.getTenantId(), "tenant1");
+                    assertEquals(workerContext.getDataStoreId(), "dsid1");
+                    workerContexts.add(workerContext);
+                    return process(entryIndex, "worker");
+                });
+
+            // every entry is processed exactly once, and its result is found under its own index
+            assertEquals(results.size(), entryIndices.size());
+            for (Integer entryIndex : entryIndices) {
+                assertTrue(results.get(entryIndex).startsWith(entryIndex + "-"));
+            }
+
+            // the workers don't share the request context with each other or with the current thread
+            for (FHIRRequestContext workerContext : workerContexts) {
+                assertNotSame(workerContext, requestContext);
+            }
+            assertSame(FHIRRequestContext.get(), requestContext);
+        } finally {
+            FHIRRequestContext.remove();
+        }
+    }
+
+    @Test
+    public void testFailureOnCurrentThread() throws Exception {
+        Exception failure = new Exception("entry 7 failed");
+        try {
+            FHIRRestHelper.processInParallel(executor, 3, range(20),
+                entryIndex -> {
+                    if (entryIndex == 7) {
+                        throw failure;
+                    }
+                    return process(entryIndex, "main");
+                },
+                () -> entryIndex -> {
+                    if (entryIndex == 7) {
+                        throw failure;
+                    }
+                    return process(entryIndex, "worker");
+                });
+            fail("expected the failure to be thrown");
+        } catch (Exception e) {
+            assertSame(e, failure);
+        }
+    }
+
+    @Test
+    public void testFailureOnWorkerThread() throws Exception {
+        try {
+            FHIRRestHelper.processInParallel(executor, 2, range(20),
+                entryIndex -> process(entryIndex, "main"),
+                () -> {
+                    throw new IllegalStateException("no persistence instance for the worker");
+                });
+            fail("expected the failure to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "no persistence instance for the worker");
+        }
+    }
+
+    private static String process(int entryIndex, String thread) throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+        return entryIndex + "-" + thread;
+    }
+
+    private static List<Integer> range(int size) {
+        List<Integer> entryIndices = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entryIndices.add(i);
+        }
+        return entryIndices;
+    }
+
+    private static boolean hasEntryDependencies(Bundle bundle, HTTPVerb httpMethod) throws Exception {
+        return FHIRRestHelper.hasEntryDependencies(bundle, httpMethod, range(bundle.getEntry().size()),
+                new LocalReferenceIndex(bundle, "urn:"));
+    }
+
+    private static Bundle bundle(Bundle.Entry... entries) {
+        return Bundle.builder().type(BundleType.BATCH).entry(Arrays.asList(entries)).build();
+    }
+
+    private static Bundle.Entry post(String fullUrl, Resource resource, String ifNoneExist) {
+        Bundle.Entry.Request.Builder request = Bundle.Entry.Request.builder()
+                .method(HTTPVerb.POST)
+                .url(Uri.of(resource.getClass().getSimpleName()));
+        if (ifNoneExist != null) {
+            request.ifNoneExist(com.ibm.fhir.model.type.String.of(ifNoneExist));
+        }
+        return Bundle.Entry.builder()
+                .fullUrl(fullUrl != null ? Uri.of(fullUrl) : null)
+                .resource(resource)
+                .request(request.build())
+                .build();
+    }
+
+    private static Bundle.Entry request(HTTPVerb method, String url, Resource resource) {
+        return Bundle.Entry.builder()
+                .resource(resource)
+                .request(Bundle.Entry.Request.builder().method(method).url(Uri.of(url)).build())
+                .build();
+    }
+
+    private static Patient patient() {
+        return Patient.builder().build();
+    }
+
+    private static Observation observation(String subject) {
+        return Observation.builder()
+                .status(ObservationStatus.FINAL)
+                .code(CodeableConcept.builder().text(com.ibm.fhir.model.type.String.of("test")).build())
+                .subject(Reference.builder().reference(com.ibm.fhir.model.type.String.of(subject)).build())
+                .build();
+    }
+}
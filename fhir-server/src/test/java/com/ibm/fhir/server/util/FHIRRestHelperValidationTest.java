@@ -0,0 +1,164 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import static com.ibm.fhir.model.type.String.string;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.OperationOutcome.Issue;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.type.Extension;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.HTTPVerb;
+import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.validation.FHIRValidator;
+
+/**
+ * Tests the parallel validation of the entries of a request bundle
+ */
+public class FHIRRestHelperValidationTest {
+
+    @Test
+    public void testForkAndJoin() throws Exception {
+        Bundle bundle = bundle();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<FutureTask<List<Issue>>> entryValidations = FHIRRestHelper.forkEntryValidations(bundle, 2, executor);
+            assertEquals(entryValidations.size(), 3);
+            assertNull(entryValidations.get(2));
+
+            // each entry gets the issues of its own resource
+            for (int i = 0; i < 2; i++) {
+                List<Issue> expected = FHIRValidator.validator().validate(bundle.getEntry().get(i).getResource());
+                assertEquals(FHIRRestHelper.joinEntryValidation(entryValidations.get(i)), expected);
+            }
+            assertFalse(hasError(FHIRRestHelper.joinEntryValidation(entryValidations.get(0))));
+            assertTrue(hasError(FHIRRestHelper.joinEntryValidation(entryValidations.get(1))));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testJoinValidatesPendingEntryOnCurrentThread() throws Exception {
+        Bundle bundle = bundle();
+        List<Runnable> pending = new ArrayList<>();
+
+        // an executor which never gets around to running the validations
+        List<FutureTask<List<Issue>>> entryValidations = FHIRRestHelper.forkEntryValidations(bundle, 2, pending::add);
+        assertEquals(pending.size(), 2);
+        assertTrue(hasError(FHIRRestHelper.joinEntryValidation(entryValidations.get(1))));
+
+        // a validation that was rejected by the executor is done on the current thread as well
+        entryValidations = FHIRRestHelper.forkEntryValidations(bundle, 2, task -> {
+            throw new RejectedExecutionException();
+        });
+        assertTrue(hasError(FHIRRestHelper.joinEntryValidation(entryValidations.get(1))));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Bundle bundle = bundle();
+        List<Runnable> pending = new ArrayList<>();
+        List<FutureTask<List<Issue>>> entryValidations = FHIRRestHelper.forkEntryValidations(bundle, 2, pending::add);
+
+        // the first entry fails the request before the validation of the others is needed
+        FHIRRestHelper.joinEntryValidation(entryValidations.get(0));
+        FHIRRestHelper.cancelEntryValidations(entryValidations);
+
+        assertFalse(entryValidations.get(0).isCancelled());
+        assertTrue(entryValidations.get(1).isCancelled());
+
+        // the executor runs the cancelled validation as a no-op
+        for (Runnable task : pending) {
+            task.run();
+        }
+        assertTrue(entryValidations.get(1).isCancelled());
+    }
+
+    @Test
+    public void testRequestContext() throws Exception {
+        FHIRRequestContext requestContext = new FHIRRequestContext("tenant1", "dsid1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Executor contextExecutor = FHIRRestHelper.withRequestContext(executor, requestContext);
+
+            AtomicReference<FHIRRequestContext> taskContext = new AtomicReference<>();
+            CountDownLatch done = new CountDownLatch(1);
+            contextExecutor.execute(() -> {
+                taskContext.set(FHIRRequestContext.get());
+                done.countDown();
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // the task runs with its own copy of the request context
+            assertNotSame(taskContext.get(), requestContext);
+            assertEquals(taskContext.get().getTenantId(), "tenant1");
+            assertEquals(taskContext.get().getDataStoreId(), "dsid1");
+            assertEquals(taskContext.get().getRequestUniqueId(), requestContext.getRequestUniqueId());
+
+            // and the executor thread doesn't keep it afterwards
+            FHIRRequestContext afterwards = executor.submit(FHIRRequestContext::get).get(10, TimeUnit.SECONDS);
+            assertEquals(afterwards.getTenantId(), "default");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean hasError(List<Issue> issues) {
+        return issues.stream().anyMatch(issue -> issue.getSeverity() == IssueSeverity.ERROR);
+    }
+
+    /**
+     * @return a bundle with a valid entry, an invalid entry and an entry without a resource
+     */
+    private static Bundle bundle() {
+        Patient valid = Patient.builder().build();
+        // ext-1: must have either extensions or value[x], not both
+        Patient invalid = Patient.builder()
+                .extension(Extension.builder()
+                    .url("http://ibm.com/fhir/ext")
+                    .value(string("value"))
+                    .extension(Extension.builder().url("http://ibm.com/fhir/nested").value(string("nested")).build())
+                    .build())
+                .build();
+        return Bundle.builder()
+                .type(BundleType.BATCH)
+                .entry(Bundle.Entry.builder()
+                    .resource(valid)
+                    .request(Bundle.Entry.Request.builder().method(HTTPVerb.POST).url(Uri.of("Patient")).build())
+                    .build())
+                .entry(Bundle.Entry.builder()
+                    .resource(invalid)
+                    .request(Bundle.Entry.Request.builder().method(HTTPVerb.POST).url(Uri.of("Patient")).build())
+                    .build())
+                .entry(Bundle.Entry.builder()
+                    .request(Bundle.Entry.Request.builder().method(HTTPVerb.DELETE).url(Uri.of("Patient/1")).build())
+                    .build())
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.type.Id;
+import com.ibm.fhir.model.type.Meta;
+import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
+
+/**
+ * Tests the read-through cache of parsed resources
+ */
+public class ResourceReadCacheTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        ResourceReadCache cache = new ResourceReadCache(10);
+        Patient patient = patient("1", 1);
+
+        assertNull(cache.getLatest("Patient", "1"));
+        cache.getLatestSlot("Patient", "1").offer(patient);
+        assertSame(cache.getLatest("Patient", "1"), patient);
+
+        assertNull(cache.getVersion("Patient", "1", "1"));
+        cache.putVersion("Patient", "1", "1", patient);
+        assertSame(cache.getVersion("Patient", "1", "1"), patient);
+
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getHitRate(), 0.5);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        ResourceReadCache cache = new ResourceReadCache(10);
+        ResourceReadCache.Slot slot = cache.getLatestSlot("Patient", "1");
+        slot.offer(patient("1", 1));
+
+        cache.afterUpdate(event(patient("1", 2)));
+        assertNull(cache.getLatest("Patient", "1"));
+
+        // a read that started before the update can't put the previous version back
+        slot.offer(patient("1", 1));
+        assertNull(cache.getLatest("Patient", "1"));
+
+        Patient updated = patient("1", 2);
+        cache.getLatestSlot("Patient", "1").offer(updated);
+        assertSame(cache.getLatest("Patient", "1"), updated);
+
+        // vread entries are not affected by the update
+        Patient version1 = patient("1", 1);
+        cache.putVersion("Patient", "1", "1", version1);
+        cache.afterUpdate(event(patient("1", 3)));
+        assertSame(cache.getVersion("Patient", "1", "1"), version1);
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        ResourceReadCache cache = new ResourceReadCache(10);
+        ResourceReadCache.Slot slot = cache.getLatestSlot("Patient", "1");
+        slot.offer(patient("1", 1));
+
+        // the event of a delete doesn't necessarily carry the version of the deleted resource
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(FHIRPersistenceEvent.PROPNAME_RESOURCE_TYPE, "Patient");
+        properties.put(FHIRPersistenceEvent.PROPNAME_RESOURCE_ID, "1");
+        cache.afterDelete(new FHIRPersistenceEvent(null, properties));
+
+        assertNull(cache.getLatest("Patient", "1"));
+        slot.offer(patient("1", 1));
+        assertNull(cache.getLatest("Patient", "1"));
+    }
+
+    @Test
+    public void testWritesDontEvict() throws Exception {
+        ResourceReadCache cache = new ResourceReadCache(1);
+        Patient patient = patient("1", 1);
+        cache.getLatestSlot("Patient", "1").offer(patient);
+
+        // the cache only has room for one resource, which the writes of other resources don't take away
+        cache.afterCreate(event(patient("2", 1)));
+        cache.afterUpdate(event(patient("3", 2)));
+        assertSame(cache.getLatest("Patient", "1"), patient);
+    }
+
+    @Test
+    public void testFloorOfEvictedSlot() throws Exception {
+        List<Runnable> completions = new ArrayList<>();
+        ResourceReadCache cache = new ResourceReadCache(1) {
+            @Override
+            void afterCompletion(Runnable action) {
+                // the transaction of the write completes when the test says so
+                completions.add(action);
+            }
+        };
+        ResourceReadCache.Slot evicted = cache.getLatestSlot("Patient", "1");
+        evicted.offer(patient("1", 1));
+
+        // version 2 is written, but not committed yet
+        cache.afterUpdate(event(patient("1", 2)));
+
+        // the slot of the resource is evicted and recreated before the commit
+        cache.getLatestSlot("Patient", "2").offer(patient("2", 1));
+        ResourceReadCache.Slot slot = cache.getLatestSlot("Patient", "1");
+        assertNotSame(slot, evicted);
+
+        // so a read still sees version 1, which must not be cached
+        slot.offer(patient("1", 1));
+        assertNull(cache.getLatest("Patient", "1"));
+
+        // once committed, version 2 is cached, and a read which started before the commit can't replace it
+        completions.forEach(Runnable::run);
+        slot = cache.getLatestSlot("Patient", "1");
+        Patient updated = patient("1", 2);
+        slot.offer(updated);
+        slot.offer(patient("1", 1));
+        assertSame(cache.getLatest("Patient", "1"), updated);
+    }
+
+    @Test
+    public void testPendingFloorsAreReleased() throws Exception {
+        List<Runnable> completions = new ArrayList<>();
+        ResourceReadCache cache = new ResourceReadCache(1) {
+            @Override
+            void afterCompletion(Runnable action) {
+                completions.add(action);
+            }
+        };
+        cache.afterUpdate(event(patient("1", 2)));
+        cache.afterUpdate(event(patient("1", 3)));
+
+        // the completion of the first write leaves the floor of the second one in place
+        completions.get(0).run();
+        cache.getLatestSlot("Patient", "1").offer(patient("1", 2));
+        assertNull(cache.getLatest("Patient", "1"));
+
+        completions.get(1).run();
+        assertTrue(cache.getStatistics().contains("pendingFloors=0"), cache.getStatistics());
+    }
+
+    private static Patient patient(String id, int version) {
+        return Patient.builder()
+                .id(id)
+                .meta(Meta.builder().versionId(Id.of(Integer.toString(version))).build())
+                .build();
+    }
+
+    private static FHIRPersistenceEvent event(Patient patient) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(FHIRPersistenceEvent.PROPNAME_RESOURCE_TYPE, "Patient");
+        properties.put(FHIRPersistenceEvent.PROPNAME_RESOURCE_ID, patient.getId());
+        return new FHIRPersistenceEvent(patient, properties);
+    }
+}
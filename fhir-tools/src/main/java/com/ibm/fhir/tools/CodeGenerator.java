@@ -1539,7 +1539,7 @@ public class CodeGenerator {
         if (isString(structureDefinition) || isStringSubtype(structureDefinition) ||
                 isUri(structureDefinition) || isUriSubtype(structureDefinition)) {
             cb.method(mods("public", "static"), className, "of", params("java.lang.String value"))
-                ._return(className + ".builder().value(value).build()")
+                ._return(intern(className, className + ".builder().value(value).build()"))
             .end().newLine();
         }
 
@@ -1555,7 +1555,7 @@ public class CodeGenerator {
                     .invoke("value", "append", args("'|'"))
                     .invoke("value", "append", args("version"))
                 .end()
-                ._return(className + ".builder().value(value.toString()).build()")
+                ._return(intern(className, className + ".builder().value(value.toString()).build()"))
             .end().newLine();
 
             cb.method(mods("public", "static"), className, "of", params("java.lang.String uri", "java.lang.String version", "java.lang.String fragment"))
@@ -1568,7 +1568,7 @@ public class CodeGenerator {
                     .invoke("value", "append", args("'#'"))
                     .invoke("value", "append", args("fragment"))
                 .end()
-            ._return(className + ".builder().value(value.toString()).build()")
+            ._return(intern(className, className + ".builder().value(value.toString()).build()"))
         .end().newLine();
         }
 
@@ -1758,6 +1758,10 @@ public class CodeGenerator {
             imports.add("java.time.ZoneOffset");
         }
 
+        if (isInternedType(className)) {
+            imports.add("com.ibm.fhir.model.util.PrimitiveInterner");
+        }
+
         if (isString(structureDefinition) ||
                 isId(structureDefinition) ||
                 isCode(structureDefinition) ||
@@ -1986,6 +1990,7 @@ public class CodeGenerator {
         cb._import("com.ibm.fhir.model.type.Boolean");
         cb._import("com.ibm.fhir.model.type.Integer");
         cb._import("com.ibm.fhir.model.type.String");
+        cb._import("com.ibm.fhir.model.util.PrimitiveInterner");
         cb._import("com.ibm.fhir.model.util.XMLSupport.StreamReaderDelegate");
         cb.newLine();
 
@@ -2296,7 +2301,7 @@ public class CodeGenerator {
         cb._case("XMLStreamReader.END_ELEMENT")
             ._if("reader.getLocalName().equals(elementName)")
                 .invoke("stackPop", args())
-                ._return("builder.build()")
+                ._return(isInterned(generatedClassName) ? "PrimitiveInterner.intern(builder.build())" : "builder.build()")
             ._end()
             ._break();
 
@@ -2387,6 +2392,7 @@ public class CodeGenerator {
         cb._import("com.ibm.fhir.model.type.Integer");
         cb._import("com.ibm.fhir.model.type.String");
         cb._import("com.ibm.fhir.model.util.ElementFilter");
+        cb._import("com.ibm.fhir.model.util.PrimitiveInterner");
         cb.newLine();
 
         cb._import("net.jcip.annotations.NotThreadSafe");
@@ -2416,6 +2422,9 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(InputStream in, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("InputStream in", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+            ._if("isStreaming()")
+                ._return("new FHIRJsonStreamReader(this).parseAndFilter(nonClosingInputStream(in), elementsToInclude)")
+            ._end()
             ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2436,6 +2445,9 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(Reader reader, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("Reader reader", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+            ._if("isStreaming()")
+                ._return("new FHIRJsonStreamReader(this).parseAndFilter(nonClosingReader(reader), elementsToInclude)")
+            ._end()
             ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2474,15 +2486,53 @@ public class CodeGenerator {
         .end();
         cb.newLine();
 
+        cb.method(mods("private"), "boolean", "isStreaming")
+            ._return("getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class)")
+        .end();
+        cb.newLine();
+
         cb.override();
         cb.method(mods("public"), "boolean", "isPropertySupported", params("java.lang.String name"))
             ._if("FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)")
                 ._return("true")
             ._end()
+            ._if("FHIRParser.PROPERTY_STREAMING.equals(name)")
+                ._return("true")
+            ._end()
             ._return("false")
         .end();
         cb.newLine();
 
+        // Bundle.Entry parseBundleEntry(JsonObject jsonObject, int elementIndex) throws FHIRParserException
+        cb.javadocStart();
+        cb.javadoc("Parse one entry of a Bundle which is read as a stream of events by {@link FHIRJsonStreamReader}", false);
+        cb.javadocEnd();
+        cb.method(mods(), "Bundle.Entry", "parseBundleEntry", params("JsonObject jsonObject", "int elementIndex"), throwsExceptions("FHIRParserException"))
+            ._try()
+                .invoke("reset", args())
+                .invoke("stackPush", args(quote("Bundle"), "-1"))
+                ._return("parseBundleEntry(" + quote("entry") + ", jsonObject, elementIndex)")
+            ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+            ._end()
+        .end();
+        cb.newLine();
+
+        // Bundle parseBundle(Bundle.Builder builder, JsonObject jsonObject) throws FHIRParserException
+        cb.javadocStart();
+        cb.javadoc("Parse the elements of a Bundle other than its entries into a builder to which {@link FHIRJsonStreamReader} has", false);
+        cb.javadoc("already added the entries", false);
+        cb.javadocEnd();
+        cb.method(mods(), "Bundle", "parseBundle", params("Bundle.Builder builder", "JsonObject jsonObject"), throwsExceptions("FHIRParserException"))
+            ._try()
+                .invoke("reset", args())
+                ._return("parseBundle(builder, " + quote("Bundle") + ", jsonObject, -1)")
+            ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+            ._end()
+        .end();
+        cb.newLine();
+
         cb.method(mods("private"), "Resource", "parseResource", params("java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
         cb._if("jsonObject == null");
         cb._return("null");
@@ -2666,8 +2716,8 @@ public class CodeGenerator {
         if (isAbstract(structureDefinition)) {
             cb.method(mods("private"), "void", "parse" + generatedClassName.replace(".", ""), params(generatedClassName + ".Builder builder", "JsonObject jsonObject"));
         } else {
-            if ("Quantity".equals(generatedClassName)) {
-                cb.method(mods("private"), "Quantity", "parseQuantity", params("Quantity.Builder builder", "java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
+            if (hasJsonParseMethodWithBuilder(generatedClassName)) {
+                cb.method(mods("private"), generatedClassName, "parse" + generatedClassName, params(generatedClassName + ".Builder builder", "java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
             } else {
                 cb.method(mods("private"), generatedClassName, "parse" + generatedClassName.replace(".", ""), params("java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
             }
@@ -2680,7 +2730,7 @@ public class CodeGenerator {
             ._end();
         }
 
-        if (!isAbstract(structureDefinition) && !"Quantity".equals(generatedClassName)) {
+        if (!isAbstract(structureDefinition) && !hasJsonParseMethodWithBuilder(generatedClassName)) {
             cb.assign(generatedClassName + ".Builder builder", generatedClassName + ".builder()");
         }
 
@@ -2732,13 +2782,21 @@ public class CodeGenerator {
 
         cb.end().newLine();
 
-        if ("Quantity".equals(generatedClassName)) {
-            cb.method(mods("private"), "Quantity", "parseQuantity", params("java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
-            cb._return("parseQuantity(Quantity.builder(), elementName, jsonObject, elementIndex)");
+        if (hasJsonParseMethodWithBuilder(generatedClassName)) {
+            cb.method(mods("private"), generatedClassName, "parse" + generatedClassName, params("java.lang.String elementName", "JsonObject jsonObject", "int elementIndex"));
+            cb._return("parse" + generatedClassName + "(" + generatedClassName + ".builder(), elementName, jsonObject, elementIndex)");
             cb.end().newLine();
         }
     }
 
+    /**
+     * Quantity is also parsed into the builders of its subtypes, and Bundle into a builder which already holds the
+     * entries read by FHIRJsonStreamReader
+     */
+    private boolean hasJsonParseMethodWithBuilder(String generatedClassName) {
+        return "Quantity".equals(generatedClassName) || "Bundle".equals(generatedClassName);
+    }
+
     private void generatePrimitiveTypeParseMethod(String generatedClassName, JsonObject structureDefinition, CodeBuilder cb) {
         if (isStringSubtype(generatedClassName) || isUriSubtype(generatedClassName) || isCodeSubtype(generatedClassName) || isIntegerSubtype(generatedClassName)) {
             return;
@@ -2803,7 +2861,7 @@ public class CodeGenerator {
         }
 
         cb.invoke("stackPop", args());
-        cb._return("builder.build()");
+        cb._return(isInterned(generatedClassName) ? "PrimitiveInterner.intern(builder.build())" : "builder.build()");
         cb.end().newLine();
 
         if ("String".equals(generatedClassName) || "Uri".equals(generatedClassName) || "Integer".equals(generatedClassName)) {
@@ -3700,6 +3758,24 @@ public class CodeGenerator {
         return "code".equals(structureDefinition.getString("name"));
     }
 
+    /**
+     * Primitive types whose parser methods pass the parsed value through the PrimitiveInterner
+     */
+    private boolean isInterned(String generatedClassName) {
+        return "String".equals(generatedClassName) || "Uri".equals(generatedClassName);
+    }
+
+    /**
+     * Types whose static factory methods pass the constructed value through the PrimitiveInterner
+     */
+    private boolean isInternedType(String className) {
+        return "Code".equals(className) || "Uri".equals(className) || "Canonical".equals(className);
+    }
+
+    private String intern(String className, String expression) {
+        return isInternedType(className) ? "PrimitiveInterner.intern(" + expression + ")" : expression;
+    }
+
     private boolean isCodeSubtype(String fieldType) {
         String className = fieldType.replace("com.ibm.fhir.model.type.", "")
                 .replace("com.ibm.fhir.model.resource.", "")
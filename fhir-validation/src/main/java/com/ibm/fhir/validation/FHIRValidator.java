@@ -17,10 +17,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ibm.fhir.model.annotation.Constraint;
+import com.ibm.fhir.model.resource.Bundle;
 import com.ibm.fhir.model.resource.DomainResource;
 import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.resource.Resource;
@@ -38,13 +45,17 @@ import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 import com.ibm.fhir.path.visitor.FHIRPathDefaultNodeVisitor;
 import com.ibm.fhir.profile.ProfileSupport;
 import com.ibm.fhir.validation.exception.FHIRValidationException;
+import com.ibm.fhir.validation.util.ConstraintCompiler;
+import com.ibm.fhir.validation.util.ConstraintCompiler.CompiledExpression;
 
 public class FHIRValidator {
     private static final Logger log = Logger.getLogger(FHIRValidator.class.getName());
 
-    private final ValidatingNodeVisitor visitor = new ValidatingNodeVisitor();
+    private final ValidatingNodeVisitor visitor;
 
-    private FHIRValidator() { }
+    private FHIRValidator(int parallelThreshold, Executor executor) {
+        visitor = new ValidatingNodeVisitor(parallelThreshold, executor);
+    }
 
     /**
      * Validate a {@link Resource} against constraints in the base specification and
@@ -171,7 +182,45 @@ public class FHIRValidator {
     }
 
     public static FHIRValidator validator() {
-        return new FHIRValidator();
+        return new FHIRValidator(0, null);
+    }
+
+    /**
+     * Static factory method for creating FHIRValidator instances which validate the nested resources of large resources
+     * in parallel on the common fork-join pool.
+     *
+     * @param parallelThreshold
+     *     the minimum number of nested resources for which they are validated in parallel; values less than 1 disable
+     *     parallel validation
+     * @return
+     *     a new FHIRValidator instance
+     * @see #validator(int, Executor)
+     */
+    public static FHIRValidator validator(int parallelThreshold) {
+        return validator(parallelThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Static factory method for creating FHIRValidator instances which validate the nested resources of large resources
+     * in parallel on the passed executor.
+     *
+     * <p>When the resource being validated holds at least {@code parallelThreshold} nested resources (the resources of
+     * Bundle entries and contained resources), the subtree of each nested resource is validated as a separate task on
+     * the executor. A subtree whose task has not been started by the executor by the time its issues are needed is
+     * validated on the calling thread, so the calling thread may itself be one of the threads of the executor. The
+     * issues are returned in the same order as with sequential validation.
+     *
+     * @param parallelThreshold
+     *     the minimum number of nested resources for which they are validated in parallel; values less than 1 disable
+     *     parallel validation
+     * @param executor
+     *     the executor which runs the validation of the nested resources
+     * @return
+     *     a new FHIRValidator instance
+     */
+    public static FHIRValidator validator(int parallelThreshold, Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        return new FHIRValidator(parallelThreshold, executor);
     }
 
     /**
@@ -231,19 +280,125 @@ public class FHIRValidator {
 
         private List<Issue> issues = new ArrayList<>();
 
-        private ValidatingNodeVisitor() { }
+        private final int parallelThreshold;
+        private final Executor executor;
+        private boolean parallel;
+
+        // the nested resources validated in parallel, in visiting order
+        private final List<Fork> forks = new ArrayList<>();
+
+        private ValidatingNodeVisitor(int parallelThreshold, Executor executor) {
+            this.parallelThreshold = parallelThreshold;
+            this.executor = executor;
+        }
 
         private List<Issue> validate(EvaluationContext evaluationContext, boolean includeResourceAssertedProfiles, String... profiles) {
+            return validate(evaluationContext, evaluationContext.getTree().getRoot(), includeResourceAssertedProfiles, Arrays.asList(profiles));
+        }
+
+        private List<Issue> validate(EvaluationContext evaluationContext, FHIRPathNode node, boolean includeResourceAssertedProfiles, List<String> profiles) {
             reset();
             this.evaluationContext = evaluationContext;
             this.includeResourceAssertedProfiles = includeResourceAssertedProfiles;
-            this.profiles = Arrays.asList(profiles);
-            this.evaluationContext.getTree().getRoot().accept(this);
-            return issues;
+            this.profiles = profiles;
+            this.parallel = parallelThreshold > 0 && node.isResourceNode() &&
+                    countNestedResources(node.asResourceNode().resource()) >= parallelThreshold;
+            try {
+                node.accept(this);
+                return forks.isEmpty() ? issues : merge();
+            } finally {
+                // no-op for the tasks which completed; the others are no longer needed after a failure
+                for (Fork fork : forks) {
+                    fork.task.cancel(false);
+                }
+            }
         }
 
         private void reset() {
             issues.clear();
+            forks.clear();
+        }
+
+        @Override
+        protected void visitChildren(FHIRPathNode node) {
+            if (!parallel) {
+                super.visitChildren(node);
+                return;
+            }
+            for (FHIRPathNode child : node.children()) {
+                if (child.isResourceNode()) {
+                    // the issues of the nested resource go where sequential validation would have put them
+                    FutureTask<List<Issue>> task = new FutureTask<>(
+                        new SubtreeTask(evaluationContext.getTree(), child, includeResourceAssertedProfiles, profiles));
+                    forks.add(new Fork(issues.size(), task));
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        // the subtree is validated on this thread when its issues are merged
+                        log.log(Level.FINE, "Unable to validate a nested resource in parallel", e);
+                    }
+                } else {
+                    child.accept(this);
+                }
+            }
+        }
+
+        /**
+         * Wait for the nested resources validated in parallel and merge their issues into the issues of this visitor
+         */
+        private List<Issue> merge() {
+            List<Issue> result = new ArrayList<>();
+            int fromIndex = 0;
+            for (Fork fork : forks) {
+                result.addAll(issues.subList(fromIndex, fork.index));
+                // no-op if a thread of the executor has picked up the task already
+                fork.task.run();
+                result.addAll(join(fork.task));
+                fromIndex = fork.index;
+            }
+            result.addAll(issues.subList(fromIndex, issues.size()));
+            return result;
+        }
+
+        /**
+         * Wait for the passed task to complete
+         *
+         * @throws RuntimeException if the validation of the nested resource failed or the wait was interrupted
+         */
+        private static List<Issue> join(FutureTask<List<Issue>> task) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the validation of a nested resource", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * @return
+         *     the number of resources nested directly within the passed resource
+         */
+        private static int countNestedResources(Resource resource) {
+            int count = 0;
+            if (resource instanceof DomainResource) {
+                count += ((DomainResource) resource).getContained().size();
+            }
+            if (resource instanceof Bundle) {
+                for (Bundle.Entry entry : ((Bundle) resource).getEntry()) {
+                    if (entry.getResource() != null) {
+                        count++;
+                    }
+                }
+            }
+            return count;
         }
 
         @Override
@@ -309,17 +464,30 @@ public class FHIRValidator {
 
                 Collection<FHIRPathNode> initialContext = singleton(node);
                 if (!Constraint.LOCATION_BASE.equals(constraint.location())) {
-                    initialContext = evaluator.evaluate(evaluationContext, constraint.location(), initialContext);
+                    CompiledExpression location = ConstraintCompiler.compile(constraint.location());
+                    if (location != null) {
+                        initialContext = location.evaluate(evaluationContext, initialContext);
+                    } else {
+                        initialContext = evaluator.evaluate(evaluationContext, constraint.location(), initialContext);
+                    }
                     issues.addAll(evaluationContext.getIssues());
                     evaluationContext.clearIssues();
                 }
 
                 IssueSeverity severity = Constraint.LEVEL_WARNING.equals(constraint.level()) ? IssueSeverity.WARNING : IssueSeverity.ERROR;
 
+                // compiled expressions never refer to external constants, so those are only set for the interpreter
+                CompiledExpression expression = ConstraintCompiler.compile(constraint.expression());
+
                 for (FHIRPathNode contextNode : initialContext) {
-                    evaluationContext.setExternalConstant("rootResource", getRootResourceNode(contextNode));
-                    evaluationContext.setExternalConstant("resource", getResourceNode(contextNode));
-                    Collection<FHIRPathNode> result = evaluator.evaluate(evaluationContext, constraint.expression(), singleton(contextNode));
+                    Collection<FHIRPathNode> result;
+                    if (expression != null) {
+                        result = expression.evaluate(evaluationContext, singleton(contextNode));
+                    } else {
+                        evaluationContext.setExternalConstant("rootResource", getRootResourceNode(contextNode));
+                        evaluationContext.setExternalConstant("resource", getResourceNode(contextNode));
+                        result = evaluator.evaluate(evaluationContext, constraint.expression(), singleton(contextNode));
+                    }
                     issues.addAll(evaluationContext.getIssues());
                     evaluationContext.clearIssues();
 
@@ -422,4 +590,39 @@ public class FHIRValidator {
             return resourceNodes;
         }
     }
+
+    /**
+     * A nested resource validated in parallel, and the position of its issues within those of the enclosing resource
+     */
+    private static class Fork {
+        private final int index;
+        private final FutureTask<List<Issue>> task;
+
+        private Fork(int index, FutureTask<List<Issue>> task) {
+            this.index = index;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Validates the subtree of a nested resource with its own visitor and evaluation context over the shared tree
+     */
+    private static class SubtreeTask implements Callable<List<Issue>> {
+        private final FHIRPathTree tree;
+        private final FHIRPathNode node;
+        private final boolean includeResourceAssertedProfiles;
+        private final List<String> profiles;
+
+        private SubtreeTask(FHIRPathTree tree, FHIRPathNode node, boolean includeResourceAssertedProfiles, List<String> profiles) {
+            this.tree = tree;
+            this.node = node;
+            this.includeResourceAssertedProfiles = includeResourceAssertedProfiles;
+            this.profiles = profiles;
+        }
+
+        @Override
+        public List<Issue> call() {
+            return new ValidatingNodeVisitor(0, null).validate(new EvaluationContext(tree), node, includeResourceAssertedProfiles, profiles);
+        }
+    }
 }
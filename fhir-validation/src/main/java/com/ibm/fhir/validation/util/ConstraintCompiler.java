@@ -0,0 +1,422 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.validation.util;
+
+import static com.ibm.fhir.path.FHIRPathDecimalValue.decimalValue;
+import static com.ibm.fhir.path.FHIRPathIntegerValue.integerValue;
+import static com.ibm.fhir.path.FHIRPathStringValue.stringValue;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_FALSE;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_TRUE;
+import static com.ibm.fhir.path.util.FHIRPathUtil.empty;
+import static com.ibm.fhir.path.util.FHIRPathUtil.isTrue;
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
+import static com.ibm.fhir.path.util.FHIRPathUtil.unescape;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.ibm.fhir.core.util.BoundedConcurrentCache;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathParser;
+import com.ibm.fhir.path.FHIRPathParser.ExpressionContext;
+import com.ibm.fhir.path.FHIRPathType;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.function.FHIRPathFunction;
+import com.ibm.fhir.path.util.FHIRPathUtil;
+
+/**
+ * Compiles the FHIRPath expressions of constraints into trees of pre-built Java functions, so that validation does not
+ * walk the parse tree of every constraint for every node it applies to.
+ *
+ * <p>The compiler covers the subset of FHIRPath used by the common constraint shapes of the model annotations and of
+ * the constraints generated from profiles: path navigation, existence and cardinality checks ({@code exists},
+ * {@code empty}, {@code count}), {@code where}, {@code all}, {@code as}, the boolean, equality, comparison and
+ * membership operators, string, number and boolean literals, and calls to the registered functions (such as
+ * {@code memberOf}, {@code conformsTo}, {@code extension}, {@code hasValue} or {@code matches}). Each construct calls
+ * the same {@link FHIRPathUtil} operator, navigation and type helpers as {@link FHIRPathEvaluator}, and evaluates its
+ * operands in the same order, so a compiled expression produces the same result and the same issues as the
+ * interpreter.
+ *
+ * <p>Expressions using anything else (for example external constants, type operators, arithmetic or indexers) are
+ * not compiled; {@link #compile(String)} returns null for them and the caller falls back to the interpreter.
+ */
+public final class ConstraintCompiler {
+    private static final Logger log = Logger.getLogger(ConstraintCompiler.class.getName());
+
+    private static final int COMPILED_EXPRESSION_CACHE_MAX_ENTRIES = 4096;
+    // expressions which cannot be compiled are cached as empty, so that they are only tried once
+    private static final BoundedConcurrentCache<String, Optional<CompiledExpression>> COMPILED_EXPRESSION_CACHE = new BoundedConcurrentCache<>(COMPILED_EXPRESSION_CACHE_MAX_ENTRIES);
+
+    private ConstraintCompiler() { }
+
+    /**
+     * A FHIRPath expression compiled into Java functions
+     *
+     * <p>Compiled expressions hold no state and may be evaluated concurrently.
+     */
+    @FunctionalInterface
+    public interface CompiledExpression {
+        /**
+         * Evaluate the compiled expression against a collection of FHIRPath nodes
+         *
+         * @param evaluationContext
+         *     the evaluation context, to which the functions called by the expression may add issues
+         * @param context
+         *     the input collection
+         * @return
+         *     the result of evaluation as a collection of FHIRPath nodes
+         */
+        Collection<FHIRPathNode> evaluate(EvaluationContext evaluationContext, Collection<FHIRPathNode> context);
+    }
+
+    /**
+     * Get the compiled form of a FHIRPath expression, compiling and caching it on first use
+     *
+     * @param expr
+     *     the FHIRPath expression
+     * @return
+     *     the compiled expression, or null if the expression uses constructs which are not compiled
+     */
+    public static CompiledExpression compile(String expr) {
+        return COMPILED_EXPRESSION_CACHE.computeIfAbsent(Objects.requireNonNull(expr), ConstraintCompiler::doCompile).orElse(null);
+    }
+
+    private static Optional<CompiledExpression> doCompile(String expr) {
+        try {
+            ExpressionContext expressionContext = FHIRPathEvaluator.compile(expr);
+            if (hasErrors(expressionContext)) {
+                throw new NotCompiledException("syntax error");
+            }
+            return Optional.of(expression(expressionContext));
+        } catch (NotCompiledException e) {
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Expression: " + expr + " is not compiled (" + e.getMessage() + "); it will be interpreted");
+            }
+            return Optional.empty();
+        }
+    }
+
+    private static boolean hasErrors(ParseTree tree) {
+        if (tree instanceof ErrorNode) {
+            return true;
+        }
+        if (tree instanceof ParserRuleContext && ((ParserRuleContext) tree).exception != null) {
+            return true;
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (hasErrors(tree.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CompiledExpression expression(ExpressionContext ctx) {
+        if (ctx instanceof FHIRPathParser.TermExpressionContext) {
+            return term(((FHIRPathParser.TermExpressionContext) ctx).term());
+        }
+        if (ctx instanceof FHIRPathParser.InvocationExpressionContext) {
+            FHIRPathParser.InvocationExpressionContext invocationExpression = (FHIRPathParser.InvocationExpressionContext) ctx;
+            CompiledExpression input = expression(invocationExpression.expression());
+            CompiledExpression invocation = invocation(invocationExpression.invocation());
+            return (evaluationContext, context) -> invocation.evaluate(evaluationContext, input.evaluate(evaluationContext, context));
+        }
+        if (ctx instanceof FHIRPathParser.OrExpressionContext) {
+            return or((FHIRPathParser.OrExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.AndExpressionContext) {
+            return and((FHIRPathParser.AndExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.ImpliesExpressionContext) {
+            return implies((FHIRPathParser.ImpliesExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.EqualityExpressionContext) {
+            return equality((FHIRPathParser.EqualityExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.InequalityExpressionContext) {
+            return inequality((FHIRPathParser.InequalityExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.MembershipExpressionContext) {
+            return membership((FHIRPathParser.MembershipExpressionContext) ctx);
+        }
+        if (ctx instanceof FHIRPathParser.UnionExpressionContext) {
+            return union((FHIRPathParser.UnionExpressionContext) ctx);
+        }
+        throw new NotCompiledException(ctx.getClass().getSimpleName());
+    }
+
+    private static CompiledExpression term(FHIRPathParser.TermContext ctx) {
+        if (ctx instanceof FHIRPathParser.InvocationTermContext) {
+            return invocation(((FHIRPathParser.InvocationTermContext) ctx).invocation());
+        }
+        if (ctx instanceof FHIRPathParser.LiteralTermContext) {
+            Collection<FHIRPathNode> literal = literal(((FHIRPathParser.LiteralTermContext) ctx).literal());
+            return (evaluationContext, context) -> literal;
+        }
+        if (ctx instanceof FHIRPathParser.ParenthesizedTermContext) {
+            return expression(((FHIRPathParser.ParenthesizedTermContext) ctx).expression());
+        }
+        throw new NotCompiledException(ctx.getClass().getSimpleName());
+    }
+
+    private static Collection<FHIRPathNode> literal(FHIRPathParser.LiteralContext ctx) {
+        if (ctx instanceof FHIRPathParser.NullLiteralContext) {
+            return empty();
+        }
+        if (ctx instanceof FHIRPathParser.BooleanLiteralContext) {
+            return Boolean.valueOf(ctx.getText()) ? SINGLETON_TRUE : SINGLETON_FALSE;
+        }
+        if (ctx instanceof FHIRPathParser.StringLiteralContext) {
+            String text = unescape(ctx.getText());
+            return singleton(stringValue(text.substring(1, text.length() - 1)));
+        }
+        if (ctx instanceof FHIRPathParser.NumberLiteralContext) {
+            String text = ctx.getText();
+            if (text.contains(".")) {
+                return singleton(decimalValue(new BigDecimal(text)));
+            }
+            try {
+                return singleton(integerValue(Integer.parseInt(text)));
+            } catch (NumberFormatException e) {
+                throw new NotCompiledException("integer literal out of range");
+            }
+        }
+        throw new NotCompiledException(ctx.getClass().getSimpleName());
+    }
+
+    private static CompiledExpression invocation(FHIRPathParser.InvocationContext ctx) {
+        if (ctx instanceof FHIRPathParser.MemberInvocationContext) {
+            return member(identifier(((FHIRPathParser.MemberInvocationContext) ctx).identifier()));
+        }
+        if (ctx instanceof FHIRPathParser.FunctionInvocationContext) {
+            return function(((FHIRPathParser.FunctionInvocationContext) ctx).function());
+        }
+        if (ctx instanceof FHIRPathParser.ThisInvocationContext) {
+            return (evaluationContext, context) -> context;
+        }
+        throw new NotCompiledException(ctx.getClass().getSimpleName());
+    }
+
+    private static String identifier(FHIRPathParser.IdentifierContext ctx) {
+        String text = ctx.getText();
+        return text.startsWith("`") ? text.substring(1, text.length() - 1) : text;
+    }
+
+    private static CompiledExpression member(String identifier) {
+        return (evaluationContext, context) -> FHIRPathUtil.getMembers(context, identifier);
+    }
+
+    private static CompiledExpression function(FHIRPathParser.FunctionContext ctx) {
+        String functionName = identifier(ctx.identifier());
+
+        List<ExpressionContext> arguments = new ArrayList<>();
+        if (ctx.paramList() != null) {
+            arguments.addAll(ctx.paramList().expression());
+        }
+
+        switch (functionName) {
+        case "all":
+            return all(arguments);
+        case "as":
+            return as(arguments);
+        case "exists":
+            return exists(arguments);
+        case "where":
+            return where(arguments);
+        case "iif":
+        case "is":
+        case "ofType":
+        case "select":
+        case "trace":
+            throw new NotCompiledException("function: " + functionName);
+        default:
+            FHIRPathFunction function = FHIRPathFunction.registry().getFunction(functionName);
+            if (function == null || arguments.size() < function.getMinArity() || arguments.size() > function.getMaxArity()) {
+                // leave the error to the interpreter
+                throw new NotCompiledException("function: " + functionName);
+            }
+            List<CompiledExpression> compiledArguments = new ArrayList<>();
+            for (ExpressionContext argument : arguments) {
+                compiledArguments.add(expression(argument));
+            }
+            return (evaluationContext, context) -> {
+                List<Collection<FHIRPathNode>> evaluatedArguments = new ArrayList<>(compiledArguments.size());
+                for (CompiledExpression compiledArgument : compiledArguments) {
+                    evaluatedArguments.add(compiledArgument.evaluate(evaluationContext, context));
+                }
+                return function.apply(evaluationContext, context, evaluatedArguments);
+            };
+        }
+    }
+
+    private static CompiledExpression all(List<ExpressionContext> arguments) {
+        if (arguments.size() != 1) {
+            throw new NotCompiledException("function: all");
+        }
+        CompiledExpression criteria = expression(arguments.get(0));
+        return (evaluationContext, context) -> FHIRPathUtil.all(context, input -> criteria.evaluate(evaluationContext, input));
+    }
+
+    private static CompiledExpression as(List<ExpressionContext> arguments) {
+        if (arguments.size() != 1) {
+            throw new NotCompiledException("function: as");
+        }
+        String identifier = arguments.get(0).getText().replace("`", "");
+        FHIRPathType type = FHIRPathType.from(identifier);
+        if (type == null) {
+            throw new NotCompiledException("function: as");
+        }
+        return (evaluationContext, context) -> FHIRPathUtil.ofType(context, type);
+    }
+
+    private static CompiledExpression exists(List<ExpressionContext> arguments) {
+        if (arguments.isEmpty()) {
+            return (evaluationContext, context) -> !context.isEmpty() ? SINGLETON_TRUE : SINGLETON_FALSE;
+        }
+        if (arguments.size() != 1) {
+            throw new NotCompiledException("function: exists");
+        }
+        // like the interpreter, the criteria are evaluated against the input collection as a whole
+        CompiledExpression criteria = expression(arguments.get(0));
+        return (evaluationContext, context) -> isTrue(criteria.evaluate(evaluationContext, context)) ? SINGLETON_TRUE : SINGLETON_FALSE;
+    }
+
+    private static CompiledExpression where(List<ExpressionContext> arguments) {
+        if (arguments.size() != 1) {
+            throw new NotCompiledException("function: where");
+        }
+        CompiledExpression criteria = expression(arguments.get(0));
+        return (evaluationContext, context) -> FHIRPathUtil.where(context, input -> criteria.evaluate(evaluationContext, input));
+    }
+
+    private static CompiledExpression or(FHIRPathParser.OrExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        switch (ctx.getChild(1).getText()) {
+        case "or":
+            // the right operand is only evaluated if the left operand does not evaluate to true
+            return (evaluationContext, context) -> FHIRPathUtil.or(leftExpression.evaluate(evaluationContext, context),
+                    () -> rightExpression.evaluate(evaluationContext, context));
+        case "xor":
+            return (evaluationContext, context) -> {
+                Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+                Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+                return FHIRPathUtil.xor(left, right);
+            };
+        default:
+            throw new NotCompiledException("operator: " + ctx.getChild(1).getText());
+        }
+    }
+
+    private static CompiledExpression and(FHIRPathParser.AndExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        // the right operand is only evaluated if the left operand does not evaluate to false
+        return (evaluationContext, context) -> FHIRPathUtil.and(leftExpression.evaluate(evaluationContext, context),
+                () -> rightExpression.evaluate(evaluationContext, context));
+    }
+
+    private static CompiledExpression implies(FHIRPathParser.ImpliesExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        return (evaluationContext, context) -> {
+            // like the interpreter, both operands are always evaluated
+            Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+            Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+            return FHIRPathUtil.implies(left, right);
+        };
+    }
+
+    private static CompiledExpression equality(FHIRPathParser.EqualityExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        String operator = ctx.getChild(1).getText();
+        // equivalence ("~" and "!~") is left to the interpreter
+        boolean equals = "=".equals(operator);
+        if (!equals && !"!=".equals(operator)) {
+            throw new NotCompiledException("operator: " + operator);
+        }
+        return (evaluationContext, context) -> {
+            Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+            Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+            return FHIRPathUtil.equality(left, right, equals);
+        };
+    }
+
+    private static CompiledExpression inequality(FHIRPathParser.InequalityExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        String operator = ctx.getChild(1).getText();
+        switch (operator) {
+        case "<=":
+        case "<":
+        case ">":
+        case ">=":
+            break;
+        default:
+            throw new NotCompiledException("operator: " + operator);
+        }
+        return (evaluationContext, context) -> {
+            Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+            Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+            return FHIRPathUtil.inequality(left, right, operator);
+        };
+    }
+
+    private static CompiledExpression membership(FHIRPathParser.MembershipExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        switch (ctx.getChild(1).getText()) {
+        case "in":
+            return (evaluationContext, context) -> {
+                Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+                Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+                return FHIRPathUtil.in(evaluationContext, left, right);
+            };
+        case "contains":
+            return (evaluationContext, context) -> {
+                Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+                Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+                return FHIRPathUtil.contains(left, right);
+            };
+        default:
+            throw new NotCompiledException("operator: " + ctx.getChild(1).getText());
+        }
+    }
+
+    private static CompiledExpression union(FHIRPathParser.UnionExpressionContext ctx) {
+        CompiledExpression leftExpression = expression(ctx.expression(0));
+        CompiledExpression rightExpression = expression(ctx.expression(1));
+        return (evaluationContext, context) -> {
+            Collection<FHIRPathNode> left = leftExpression.evaluate(evaluationContext, context);
+            Collection<FHIRPathNode> right = rightExpression.evaluate(evaluationContext, context);
+            return FHIRPathUtil.union(left, right);
+        };
+    }
+
+    /**
+     * Thrown while compiling an expression which uses a construct that is left to the interpreter
+     */
+    private static class NotCompiledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private NotCompiledException(String construct) {
+            super(construct);
+        }
+    }
+}
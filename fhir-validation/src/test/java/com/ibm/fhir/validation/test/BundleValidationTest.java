@@ -13,6 +13,9 @@ import static org.testng.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 
@@ -240,4 +243,71 @@ public class BundleValidationTest {
         assertTrue(errors.get(0).getDetails().getText().getValue().startsWith("bdl-3"));
         assertTrue(errors.get(1).getDetails().getText().getValue().startsWith("bdl-4"));
     }
+
+    @Test
+    public static void testParallelValidationOfBundleOfBundle() throws Exception {
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+
+        Bundle bundleTemplate = parser.parse(ExamplesUtil.resourceReader("json/ibm/minimal/Bundle-1.json"));
+
+        Bundle invalidInnerBundle = bundleTemplate.toBuilder()
+                                                  .type(BundleType.BATCH)
+                                                  .entry(Entry.builder().fullUrl(Uri.of("BadURI")).build())
+                                                  .build();
+
+        Bundle.Builder outerBundleBuilder = bundleTemplate.toBuilder();
+        for (int i = 0; i < 8; i++) {
+            outerBundleBuilder.entry(Entry.builder().resource((i % 2 == 0) ? bundleTemplate : invalidInnerBundle).build());
+        }
+        Bundle outerBundle = outerBundleBuilder.build();
+
+        List<Issue> expected = FHIRValidator.validator().validate(outerBundle);
+        List<Issue> actual = FHIRValidator.validator(2).validate(outerBundle);
+
+        // the issues found in parallel are reported in the same order as the issues found sequentially
+        assertEquals(expected.size(), 8);
+        assertEquals(actual, expected);
+    }
+
+    @Test
+    public static void testParallelValidationOfContainedResources() throws Exception {
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+
+        Patient patient = parser.parse(ExamplesUtil.resourceReader("json/ibm/minimal/Patient-1.json"));
+        Practitioner practitioner = parser.parse(ExamplesUtil.resourceReader("json/ibm/minimal/Practitioner-1.json"));
+
+        // ext-1: must have either extensions or value[x], not both
+        Extension invalidExtension = Extension.builder()
+                .url("http://ibm.com/fhir/ext")
+                .value(string("value"))
+                .extension(Extension.builder().url("http://ibm.com/fhir/nested").value(string("nested")).build())
+                .build();
+
+        Patient.Builder patientBuilder = patient.toBuilder();
+        for (int i = 0; i < 6; i++) {
+            Practitioner.Builder practitionerBuilder = practitioner.toBuilder().id("practitioner" + i);
+            if (i % 2 == 1) {
+                practitionerBuilder.extension(invalidExtension);
+            }
+            patientBuilder.contained(practitionerBuilder.build())
+                .generalPractitioner(Reference.builder().reference(string("#practitioner" + i)).build());
+        }
+        Patient container = patientBuilder.build();
+
+        List<Issue> expected = FHIRValidator.validator().validate(container);
+        assertEquals(expected.stream().filter(issue -> issue.getSeverity() == IssueSeverity.ERROR).count(), 3);
+
+        // the issues found in parallel are reported in the same order as the issues found sequentially
+        assertEquals(FHIRValidator.validator(2).validate(container), expected);
+
+        // a validation running on the only thread of the executor it uses does not wait for itself
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Issue> actual = executor.submit(() -> FHIRValidator.validator(2, executor).validate(container))
+                    .get(60, TimeUnit.SECONDS);
+            assertEquals(actual, expected);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
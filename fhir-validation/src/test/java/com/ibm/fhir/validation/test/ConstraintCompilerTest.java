@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright IBM Corp. 2020
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.validation.test;
+
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.annotation.Constraint;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.OperationOutcome.Issue;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.path.FHIRPathElementNode;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathResourceNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.visitor.FHIRPathDefaultNodeVisitor;
+import com.ibm.fhir.profile.ProfileSupport;
+import com.ibm.fhir.validation.util.ConstraintCompiler;
+import com.ibm.fhir.validation.util.ConstraintCompiler.CompiledExpression;
+
+public class ConstraintCompilerTest {
+    private static final String VITAL_SIGNS_PROFILE_URL = "http://hl7.org/fhir/StructureDefinition/vitalsigns";
+
+    private static final String[] EXAMPLES = {
+        "json/spec/patient-example.json",
+        "json/spec/observation-example.json",
+        "json/spec/questionnaire-example.json",
+        "json/spec/capabilitystatement-example.json",
+        "json/spec/valueset-example.json",
+        "json/spec/bundle-transaction.json"
+    };
+
+    @Test
+    public void testCommonShapesAreCompiled() {
+        assertNotNull(ConstraintCompiler.compile("extension.exists() != value.exists()"));
+        assertNotNull(ConstraintCompiler.compile("text.`div`.exists()"));
+        assertNotNull(ConstraintCompiler.compile("code.empty() or system.exists()"));
+        assertNotNull(ConstraintCompiler.compile("category.where(coding.where(system = 'http://terminology.hl7.org/CodeSystem/observation-category' and code = 'vital-signs').exists()).exists()"));
+        assertNotNull(ConstraintCompiler.compile("extension('http://example.org/ext').count() <= 1 and (extension('http://example.org/ext').exists() implies (extension('http://example.org/ext').conformsTo('http://example.org/ext')))"));
+        assertNotNull(ConstraintCompiler.compile("status.exists() implies (status.memberOf('http://hl7.org/fhir/ValueSet/observation-status', 'required'))"));
+        assertNotNull(ConstraintCompiler.compile("value.as(Quantity).exists() implies (value.as(Quantity).all(value.exists() and unit.exists()))"));
+        assertNotNull(ConstraintCompiler.compile("name.matches('[A-Z]([A-Za-z0-9_]){0,254}')"));
+    }
+
+    @Test
+    public void testExoticExpressionsAreInterpreted() {
+        assertNull(ConstraintCompiler.compile("value.empty() or component.code.where(coding.intersect(%resource.code.coding).exists()).empty()"));
+        assertNull(ConstraintCompiler.compile("(identifier.count() + name.count()) > 0"));
+        assertNull(ConstraintCompiler.compile("entry[0].resource.exists()"));
+        assertNull(ConstraintCompiler.compile("type = 'document' implies entry.first().resource.is(Composition)"));
+        assertNull(ConstraintCompiler.compile("noSuchFunction()"));
+        assertNull(ConstraintCompiler.compile("name.family ~ 'smith'"));
+        // cached as not compiled
+        assertNull(ConstraintCompiler.compile("name.family ~ 'smith'"));
+    }
+
+    @Test
+    public void testCompiledExpressionsAreCached() {
+        String expr = "extension.exists() != value.exists()";
+        assertTrue(ConstraintCompiler.compile(expr) == ConstraintCompiler.compile(expr));
+    }
+
+    @Test
+    public void testCompiledResultsMatchInterpreter() throws Exception {
+        int compared = 0;
+        for (String example : EXAMPLES) {
+            Resource resource = FHIRParser.parser(Format.JSON).parse(ExamplesUtil.resourceReader(example));
+            EvaluationContext evaluationContext = new EvaluationContext(resource);
+
+            List<FHIRPathNode> nodes = new ArrayList<>();
+            List<Collection<Constraint>> constraints = new ArrayList<>();
+            evaluationContext.getTree().getRoot().accept(new FHIRPathDefaultNodeVisitor() {
+                @Override
+                public void doVisit(FHIRPathElementNode node) {
+                    nodes.add(node);
+                    constraints.add(ModelSupport.getConstraints(node.element().getClass()));
+                }
+
+                @Override
+                public void doVisit(FHIRPathResourceNode node) {
+                    nodes.add(node);
+                    constraints.add(ModelSupport.getConstraints(node.resource().getClass()));
+                }
+            });
+            if (resource instanceof Observation) {
+                nodes.add(evaluationContext.getTree().getRoot());
+                constraints.add(ProfileSupport.getConstraints(Collections.singletonList(VITAL_SIGNS_PROFILE_URL), Observation.class));
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                for (Constraint constraint : constraints.get(i)) {
+                    if (!Constraint.LOCATION_BASE.equals(constraint.location())) {
+                        continue;
+                    }
+                    CompiledExpression compiledExpression = ConstraintCompiler.compile(constraint.expression());
+                    if (compiledExpression != null) {
+                        assertSameResult(evaluationContext, constraint, compiledExpression, nodes.get(i));
+                        compared++;
+                    }
+                }
+            }
+        }
+        assertTrue(compared > 0);
+    }
+
+    private void assertSameResult(EvaluationContext evaluationContext, Constraint constraint, CompiledExpression compiledExpression, FHIRPathNode node) throws Exception {
+        String message = constraint.id() + ": " + constraint.expression() + " at path: " + node.path();
+
+        evaluationContext.setConstraint(constraint);
+        Collection<FHIRPathNode> expected = FHIRPathEvaluator.evaluator().evaluate(evaluationContext, constraint.expression(), singleton(node));
+        List<Issue> expectedIssues = new ArrayList<>(evaluationContext.getIssues());
+        evaluationContext.clearIssues();
+
+        Collection<FHIRPathNode> actual = compiledExpression.evaluate(evaluationContext, singleton(node));
+        List<Issue> actualIssues = new ArrayList<>(evaluationContext.getIssues());
+        evaluationContext.clearIssues();
+        evaluationContext.unsetConstraint();
+
+        assertEquals(new ArrayList<>(actual), new ArrayList<>(expected), message);
+        assertEquals(actualIssues, expectedIssues, message);
+    }
+}